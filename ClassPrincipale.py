@@ -7,6 +7,7 @@ import random
 import json
 import os
 import math
+from collections import deque
 from deplacerast import generer_lieu
 from fonctionsPrincipales import cycle, generer_nom_unique, calculer_moyennes
 
@@ -27,6 +28,8 @@ except Exception as e:
 # CLASSE POUR L'AGRÉGATION DE STATS
 # ===========================================================
 
+HISTORIQUE_STATS = 360  # Relevés conservés (1 h à un relevé toutes les 10 s)
+
 # Thread d'arrière-plan pour collecter et afficher les statistiques globales de la simulation à intervalles réguliers.
 class StatsAggregator(threading.Thread):
     def __init__(self, simulation, intervalle=10.0):
@@ -34,7 +37,8 @@ class StatsAggregator(threading.Thread):
         self.simulation = simulation
         self.intervalle = intervalle
         self.running = True
-        self.stats_log = []
+        # Relevés récents seulement (mémoire bornée) : le client tient son propre historique
+        self.stats_log = deque(maxlen=HISTORIQUE_STATS)
 
     # Méthode exécutée lorsque le thread démarre.
     def run(self):
@@ -76,7 +80,7 @@ class StatsAggregator(threading.Thread):
 
     # Réinitialise l'historique des statistiques.
     def reset_stats(self):
-        self.stats_log = []
+        self.stats_log.clear()
 
 
 # ===========================================================
@@ -0,0 +1,42 @@
+#!/usr/bin/env python3
+"""
+Compare deux résultats JMH (JSON, bench/lancer.sh) : temps moyen et allocations par opération
+(gc.alloc.rate.norm) pour chaque benchmark et jeu de paramètres présent dans les deux fichiers.
+
+    python3 bench/comparer.py bench/resultats/<avant>.json bench/resultats/<apres>.json
+"""
+import json
+import sys
+
+
+def charger(chemin):
+    with open(chemin, encoding="utf-8") as f:
+        resultats = {}
+        for r in json.load(f):
+            params = ",".join(f"{k}={v}" for k, v in sorted(r.get("params", {}).items()))
+            score = r["primaryMetric"]
+            alloc = r.get("secondaryMetrics", {}).get("gc.alloc.rate.norm")
+            nom = ".".join(r["benchmark"].split(".")[-2:])  # Classe.méthode
+            resultats[(nom, params)] = (
+                score["score"], score["scoreError"], score["scoreUnit"], alloc["score"] if alloc else None)
+        return resultats
+
+
+def main():
+    if len(sys.argv) != 3:
+        sys.exit(__doc__)
+    avant, apres = charger(sys.argv[1]), charger(sys.argv[2])
+    print(f"{'benchmark':<34} {'paramètres':<34} {'avant':>12} {'après':>12} {'rapport':>8} {'o/op avant':>12} {'o/op après':>12}")
+    for cle in sorted(avant.keys() & apres.keys()):
+        a, b = avant[cle], apres[cle]
+        rapport = b[0] / a[0] if a[0] else float("nan")
+        alloc_a = f"{a[3]:.0f}" if a[3] is not None else "-"
+        alloc_b = f"{b[3]:.0f}" if b[3] is not None else "-"
+        print(f"{cle[0]:<34} {cle[1]:<34} {a[0]:>12.3f} {b[0]:>12.3f} {rapport:>7.2f}x {alloc_a:>12} {alloc_b:>12}")
+    absents = avant.keys() ^ apres.keys()
+    if absents:
+        print(f"\n{len(absents)} résultat(s) présent(s) dans un seul des fichiers")
+
+
+if __name__ == "__main__":
+    main()
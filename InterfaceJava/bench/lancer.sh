@@ -0,0 +1,15 @@
+#!/bin/sh
+# Construit InterfaceJava et lance les benchmarks JMH avec le profileur d'allocations (-prof gc).
+# Le résultat est rangé sous bench/resultats/<commit>.json (suffixe -modifie si l'arbre a des
+# changements non commités), à comparer avec bench/comparer.py.
+#
+#   bench/lancer.sh                      tous les benchmarks
+#   bench/lancer.sh Parsing -p agents=10000
+#                                        options JMH (filtre, paramètres...) passées telles quelles
+set -e
+cd "$(dirname "$0")/.."
+mvn -B -q package
+commit=$(git rev-parse --short HEAD)
+git diff --quiet HEAD -- . || commit="$commit-modifie"
+mkdir -p bench/resultats
+java -jar bench/target/benchmarks.jar -prof gc -rf json -rff "bench/resultats/$commit.json" "$@"
@@ -0,0 +1,182 @@
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Compare les façons de faire tourner les agents de {@link SimulationEngine} : tranches
+ * fork-join (référence), un acteur par agent exécuté par un pool, un thread système par agent
+ * (le modèle de ClassPrincipale.Agent) et un thread virtuel par agent (Java 21 et suivants).
+ *
+ * Pour chaque taille : création du scénario (agents et threads compris), durée moyenne d'un
+ * pas, threads de la JVM, tas occupé après GC et mémoire résidente du processus (piles des
+ * threads système comprises). La dernière colonne vérifie que les positions après les pas
+ * mesurés sont identiques à celles des tranches fork-join.
+ *
+ * Avec "acteurs", le moteur est remplacé par des acteurs qui font un petit calcul fixe à chaque
+ * pas : seul le coût du modèle d'exécution est mesuré, jusqu'au million d'agents (au-delà de
+ * 10 000 agents, le pas complet du moteur est dominé par les recherches A* du premier pas).
+ *
+ * Lancement : java -cp bench/target/benchmarks.jar ActorBenchmark [acteurs] [agents...]
+ * (par défaut 1 000 et 10 000 pour le moteur, 10 000, 100 000 et 1 000 000 pour les acteurs
+ * seuls ; -Dsma.bench.maxPlateforme=n pour mesurer les threads système au-delà de 20 000 agents).
+ * Programme autonome plutôt que benchmark JMH : un thread système par agent ne se répète pas
+ * dans une méthode mesurée, et les colonnes threads et mémoire résidente sortent du cadre de JMH.
+ */
+final class ActorBenchmark {
+
+    private static final int PAS_CHAUFFE = 5, PAS_MESURES = 20;
+    private static final double DENSITE = 1.0 / 6; // Agents par case, comme SteeringBenchmark
+    // Au-delà, un thread système par agent dépasse les limites courantes (ulimit -u) ou prend des minutes
+    private static final int MAX_PLATEFORME = Integer.getInteger("sma.bench.maxPlateforme", 20_000);
+
+    public static void main(String[] args) {
+        boolean seuls = args.length > 0 && args[0].equals("acteurs");
+        List<Integer> tailles = new ArrayList<>();
+        for (int k = seuls ? 1 : 0; k < args.length; k++) tailles.add(Integer.parseInt(args[k]));
+        if (tailles.isEmpty()) tailles.addAll(seuls ? List.of(10_000, 100_000, 1_000_000) : List.of(1_000, 10_000));
+        int coeurs = Runtime.getRuntime().availableProcessors();
+
+        List<ActorRuntime.Mode> modes = new ArrayList<>(List.of(ActorRuntime.Mode.POOL, ActorRuntime.Mode.PLATEFORME));
+        if (ActorRuntime.threadsVirtuelsDisponibles()) modes.add(ActorRuntime.Mode.VIRTUEL);
+        else System.out.println("Threads virtuels : Java " + Runtime.version().feature() + ", mode VIRTUEL non mesuré");
+
+        System.out.printf("%d cœur(s), %d pas mesurés%n", coeurs, PAS_MESURES);
+        System.out.printf("%8s %-11s | %11s %9s %9s | %8s %8s %8s | %s%n", "agents", "mode", "création ms",
+                "ms/pas", "µs/agent", "threads", "tas Mo", "RSS Mo", "identique");
+        for (int n : tailles) {
+            Resultat reference = seuls ? null : mesurer(n, null, coeurs);
+            if (!seuls) afficher(n, "fork-join", reference, reference);
+            for (ActorRuntime.Mode m : modes) {
+                String nom = m.name().toLowerCase(Locale.ROOT);
+                if (m == ActorRuntime.Mode.PLATEFORME && n > MAX_PLATEFORME) {
+                    System.out.printf("%8d %-11s | non mesuré (plus de %d threads, -Dsma.bench.maxPlateforme)%n", n, nom, MAX_PLATEFORME);
+                    continue;
+                }
+                afficher(n, nom, seuls ? mesurerActeurs(n, m, coeurs) : mesurer(n, m, coeurs), reference);
+            }
+        }
+    }
+
+    private record Resultat(double creation, double parPas, int agents, int threads, double tas, double rss,
+                            double empreinte, String erreur) {}
+
+    private static Resultat mesurer(int n, ActorRuntime.Mode mode, int coeurs) {
+        int cote = (int) Math.ceil(Math.sqrt(n / DENSITE));
+        Map<String, ScenarioConfig> s = new LinkedHashMap<>();
+        s.put("1", new ScenarioConfig("1", "banc", cote, cote, n, 50, 100, 5,
+                n, Math.max(1, n / 40), Math.max(1, n / 200), Math.max(1, n / 80), "Equilibre"));
+        ActorRuntime acteurs = mode != null ? new ActorRuntime(mode, coeurs) : null;
+        SimulationEngine e = new SimulationEngine(s, 42, coeurs, acteurs);
+        e.setJournal(false);
+        try {
+            long t0 = System.nanoTime();
+            e.chargerScenario("1");
+            long t1 = System.nanoTime();
+            for (int i = 0; i < PAS_CHAUFFE; i++) e.pas();
+            long t2 = System.nanoTime();
+            for (int i = 0; i < PAS_MESURES; i++) e.pas();
+            long t3 = System.nanoTime();
+
+            System.gc();
+            Runtime r = Runtime.getRuntime();
+            double tas = (r.totalMemory() - r.freeMemory()) / 1e6;
+            int threads = ManagementFactory.getThreadMXBean().getThreadCount();
+            double empreinte = 0;
+            for (int i = 0; i < e.nbAgents; i++) empreinte += e.x[i] * 31 + e.y[i];
+            return new Resultat((t1 - t0) / 1e6, (t3 - t2) / 1e6 / PAS_MESURES, e.nbAgents, threads, tas, rss(),
+                    empreinte, null);
+        } catch (OutOfMemoryError | RuntimeException ex) { // Trop de threads système
+            return new Resultat(0, 0, 0, 0, 0, 0, 0, ex.toString());
+        } finally {
+            e.arreter();
+        }
+    }
+
+    // N acteurs qui font chacun un calcul fixe par TIC ; le pas se termine quand tous l'ont fait
+    private static Resultat mesurerActeurs(int n, ActorRuntime.Mode mode, int coeurs) {
+        ActorRuntime acteurs = new ActorRuntime(mode, coeurs);
+        Compteur[] tous = new Compteur[n];
+        AtomicInteger restants = new AtomicInteger();
+        Thread principal = Thread.currentThread();
+        try {
+            long t0 = System.nanoTime();
+            for (int i = 0; i < n; i++) acteurs.demarrer(tous[i] = new Compteur(i, restants, principal));
+            long t1 = System.nanoTime();
+            long t2 = 0;
+            for (int p = 0; p < PAS_CHAUFFE + PAS_MESURES; p++) {
+                if (p == PAS_CHAUFFE) t2 = System.nanoTime();
+                restants.set(n);
+                acteurs.envoyerGroupe(() -> {
+                    for (Compteur c : tous) c.envoyer(Compteur.TIC);
+                });
+                while (restants.get() > 0) LockSupport.park();
+            }
+            long t3 = System.nanoTime();
+
+            System.gc();
+            Runtime r = Runtime.getRuntime();
+            double tas = (r.totalMemory() - r.freeMemory()) / 1e6;
+            int threads = ManagementFactory.getThreadMXBean().getThreadCount();
+            double empreinte = 0;
+            for (Compteur c : tous) empreinte += c.etat;
+            return new Resultat((t1 - t0) / 1e6, (t3 - t2) / 1e6 / PAS_MESURES, n, threads, tas, rss(), empreinte, null);
+        } catch (OutOfMemoryError | RuntimeException ex) {
+            return new Resultat(0, 0, 0, 0, 0, 0, 0, ex.toString());
+        } finally {
+            acteurs.arreter();
+        }
+    }
+
+    /** Acteur minimal : un petit calcul sur son propre état à chaque pas. */
+    private static final class Compteur extends ActorRuntime.Acteur {
+        static final Object TIC = new Object();
+        private final AtomicInteger restants;
+        private final Thread principal;
+        long etat;
+
+        Compteur(int i, AtomicInteger restants, Thread principal) {
+            this.etat = i + 1;
+            this.restants = restants;
+            this.principal = principal;
+        }
+
+        @Override
+        protected void recevoir(Object message) {
+            long z = etat;
+            for (int k = 0; k < 50; k++) z = SimulationEngine.melanger(z); // ~ une décision d'agent
+            etat = z;
+            if (restants.decrementAndGet() == 0) LockSupport.unpark(principal);
+        }
+    }
+
+    private static void afficher(int n, String mode, Resultat r, Resultat reference) {
+        if (r.erreur() != null) {
+            System.out.printf("%8d %-11s | échec : %s%n", n, mode, r.erreur());
+            return;
+        }
+        System.out.printf("%8d %-11s | %11.0f %9.2f %9.2f | %8d %8.0f %8s | %s%n", r.agents(), mode, r.creation(),
+                r.parPas(), r.parPas() * 1e3 / Math.max(1, r.agents()), r.threads(), r.tas(),
+                r.rss() > 0 ? String.format("%.0f", r.rss()) : "-",
+                reference == null ? "-" : r.empreinte() == reference.empreinte() ? "oui" : "NON");
+    }
+
+    // VmRSS de /proc/self/status (Linux), en Mo ; 0 si indisponible
+    private static double rss() {
+        try {
+            for (String l : Files.readAllLines(Path.of("/proc/self/status"))) {
+                if (l.startsWith("VmRSS:")) return Long.parseLong(l.replaceAll("\\D", "")) / 1e3;
+            }
+        } catch (IOException | RuntimeException ignored) {
+            // Autre système
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,65 @@
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Flux sans fin pour les analyseurs : un préambule lu une fois (CONFIG, dictionnaires), puis
+ * les octets d'un cycle de trames répétés indéfiniment. Utilisable comme InputStream
+ * (FrameParser) ou comme canal (BinaryFrameDecoder) ; ne renvoie jamais la fin de flux.
+ */
+final class CyclicStream extends InputStream implements ReadableByteChannel {
+
+    private final byte[] preambule, cycle;
+    private byte[] courant;
+    private int pos;
+
+    CyclicStream(byte[] preambule, byte[] cycle) {
+        if (cycle.length == 0) throw new IllegalArgumentException("Cycle vide");
+        this.preambule = preambule;
+        this.cycle = cycle;
+        courant = preambule.length > 0 ? preambule : cycle;
+    }
+
+    // Passe au début du cycle lorsque le tableau courant est épuisé
+    private void avancer() {
+        if (pos == courant.length) {
+            courant = cycle;
+            pos = 0;
+        }
+    }
+
+    @Override
+    public int read() {
+        avancer();
+        return courant[pos++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int debut, int longueur) {
+        if (longueur == 0) return 0;
+        avancer();
+        int n = Math.min(longueur, courant.length - pos);
+        System.arraycopy(courant, pos, b, debut, n);
+        pos += n;
+        return n;
+    }
+
+    @Override
+    public int read(ByteBuffer dst) {
+        if (!dst.hasRemaining()) return 0;
+        avancer();
+        int n = Math.min(dst.remaining(), courant.length - pos);
+        dst.put(courant, pos, n);
+        pos += n;
+        return n;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return true;
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,62 @@
+import sma.bench.Workload;
+
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+
+/**
+ * Dessin de la carte par SimulationPanel dans une image hors écran de LARGEUR x HAUTEUR pixels,
+ * vue centrée sur la grille comme dans le JScrollPane. Chaque dessin voit une trame de numéro
+ * nouveau : l'index des agents (AgentBuckets) est reconstruit comme à chaque trame reçue.
+ * Variantes : "detail" (zoom par défaut, CELL_SIZE pixels par case), "ensemble" (grille
+ * entière ajustée à la fenêtre, niveau de détail réduit sur les grandes villes).
+ */
+final class PaintWorkload implements Workload {
+
+    static final int LARGEUR = 1280, HAUTEUR = 800;
+
+    private final WorldSnapshot.Echange monde = new WorldSnapshot.Echange();
+    private final BufferedImage image = new BufferedImage(LARGEUR, HAUTEUR, BufferedImage.TYPE_INT_RGB);
+    private SimulationPanel panneau;
+    private Rectangle zone;
+
+    @Override
+    public void preparer(int agents, String vue) {
+        int cote = SyntheticFrames.cote(agents);
+        monde.ecriture().copierDepuis(SyntheticFrames.generer(agents)[0]);
+        monde.publier();
+
+        panneau = new SimulationPanel(monde);
+        panneau.setGrille(cote, cote);
+        panneau.setConnecte(true);
+        switch (vue) {
+            case "detail" -> panneau.majTaille();
+            case "ensemble" -> panneau.ajusterA(LARGEUR, HAUTEUR);
+            default -> throw new IllegalArgumentException("Vue inconnue : " + vue);
+        }
+        Dimension taille = panneau.getPreferredSize();
+        panneau.setSize(taille);
+        zone = new Rectangle(Math.max(0, (taille.width - LARGEUR) / 2), Math.max(0, (taille.height - HAUTEUR) / 2),
+                LARGEUR, HAUTEUR);
+    }
+
+    @Override
+    public long executer() {
+        WorldSnapshot t = monde.acquerir();
+        try {
+            t.numero++;
+        } finally {
+            monde.liberer();
+        }
+        Graphics2D g = image.createGraphics();
+        try {
+            g.translate(-zone.x, -zone.y);
+            g.setClip(zone);
+            panneau.paintComponent(g);
+        } finally {
+            g.dispose();
+        }
+        return image.getRGB(LARGEUR / 2, HAUTEUR / 2);
+    }
+}
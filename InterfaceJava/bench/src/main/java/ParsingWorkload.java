@@ -0,0 +1,93 @@
+import sma.bench.Workload;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Réception d'une trame par le client : les trames synthétiques sont encodées une fois par
+ * FrameEncoder (comme par EngineServer), puis relues en boucle depuis un {@link CyclicStream}
+ * jusqu'à la publication de l'instantané (SnapshotReceiver, comme networkLoop).
+ *
+ * Variantes : "split" (analyseur d'origine, protocole texte), "texte" (FrameParser, protocole 1),
+ * "delta" (FrameParser, protocole 2, une trame KEY par cycle de SyntheticFrames.NB_TRAMES),
+ * "binaire" (BinaryFrameDecoder, protocole 3).
+ */
+final class ParsingWorkload implements Workload {
+
+    private static final SnapshotReceiver.Ecouteur SANS_ECOUTEUR = new SnapshotReceiver.Ecouteur() {
+        @Override
+        public void onGrille(int largeur, int hauteur) {
+        }
+
+        @Override
+        public void onDesynchronisation() {
+            throw new IllegalStateException("Flux delta incohérent");
+        }
+    };
+
+    private final WorldSnapshot.Echange monde = new WorldSnapshot.Echange();
+    private SplitFrameParser split;
+    private FrameParser parser;
+    private BinaryFrameDecoder binaire;
+
+    @Override
+    public void preparer(int agents, String format) throws IOException {
+        int proto = switch (format) {
+            case "split", "texte" -> FrameParser.PROTO_TEXTE;
+            case "delta" -> FrameParser.PROTO_DELTA;
+            case "binaire" -> FrameParser.PROTO_BINAIRE;
+            default -> throw new IllegalArgumentException("Format inconnu : " + format);
+        };
+        WorldSnapshot[] trames = SyntheticFrames.generer(agents);
+        int cote = SyntheticFrames.cote(agents);
+
+        // Préambule : CONFIG et première trame (dictionnaires du protocole binaire), puis le cycle
+        FrameEncoder encodeur = new FrameEncoder();
+        encodeur.setProto(proto);
+        ByteArrayOutputStream preambule = new ByteArrayOutputStream();
+        ecrire(preambule, encodeur.encoder(trames[0], cote, cote, true));
+        if (proto == FrameParser.PROTO_DELTA) encodeur.demanderKeyframe(); // Le cycle commence par KEY
+        ByteArrayOutputStream cycle = new ByteArrayOutputStream();
+        for (WorldSnapshot t : trames) ecrire(cycle, encodeur.encoder(t, cote, cote, false));
+        CyclicStream flux = new CyclicStream(preambule.toByteArray(), cycle.toByteArray());
+
+        if (format.equals("split")) {
+            split = new SplitFrameParser(flux);
+        } else {
+            SnapshotReceiver reception = new SnapshotReceiver(monde, SANS_ECOUTEUR);
+            parser = new FrameParser(flux, reception);
+            if (proto == FrameParser.PROTO_BINAIRE) {
+                while (!parser.isBasculeBinaire()) parser.lireLigne();
+                binaire = new BinaryFrameDecoder(flux, reception);
+                binaire.demarrer(parser.restants());
+            }
+        }
+        // Lecture du préambule, puis contrôle d'un cycle complet
+        executer();
+        for (int k = 0; k < SyntheticFrames.NB_TRAMES; k++) {
+            if (executer() != agents) throw new IllegalStateException(format + " : trame incomplète");
+        }
+    }
+
+    @Override
+    public long executer() throws IOException {
+        if (split != null) return split.lireTrame();
+        WorldSnapshot enCours = monde.ecriture(); // Change à la publication (échange des tampons)
+        if (binaire != null) {
+            do binaire.lireMessage(); while (monde.ecriture() == enCours);
+        } else {
+            do parser.lireLigne(); while (monde.ecriture() == enCours);
+        }
+        WorldSnapshot t = monde.acquerir();
+        try {
+            return t.nbAgents;
+        } finally {
+            monde.liberer();
+        }
+    }
+
+    private static void ecrire(ByteArrayOutputStream sortie, ByteBuffer octets) {
+        sortie.write(octets.array(), octets.arrayOffset() + octets.position(), octets.remaining());
+    }
+}
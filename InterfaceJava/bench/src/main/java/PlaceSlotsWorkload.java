@@ -0,0 +1,133 @@
+import sma.bench.PlaceWorkload;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Changements de place, comme les agents du moteur : départ de la place tenue, arrivée sur
+ * une place tirée au hasard (partagée si besoin). "verrou" : compteurs sous un verrou global,
+ * comme ville.lock ; "atomique" : {@link PlaceSlots} (ajouter, copier), le chemin du moteur.
+ *
+ * Pour comparaison, la réservation exclusive d'une place libre du lieu (le modèle de
+ * fonctionsPrincipales, que le moteur n'utilise pas) : "reservation-verrou" balaye les places
+ * sous le verrou global, "reservation-cas" les prend par compareAndSet de 0 à 1, un lieu par
+ * ligne de cache.
+ *
+ * La lecture copie l'occupation de toutes les places : sous le verrou, par copie validée de
+ * PlaceSlots, ou élément par élément sans garantie de cohérence pour "reservation-cas".
+ */
+final class PlaceSlotsWorkload implements PlaceWorkload {
+
+    static final int PLACES_PAR_LIEU = 10; // Un lieu de travail
+    private static final int PAR_LIGNE = 16; // Entiers par ligne de cache de 64 octets
+
+    private enum Variante { VERROU, ATOMIQUE, RESERVATION_VERROU, RESERVATION_CAS }
+
+    private int nbLieux, nbPlaces;
+    private Variante variante;
+    private final Object ville = new Object();
+    private int[] occupant; // Variantes sous verrou
+    private PlaceSlots places; // "atomique"
+    private AtomicIntegerArray libres; // "reservation-cas" : place p en (p / PLACES_PAR_LIEU) * PAR_LIGNE + p % PLACES_PAR_LIEU
+    private int[] copie;
+
+    @Override
+    public void preparer(int lieux, String nom) {
+        nbLieux = lieux;
+        nbPlaces = lieux * PLACES_PAR_LIEU;
+        variante = switch (nom) {
+            case "verrou" -> Variante.VERROU;
+            case "atomique" -> Variante.ATOMIQUE;
+            case "reservation-verrou" -> Variante.RESERVATION_VERROU;
+            case "reservation-cas" -> Variante.RESERVATION_CAS;
+            default -> throw new IllegalArgumentException("Variante inconnue : " + nom);
+        };
+        switch (variante) {
+            case VERROU, RESERVATION_VERROU -> occupant = new int[nbPlaces];
+            case ATOMIQUE -> {
+                int[] placeLieu = new int[nbPlaces];
+                for (int p = 0; p < nbPlaces; p++) placeLieu[p] = p / PLACES_PAR_LIEU;
+                places = new PlaceSlots(placeLieu, nbPlaces);
+            }
+            case RESERVATION_CAS -> libres = new AtomicIntegerArray((lieux + 1) * PAR_LIGNE);
+        }
+        copie = new int[nbPlaces];
+    }
+
+    @Override
+    public int changer(int placeTenue) {
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        int debut = rnd.nextInt(nbLieux) * PLACES_PAR_LIEU;
+        int depuis = debut + rnd.nextInt(PLACES_PAR_LIEU);
+        switch (variante) {
+            case VERROU -> {
+                synchronized (ville) {
+                    if (placeTenue >= 0) occupant[placeTenue]--;
+                }
+                synchronized (ville) {
+                    occupant[depuis]++;
+                }
+                return depuis;
+            }
+            case ATOMIQUE -> {
+                if (placeTenue >= 0) places.ajouter(placeTenue, -1);
+                places.ajouter(depuis, 1);
+                return depuis;
+            }
+            case RESERVATION_VERROU -> {
+                synchronized (ville) {
+                    if (placeTenue >= 0) occupant[placeTenue]--;
+                }
+                synchronized (ville) {
+                    for (int k = 0; k < PLACES_PAR_LIEU; k++) {
+                        int p = suivante(debut, depuis, k);
+                        if (occupant[p] == 0) {
+                            occupant[p] = 1;
+                            return p;
+                        }
+                    }
+                }
+                return -1;
+            }
+            default -> {
+                if (placeTenue >= 0) libres.set(caseCas(placeTenue), 0);
+                for (int k = 0; k < PLACES_PAR_LIEU; k++) {
+                    int p = suivante(debut, depuis, k);
+                    int i = caseCas(p);
+                    // Simple lecture d'abord : la ligne n'est prise en écriture que si la place semble libre
+                    if (libres.get(i) == 0 && libres.compareAndSet(i, 0, 1)) return p;
+                }
+                return -1;
+            }
+        }
+    }
+
+    // k-ième place du lieu en partant de 'depuis', en revenant au début
+    private static int suivante(int debut, int depuis, int k) {
+        int p = depuis + k;
+        return p < debut + PLACES_PAR_LIEU ? p : p - PLACES_PAR_LIEU;
+    }
+
+    private static int caseCas(int place) {
+        return place / PLACES_PAR_LIEU * PAR_LIGNE + place % PLACES_PAR_LIEU;
+    }
+
+    @Override
+    public long lire() {
+        switch (variante) {
+            case ATOMIQUE -> {
+                return places.copier(copie) ? copie[0] : -1;
+            }
+            case RESERVATION_CAS -> {
+                for (int p = 0; p < nbPlaces; p++) copie[p] = libres.get(caseCas(p));
+                return copie[0];
+            }
+            default -> {
+                synchronized (ville) {
+                    System.arraycopy(occupant, 0, copie, 0, nbPlaces);
+                }
+                return copie[0];
+            }
+        }
+    }
+}
@@ -0,0 +1,64 @@
+import sma.bench.HandoffWorkload;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Transmission d'une trame du thread réseau à l'EDT.
+ *
+ * Variantes : "liste" (client d'origine : copie des objets de la trame dans une nouvelle
+ * CopyOnWriteArrayList), "echange" (WorldSnapshot.Echange, trame écrite en place par
+ * l'analyseur : protocoles texte et binaire), "copie" (recopie de l'état retenu dans le
+ * tampon d'écriture puis échange : protocole delta).
+ */
+final class SnapshotHandoffWorkload implements HandoffWorkload {
+
+    private final WorldSnapshot.Echange monde = new WorldSnapshot.Echange();
+    private WorldSnapshot modele;
+    private boolean copie;
+
+    private List<SplitFrameParser.AgentInfo> tampon; // Variante "liste"
+    private volatile List<SplitFrameParser.AgentInfo> agents = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void preparer(int nbAgents, String variante) {
+        modele = SyntheticFrames.generer(nbAgents)[0];
+        switch (variante) {
+            case "liste" -> {
+                tampon = new ArrayList<>(nbAgents);
+                WorldSnapshot t = modele;
+                for (int i = 0; i < t.nbAgents; i++) {
+                    tampon.add(new SplitFrameParser.AgentInfo(t.noms[i], t.x[i], t.y[i], t.nrj[i], t.stress[i],
+                            t.arg[i], WorldSnapshot.Etats.libelle(t.etat[i]), t.ang[i]));
+                }
+            }
+            case "echange" -> copie = false;
+            case "copie" -> copie = true;
+            default -> throw new IllegalArgumentException("Variante inconnue : " + variante);
+        }
+    }
+
+    @Override
+    public long publier() {
+        if (tampon != null) {
+            List<SplitFrameParser.AgentInfo> l = new CopyOnWriteArrayList<>(new ArrayList<>(tampon));
+            agents = l;
+            return l.size();
+        }
+        if (copie) monde.ecriture().copierDepuis(modele);
+        monde.publier();
+        return modele.nbAgents;
+    }
+
+    @Override
+    public long lire() {
+        if (tampon != null) return agents.size();
+        WorldSnapshot t = monde.acquerir();
+        try {
+            return t.numero + t.nbAgents;
+        } finally {
+            monde.liberer();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+import java.io.BufferedReader;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Réception d'origine du client (avant FrameParser), conservée comme référence de mesure :
+ * readLine, String.split et Float.parseFloat par champ, un objet par agent et par lieu, puis
+ * copie des listes en CopyOnWriteArrayList à chaque END. Sans la partie Swing.
+ */
+final class SplitFrameParser {
+
+    record AgentInfo(String nom, float x, float y, float nrj, float stress, float arg, String etat, float ang) {}
+
+    record LieuInfo(String type, float x, float y, boolean occupe) {}
+
+    private final BufferedReader in;
+
+    // Tampons de la trame en cours, puis listes partagées avec l'EDT
+    private final List<AgentInfo> bufferAgents = new ArrayList<>();
+    private final List<LieuInfo> bufferLieux = new ArrayList<>();
+    private String[] tempStats;
+    volatile List<AgentInfo> agents = new CopyOnWriteArrayList<>();
+    volatile List<LieuInfo> lieux = new CopyOnWriteArrayList<>();
+    volatile String[] stats;
+    int gridWidth, gridHeight;
+
+    SplitFrameParser(InputStream flux) {
+        in = new BufferedReader(new InputStreamReader(flux));
+    }
+
+    /** Lit les lignes jusqu'au END suivant ; renvoie le nombre d'agents publiés. */
+    int lireTrame() throws IOException {
+        String line;
+        while ((line = in.readLine()) != null) {
+            if (line.startsWith("CONFIG")) {
+                String[] parts = line.split(";");
+                if (parts.length >= 3) {
+                    gridWidth = Integer.parseInt(parts[1]);
+                    gridHeight = Integer.parseInt(parts[2]);
+                }
+            } else if (line.equals("END")) {
+                final List<AgentInfo> finalAgents = new ArrayList<>(bufferAgents);
+                final List<LieuInfo> finalLieux = new ArrayList<>(bufferLieux);
+                agents = new CopyOnWriteArrayList<>(finalAgents);
+                lieux = new CopyOnWriteArrayList<>(finalLieux);
+                stats = tempStats;
+                bufferAgents.clear();
+                bufferLieux.clear();
+                tempStats = null;
+                return finalAgents.size();
+            } else {
+                String[] p = line.split(";");
+                String type = p[0];
+                if (type.equals("AGENT")) {
+                    if (p.length == 9) {
+                        bufferAgents.add(new AgentInfo(
+                                p[1],
+                                Float.parseFloat(p[2]), Float.parseFloat(p[3]),
+                                Float.parseFloat(p[4]), Float.parseFloat(p[5]), Float.parseFloat(p[6]),
+                                p[7], Float.parseFloat(p[8])
+                        ));
+                    }
+                } else if (type.equals("MAISON") || type.equals("TRAVAIL") || type.equals("PARC") || type.equals("LOISIR")) {
+                    if (p.length >= 3) {
+                        boolean occupe = p.length > 3 && p[3].equals("1");
+                        bufferLieux.add(new LieuInfo(type, Float.parseFloat(p[1]), Float.parseFloat(p[2]), occupe));
+                    }
+                } else if (type.equals("STATS")) {
+                    tempStats = p;
+                }
+            }
+        }
+        throw new EOFException("Connexion fermée par le serveur");
+    }
+}
@@ -0,0 +1,131 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Mesure du coût du voisinage (séparation de calculer_forces) en fonction du nombre d'agents,
+ * à densité constante : index {@link SpatialGrid} (reconstruction + requête de rayon + requête
+ * de cône par agent) contre le parcours de tous les agents (O(n²), version Python).
+ *
+ * Lancement : java -cp bench/target/benchmarks.jar SteeringBenchmark [densité agents/case] [moteur]
+ * Avec "moteur", mesure aussi le pas complet de {@link SimulationEngine} (A* compris).
+ * Programme autonome, comme ActorBenchmark : une ligne par taille, de 1 000 à 100 000 agents.
+ */
+final class SteeringBenchmark {
+
+    private static final int[] TAILLES = {1_000, 2_000, 5_000, 10_000, 20_000, 50_000, 100_000};
+    private static final int MAX_FORCE_BRUTE = 20_000; // Au-delà, le parcours complet prend des minutes
+    private static final int PAS_MESURES = 20;
+
+    public static void main(String[] args) {
+        double densite = args.length > 0 ? Double.parseDouble(args[0]) : 1.0 / 6;
+        boolean moteur = args.length > 1 && args[1].equals("moteur");
+
+        System.out.printf("Densité : %.3f agent/case, rayon %.1f, cône ±%.0f°%n", densite,
+                SimulationEngine.RAYON_FOV, Math.toDegrees(SpatialGrid.DEMI_CONE));
+        System.out.printf("%8s %6s | %12s %10s | %12s %10s%s%n", "agents", "grille", "grille ms/pas", "ns/agent",
+                "brute ms/pas", "ns/agent", moteur ? " | moteur ms/pas" : "");
+        for (int n : TAILLES) {
+            int cote = (int) Math.ceil(Math.sqrt(n / densite));
+            Monde m = new Monde(n, cote, 42);
+            m.mesurer(true, 3); // Chauffe
+            double grille = m.mesurer(true, PAS_MESURES);
+            String brute = "-", bruteAgent = "-";
+            if (n <= MAX_FORCE_BRUTE) {
+                m.mesurer(false, 1);
+                double b = m.mesurer(false, Math.max(1, PAS_MESURES / 4));
+                brute = String.format("%.2f", b);
+                bruteAgent = String.format("%.0f", b * 1e6 / n);
+            }
+            String ligneMoteur = moteur ? String.format(" | %14.2f", mesurerMoteur(n, cote)) : "";
+            System.out.printf("%8d %6s | %12.2f %10.0f | %12s %10s%s%n", n, cote + "²", grille, grille * 1e6 / n,
+                    brute, bruteAgent, ligneMoteur);
+            if (m.controle != m.controle) System.out.println("?"); // Empêche l'élimination du calcul
+        }
+    }
+
+    // Pas complet du moteur sur une ville de même taille (lieux proportionnels au nombre d'agents)
+    private static double mesurerMoteur(int n, int cote) {
+        Map<String, ScenarioConfig> s = new LinkedHashMap<>();
+        s.put("1", new ScenarioConfig("1", "banc", cote, cote, n, 50, 100, 5,
+                n, Math.max(1, n / 40), Math.max(1, n / 200), Math.max(1, n / 80), "Equilibre"));
+        SimulationEngine e = new SimulationEngine(s, 42, Runtime.getRuntime().availableProcessors());
+        e.chargerScenario("1");
+        for (int i = 0; i < 5; i++) e.pas();
+        long t0 = System.nanoTime();
+        for (int i = 0; i < PAS_MESURES; i++) e.pas();
+        long t1 = System.nanoTime();
+        e.arreter();
+        return (t1 - t0) / 1e6 / PAS_MESURES;
+    }
+
+    /** Agents en mouvement aléatoire sur une grille carrée, avec le même calcul de répulsion que le moteur. */
+    private static final class Monde implements SpatialGrid.Visiteur {
+        final int n, cote;
+        final double[] x, y, angle;
+        final SplittableRandom rnd;
+        final SpatialGrid grille = new SpatialGrid();
+        double fx, fy, controle;
+        int visibles;
+
+        Monde(int n, int cote, long graine) {
+            this.n = n;
+            this.cote = cote;
+            rnd = new SplittableRandom(graine);
+            x = new double[n];
+            y = new double[n];
+            angle = new double[n];
+            for (int i = 0; i < n; i++) {
+                x[i] = rnd.nextDouble(0.1, cote - 1.1);
+                y[i] = rnd.nextDouble(0.1, cote - 1.1);
+                angle[i] = rnd.nextDouble(-Math.PI, Math.PI);
+            }
+        }
+
+        // Durée moyenne d'un pas (ms) : voisinage de chaque agent puis petit déplacement
+        double mesurer(boolean avecGrille, int pas) {
+            long t0 = System.nanoTime();
+            for (int k = 0; k < pas; k++) {
+                if (avecGrille) grille.reconstruire(x, y, n, cote, cote);
+                for (int i = 0; i < n; i++) {
+                    fx = fy = 0;
+                    visibles = 0;
+                    if (avecGrille) {
+                        grille.rayon(x[i], y[i], SimulationEngine.RAYON_FOV, this);
+                        visibles = grille.cone(x[i], y[i], angle[i], SpatialGrid.DEMI_CONE, SimulationEngine.RAYON_FOV, (j, dx, dy, d2) -> { });
+                    } else {
+                        bruteForce(i);
+                    }
+                    controle += fx + fy + visibles;
+                }
+                for (int i = 0; i < n; i++) {
+                    angle[i] += rnd.nextDouble(-0.3, 0.3);
+                    x[i] = Math.max(0.1, Math.min(cote - 1.1, x[i] + 0.3 * Math.cos(angle[i])));
+                    y[i] = Math.max(0.1, Math.min(cote - 1.1, y[i] + 0.3 * Math.sin(angle[i])));
+                }
+            }
+            return (System.nanoTime() - t0) / 1e6 / pas;
+        }
+
+        private void bruteForce(int i) {
+            double r2 = SimulationEngine.RAYON_FOV * SimulationEngine.RAYON_FOV;
+            double ux = Math.cos(angle[i]), uy = Math.sin(angle[i]), c = Math.cos(SpatialGrid.DEMI_CONE);
+            for (int j = 0; j < n; j++) {
+                double dx = x[j] - x[i], dy = y[j] - y[i];
+                double d2 = dx * dx + dy * dy;
+                if (d2 >= r2) continue;
+                voisin(j, dx, dy, d2);
+                double p = dx * ux + dy * uy;
+                if (p >= 0 && p * p >= d2 * c * c) visibles++;
+            }
+        }
+
+        @Override
+        public void voisin(int index, double dx, double dy, double d2) {
+            if (d2 == 0) return;
+            double f = SimulationEngine.FORCE_REPULSION_AGENT / (d2 * Math.sqrt(d2));
+            fx -= dx * f;
+            fy -= dy * f;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+import java.util.SplittableRandom;
+
+/**
+ * Trames synthétiques reproductibles pour les benchmarks : même graine, mêmes trames, d'un
+ * commit à l'autre (indépendantes du moteur, dont le comportement peut évoluer).
+ *
+ * Densité de SteeringBenchmark (un agent pour six cases), une maison par agent et une place de
+ * lieu pour quatre agents, comme les trames du moteur. Les NB_TRAMES trames forment un cycle :
+ * chaque agent tourne autour d'un point, énergie, stress et argent oscillent, l'état change
+ * deux trames sur seize et l'occupation des places une sur quatre. Rejouées en boucle, elles
+ * donnent donc des deltas de taille constante.
+ */
+final class SyntheticFrames {
+
+    static final int NB_TRAMES = 16;
+
+    private static final long GRAINE = 42;
+    private static final int[] TYPES_PLACES = {FrameParser.TRAVAIL, FrameParser.PARC, FrameParser.LOISIR};
+
+    private SyntheticFrames() {}
+
+    /** Côté de la grille carrée utilisée pour n agents. */
+    static int cote(int agents) {
+        return Math.max(20, (int) Math.ceil(Math.sqrt(agents * 6.0)));
+    }
+
+    static WorldSnapshot[] generer(int agents) {
+        SplittableRandom rnd = new SplittableRandom(GRAINE);
+        int cote = cote(agents);
+        int nbLieux = agents + agents / 4;
+        int[] typeLieu = new int[nbLieux], lieuX = new int[nbLieux], lieuY = new int[nbLieux];
+        for (int l = 0; l < nbLieux; l++) {
+            typeLieu[l] = l < agents ? FrameParser.MAISON : TYPES_PLACES[l % TYPES_PLACES.length];
+            lieuX[l] = rnd.nextInt(cote);
+            lieuY[l] = rnd.nextInt(cote);
+        }
+
+        String[] noms = new String[agents];
+        int[] etats = new int[SimulationEngine.LIBELLES.length];
+        for (int e = 0; e < etats.length; e++) etats[e] = WorldSnapshot.Etats.id(SimulationEngine.LIBELLES[e]);
+        double[] cx = new double[agents], cy = new double[agents], rayon = new double[agents], phase = new double[agents];
+        float[] nrj = new float[agents], stress = new float[agents], arg = new float[agents];
+        int[] etat = new int[agents], autreEtat = new int[agents];
+        for (int i = 0; i < agents; i++) {
+            noms[i] = "Agent_" + i;
+            rayon[i] = rnd.nextDouble(0.5, 3);
+            cx[i] = rnd.nextDouble(rayon[i], cote - 1 - rayon[i]);
+            cy[i] = rnd.nextDouble(rayon[i], cote - 1 - rayon[i]);
+            phase[i] = rnd.nextDouble(2 * Math.PI);
+            nrj[i] = (float) rnd.nextDouble(20, 100);
+            stress[i] = (float) rnd.nextDouble(0, 70);
+            arg[i] = (float) rnd.nextDouble(0, 200);
+            etat[i] = etats[rnd.nextInt(etats.length)];
+            autreEtat[i] = etats[rnd.nextInt(etats.length)];
+        }
+
+        WorldSnapshot[] trames = new WorldSnapshot[NB_TRAMES];
+        for (int k = 0; k < NB_TRAMES; k++) {
+            WorldSnapshot t = new WorldSnapshot();
+            for (int l = 0; l < nbLieux; l++) {
+                boolean occupe = l >= agents && ((k + l) & 3) == 0;
+                t.ajouterLieu(typeLieu[l], lieuX[l], lieuY[l], occupe);
+            }
+            double cycle = 2 * Math.PI * k / NB_TRAMES;
+            int occupes = 0;
+            double sommeNrj = 0, sommeStress = 0, sommeArg = 0;
+            for (int i = 0; i < agents; i++) {
+                double a = phase[i] + cycle;
+                float n = nrj[i] + (float) (5 * Math.sin(a)), s = stress[i] + (float) (5 * Math.cos(a));
+                float m = arg[i] + (float) (3 * Math.sin(a));
+                int e = ((k + i) & 15) < 2 ? autreEtat[i] : etat[i];
+                t.ajouterAgent(noms[i], (float) (cx[i] + rayon[i] * Math.cos(a)), (float) (cy[i] + rayon[i] * Math.sin(a)),
+                        n, s, m, e, (float) Math.IEEEremainder(a + Math.PI / 2, 2 * Math.PI));
+                if (e == WorldSnapshot.Etats.OCCUPE) occupes++;
+                sommeNrj += n;
+                sommeStress += s;
+                sommeArg += m;
+            }
+            t.definirStats((float) (sommeNrj / agents), (float) (sommeStress / agents), (float) (sommeArg / agents),
+                    agents, 0, occupes);
+            trames[k] = t;
+        }
+        return trames;
+    }
+}
@@ -0,0 +1,34 @@
+import sma.bench.Workload;
+
+import javax.swing.JTable;
+
+/**
+ * updateTable : AgentTableModel prend en compte une trame (les trames du cycle défilent),
+ * avec une JTable à l'écoute des événements comme dans ClientInterface.
+ * Variantes : "aucun" (ordre de réception), "energie" (tri par la colonne Énergie).
+ */
+final class TableWorkload implements Workload {
+
+    private WorldSnapshot[] trames;
+    private AgentTableModel modele;
+    private JTable table; // Reçoit les événements du modèle
+    private int k;
+
+    @Override
+    public void preparer(int agents, String tri) {
+        trames = SyntheticFrames.generer(agents);
+        modele = new AgentTableModel();
+        table = new JTable(modele);
+        switch (tri) {
+            case "aucun" -> { }
+            case "energie" -> modele.trierPar(1);
+            default -> throw new IllegalArgumentException("Tri inconnu : " + tri);
+        }
+    }
+
+    @Override
+    public long executer() {
+        modele.mettreAJour(trames[k++ % trames.length]);
+        return modele.getRowCount();
+    }
+}
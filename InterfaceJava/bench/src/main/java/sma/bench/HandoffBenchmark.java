@@ -0,0 +1,47 @@
+package sma.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Passage des trames du thread réseau à l'EDT, un producteur et un lecteur en concurrence :
+ * copie en listes d'origine (CopyOnWriteArrayList) contre l'échange de WorldSnapshot.Echange,
+ * seul (protocoles texte et binaire) ou précédé de la recopie de l'état retenu (protocole delta).
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Djava.awt.headless=true", "-Xms2g", "-Xmx2g"})
+public class HandoffBenchmark {
+
+    @Param({"25", "1000", "10000", "100000"})
+    public int agents;
+
+    @Param({"liste", "echange", "copie"})
+    public String variante;
+
+    private HandoffWorkload charge;
+
+    @Setup
+    public void preparer() throws Exception {
+        charge = Workloads.creer("SnapshotHandoffWorkload", HandoffWorkload.class);
+        charge.preparer(agents, variante);
+    }
+
+    @Benchmark
+    @Group("transmission")
+    @GroupThreads(1)
+    public long reseau() {
+        return charge.publier();
+    }
+
+    @Benchmark
+    @Group("transmission")
+    @GroupThreads(1)
+    public long edt() {
+        return charge.lire();
+    }
+}
@@ -0,0 +1,13 @@
+package sma.bench;
+
+/** Transmission des instantanés entre un producteur (thread réseau) et un lecteur (EDT). */
+public interface HandoffWorkload {
+
+    void preparer(int agents, String variante) throws Exception;
+
+    /** Côté producteur : publication d'une trame. */
+    long publier();
+
+    /** Côté lecteur : accès à la dernière trame publiée. */
+    long lire();
+}
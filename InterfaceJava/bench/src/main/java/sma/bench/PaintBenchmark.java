@@ -0,0 +1,37 @@
+package sma.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SimulationPanel.paintComponent dans une image hors écran (AWT headless), pour une fenêtre
+ * de carte de 1280 x 800 pixels : zoom par défaut (détail) ou grille entière (vue d'ensemble).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Djava.awt.headless=true", "-Xms2g", "-Xmx2g"})
+public class PaintBenchmark {
+
+    @Param({"25", "1000", "10000", "100000"})
+    public int agents;
+
+    @Param({"detail", "ensemble"})
+    public String vue;
+
+    private Workload charge;
+
+    @Setup
+    public void preparer() throws Exception {
+        charge = Workloads.creer("PaintWorkload", Workload.class);
+        charge.preparer(agents, vue);
+    }
+
+    @Benchmark
+    public long dessiner() throws Exception {
+        return charge.executer();
+    }
+}
@@ -0,0 +1,37 @@
+package sma.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Réception d'une trame, des octets du flux jusqu'à l'instantané publié : analyseur d'origine
+ * (readLine + split, objets par agent) contre FrameParser (texte et delta) et BinaryFrameDecoder.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Djava.awt.headless=true", "-Xms2g", "-Xmx2g"})
+public class ParsingBenchmark {
+
+    @Param({"25", "1000", "10000", "100000"})
+    public int agents;
+
+    @Param({"split", "texte", "delta", "binaire"})
+    public String format;
+
+    private Workload charge;
+
+    @Setup
+    public void preparer() throws Exception {
+        charge = Workloads.creer("ParsingWorkload", Workload.class);
+        charge.preparer(agents, format);
+    }
+
+    @Benchmark
+    public long trame() throws Exception {
+        return charge.executer();
+    }
+}
@@ -0,0 +1,73 @@
+package sma.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Changements de place sous concurrence, à 1, 8 et 32 threads : chaque thread tient une place,
+ * la quitte et en prend une autre. "verrou" (ville.lock du serveur Python) contre "atomique"
+ * (PlaceSlots.ajouter, comme le moteur) ; les variantes "reservation-*" mesurent la réservation
+ * exclusive d'une place libre, sous le verrou ou par compareAndSet (voir PlaceSlotsWorkload).
+ * Le groupe "lecture" ajoute un lecteur qui copie toute l'occupation (PlaceSlots.copier) pendant
+ * 8 écrivains.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Djava.awt.headless=true"})
+public class PlaceBenchmark {
+
+    @Param({"4", "256"})
+    public int lieux;
+
+    @Param({"verrou", "atomique", "reservation-verrou", "reservation-cas"})
+    public String variante;
+
+    private PlaceWorkload charge;
+
+    @State(Scope.Thread)
+    public static class Tenue {
+        int place = -1;
+    }
+
+    @Setup
+    public void preparer() throws Exception {
+        charge = Workloads.creer("PlaceSlotsWorkload", PlaceWorkload.class);
+        charge.preparer(lieux, variante);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public int t01(Tenue t) {
+        return t.place = charge.changer(t.place);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public int t08(Tenue t) {
+        return t.place = charge.changer(t.place);
+    }
+
+    @Benchmark
+    @Threads(32)
+    public int t32(Tenue t) {
+        return t.place = charge.changer(t.place);
+    }
+
+    @Benchmark
+    @Group("lecture")
+    @GroupThreads(8)
+    public int ecrivains(Tenue t) {
+        return t.place = charge.changer(t.place);
+    }
+
+    @Benchmark
+    @Group("lecture")
+    @GroupThreads(1)
+    public long lecteur() {
+        return charge.lire();
+    }
+}
@@ -0,0 +1,17 @@
+package sma.bench;
+
+/** Occupation de places partagée entre threads, et lecture de l'occupation de toutes les places. */
+public interface PlaceWorkload {
+
+    /**
+     * @param lieux nombre de lieux (PLACES_PAR_LIEU places chacun) : peu de lieux, forte concurrence
+     * @param variante variante mesurée, propre à la charge
+     */
+    void preparer(int lieux, String variante) throws Exception;
+
+    /** Quitte la place tenue (si positive) et en prend une dans un lieu tiré au hasard ; -1 si complet. */
+    int changer(int placeTenue);
+
+    /** Copie de l'occupation de toutes les places (trame, statistiques). */
+    long lire();
+}
@@ -0,0 +1,34 @@
+package sma.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/** updateTable : prise en compte d'une trame par AgentTableModel, attaché à une JTable. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Djava.awt.headless=true", "-Xms2g", "-Xmx2g"})
+public class TableBenchmark {
+
+    @Param({"25", "1000", "10000", "100000"})
+    public int agents;
+
+    @Param({"aucun", "energie"})
+    public String tri;
+
+    private Workload charge;
+
+    @Setup
+    public void preparer() throws Exception {
+        charge = Workloads.creer("TableWorkload", Workload.class);
+        charge.preparer(agents, tri);
+    }
+
+    @Benchmark
+    public long mettreAJour() throws Exception {
+        return charge.executer();
+    }
+}
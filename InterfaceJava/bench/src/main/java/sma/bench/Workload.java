@@ -0,0 +1,20 @@
+package sma.bench;
+
+/**
+ * Opération mesurée par un benchmark, sur des données préparées une fois pour toutes.
+ *
+ * Les classes du client sont dans le paquetage par défaut, qu'un paquetage nommé ne peut pas
+ * importer, et JMH refuse les benchmarks du paquetage par défaut : les charges sont donc écrites
+ * dans le paquetage par défaut et chargées par leur nom ({@link Workloads}).
+ */
+public interface Workload {
+
+    /**
+     * @param agents nombre d'agents des trames synthétiques
+     * @param variante variante mesurée, propre à chaque charge
+     */
+    void preparer(int agents, String variante) throws Exception;
+
+    /** Une opération (une trame) ; renvoie une valeur dépendant du calcul, à consommer. */
+    long executer() throws Exception;
+}
@@ -0,0 +1,13 @@
+package sma.bench;
+
+/** Instanciation des charges du paquetage par défaut (voir {@link Workload}). */
+public final class Workloads {
+
+    private Workloads() {}
+
+    public static <T> T creer(String classe, Class<T> type) throws ReflectiveOperationException {
+        var constructeur = Class.forName(classe).asSubclass(type).getDeclaredConstructor();
+        constructeur.setAccessible(true); // Classes non publiques, comme celles du client
+        return constructeur.newInstance();
+    }
+}
@@ -0,0 +1,45 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Allocations par trame reçue (FrameParser ou BinaryFrameDecoder jusqu'à SnapshotReceiver),
+ * mesurées par le compteur du thread courant : la réception doit rester sans allocation par
+ * agent. Même chaîne que ParsingWorkload, donc que les benchmarks de ParsingBenchmark.
+ */
+class ParsingAllocationTest {
+
+    private static final int AGENTS = 2000;
+    private static final int TRAMES = 2000; // Plusieurs fois le cycle de SyntheticFrames
+    private static final long MAX_OCTETS_PAR_TRAME = 256; // Nul en pratique ; un objet par agent en ferait des dizaines de Ko
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    @ParameterizedTest
+    @ValueSource(strings = {"texte", "delta", "binaire"})
+    void receptionSansAllocationParAgent(String format) throws Exception {
+        ParsingWorkload charge = new ParsingWorkload();
+        charge.preparer(AGENTS, format);
+        for (int k = 0; k < TRAMES; k++) charge.executer(); // Tampons à leur taille, noms internés
+
+        long id = Thread.currentThread().getId();
+        long avant = THREADS.getThreadAllocatedBytes(id);
+        for (int k = 0; k < TRAMES; k++) charge.executer();
+        long parTrame = (THREADS.getThreadAllocatedBytes(id) - avant) / TRAMES;
+
+        System.out.println(format + " : " + parTrame + " octets alloués par trame (" + AGENTS + " agents)");
+        assertTrue(parTrame <= MAX_OCTETS_PAR_TRAME,
+                format + " : " + parTrame + " octets alloués par trame, au plus " + MAX_OCTETS_PAR_TRAME + " attendus");
+    }
+
+    @Test
+    void compteurDisponible() {
+        assertTrue(THREADS.isThreadAllocatedMemorySupported() && THREADS.isThreadAllocatedMemoryEnabled(),
+                "Compteur d'allocations par thread indisponible sur cette JVM");
+    }
+}
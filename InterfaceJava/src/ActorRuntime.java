@@ -0,0 +1,206 @@
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Acteurs minimaux : chaque acteur a une boîte aux lettres et traite ses messages un par un,
+ * jamais sur deux threads à la fois ; son état n'est donc modifié que par lui-même, sans
+ * verrou. Les autres acteurs ne le lisent pas directement, ils lui envoient des messages.
+ *
+ * Trois façons de faire tourner les acteurs, pour le même code :
+ * <ul>
+ * <li>POOL : les acteurs qui ont du courrier sont exécutés par un ForkJoinPool (un thread par
+ *     cœur), comme le fait l'ordonnanceur des threads virtuels. Aucun thread par acteur :
+ *     quelques dizaines d'octets par acteur, 100 000 acteurs et plus.</li>
+ * <li>PLATEFORME : un thread système par acteur, endormi tant que sa boîte est vide (le
+ *     modèle de ClassPrincipale.Agent, un threading.Thread par agent). Limité par le nombre
+ *     de threads du système.</li>
+ * <li>VIRTUEL : un thread virtuel par acteur (Java 21 et suivants, obtenu par réflexion : le
+ *     projet compile en Java 17).</li>
+ * </ul>
+ */
+final class ActorRuntime {
+
+    enum Mode { POOL, PLATEFORME, VIRTUEL }
+
+    private static final int LOT = 64; // Messages traités d'affilée par un acteur (mode POOL)
+    private static final long PILE_PLATEFORME = 256 * 1024; // Pile réservée par thread système
+
+    private final Mode mode;
+    private final ForkJoinPool pool;
+    private final ThreadFactory fabrique;
+    private final AtomicInteger vivants = new AtomicInteger(); // Acteurs démarrés et pas encore terminés
+    private final Set<Acteur> avecThread = ConcurrentHashMap.newKeySet(); // Modes PLATEFORME et VIRTUEL
+    private volatile boolean arret = false;
+
+    ActorRuntime(Mode mode, int parallelisme) {
+        this.mode = mode;
+        if (mode == Mode.POOL) {
+            pool = new ForkJoinPool(Math.max(1, parallelisme), ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+            fabrique = null;
+        } else {
+            pool = null;
+            fabrique = mode == Mode.VIRTUEL ? fabriqueVirtuelle() : this::threadPlateforme;
+        }
+    }
+
+    /** Mode d'après son nom ("pool", "plateforme", "virtuel"), insensible à la casse. */
+    static Mode mode(String nom) {
+        try {
+            return Mode.valueOf(nom.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("mode d'acteurs inconnu : " + nom + " (pool, plateforme, virtuel)");
+        }
+    }
+
+    /** Vrai si la JVM courante a des threads virtuels. */
+    static boolean threadsVirtuelsDisponibles() {
+        return Runtime.version().feature() >= 21;
+    }
+
+    Mode getMode() {
+        return mode;
+    }
+
+    /** Acteurs démarrés et pas encore terminés. */
+    int getNbActeurs() {
+        return vivants.get();
+    }
+
+    /** Démarre un acteur : il reçoit les messages envoyés à partir de maintenant. */
+    void demarrer(Acteur a) {
+        if (a.runtime != null) throw new IllegalStateException("acteur déjà démarré");
+        a.runtime = this;
+        vivants.incrementAndGet();
+        if (mode == Mode.POOL) {
+            a.execution = () -> executer(a);
+            return;
+        }
+        try {
+            a.thread = fabrique.newThread(() -> boucle(a));
+            a.thread.start();
+        } catch (OutOfMemoryError | RuntimeException e) { // "unable to create native thread"
+            a.termine = true;
+            vivants.decrementAndGet();
+            throw e;
+        }
+        avecThread.add(a);
+    }
+
+    /** Termine un acteur : les messages non traités sont abandonnés, son thread éventuel s'arrête. */
+    void terminer(Acteur a) {
+        if (a.runtime != this || a.termine) return;
+        a.termine = true;
+        vivants.decrementAndGet();
+        if (a.thread != null) {
+            avecThread.remove(a);
+            LockSupport.unpark(a.thread);
+        }
+    }
+
+    /**
+     * Exécute une série d'envois. En mode POOL, depuis un thread du pool et en attendant la fin :
+     * les acteurs réveillés entrent dans sa file locale au lieu de réveiller un thread à chaque
+     * message. Dans les autres modes, sur le thread appelant.
+     */
+    void envoyerGroupe(Runnable envois) {
+        if (pool != null && !arret) pool.submit(envois).join();
+        else envois.run();
+    }
+
+    /** Arrête tous les acteurs, leurs threads et le pool. */
+    void arreter() {
+        arret = true;
+        if (pool != null) pool.shutdownNow();
+        for (Acteur a : avecThread) terminer(a);
+    }
+
+    // ========================================================================
+    // ACTEUR
+    // ========================================================================
+
+    /** Un acteur : recevoir() est appelé pour chaque message, dans l'ordre d'envoi d'un même expéditeur. */
+    abstract static class Acteur {
+        private final ConcurrentLinkedQueue<Object> boite = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean actif = new AtomicBoolean(); // Planifié, en cours ou réveillé
+        private ActorRuntime runtime;
+        private Runnable execution; // Mode POOL
+        private Thread thread; // Modes PLATEFORME et VIRTUEL
+        private volatile boolean termine = false;
+
+        protected abstract void recevoir(Object message);
+
+        /** Dépose un message (n'importe quel thread) et réveille l'acteur s'il dormait. */
+        final void envoyer(Object message) {
+            boite.add(message);
+            if (actif.compareAndSet(false, true)) runtime.reveiller(this);
+        }
+    }
+
+    private void reveiller(Acteur a) {
+        if (pool != null) {
+            if (!arret) pool.execute(a.execution);
+        } else {
+            LockSupport.unpark(a.thread);
+        }
+    }
+
+    // Mode POOL : traite au plus LOT messages puis rend la main aux autres acteurs
+    private void executer(Acteur a) {
+        for (int k = 0; k < LOT && !a.termine; k++) {
+            Object m = a.boite.poll();
+            if (m == null) break;
+            traiter(a, m);
+        }
+        if (a.termine) return;
+        a.actif.set(false);
+        // Message arrivé après le dernier poll : l'expéditeur a vu 'actif' et n'a pas replanifié
+        if (!a.boite.isEmpty() && a.actif.compareAndSet(false, true)) reveiller(a);
+    }
+
+    // Modes PLATEFORME et VIRTUEL : le thread de l'acteur dort tant que sa boîte est vide
+    private void boucle(Acteur a) {
+        while (!a.termine && !arret) {
+            Object m;
+            while (!a.termine && (m = a.boite.poll()) != null) traiter(a, m);
+            a.actif.set(false);
+            if (!a.boite.isEmpty() && a.actif.compareAndSet(false, true)) continue;
+            while (!a.actif.get() && !a.termine && !arret) LockSupport.park(a);
+        }
+    }
+
+    // Une erreur n'arrête pas l'acteur (ni le thread du pool) : elle est seulement signalée
+    private static void traiter(Acteur a, Object m) {
+        try {
+            a.recevoir(m);
+        } catch (RuntimeException e) {
+            System.out.println("Erreur d'un acteur : " + e);
+        }
+    }
+
+    private Thread threadPlateforme(Runnable r) {
+        Thread t = new Thread(null, r, "acteur", PILE_PLATEFORME);
+        t.setDaemon(true);
+        return t;
+    }
+
+    // Thread.ofVirtual().factory(), sans dépendre de l'API Java 21 à la compilation
+    private static ThreadFactory fabriqueVirtuelle() {
+        if (!threadsVirtuelsDisponibles()) {
+            throw new IllegalStateException("threads virtuels indisponibles : Java 21 ou plus requis (JVM "
+                    + Runtime.version().feature() + ")");
+        }
+        try {
+            Object constructeur = Thread.class.getMethod("ofVirtual").invoke(null);
+            return (ThreadFactory) Class.forName("java.lang.Thread$Builder").getMethod("factory").invoke(constructeur);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("threads virtuels indisponibles", e);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+import java.util.Arrays;
+
+/**
+ * Index spatial des agents d'un instantané : la grille est découpée en seaux carrés de
+ * TAILLE_SEAU cases et les indices d'agents sont rangés par seau (tri par dénombrement).
+ *
+ * Permet au rendu de ne parcourir que les agents proches de la zone visible au lieu de
+ * tous les agents de la trame. Les tableaux sont réutilisés d'une trame à l'autre.
+ */
+final class AgentBuckets {
+
+    static final int TAILLE_SEAU = 4; // Côté d'un seau, en cases
+
+    private int colonnes, lignes;
+    private int[] debut = new int[1]; // debut[s]..debut[s+1] : plage de 'indices' pour le seau s
+    private int[] indices = new int[64];
+    private int[] seauAgent = new int[64]; // Seau de chaque agent (-1 si hors grille)
+
+    private long numeroTrame = -1;
+    private int largeurGrille = -1, hauteurGrille = -1;
+
+    /** Reconstruit l'index si la trame ou la taille de grille a changé depuis le dernier appel. */
+    void mettreAJour(WorldSnapshot t, int largeur, int hauteur) {
+        if (t.numero == numeroTrame && largeur == largeurGrille && hauteur == hauteurGrille) return;
+        numeroTrame = t.numero;
+        largeurGrille = largeur;
+        hauteurGrille = hauteur;
+
+        colonnes = Math.max(1, (largeur + TAILLE_SEAU - 1) / TAILLE_SEAU);
+        lignes = Math.max(1, (hauteur + TAILLE_SEAU - 1) / TAILLE_SEAU);
+        int nbSeaux = colonnes * lignes;
+        if (debut.length < nbSeaux + 1) debut = new int[nbSeaux + 1];
+        if (indices.length < t.nbAgents) {
+            indices = new int[t.nbAgents];
+            seauAgent = new int[t.nbAgents];
+        }
+        Arrays.fill(debut, 0, nbSeaux + 1, 0);
+
+        // 1. Comptage par seau
+        for (int i = 0; i < t.nbAgents; i++) {
+            float x = t.x[i], y = t.y[i];
+            if (!(x >= 0 && y >= 0 && x < largeur && y < hauteur)) { seauAgent[i] = -1; continue; }
+            int s = ((int) y / TAILLE_SEAU) * colonnes + (int) x / TAILLE_SEAU;
+            seauAgent[i] = s;
+            debut[s + 1]++;
+        }
+        // 2. Sommes cumulées : début de chaque seau
+        for (int s = 0; s < nbSeaux; s++) debut[s + 1] += debut[s];
+        // 3. Placement (debut[s] sert de curseur puis est restauré)
+        for (int i = 0; i < t.nbAgents; i++) {
+            int s = seauAgent[i];
+            if (s >= 0) indices[debut[s]++] = i;
+        }
+        for (int s = nbSeaux; s > 0; s--) debut[s] = debut[s - 1];
+        debut[0] = 0;
+    }
+
+    /** Visiteur des agents d'une zone (pas d'allocation par agent). */
+    interface Visiteur {
+        void agent(int index);
+    }
+
+    /** Visite les agents des seaux qui recoupent la zone [x0, x1[ x [y0, y1[ (en cases). */
+    void parcourir(int x0, int y0, int x1, int y1, Visiteur v) {
+        int c0 = Math.max(0, x0 / TAILLE_SEAU), c1 = Math.min(colonnes - 1, (x1 - 1) / TAILLE_SEAU);
+        int l0 = Math.max(0, y0 / TAILLE_SEAU), l1 = Math.min(lignes - 1, (y1 - 1) / TAILLE_SEAU);
+        for (int l = l0; l <= l1; l++) {
+            for (int c = c0; c <= c1; c++) {
+                int s = l * colonnes + c;
+                for (int k = debut[s]; k < debut[s + 1]; k++) v.agent(indices[k]);
+            }
+        }
+    }
+}
@@ -0,0 +1,120 @@
+import java.util.Arrays;
+
+/**
+ * Positions des agents interpolées entre les deux dernières trames, pour un rendu fluide
+ * à la fréquence de l'écran alors que le serveur n'envoie que ~20 trames par seconde.
+ *
+ * L'affichage a une période de trame de retard : à l'arrivée d'une trame, les agents sont
+ * à leur position de la trame précédente et rejoignent la nouvelle en une période (moyenne
+ * glissante des intervalles entre trames, pour ne pas reporter la gigue du réseau sur la
+ * vitesse des agents). Si la trame suivante est en retard, le mouvement est prolongé d'au
+ * plus EXTRAPOLATION_MAX période, puis les agents restent sur place ; au-delà de
+ * PERIODES_ARRET périodes sans trame (simulation arrêtée), ils sont remis à la position
+ * exacte de la dernière trame.
+ *
+ * Un agent est suivi par son indice, à condition que son nom n'ait pas changé ; un agent
+ * nouveau ou qui s'est déplacé de plus de SAUT_MAX cases (nouveau scénario, relecture
+ * déplacée) est affiché directement à sa position. Les tableaux sont réutilisés d'une
+ * trame à l'autre. EDT uniquement.
+ */
+final class AgentInterpolator {
+
+    static final float SAUT_MAX = 3f; // Cases : au-delà, pas d'interpolation
+    static final float EXTRAPOLATION_MAX = 0.5f; // En périodes de trame
+    static final float PERIODES_ARRET = 4f;
+    // Écart maximal entre la position affichée et celle de la dernière trame (cases)
+    static final float ECART_MAX = SAUT_MAX * (1 + EXTRAPOLATION_MAX);
+    private static final long PERIODE_MIN = 5_000_000L, PERIODE_MAX = 1_000_000_000L; // Bornes de l'estimation (ns)
+
+    private int nb;
+    private String[] noms = new String[64];
+    private float[] x0 = new float[64], y0 = new float[64], ang0 = new float[64]; // Trame précédente
+    private float[] x1 = new float[64], y1 = new float[64], ang1 = new float[64]; // Dernière trame
+    private boolean[] suivi = new boolean[64]; // Interpolé (sinon : position de la dernière trame)
+
+    private long numeroTrame = -1;
+    private long date1; // Date de publication de la dernière trame (0 : inconnue)
+    private long periode; // Intervalle moyen entre trames (ns, 0 : pas encore estimé)
+    private float alpha = 1; // Position dans l'intervalle, calculée par placer()
+
+    /** Oublie les trames vues (changement de source) : la suivante est affichée telle quelle. */
+    void oublier() {
+        numeroTrame = -1;
+        date1 = 0;
+        periode = 0;
+        nb = 0;
+    }
+
+    /** Prend en compte la trame si elle est nouvelle (la précédente devient l'origine du mouvement). */
+    void mettreAJour(WorldSnapshot t) {
+        if (t.numero == numeroTrame) return;
+        // Trames sautées par l'affichage : l'intervalle est ramené à une trame. Numéro en recul : autre source.
+        long ecart = numeroTrame < 0 ? 0 : t.numero - numeroTrame;
+        numeroTrame = t.numero;
+        if (t.datePublication != 0 && date1 != 0 && ecart > 0) {
+            long intervalle = Math.max(PERIODE_MIN, Math.min(PERIODE_MAX, (t.datePublication - date1) / ecart));
+            periode = periode == 0 ? intervalle : periode + (intervalle - periode) / 8;
+        }
+        date1 = t.datePublication;
+
+        if (noms.length < t.nbAgents) agrandir(t.nbAgents);
+        // La dernière trame devient la précédente (échange des tableaux, sans copie)
+        float[] f = x0; x0 = x1; x1 = f;
+        f = y0; y0 = y1; y1 = f;
+        f = ang0; ang0 = ang1; ang1 = f;
+        int nbPrecedent = nb;
+        nb = t.nbAgents;
+        for (int i = 0; i < nb; i++) {
+            float x = t.x[i], y = t.y[i];
+            suivi[i] = ecart > 0 && i < nbPrecedent && t.noms[i].equals(noms[i])
+                    && Math.abs(x - x0[i]) <= SAUT_MAX && Math.abs(y - y0[i]) <= SAUT_MAX;
+            noms[i] = t.noms[i];
+            x1[i] = x;
+            y1[i] = y;
+            ang1[i] = t.ang[i];
+        }
+    }
+
+    /**
+     * Calcule la position d'affichage à la date donnée (System.nanoTime()), commune à tous
+     * les agents du dessin.
+     * @return vrai si les agents sont encore en mouvement (un nouveau dessin est utile)
+     */
+    boolean placer(long maintenant) {
+        if (periode == 0 || date1 == 0) {
+            alpha = 1; // Pas de dates (trame unique, source sans horodatage) : dernière trame telle quelle
+            return false;
+        }
+        float a = (maintenant - date1) / (float) periode;
+        if (a >= PERIODES_ARRET) {
+            alpha = 1;
+            return false;
+        }
+        alpha = Math.max(0f, Math.min(1f + EXTRAPOLATION_MAX, a));
+        return a < 1f + EXTRAPOLATION_MAX;
+    }
+
+    float x(int i) {
+        return suivi[i] ? x0[i] + (x1[i] - x0[i]) * alpha : x1[i];
+    }
+
+    float y(int i) {
+        return suivi[i] ? y0[i] + (y1[i] - y0[i]) * alpha : y1[i];
+    }
+
+    /** Angle interpolé par le plus court chemin (radians). */
+    float angle(int i) {
+        if (!suivi[i]) return ang1[i];
+        float d = ang1[i] - ang0[i];
+        d -= (float) (2 * Math.PI) * Math.round(d / (2 * Math.PI));
+        return ang0[i] + d * alpha;
+    }
+
+    private void agrandir(int n) {
+        n = Math.max(n, noms.length * 2);
+        noms = Arrays.copyOf(noms, n);
+        x0 = Arrays.copyOf(x0, n); y0 = Arrays.copyOf(y0, n); ang0 = Arrays.copyOf(ang0, n);
+        x1 = Arrays.copyOf(x1, n); y1 = Arrays.copyOf(y1, n); ang1 = Arrays.copyOf(ang1, n);
+        suivi = Arrays.copyOf(suivi, n);
+    }
+}
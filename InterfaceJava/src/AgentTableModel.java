@@ -0,0 +1,213 @@
+import javax.swing.table.AbstractTableModel;
+import java.util.Arrays;
+
+/**
+ * Modèle du tableau « Agents Détaillés », lu directement dans les colonnes d'un instantané.
+ *
+ * À chaque trame affichée, les colonnes de l'instantané sont recopiées (copie de tableaux
+ * primitifs, sans objet par agent) et un seul événement est émis : les lignes modifiées
+ * sont regroupées en un unique fireTableRowsUpdated. Le tri et le filtre ne déplacent pas
+ * les données : ils ne calculent qu'une permutation d'indices (lignes). La JTable ne
+ * demande que les cellules visibles, seules converties en objets.
+ */
+final class AgentTableModel extends AbstractTableModel {
+
+    private static final long serialVersionUID = 1L;
+
+    static final String[] COLONNES = {"Nom", "Énergie", "Stress", "$", "État"};
+
+    /** Filtres proposés à l'utilisateur (par état ou par seuil critique). */
+    enum Filtre {
+        TOUS("Tous les agents"),
+        CRITIQUES("Critiques (stress > 70 ou énergie < 20)"),
+        OCCUPES("Occupés"),
+        MORTS("Morts"),
+        VIVANTS("Vivants");
+
+        private final String libelle;
+
+        Filtre(String libelle) {
+            this.libelle = libelle;
+        }
+
+        @Override
+        public String toString() {
+            return libelle;
+        }
+    }
+
+    // Trame affichée et trame précédente (pour détecter les lignes modifiées)
+    private WorldSnapshot vue = new WorldSnapshot();
+    private WorldSnapshot precedente = new WorldSnapshot();
+
+    // Permutation : ligne affichée -> index d'agent dans 'vue' (après filtre et tri)
+    private int[] lignes = new int[64];
+    private int[] lignesPrecedentes = new int[64];
+    private int[] tampon = new int[64]; // Espace de travail du tri fusion
+    private int nbLignes = 0;
+
+    private int colonneTri = -1; // -1 : ordre de réception
+    private boolean triDecroissant = false;
+    private Filtre filtre = Filtre.TOUS;
+
+    /**
+     * Prend en compte une nouvelle trame (EDT, instantané verrouillé par l'appelant).
+     * Émet au plus un événement de modification.
+     */
+    void mettreAJour(WorldSnapshot t) {
+        WorldSnapshot p = precedente;
+        precedente = vue;
+        vue = p;
+        vue.copierDepuis(t);
+
+        int[] l = lignesPrecedentes;
+        lignesPrecedentes = lignes;
+        lignes = l;
+        int ancienNb = nbLignes;
+        recalculerLignes();
+
+        if (nbLignes != ancienNb) {
+            fireTableDataChanged();
+            return;
+        }
+        // Une seule notification couvrant toutes les lignes dont le contenu affiché a changé
+        int premiere = -1, derniere = -1;
+        for (int r = 0; r < nbLignes; r++) {
+            if (ligneModifiee(lignesPrecedentes[r], lignes[r])) {
+                if (premiere < 0) premiere = r;
+                derniere = r;
+            }
+        }
+        if (premiere >= 0) fireTableRowsUpdated(premiere, derniere);
+    }
+
+    /** Trie par la colonne donnée ; un second clic sur la même colonne inverse l'ordre, un troisième l'annule. */
+    void trierPar(int colonne) {
+        if (colonne != colonneTri) {
+            colonneTri = colonne;
+            triDecroissant = false;
+        } else if (!triDecroissant) {
+            triDecroissant = true;
+        } else {
+            colonneTri = -1;
+        }
+        recalculerLignes();
+        fireTableDataChanged();
+    }
+
+    void setFiltre(Filtre f) {
+        filtre = f;
+        recalculerLignes();
+        fireTableDataChanged();
+    }
+
+    int getColonneTri() {
+        return colonneTri;
+    }
+
+    boolean isTriDecroissant() {
+        return triDecroissant;
+    }
+
+    // ========================================================================
+    // AbstractTableModel
+    // ========================================================================
+
+    @Override
+    public int getRowCount() {
+        return nbLignes;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLONNES.length;
+    }
+
+    @Override
+    public String getColumnName(int colonne) {
+        return COLONNES[colonne];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int colonne) {
+        return colonne == 0 || colonne == 4 ? String.class : Integer.class;
+    }
+
+    @Override
+    public Object getValueAt(int ligne, int colonne) {
+        int i = lignes[ligne];
+        return switch (colonne) {
+            case 0 -> vue.noms[i];
+            case 1 -> (int) vue.nrj[i];
+            case 2 -> (int) vue.stress[i];
+            case 3 -> (int) vue.arg[i];
+            default -> WorldSnapshot.Etats.libelle(vue.etat[i]);
+        };
+    }
+
+    // ========================================================================
+    // FILTRE ET TRI
+    // ========================================================================
+
+    private void recalculerLignes() {
+        int n = vue.nbAgents;
+        if (lignes.length < n) {
+            lignes = new int[n];
+            lignesPrecedentes = Arrays.copyOf(lignesPrecedentes, n);
+            tampon = new int[n];
+        }
+        nbLignes = 0;
+        for (int i = 0; i < n; i++) {
+            if (accepte(i)) lignes[nbLignes++] = i;
+        }
+        if (colonneTri >= 0) trier(0, nbLignes);
+    }
+
+    private boolean accepte(int i) {
+        return switch (filtre) {
+            case TOUS -> true;
+            case CRITIQUES -> vue.etat[i] != WorldSnapshot.Etats.MORT && (vue.stress[i] > 70 || vue.nrj[i] < 20);
+            case OCCUPES -> vue.etat[i] == WorldSnapshot.Etats.OCCUPE;
+            case MORTS -> vue.etat[i] == WorldSnapshot.Etats.MORT;
+            case VIVANTS -> vue.etat[i] != WorldSnapshot.Etats.MORT;
+        };
+    }
+
+    // Tri fusion stable sur les indices [debut, fin[ de 'lignes' (aucune boîte Integer)
+    private void trier(int debut, int fin) {
+        if (fin - debut < 2) return;
+        int milieu = (debut + fin) >>> 1;
+        trier(debut, milieu);
+        trier(milieu, fin);
+        if (comparer(lignes[milieu - 1], lignes[milieu]) <= 0) return; // Déjà ordonné
+        System.arraycopy(lignes, debut, tampon, debut, fin - debut);
+        int a = debut, b = milieu, k = debut;
+        while (a < milieu && b < fin) {
+            lignes[k++] = comparer(tampon[a], tampon[b]) <= 0 ? tampon[a++] : tampon[b++];
+        }
+        while (a < milieu) lignes[k++] = tampon[a++];
+        while (b < fin) lignes[k++] = tampon[b++];
+    }
+
+    private int comparer(int i, int j) {
+        int c = switch (colonneTri) {
+            case 0 -> vue.noms[i].compareTo(vue.noms[j]);
+            case 1 -> Integer.compare((int) vue.nrj[i], (int) vue.nrj[j]);
+            case 2 -> Integer.compare((int) vue.stress[i], (int) vue.stress[j]);
+            case 3 -> Integer.compare((int) vue.arg[i], (int) vue.arg[j]);
+            default -> WorldSnapshot.Etats.libelle(vue.etat[i]).compareTo(WorldSnapshot.Etats.libelle(vue.etat[j]));
+        };
+        return triDecroissant ? -c : c;
+    }
+
+    // Vrai si la ligne qui montrait l'agent 'avant' dans la trame précédente affiche autre chose maintenant
+    private boolean ligneModifiee(int avant, int apres) {
+        WorldSnapshot p = precedente, v = vue;
+        if (avant >= p.nbAgents) return true;
+        return p.noms[avant] != v.noms[apres]
+                || (int) p.nrj[avant] != (int) v.nrj[apres]
+                || (int) p.stress[avant] != (int) v.stress[apres]
+                || (int) p.arg[avant] != (int) v.arg[apres]
+                || p.etat[avant] != v.etat[apres];
+    }
+}
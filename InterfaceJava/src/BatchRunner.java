@@ -0,0 +1,261 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Balayage de paramètres sans interface : chaque combinaison des valeurs demandées, pour
+ * chaque graine, est une simulation indépendante ({@link SimulationEngine} à un seul thread)
+ * calculée aussi vite que possible, sans attendre les 50 ms d'un pas (le résultat ne dépend
+ * pas de la vitesse). Les simulations sont réparties sur tous les cœurs ; une ligne de
+ * résultats par simulation est écrite dans un fichier CSV dès que les précédentes sont
+ * terminées (ordre des numéros, fichier identique d'une exécution à l'autre pour les mêmes
+ * graines).
+ *
+ * Fichier de balayage (JSON) :
+ * <pre>
+ * {
+ *   "scenario": "2",                  base : scénario de config_scenarios.Json
+ *   "duree": 600,                     secondes simulées par exécution (12 000 pas)
+ *   "graines": [1, 2, 3],             répétitions ; mêmes graines pour chaque combinaison
+ *   "parametres": {                   clés de config_scenarios.Json
+ *     "argent_initial": [5, 20, 50],
+ *     "lieux.travail": [2, 4, 8],
+ *     "profil_dominant": ["Bosseur", "Equilibre"]
+ *   }
+ * }
+ * </pre>
+ *
+ * Résultats par exécution : agents créés (au plus un par maison, comme dans le serveur),
+ * taux de survie et moyennes finales des vivants, stress moyen des vivants sur toute la
+ * durée (relevé chaque seconde simulée), date du premier agent « Mort ». Une exécution
+ * s'arrête plus tôt si tous les agents sont morts.
+ *
+ * Lancement : java BatchRunner balayage.json [resultats.csv]
+ * (-Dsma.config=chemin/config_scenarios.Json, -Dsma.batch.threads=n)
+ */
+final class BatchRunner {
+
+    private static final double SECONDES_PAR_PAS = SimulationEngine.PERIODE_NS / 1e9;
+    private static final int PAS_RELEVE = (int) Math.round(1 / SECONDES_PAR_PAS); // Une seconde simulée
+    private static final String[] COLONNES_RESULTATS = {
+            "agents", "pas", "survie", "morts", "stress_moyen", "stress_final", "energie_finale",
+            "argent_final", "premier_mort_s", "erreur"
+    };
+
+    /** Une simulation du balayage : valeurs des paramètres balayés et graine. */
+    record Execution(int numero, long graine, Map<String, Object> valeurs) {}
+
+    private final ScenarioConfig base;
+    private final long nbPas;
+    private final List<Long> graines = new ArrayList<>();
+    private final Map<String, List<Object>> parametres = new LinkedHashMap<>();
+
+    @SuppressWarnings("unchecked")
+    BatchRunner(Map<String, ScenarioConfig> scenarios, String balayage) {
+        Map<String, Object> racine = (Map<String, Object>) ScenarioConfig.lireJson(balayage);
+        String id = String.valueOf(racine.getOrDefault("scenario", "1"));
+        if (racine.get("scenario") instanceof Double d) id = String.valueOf(d.intValue());
+        base = scenarios.get(id);
+        if (base == null) throw new IllegalArgumentException("scénario inconnu : " + id);
+        double duree = racine.get("duree") instanceof Double d ? d : 600;
+        nbPas = Math.max(1, Math.round(duree / SECONDES_PAR_PAS));
+        Object g = racine.getOrDefault("graines", List.of(1.0));
+        for (Object o : (List<Object>) g) graines.add(((Double) o).longValue());
+        if (graines.isEmpty()) throw new IllegalArgumentException("aucune graine");
+        Map<String, Object> p = (Map<String, Object>) racine.getOrDefault("parametres", Map.of());
+        for (Map.Entry<String, Object> e : p.entrySet()) {
+            List<Object> valeurs = e.getValue() instanceof List<?> l ? (List<Object>) l : List.of(e.getValue());
+            if (valeurs.isEmpty()) throw new IllegalArgumentException("aucune valeur pour " + e.getKey());
+            base.avec(e.getKey(), valeurs.get(0)); // Clé vérifiée dès maintenant
+            parametres.put(e.getKey(), valeurs);
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 1) {
+            System.out.println("Usage : java BatchRunner balayage.json [resultats.csv]");
+            return;
+        }
+        Path sortie = Path.of(args.length > 1 ? args[1] : "resultats_balayage.csv");
+        int threads = Math.max(1, Integer.getInteger("sma.batch.threads", Runtime.getRuntime().availableProcessors()));
+        BatchRunner b = new BatchRunner(ScenarioConfig.charger(), Files.readString(Path.of(args[0]), StandardCharsets.UTF_8));
+        List<Execution> executions = b.executions();
+        System.out.printf("Balayage : %d exécutions de %d pas (scénario %s), %d threads -> %s%n",
+                executions.size(), b.nbPas, b.base.id, threads, sortie);
+        long debut = System.nanoTime();
+        b.executer(executions, threads, sortie);
+        System.out.printf("Terminé en %.1f s%n", (System.nanoTime() - debut) / 1e9);
+    }
+
+    /** Produit cartésien des valeurs balayées, pour chaque graine (la graine varie le plus vite). */
+    List<Execution> executions() {
+        List<Execution> liste = new ArrayList<>();
+        List<String> cles = new ArrayList<>(parametres.keySet());
+        int[] indices = new int[cles.size()];
+        while (true) {
+            Map<String, Object> valeurs = new LinkedHashMap<>();
+            for (int k = 0; k < cles.size(); k++) valeurs.put(cles.get(k), parametres.get(cles.get(k)).get(indices[k]));
+            for (long graine : graines) liste.add(new Execution(liste.size(), graine, valeurs));
+            int k = cles.size() - 1;
+            while (k >= 0 && ++indices[k] == parametres.get(cles.get(k)).size()) indices[k--] = 0;
+            if (k < 0) return liste;
+        }
+    }
+
+    /** Calcule les exécutions sur 'threads' threads et écrit leurs résultats dans l'ordre. */
+    void executer(List<Execution> executions, int threads, Path sortie) throws IOException, InterruptedException {
+        AtomicInteger compteur = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "balayage-" + compteur.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        CompletionService<String[]> fin = new ExecutorCompletionService<>(pool);
+        for (Execution e : executions) fin.submit(() -> simuler(e));
+
+        try (BufferedWriter out = Files.newBufferedWriter(sortie, StandardCharsets.UTF_8)) {
+            List<String> entete = new ArrayList<>(List.of("execution", "graine"));
+            entete.addAll(parametres.keySet());
+            entete.addAll(List.of(COLONNES_RESULTATS));
+            ecrireLigne(out, entete.toArray(new String[0]));
+
+            // Lignes terminées en avance, en attente des précédentes
+            TreeMap<Integer, String[]> enAttente = new TreeMap<>();
+            int prochaine = 0, terminees = 0;
+            long dernierRapport = System.nanoTime();
+            while (terminees < executions.size()) {
+                String[] ligne;
+                try {
+                    ligne = fin.take().get();
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException(e.getCause()); // simuler() ne lève pas : erreur interne
+                }
+                terminees++;
+                enAttente.put(Integer.parseInt(ligne[0]), ligne);
+                while (!enAttente.isEmpty() && enAttente.firstKey() == prochaine) {
+                    ecrireLigne(out, enAttente.pollFirstEntry().getValue());
+                    prochaine++;
+                }
+                if (System.nanoTime() - dernierRapport > 5_000_000_000L) {
+                    out.flush();
+                    System.out.printf("  %d / %d%n", terminees, executions.size());
+                    dernierRapport = System.nanoTime();
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /** Une simulation complète et sa ligne de résultats (une erreur est rapportée dans la ligne). */
+    String[] simuler(Execution e) {
+        List<String> ligne = new ArrayList<>();
+        ligne.add(Integer.toString(e.numero()));
+        ligne.add(Long.toString(e.graine()));
+        for (Object v : e.valeurs().values()) ligne.add(texte(v));
+        try {
+            ScenarioConfig c = base;
+            for (Map.Entry<String, Object> p : e.valeurs().entrySet()) c = c.avec(p.getKey(), p.getValue());
+            SimulationEngine m = new SimulationEngine(Map.of(c.id, c), e.graine(), 1);
+            try {
+                m.setJournal(false);
+                m.chargerScenario(c.id);
+                ligne.addAll(List.of(derouler(m)));
+            } finally {
+                m.arreter();
+            }
+            ligne.add("");
+        } catch (RuntimeException ex) {
+            while (ligne.size() < 3 + e.valeurs().size() + COLONNES_RESULTATS.length - 1) ligne.add("");
+            ligne.add(String.valueOf(ex.getMessage()));
+        }
+        return ligne.toArray(new String[0]);
+    }
+
+    // Fait avancer la simulation et relève ses résultats (colonnes COLONNES_RESULTATS, sans "erreur")
+    private String[] derouler(SimulationEngine m) {
+        int n = m.nbAgents;
+        long pas = 0;
+        double sommeStress = 0;
+        long releves = 0;
+        int vivants = n;
+        while (pas < nbPas && vivants > 0) {
+            m.pas();
+            pas++;
+            if (pas % PAS_RELEVE != 0 && pas < nbPas) continue;
+            m.synchroniser(); // Agents occupés : colonnes rattrapées seulement à la lecture
+            vivants = 0;
+            double s = 0;
+            for (int i = 0; i < n; i++) {
+                if (!m.vivant[i]) continue;
+                vivants++;
+                s += m.stress[i];
+            }
+            if (vivants > 0) {
+                sommeStress += s / vivants;
+                releves++;
+            }
+        }
+        long premierMort = m.getPremierMort();
+        double stress = 0, energie = 0, argent = 0;
+        for (int i = 0; i < n; i++) {
+            if (!m.vivant[i]) continue;
+            stress += m.stress[i];
+            energie += m.energie[i];
+            argent += m.argent[i];
+        }
+        int v = Math.max(1, vivants);
+        return new String[]{
+                Integer.toString(n), Long.toString(pas),
+                nombre(n > 0 ? vivants / (double) n : 0), Integer.toString(n - vivants),
+                nombre(releves > 0 ? sommeStress / releves : 0),
+                nombre(stress / v), nombre(energie / v), nombre(argent / v),
+                premierMort < 0 ? "" : nombre(premierMort * SECONDES_PAR_PAS)
+        };
+    }
+
+    // ========================================================================
+    // FORMAT CSV
+    // ========================================================================
+
+    private static String nombre(double d) {
+        return String.format(Locale.ROOT, "%.4f", d);
+    }
+
+    // Valeur d'un paramètre : entier sans décimales, taille de grille en « LxH »
+    private static String texte(Object v) {
+        if (v instanceof Double d) return d == Math.rint(d) ? Long.toString(d.longValue()) : d.toString();
+        if (v instanceof List<?> l) {
+            StringBuilder sb = new StringBuilder();
+            for (Object o : l) sb.append(sb.length() > 0 ? "x" : "").append(texte(o));
+            return sb.toString();
+        }
+        return String.valueOf(v);
+    }
+
+    private static void ecrireLigne(BufferedWriter out, String[] champs) throws IOException {
+        for (int i = 0; i < champs.length; i++) {
+            if (i > 0) out.write(',');
+            String c = champs[i];
+            if (c.indexOf(',') >= 0 || c.indexOf('"') >= 0 || c.indexOf('\n') >= 0) {
+                c = '"' + c.replace("\"", "\"\"") + '"';
+            }
+            out.write(c);
+        }
+        out.write('\n');
+    }
+}
@@ -0,0 +1,197 @@
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Décodeur du protocole binaire (version 3), utilisé après la ligne CONFIG;L;H;3.
+ *
+ * Chaque message est encadré ainsi : [longueur u32][type u8][contenu], en gros-boutiste,
+ * la longueur comptant l'octet de type. Les lieux et les noms d'agents ne sont transmis
+ * qu'une fois par scénario (MSG_LIEUX / MSG_AGENTS) ; chaque trame (MSG_TRAME) ne porte que
+ * des flottants de taille fixe, un bit d'occupation par lieu et un octet d'état par agent.
+ *
+ * Les octets sont lus du canal dans un ByteBuffer direct réutilisé et les trames sont
+ * restituées au même {@link FrameParser.Handler} que le protocole texte, sous forme de
+ * trames complètes (onKeyframe ... onEnd).
+ */
+final class BinaryFrameDecoder {
+
+    static final int MSG_CONFIG = 1;
+    static final int MSG_LIEUX = 2;
+    static final int MSG_AGENTS = 3;
+    static final int MSG_ETAT = 4;
+    static final int MSG_TRAME = 5;
+    static final int MSG_ACK = 6; // u32 id : acquittement d'une commande numérotée
+
+    private static final int TAILLE_MAX_MESSAGE = 64 * 1024 * 1024; // Garde-fou contre un flux corrompu
+
+    private final ReadableByteChannel canal;
+    private final FrameParser.Handler handler;
+    private ByteBuffer buf = ByteBuffer.allocateDirect(256 * 1024); // En mode lecture entre deux remplissages
+
+    // Dictionnaires reçus une fois par scénario
+    private int nbLieux;
+    private int[] typeLieu = new int[0], lieuX = new int[0], lieuY = new int[0];
+    private String[] noms = new String[0];
+    private final String[] etats = new String[256];
+
+    private long messagesIgnores = 0;
+    private ClientMetrics mesures; // Octets lus (optionnel)
+
+    BinaryFrameDecoder(ReadableByteChannel canal, FrameParser.Handler handler) {
+        this.canal = canal;
+        this.handler = handler;
+        buf.flip(); // Vide, prêt à être lu
+    }
+
+    /** Compte les octets lus et les messages ignorés dans les mesures du client. */
+    void setMesures(ClientMetrics m) {
+        mesures = m;
+    }
+
+    /** Nombre de messages de type inconnu ou incohérents ignorés. */
+    long getMessagesIgnores() {
+        return messagesIgnores;
+    }
+
+    /**
+     * Décode les messages jusqu'à la fin du flux.
+     * @param debut octets déjà lus par l'analyseur texte après la ligne de bascule
+     * @throws EOFException lorsque le serveur ferme la connexion
+     */
+    void boucle(ByteBuffer debut) throws IOException {
+        demarrer(debut);
+        while (true) lireMessage();
+    }
+
+    /** Reprend les octets déjà lus par l'analyseur texte ; à appeler avant {@link #lireMessage()}. */
+    void demarrer(ByteBuffer debut) {
+        buf.clear();
+        if (debut.remaining() > buf.capacity()) buf = ByteBuffer.allocateDirect(debut.remaining() * 2);
+        buf.put(debut);
+        buf.flip();
+    }
+
+    /**
+     * Lit et décode le message suivant (en attendant les octets nécessaires).
+     * @throws EOFException lorsque le serveur ferme la connexion
+     */
+    void lireMessage() throws IOException {
+        remplirAuMoins(5);
+        int longueur = buf.getInt(buf.position());
+        if (longueur < 1 || longueur > TAILLE_MAX_MESSAGE) {
+            throw new IOException("Message binaire invalide (longueur " + longueur + ")");
+        }
+        remplirAuMoins(4 + longueur);
+        buf.getInt();
+        int type = buf.get() & 0xFF;
+        int fin = buf.position() + longueur - 1;
+        try {
+            decoder(type, fin);
+        } catch (RuntimeException e) {
+            ignorer(); // Contenu incohérent : on passe au message suivant
+        }
+        buf.position(fin);
+    }
+
+    // Garantit qu'au moins n octets sont disponibles en lecture (agrandit le tampon si nécessaire)
+    private void remplirAuMoins(int n) throws IOException {
+        if (buf.remaining() >= n) return;
+        if (buf.capacity() < n) {
+            ByteBuffer plusGrand = ByteBuffer.allocateDirect(Integer.highestOneBit(n) << 1);
+            plusGrand.put(buf);
+            buf = plusGrand;
+        } else {
+            buf.compact();
+        }
+        // buf est en mode écriture
+        while (buf.position() < n) {
+            int lus = canal.read(buf);
+            if (lus < 0) throw new EOFException("Connexion fermée par le serveur");
+            if (mesures != null) mesures.octetsRecus.addAndGet(lus);
+        }
+        buf.flip();
+    }
+
+    private void ignorer() {
+        messagesIgnores++;
+        if (mesures != null) mesures.lignesIgnorees.incrementAndGet();
+    }
+
+    private void decoder(int type, int fin) {
+        switch (type) {
+            case MSG_CONFIG -> {
+                int largeur = buf.getShort() & 0xFFFF;
+                int hauteur = buf.getShort() & 0xFFFF;
+                handler.onConfig(largeur, hauteur, FrameParser.PROTO_BINAIRE);
+            }
+            case MSG_LIEUX -> {
+                int n = buf.getInt();
+                if (typeLieu.length < n) {
+                    typeLieu = new int[n];
+                    lieuX = new int[n];
+                    lieuY = new int[n];
+                }
+                for (int i = 0; i < n; i++) {
+                    typeLieu[i] = buf.get();
+                    lieuX[i] = buf.getShort();
+                    lieuY[i] = buf.getShort();
+                }
+                nbLieux = n;
+            }
+            case MSG_AGENTS -> {
+                int n = buf.getInt();
+                if (noms.length < n) noms = new String[n];
+                for (int i = 0; i < n; i++) noms[i] = lireChaine(buf.getShort() & 0xFFFF);
+                Arrays.fill(noms, n, noms.length, null);
+            }
+            case MSG_ETAT -> {
+                int id = buf.get() & 0xFF;
+                etats[id] = lireChaine(buf.getShort() & 0xFFFF).intern(); // Etats.id compare par identité
+            }
+            case MSG_TRAME -> decoderTrame(fin);
+            case MSG_ACK -> handler.onAck(buf.getInt());
+            default -> ignorer();
+        }
+    }
+
+    private void decoderTrame(int fin) {
+        long numero = buf.getInt() & 0xFFFFFFFFL;
+        int n = buf.getInt();
+        if (n != nbLieux) { ignorer(); return; } // Dictionnaire des lieux manquant
+        int occupation = buf.position();
+        buf.position(occupation + (n + 7) / 8);
+
+        handler.onKeyframe(numero);
+        for (int i = 0; i < n; i++) {
+            boolean occupe = (buf.get(occupation + (i >> 3)) & (1 << (i & 7))) != 0;
+            handler.onLieu(typeLieu[i], lieuX[i], lieuY[i], occupe);
+        }
+
+        int nbAgents = buf.getInt();
+        for (int i = 0; i < nbAgents; i++) {
+            float x = buf.getFloat(), y = buf.getFloat();
+            float nrj = buf.getFloat(), stress = buf.getFloat(), arg = buf.getFloat();
+            float ang = buf.getFloat();
+            String etat = etats[buf.get() & 0xFF];
+            String nom = i < noms.length ? noms[i] : null;
+            if (nom == null || etat == null) { ignorer(); continue; }
+            handler.onAgent(nom, x, y, nrj, stress, arg, etat, ang);
+        }
+
+        if (buf.position() < fin && buf.get() != 0) {
+            float moyNrj = buf.getFloat(), moyStress = buf.getFloat(), moyArg = buf.getFloat();
+            handler.onStats(moyNrj, moyStress, moyArg, buf.getInt(), buf.getInt(), buf.getInt());
+        }
+        handler.onEnd();
+    }
+
+    private String lireChaine(int longueur) {
+        byte[] b = new byte[longueur];
+        buf.get(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+}
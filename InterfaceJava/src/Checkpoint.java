@@ -0,0 +1,455 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+/**
+ * Point de reprise de {@link SimulationEngine} : tout ce qui détermine la suite de la
+ * simulation, pour la reprendre après un redémarrage du serveur ou un changement de scénario.
+ *
+ * La photo ({@link Etat}) est prise par le thread de simulation entre deux pas : les colonnes
+ * des agents et l'occupation des places sont copiées (quelques copies de tableaux), la
+ * disposition de la ville et les chemins, qui ne sont jamais modifiés, sont partagés. Le
+ * fichier est ensuite écrit par un autre thread pendant que la simulation continue, par blocs,
+ * dans un fichier temporaire qui ne remplace l'ancien qu'une fois complet.
+ *
+ * Fichier (petit-boutiste) : en-tête [magic][u16 version][u64 date ms], scénario (configuration,
+ * graine du scénario, pas courant, premier mort), disposition de la ville (maisons, lieux,
+ * places), occupation des places, recherches de chemins et lieux fréquents, colonnes des
+ * agents (une colonne après l'autre, chemins compris), dernier relevé et historique des
+ * statistiques, puis une somme de contrôle CRC32C de tout ce qui précède. Le hasard du moteur
+ * ne dépend que de la graine du scénario, du pas et de l'agent : il n'a pas d'autre état.
+ *
+ * Relecture : le fichier est projeté en mémoire et chaque colonne copiée d'un bloc.
+ *
+ * Vérification : java Checkpoint verifier [scénario|banc:N] [pas] -- reprise à mi-parcours
+ * comparée à la simulation continue (-Dsma.reprises=dossier pour changer de dossier).
+ */
+final class Checkpoint {
+
+    static final byte[] MAGIC = "SMAREP".getBytes(StandardCharsets.US_ASCII);
+    static final short VERSION = 1;
+    static final int TAILLE_ENTETE = 16; // Magic (6) + version (2) + date de création en ms (8)
+    static final String SUFFIXE = ".reprise";
+    static final Path DOSSIER = Paths.get(System.getProperty("sma.reprises", "reprises"));
+
+    private static final int TAILLE_BLOC = 1 << 20; // Écriture par blocs de 1 Mo
+
+    /** Photo d'une simulation ; les colonnes des agents ont exactement un élément par agent. */
+    static final class Etat {
+        ScenarioConfig config;
+        long graineScenario, pas, premierMort;
+        City ville;
+        int[] occupation;        // Par place
+        int[] demandes;          // Par lieu : recherches A* comptées (PathCache)
+        boolean[] frequents;     // Par lieu : servi par un champ de directions
+
+        int[] ident;
+        String[] noms;
+        double[] x, y, vx, vy, angle, energie, stress, argent;
+        int[] etat, destination, tempsActivite, profil, maison, travail, loisir, parc, placeOccupee, etapeChemin;
+        boolean[] vivant, endormi;
+        int[][] chemin;          // Partagés avec le moteur, jamais modifiés
+
+        boolean statsPresentes;
+        double moyNrj, moyStress, moyArg;
+        int nbVivants, nbMorts, nbOccupes;
+        SimulationEngine.Releve[] releves;
+
+        int nbAgents() {
+            return ident.length;
+        }
+    }
+
+    private Checkpoint() {
+    }
+
+    /**
+     * Fichier d'un point de reprise nommé dans DOSSIER (nom reçu d'un client : lettres, chiffres,
+     * '-', '_' et '.' seulement, suffixe ajouté s'il manque).
+     */
+    static Path fichier(String nom) {
+        if (nom == null || !nom.matches("[\\w-][\\w.-]{0,127}")) {
+            throw new IllegalArgumentException("nom de point de reprise invalide : " + nom);
+        }
+        return DOSSIER.resolve(nom.endsWith(SUFFIXE) ? nom : nom + SUFFIXE);
+    }
+
+    // ========================================================================
+    // ÉCRITURE
+    // ========================================================================
+
+    /**
+     * Écrit la photo dans un thread à part et affiche le résultat ; le thread de simulation
+     * n'attend pas.
+     */
+    static void ecrireEnArrierePlan(Etat e, Path fichier) {
+        Thread t = new Thread(() -> {
+            long debut = System.nanoTime();
+            try {
+                long taille = ecrire(e, fichier);
+                System.out.printf("Point de reprise écrit : %s (pas %d, %d agents, %.0f Ko, %.0f ms)%n", fichier,
+                        e.pas, e.nbAgents(), taille / 1e3, (System.nanoTime() - debut) / 1e6);
+            } catch (IOException ex) {
+                System.out.println("Point de reprise non écrit : " + fichier + " (" + ex.getMessage() + ")");
+            }
+        }, "Point de reprise " + fichier.getFileName());
+        t.setDaemon(true);
+        t.start();
+    }
+
+    /**
+     * Écrit la photo dans 'fichier', qui n'est remplacé qu'une fois le nouveau point complet.
+     * @return la taille du fichier en octets
+     */
+    static long ecrire(Etat e, Path fichier) throws IOException {
+        Path parent = fichier.toAbsolutePath().getParent();
+        if (parent != null) Files.createDirectories(parent);
+        Path temporaire = fichier.resolveSibling(fichier.getFileName() + ".tmp");
+        long taille;
+        try (FileChannel canal = FileChannel.open(temporaire, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            Sortie s = new Sortie(canal);
+            s.octets(MAGIC);
+            s.place(10);
+            s.b.putShort(VERSION);
+            s.b.putLong(System.currentTimeMillis());
+
+            // Scénario
+            ByteArrayOutputStream config = new ByteArrayOutputStream();
+            e.config.ecrire(new DataOutputStream(config));
+            s.entier(config.size());
+            s.octets(config.toByteArray());
+            s.long_(e.graineScenario);
+            s.long_(e.pas);
+            s.long_(e.premierMort);
+
+            // Disposition de la ville
+            City v = e.ville;
+            s.entier(v.largeur);
+            s.entier(v.hauteur);
+            s.entier(v.nbMaisons);
+            s.entiers(v.maisonX, v.nbMaisons);
+            s.entiers(v.maisonY, v.nbMaisons);
+            s.entier(v.nbLieux);
+            s.entiers(v.typeLieu, v.nbLieux);
+            s.entiers(v.debutPlaces, v.nbLieux);
+            s.entiers(v.finPlaces, v.nbLieux);
+            s.entier(v.nbPlaces);
+            s.entiers(v.placeX, v.nbPlaces);
+            s.entiers(v.placeY, v.nbPlaces);
+            s.entiers(v.placeLieu, v.nbPlaces);
+            s.entiers(e.occupation, v.nbPlaces);
+            s.entiers(e.demandes, v.nbLieux);
+            s.booleens(e.frequents);
+
+            // Agents
+            int n = e.nbAgents();
+            s.entier(n);
+            s.entiers(e.ident, n);
+            for (String nom : e.noms) s.chaine(nom);
+            for (double[] c : new double[][]{e.x, e.y, e.vx, e.vy, e.angle, e.energie, e.stress, e.argent}) s.reels(c);
+            for (int[] c : new int[][]{e.etat, e.destination, e.tempsActivite, e.profil, e.maison, e.travail, e.loisir,
+                    e.parc, e.placeOccupee, e.etapeChemin}) {
+                s.entiers(c, n);
+            }
+            s.booleens(e.vivant);
+            s.booleens(e.endormi);
+            for (int[] c : e.chemin) s.entier(c.length);
+            for (int[] c : e.chemin) s.entiers(c, c.length);
+
+            // Statistiques
+            s.booleens(new boolean[]{e.statsPresentes});
+            s.reels(new double[]{e.moyNrj, e.moyStress, e.moyArg});
+            s.entiers(new int[]{e.nbVivants, e.nbMorts, e.nbOccupes}, 3);
+            s.entier(e.releves.length);
+            for (SimulationEngine.Releve r : e.releves) {
+                s.long_(r.pas());
+                s.reels(new double[]{r.moyNrj(), r.moyStress(), r.moyArg()});
+                s.entiers(new int[]{r.vivants(), r.morts(), r.occupes()}, 3);
+            }
+            taille = s.terminer();
+            canal.force(false);
+        }
+        try {
+            Files.move(temporaire, fichier, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            Files.move(temporaire, fichier, StandardCopyOption.REPLACE_EXISTING);
+        }
+        return taille;
+    }
+
+    /** Écriture par blocs dans un canal, avec la somme de contrôle de tout ce qui passe. */
+    private static final class Sortie {
+        final FileChannel canal;
+        final ByteBuffer b = ByteBuffer.allocateDirect(TAILLE_BLOC).order(ByteOrder.LITTLE_ENDIAN);
+        final CRC32C crc = new CRC32C();
+        long ecrits;
+
+        Sortie(FileChannel canal) {
+            this.canal = canal;
+        }
+
+        // Au moins n octets libres dans le bloc (n <= TAILLE_BLOC)
+        void place(int n) throws IOException {
+            if (b.remaining() < n) vider();
+        }
+
+        void vider() throws IOException {
+            b.flip();
+            crc.update(b.duplicate());
+            while (b.hasRemaining()) ecrits += canal.write(b);
+            b.clear();
+        }
+
+        void entier(int v) throws IOException {
+            place(4);
+            b.putInt(v);
+        }
+
+        void long_(long v) throws IOException {
+            place(8);
+            b.putLong(v);
+        }
+
+        void octets(byte[] o) throws IOException {
+            for (int k = 0; k < o.length; ) {
+                place(1);
+                int m = Math.min(o.length - k, b.remaining());
+                b.put(o, k, m);
+                k += m;
+            }
+        }
+
+        void chaine(String s) throws IOException {
+            byte[] o = s.getBytes(StandardCharsets.UTF_8);
+            place(2);
+            b.putShort((short) o.length);
+            octets(o);
+        }
+
+        void entiers(int[] a, int n) throws IOException {
+            for (int k = 0; k < n; ) {
+                place(4);
+                int m = Math.min(n - k, b.remaining() / 4);
+                b.asIntBuffer().put(a, k, m);
+                b.position(b.position() + 4 * m);
+                k += m;
+            }
+        }
+
+        void reels(double[] a) throws IOException {
+            for (int k = 0; k < a.length; ) {
+                place(8);
+                int m = Math.min(a.length - k, b.remaining() / 8);
+                b.asDoubleBuffer().put(a, k, m);
+                b.position(b.position() + 8 * m);
+                k += m;
+            }
+        }
+
+        void booleens(boolean[] a) throws IOException {
+            for (boolean v : a) {
+                place(1);
+                b.put((byte) (v ? 1 : 0));
+            }
+        }
+
+        // Somme de contrôle en dernier ; renvoie la taille totale
+        long terminer() throws IOException {
+            vider();
+            b.putInt((int) crc.getValue());
+            b.flip();
+            while (b.hasRemaining()) ecrits += canal.write(b);
+            return ecrits;
+        }
+    }
+
+    // ========================================================================
+    // RELECTURE
+    // ========================================================================
+
+    /** Relit un point de reprise (fichier projeté en mémoire) ; la ville relue est une nouvelle disposition. */
+    static Etat lire(Path fichier) throws IOException {
+        try (FileChannel canal = FileChannel.open(fichier, StandardOpenOption.READ)) {
+            long taille = canal.size();
+            if (taille > Integer.MAX_VALUE) throw new IOException("point de reprise trop grand : " + taille + " octets");
+            if (taille < TAILLE_ENTETE + 4) throw new IOException("point de reprise tronqué");
+            MappedByteBuffer m = canal.map(FileChannel.MapMode.READ_ONLY, 0, taille);
+            m.order(ByteOrder.LITTLE_ENDIAN);
+
+            byte[] magic = new byte[MAGIC.length];
+            m.get(magic);
+            if (!Arrays.equals(magic, MAGIC)) throw new IOException("pas un point de reprise : " + fichier);
+            short version = m.getShort();
+            if (version != VERSION) throw new IOException("version de point de reprise non gérée : " + version);
+            CRC32C crc = new CRC32C();
+            crc.update(m.duplicate().position(0).limit((int) taille - 4));
+            if ((int) crc.getValue() != m.getInt((int) taille - 4)) throw new IOException("point de reprise corrompu : " + fichier);
+            m.position(TAILLE_ENTETE);
+            m.limit((int) taille - 4);
+            try {
+                return lire(m);
+            } catch (RuntimeException ex) {
+                throw new IOException("point de reprise invalide : " + fichier + " (" + ex + ")", ex);
+            }
+        }
+    }
+
+    private static Etat lire(ByteBuffer m) throws IOException {
+        Etat e = new Etat();
+        byte[] config = new byte[m.getInt()];
+        m.get(config);
+        e.config = ScenarioConfig.lire(new DataInputStream(new ByteArrayInputStream(config)));
+        e.graineScenario = m.getLong();
+        e.pas = m.getLong();
+        e.premierMort = m.getLong();
+
+        int largeur = m.getInt(), hauteur = m.getInt();
+        int nbMaisons = m.getInt();
+        int[] maisonX = entiers(m, nbMaisons), maisonY = entiers(m, nbMaisons);
+        int nbLieux = m.getInt();
+        int[] typeLieu = entiers(m, nbLieux), debutPlaces = entiers(m, nbLieux), finPlaces = entiers(m, nbLieux);
+        int nbPlaces = m.getInt();
+        int[] placeX = entiers(m, nbPlaces), placeY = entiers(m, nbPlaces), placeLieu = entiers(m, nbPlaces);
+        e.ville = new City(largeur, hauteur, maisonX, maisonY, typeLieu, debutPlaces, finPlaces, placeX, placeY, placeLieu);
+        e.occupation = entiers(m, nbPlaces);
+        e.demandes = entiers(m, nbLieux);
+        e.frequents = booleens(m, nbLieux);
+
+        int n = m.getInt();
+        e.ident = entiers(m, n);
+        e.noms = new String[n];
+        for (int i = 0; i < n; i++) {
+            byte[] o = new byte[m.getShort() & 0xFFFF];
+            m.get(o);
+            e.noms[i] = new String(o, StandardCharsets.UTF_8);
+        }
+        e.x = reels(m, n); e.y = reels(m, n); e.vx = reels(m, n); e.vy = reels(m, n); e.angle = reels(m, n);
+        e.energie = reels(m, n); e.stress = reels(m, n); e.argent = reels(m, n);
+        e.etat = entiers(m, n); e.destination = entiers(m, n); e.tempsActivite = entiers(m, n); e.profil = entiers(m, n);
+        e.maison = entiers(m, n); e.travail = entiers(m, n); e.loisir = entiers(m, n); e.parc = entiers(m, n);
+        e.placeOccupee = entiers(m, n); e.etapeChemin = entiers(m, n);
+        e.vivant = booleens(m, n);
+        e.endormi = booleens(m, n);
+        int[] longueurs = entiers(m, n);
+        e.chemin = new int[n][];
+        for (int i = 0; i < n; i++) e.chemin[i] = longueurs[i] > 0 ? entiers(m, longueurs[i]) : PathFinder.VIDE;
+
+        e.statsPresentes = m.get() != 0;
+        e.moyNrj = m.getDouble();
+        e.moyStress = m.getDouble();
+        e.moyArg = m.getDouble();
+        e.nbVivants = m.getInt();
+        e.nbMorts = m.getInt();
+        e.nbOccupes = m.getInt();
+        e.releves = new SimulationEngine.Releve[m.getInt()];
+        for (int k = 0; k < e.releves.length; k++) {
+            e.releves[k] = new SimulationEngine.Releve(m.getLong(), m.getDouble(), m.getDouble(), m.getDouble(),
+                    m.getInt(), m.getInt(), m.getInt());
+        }
+        if (m.hasRemaining()) throw new IOException("octets en trop à la fin du point de reprise");
+        return e;
+    }
+
+    private static int[] entiers(ByteBuffer m, int n) {
+        int[] a = new int[n];
+        m.asIntBuffer().get(a);
+        m.position(m.position() + 4 * n);
+        return a;
+    }
+
+    private static double[] reels(ByteBuffer m, int n) {
+        double[] a = new double[n];
+        m.asDoubleBuffer().get(a);
+        m.position(m.position() + 8 * n);
+        return a;
+    }
+
+    private static boolean[] booleens(ByteBuffer m, int n) {
+        boolean[] a = new boolean[n];
+        for (int i = 0; i < n; i++) a[i] = m.get() != 0;
+        return a;
+    }
+
+    // ========================================================================
+    // VÉRIFICATION : reprise à mi-parcours contre simulation continue
+    // ========================================================================
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0 || !args[0].equals("verifier")) {
+            System.out.println("Usage : java Checkpoint verifier [scénario|banc:N] [pas]");
+            return;
+        }
+        String id = args.length > 1 ? args[1] : "1";
+        int nbPas = args.length > 2 ? Integer.parseInt(args[2]) : 600;
+        Map<String, ScenarioConfig> scenarios = id.startsWith("banc:")
+                ? Map.of(id, ShardCoordinator.banc(id, Integer.parseInt(id.substring(5))))
+                : ScenarioConfig.charger();
+        int threads = Runtime.getRuntime().availableProcessors();
+
+        SimulationEngine continu = new SimulationEngine(scenarios, 42, threads);
+        SimulationEngine repris = new SimulationEngine(scenarios, 0, threads);
+        continu.setJournal(false);
+        repris.setJournal(false);
+        Path f = Files.createTempFile("sma", SUFFIXE);
+        try {
+            continu.chargerScenario(id);
+            for (int k = 0; k < nbPas; k++) continu.pas();
+            long t0 = System.nanoTime();
+            Etat photo = continu.instantane();
+            long t1 = System.nanoTime();
+            long taille = ecrire(photo, f);
+            long t2 = System.nanoTime();
+            for (int k = 0; k < nbPas; k++) continu.pas();
+
+            long t3 = System.nanoTime();
+            Etat relu = lire(f);
+            repris.reprendre(relu);
+            long t4 = System.nanoTime();
+            for (int k = 0; k < nbPas; k++) repris.pas();
+
+            String ecart = comparer(continu.instantane(), repris.instantane());
+            System.out.printf("%s après reprise au pas %d (%d agents, %d pas de plus). Fichier %.1f Ko ; "
+                            + "photo %.2f ms, écriture %.1f ms, relecture et reprise %.1f ms%n",
+                    ecart == null ? "Identique" : "DIFFÉRENT (" + ecart + ")", photo.pas, photo.nbAgents(), nbPas,
+                    taille / 1e3, (t1 - t0) / 1e6, (t2 - t1) / 1e6, (t4 - t3) / 1e6);
+        } finally {
+            continu.arreter();
+            repris.arreter();
+            Files.deleteIfExists(f);
+        }
+    }
+
+    // Première différence entre deux photos, null si elles sont identiques
+    private static String comparer(Etat a, Etat b) {
+        if (a.pas != b.pas) return "pas " + b.pas + " au lieu de " + a.pas;
+        if (!Arrays.equals(a.occupation, b.occupation)) return "occupation des places";
+        if (!Arrays.equals(a.demandes, b.demandes) || !Arrays.equals(a.frequents, b.frequents)) return "lieux fréquents";
+        if (!Arrays.equals(a.noms, b.noms)) return "noms";
+        double[][] reelsA = {a.x, a.y, a.vx, a.vy, a.angle, a.energie, a.stress, a.argent};
+        double[][] reelsB = {b.x, b.y, b.vx, b.vy, b.angle, b.energie, b.stress, b.argent};
+        for (int c = 0; c < reelsA.length; c++) if (!Arrays.equals(reelsA[c], reelsB[c])) return "colonne réelle " + c;
+        int[][] entiersA = {a.etat, a.destination, a.tempsActivite, a.placeOccupee, a.etapeChemin};
+        int[][] entiersB = {b.etat, b.destination, b.tempsActivite, b.placeOccupee, b.etapeChemin};
+        for (int c = 0; c < entiersA.length; c++) if (!Arrays.equals(entiersA[c], entiersB[c])) return "colonne entière " + c;
+        if (!Arrays.equals(a.vivant, b.vivant) || a.premierMort != b.premierMort) return "morts";
+        if (!Arrays.deepEquals(a.chemin, b.chemin)) return "chemins";
+        if (!Arrays.equals(a.releves, b.releves)) return "historique des statistiques";
+        return null;
+    }
+}
@@ -0,0 +1,202 @@
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Disposition de la ville pour le moteur Java (équivalent de ClassPrincipale.Ville).
+ *
+ * Les maisons sont des cases isolées ; les lieux (parcs, travail, loisirs) sont des blocs
+ * rectangulaires de places générés comme dans deplacerast.generer_lieu. Tout est rangé dans
+ * des tableaux d'entiers, avec pour chaque case de la grille la maison ou le lieu qui l'occupe,
+ * ce qui permet de tester un obstacle en O(1) pendant la recherche de chemin.
+ *
+ * La disposition est immuable une fois générée ; seul le nombre d'occupants de chaque place
+ * évolue ({@link PlaceSlots}, modifiable sans verrou depuis les threads de calcul).
+ */
+final class City {
+
+    static final int AUCUN = -1;
+
+    private static final AtomicLong VERSIONS = new AtomicLong();
+
+    final int largeur, hauteur;
+    final long version = VERSIONS.incrementAndGet(); // Change à chaque nouvelle disposition (caches de chemins)
+
+    // --- Maisons (une case chacune) ---
+    final int nbMaisons;
+    final int[] maisonX, maisonY;
+
+    // --- Lieux : type (FrameParser.TRAVAIL / PARC / LOISIR), places [debutPlaces, finPlaces[ ---
+    // Ordre de tous_lieux côté Python : parcs, puis travail, puis loisirs
+    final int nbLieux;
+    final int[] typeLieu, debutPlaces, finPlaces;
+    final int[] parcs, travails, loisirs; // Indices de lieux par type
+
+    // --- Places ---
+    final int nbPlaces;
+    final int[] placeX, placeY, placeLieu;
+    final PlaceSlots occupants; // Nombre d'agents présents sur chaque place
+
+    // --- Index par case (y * largeur + x), AUCUN si la case est libre ---
+    final int[] maisonCase, lieuCase;
+
+    City(ScenarioConfig c, SplittableRandom rnd) {
+        largeur = c.largeur;
+        hauteur = c.hauteur;
+        maisonCase = new int[largeur * hauteur];
+        lieuCase = new int[largeur * hauteur];
+        Arrays.fill(maisonCase, AUCUN);
+        Arrays.fill(lieuCase, AUCUN);
+
+        // 1. Maisons : 100 tirages au plus par maison
+        int[] mx = new int[c.nbMaisons], my = new int[c.nbMaisons];
+        int n = 0;
+        for (int m = 0; m < c.nbMaisons; m++) {
+            for (int essai = 0; essai < 100; essai++) {
+                int px = rnd.nextInt(largeur), py = rnd.nextInt(hauteur);
+                if (caseOccupee(px, py)) continue;
+                mx[n] = px;
+                my[n] = py;
+                maisonCase[py * largeur + px] = n++;
+                break;
+            }
+        }
+        nbMaisons = n;
+        maisonX = Arrays.copyOf(mx, n);
+        maisonY = Arrays.copyOf(my, n);
+
+        // 2. Lieux (blocs de places) : parcs 20 places, travail 10, loisirs 5
+        int maxLieux = c.nbParcs + c.nbTravail + c.nbLoisirs;
+        typeLieu = new int[maxLieux];
+        debutPlaces = new int[maxLieux + 1];
+        finPlaces = new int[maxLieux];
+        int maxPlaces = 20 * c.nbParcs + 10 * c.nbTravail + 5 * c.nbLoisirs;
+        int[] px = new int[maxPlaces], py = new int[maxPlaces], pl = new int[maxPlaces];
+
+        int l = 0, p = 0;
+        int[][] parType = new int[4][];
+        int[][] demandes = {{FrameParser.PARC, c.nbParcs, 20}, {FrameParser.TRAVAIL, c.nbTravail, 10},
+                {FrameParser.LOISIR, c.nbLoisirs, 5}};
+        for (int[] d : demandes) {
+            int[] indices = new int[d[1]];
+            int k = 0;
+            for (int i = 0; i < d[1]; i++) {
+                int ajoutees = genererLieu(rnd, d[2], l, px, py, pl, p);
+                if (ajoutees == 0) continue;
+                typeLieu[l] = d[0];
+                debutPlaces[l] = p;
+                p += ajoutees;
+                finPlaces[l] = p;
+                indices[k++] = l++;
+            }
+            parType[d[0]] = Arrays.copyOf(indices, k);
+        }
+        nbLieux = l;
+        parcs = parType[FrameParser.PARC];
+        travails = parType[FrameParser.TRAVAIL];
+        loisirs = parType[FrameParser.LOISIR];
+
+        nbPlaces = p;
+        placeX = Arrays.copyOf(px, p);
+        placeY = Arrays.copyOf(py, p);
+        placeLieu = Arrays.copyOf(pl, p);
+        occupants = new PlaceSlots(placeLieu, p);
+    }
+
+    /**
+     * Disposition déjà générée, relue d'un point de reprise ({@link Checkpoint}) : les places du
+     * lieu l sont [debutPlaces[l], finPlaces[l][.
+     */
+    City(int largeur, int hauteur, int[] maisonX, int[] maisonY, int[] typeLieu, int[] debutPlaces, int[] finPlaces,
+         int[] placeX, int[] placeY, int[] placeLieu) {
+        this.largeur = largeur;
+        this.hauteur = hauteur;
+        maisonCase = new int[largeur * hauteur];
+        lieuCase = new int[largeur * hauteur];
+        Arrays.fill(maisonCase, AUCUN);
+        Arrays.fill(lieuCase, AUCUN);
+
+        nbMaisons = maisonX.length;
+        this.maisonX = maisonX;
+        this.maisonY = maisonY;
+        for (int m = 0; m < nbMaisons; m++) maisonCase[maisonY[m] * largeur + maisonX[m]] = m;
+
+        nbLieux = typeLieu.length;
+        this.typeLieu = typeLieu;
+        this.debutPlaces = debutPlaces;
+        this.finPlaces = finPlaces;
+        parcs = lieuxDeType(FrameParser.PARC);
+        travails = lieuxDeType(FrameParser.TRAVAIL);
+        loisirs = lieuxDeType(FrameParser.LOISIR);
+
+        nbPlaces = placeX.length;
+        this.placeX = placeX;
+        this.placeY = placeY;
+        this.placeLieu = placeLieu;
+        for (int p = 0; p < nbPlaces; p++) lieuCase[placeY[p] * largeur + placeX[p]] = placeLieu[p];
+        occupants = new PlaceSlots(placeLieu, nbPlaces);
+    }
+
+    // Indices croissants des lieux d'un type, comme à la génération
+    private int[] lieuxDeType(int type) {
+        int k = 0;
+        int[] l = new int[nbLieux];
+        for (int i = 0; i < nbLieux; i++) if (typeLieu[i] == type) l[k++] = i;
+        return Arrays.copyOf(l, k);
+    }
+
+    // Tente de placer un bloc de 'capacite' places sans chevauchement (500 essais).
+    // Renvoie le nombre de places écrites à partir de 'debut', ou 0 si impossible.
+    private int genererLieu(SplittableRandom rnd, int capacite, int lieu, int[] px, int[] py, int[] pl, int debut) {
+        int minX = 1, maxX = largeur - 2;
+        int minY = 1, maxY = hauteur - 2;
+        int tailleX = Math.min(4, Math.max(1, (int) Math.sqrt(capacite) + 1));
+        int tailleY = capacite / tailleX + 1;
+        if (maxX - tailleX < minX || maxY - tailleY < minY) return 0;
+
+        for (int essai = 0; essai < 500; essai++) {
+            int x0 = minX + rnd.nextInt(maxX - tailleX - minX + 1);
+            int y0 = minY + rnd.nextInt(maxY - tailleY - minY + 1);
+            int n = 0;
+            boolean chevauche = false;
+            for (int dx = 0; dx < tailleX && !chevauche && n < capacite; dx++) {
+                for (int dy = 0; dy < tailleY && n < capacite; dy++) {
+                    if (caseOccupee(x0 + dx, y0 + dy)) { chevauche = true; break; }
+                    n++;
+                }
+            }
+            if (chevauche || n < capacite) continue;
+
+            n = 0;
+            for (int dx = 0; dx < tailleX && n < capacite; dx++) {
+                for (int dy = 0; dy < tailleY && n < capacite; dy++) {
+                    int x = x0 + dx, y = y0 + dy;
+                    px[debut + n] = x;
+                    py[debut + n] = y;
+                    pl[debut + n] = lieu;
+                    lieuCase[y * largeur + x] = lieu;
+                    n++;
+                }
+            }
+            return n;
+        }
+        return 0;
+    }
+
+    private boolean caseOccupee(int x, int y) {
+        int c = y * largeur + x;
+        return maisonCase[c] != AUCUN || lieuCase[c] != AUCUN;
+    }
+
+    /**
+     * Vrai si la case est une propriété privée pour un agent (obstacle strict de
+     * fonctionsPrincipales.get_obstacles_stricts) : maison d'un autre agent, ou place d'un
+     * lieu non public (tout sauf les parcs) qui n'est pas la destination de l'agent.
+     */
+    boolean bloque(int cellule, int maisonAgent, int lieuDestination) {
+        int m = maisonCase[cellule];
+        if (m != AUCUN && m != maisonAgent) return true;
+        int l = lieuCase[cellule];
+        return l != AUCUN && l != lieuDestination && typeLieu[l] != FrameParser.PARC;
+    }
+}
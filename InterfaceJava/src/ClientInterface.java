@@ -4,14 +4,18 @@
 
 import javax.swing.*;
 import javax.swing.border.TitledBorder;
-import javax.swing.table.DefaultTableModel;
+import javax.swing.filechooser.FileNameExtensionFilter;
+import javax.swing.table.JTableHeader;
 import java.awt.*;
-import java.awt.geom.Arc2D; // Utilisé pour le dessin du cône de vision (FOV)
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
 import java.io.*;
-import java.net.Socket;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList; // Pour les listes thread-safe
+import java.net.InetSocketAddress;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
 
 /**
  * Classe principale de l'interface utilisateur. Gère la fenêtre (JFrame),
@@ -20,17 +24,25 @@ import java.util.concurrent.CopyOnWriteArrayList; // Pour les listes thread-safe
 public class ClientInterface extends JFrame {
 
     // --- Configuration Fixe ---
-    private final int CELL_SIZE = 30; // Taille en pixels pour dessiner une unité de grille
-    private final float FOV_RADIUS_UNITS = 1.0f; // Rayon de vision utilisé pour dessiner le cône des agents
     private final String SERVER_HOST = "127.0.0.1"; // Adresse IP du serveur Python
-    private final int SERVER_PORT = 5001; // Port d'écoute du serveur
+    private final int SERVER_PORT = Integer.getInteger("sma.port", 5001); // Port du serveur (5002 : relais FanoutServer)
+    // Version annoncée au serveur (PROTO:n) : 1 texte, 2 delta (défaut), 3 binaire (-Dsma.protocole=3)
+    private final int PROTOCOLE_DEMANDE = Integer.getInteger("sma.protocole", FrameParser.PROTO_DELTA);
+    // Cadence cible de rafraîchissement de l'interface, indépendante de celle du serveur (-Dsma.fpsUI=n)
+    private final int FPS_UI = Math.max(1, Integer.getInteger("sma.fpsUI", 30));
+    // Cadence de dessin des agents interpolés entre deux trames : fréquence de l'écran par défaut (-Dsma.fpsRendu=n)
+    private final int FPS_RENDU = Math.max(1, Integer.getInteger("sma.fpsRendu", frequenceEcran()));
+    // Dossier des sessions enregistrées (-Dsma.sessions=chemin)
+    private final Path DOSSIER_SESSIONS = Paths.get(System.getProperty("sma.sessions", "sessions"));
+    // Port local du point d'accès HTTP des mesures (-Dsma.metriques.port=n ; absent : pas de HTTP)
+    private final Integer PORT_METRIQUES = Integer.getInteger("sma.metriques.port");
 
     // --- Composants UI de Navigation et Contrôle ---
     private CardLayout cardLayout; // Gère le basculement entre l'écran MENU et l'écran GAME
     private JPanel mainContainer; // Conteneur principal utilisant CardLayout
     private SimulationPanel simulationPanel; // Panneau de dessin de la carte de la ville
     private JTable statsTable; // Tableau des statistiques détaillées par agent
-    private DefaultTableModel tableModel; // Modèle de données pour le tableau des agents
+    private AgentTableModel tableModel; // Modèle de données pour le tableau des agents (lu dans l'instantané)
     private JSlider speedSlider; // Curseur pour ajuster la vitesse de la simulation
 
     // --- Composants UI Stats Globales (Mis à jour par les trames STATS) ---
@@ -41,23 +53,50 @@ public class ClientInterface extends JFrame {
     private JLabel lblNbMorts;
     private JLabel lblNbOccupes;
 
+    // --- Compteurs d'affichage (trames reçues / affichées / jamais affichées) ---
+    private JLabel lblTramesRecues;
+    private JLabel lblTramesAffichees;
+    private JLabel lblTramesPerdues;
+    private long dernierNumeroAffiche = 0; // Numéro de la dernière trame affichée (EDT uniquement)
+    private long tramesAffichees = 0; // (EDT uniquement)
+    private long premierNumero = 0; // Numéro de la source au moment où elle a été choisie (EDT uniquement)
+
     // --- Réseau ---
-    private PrintWriter out; // Flux d'écriture vers le serveur (pour envoyer les commandes SCENARIO, SPEED, STOP)
-    private Socket socket; // Socket de connexion TCP
-    private volatile boolean connected = false; // État de la connexion (volatile pour l'accès inter-thread)
+    private SocketChannel socket; // Canal de connexion TCP (bloquant)
 
     // --- Données Simulation (Thread Safe) ---
     private int gridWidth = 35; // Largeur de la grille (initiale, mise à jour par CONFIG)
     private int gridHeight = 23; // Hauteur de la grille (initiale, mise à jour par CONFIG)
 
-    // Listes thread-safe (CopyOnWriteArrayList) pour stocker l'état actuel de la simulation
-    private List<AgentInfo> agents = new CopyOnWriteArrayList<>();
-    private List<LieuInfo> lieux = new CopyOnWriteArrayList<>();
-
-    // Record (Java 16+) pour stocker les informations d'un agent reçues par le réseau
-    record AgentInfo(String nom, float x, float y, float nrj, float stress, float arg, String etat, float ang) {}
-    // Record pour stocker les informations d'un lieu reçues par le réseau
-    record LieuInfo(String type, float x, float y, boolean occupe) {}
+    // Double tampon d'instantanés : le thread réseau remplit l'arrière, l'EDT lit l'avant.
+    // Les colonnes sont réutilisées d'une trame à l'autre : aucune copie du monde par trame.
+    private final WorldSnapshot.Echange monde = new WorldSnapshot.Echange();
+
+    // --- Enregistrement et relecture de sessions ---
+    private final WorldSnapshot.Echange relecture = new WorldSnapshot.Echange(); // Trames publiées par le ReplayPlayer
+    private WorldSnapshot.Echange source = monde; // Instantanés affichés : direct ou relecture (EDT uniquement)
+    private volatile SnapshotReceiver reception; // Réception de la connexion courante
+    private volatile SessionRecorder enregistreur; // Enregistrement en cours (null sinon)
+    private ReplayPlayer lecteur; // Relecture en cours (null en direct, EDT uniquement)
+    private JPanel barreDirect, barreRelecture; // Contrôles du bas propres à chaque mode
+    private JToggleButton btnEnregistrer;
+    private JLabel lblEnregistrement;
+    private JToggleButton btnLecture;
+    private JSlider curseurRelecture;
+    private JLabel lblTempsRelecture;
+    private boolean majCurseur = false; // Vrai pendant la mise à jour du curseur par rafraichirUI
+
+    // --- Mesures de performance (surimpression, HTTP, JMX) ---
+    private final ClientMetrics mesures = new ClientMetrics();
+    private boolean dejaConnecte = false; // Pour compter les reconnexions (thread réseau uniquement)
+
+    // --- Historique des statistiques globales, relevées par le client sur chaque trame ---
+    private final StatsHistory historique = new StatsHistory();
+    private Sparkline[] courbes; // Panneau « Évolution » (EDT uniquement)
+    private long versionCourbes = -1;
+
+    // Commandes vers le serveur (SCENARIO, SPEED, STOP...) : mises en file, écrites par un thread dédié
+    private final CommandChannel commandes = new CommandChannel(mesures);
 
     // ========================================================================
     // CONSTRUCTEUR ET INITIALISATION DE LA FENÊTRE
@@ -80,8 +119,37 @@ public class ClientInterface extends JFrame {
         mainContainer.add(createGameInterface(), "GAME");
 
         add(mainContainer);
+
+        // Mesures exposées à l'outillage d'exploitation : MXBean local, et HTTP si demandé
+        mesures.exposerJmx();
+        if (PORT_METRIQUES != null) {
+            try {
+                mesures.exposerHttp(PORT_METRIQUES);
+                System.out.println("Mesures : http://127.0.0.1:" + PORT_METRIQUES + "/metrics");
+            } catch (IOException e) {
+                System.out.println("Point d'accès des mesures indisponible : " + e.getMessage());
+            }
+        }
+
         setVisible(true); // Rend la fenêtre visible (commence sur l'écran MENU)
 
+        // Rafraîchissement de l'interface à cadence fixe : seule la dernière trame publiée est affichée,
+        // les trames arrivées entre deux passages ne sont jamais mises en file sur l'EDT
+        new Timer(1000 / FPS_UI, e -> rafraichirUI()).start();
+        // Entre deux trames, la carte seule est redessinée à la fréquence de l'écran tant que les agents bougent
+        new Timer(Math.max(1, 1000 / FPS_RENDU), e -> {
+            if (simulationPanel.isAnimationEnCours()) simulationPanel.repaint();
+        }).start();
+
+        // Un enregistrement en cours est terminé proprement à la fermeture de l'application (et le point d'accès HTTP arrêté)
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            SessionRecorder r = enregistreur;
+            if (r != null) {
+                try { r.close(); } catch (IOException ignored) {}
+            }
+            mesures.arreter();
+        }));
+
         // Lance la boucle de gestion du réseau (connexion/écoute) dans un thread séparé
         new Thread(this::networkLoop).start();
     }
@@ -91,15 +159,16 @@ public class ClientInterface extends JFrame {
      * des dimensions de grille reçues par la trame CONFIG.
      */
     private void resizeWindow(int w, int h) {
-        int width = (w * CELL_SIZE) + 450; // Grille + Largeur du panneau de stats/contrôles
-        int height = (h * CELL_SIZE) + 150; // Grille + Hauteur de la zone de contrôle du bas
-        // Assure une taille minimale
-        width = Math.max(width, 1050);
-        height = Math.max(height, 750);
+        int width = (w * SimulationPanel.CELL_SIZE) + 450; // Grille + Largeur du panneau de stats/contrôles
+        int height = (h * SimulationPanel.CELL_SIZE) + 150; // Grille + Hauteur de la zone de contrôle du bas
+        // Assure une taille minimale, sans dépasser l'écran (les grandes villes passent par le zoom)
+        Rectangle ecran = GraphicsEnvironment.getLocalGraphicsEnvironment().getMaximumWindowBounds();
+        width = Math.min(Math.max(width, 1050), Math.max(1050, ecran.width));
+        height = Math.min(Math.max(height, 750), Math.max(750, ecran.height));
         setSize(width, height);
         if (simulationPanel != null) {
-            // Met à jour la taille du panneau de dessin pour qu'il s'adapte à la grille
-            simulationPanel.setPreferredSize(new Dimension(w * CELL_SIZE, h * CELL_SIZE));
+            // Zoom initial : toute la grille dans la zone de carte si possible
+            simulationPanel.ajusterA(width - 450, height - 150);
         }
         revalidate(); // Force le re-calcul et le re-dessin des composants
     }
@@ -144,6 +213,18 @@ public class ClientInterface extends JFrame {
         gbc.gridy++;
         menu.add(createStyledButton("S3: Survie Difficile (Ressources Rares)", e -> lancerScenario(3)), gbc);
 
+        // 4. RELECTURE D'UNE SESSION ENREGISTRÉE (sans serveur)
+        gbc.gridy++;
+        JButton btnRelecture = createStyledButton("Rejouer une session enregistrée...", e -> ouvrirRelecture());
+        btnRelecture.setBackground(new Color(90, 160, 120));
+        menu.add(btnRelecture, gbc);
+
+        // 5. REPRISE D'UNE SIMULATION (point de reprise écrit par le serveur)
+        gbc.gridy++;
+        JButton btnReprise = createStyledButton("Reprendre un point de reprise...", e -> ouvrirReprise());
+        btnReprise.setBackground(new Color(90, 130, 180));
+        menu.add(btnReprise, gbc);
+
         gbc.gridy++;
         JButton btnQuit = createStyledButton("Quitter", e -> System.exit(0));
         btnQuit.setBackground(new Color(225, 150, 55));
@@ -160,8 +241,11 @@ public class ClientInterface extends JFrame {
         JPanel gamePanel = new JPanel(new BorderLayout());
 
         // 1. ZONE CENTRALE (Carte de la ville)
-        simulationPanel = new SimulationPanel();
+        simulationPanel = new SimulationPanel(monde);
+        simulationPanel.setMesures(mesures);
+        simulationPanel.setGrille(gridWidth, gridHeight);
         simulationPanel.setBackground(new Color(45, 45, 50));
+        simulationPanel.majTaille();
         JScrollPane scrollSim = new JScrollPane(simulationPanel);
         scrollSim.setBorder(BorderFactory.createEmptyBorder());
         gamePanel.add(scrollSim, BorderLayout.CENTER);
@@ -176,14 +260,33 @@ public class ClientInterface extends JFrame {
         JPanel statsPanelContainer = new JPanel(new BorderLayout());
         statsPanelContainer.add(createGlobalStatsPanel(), BorderLayout.NORTH); // Moyennes
         statsPanelContainer.add(createRepartitionPanel(), BorderLayout.CENTER); // Répartition Agents
-        statsPanelContainer.setMaximumSize(new Dimension(420, 200));
+        statsPanelContainer.add(createAffichagePanel(), BorderLayout.SOUTH); // Trames reçues/affichées/perdues
+        statsPanelContainer.setMaximumSize(new Dimension(420, 290));
         rightPanel.add(statsPanelContainer);
+        rightPanel.add(createEvolutionPanel()); // Courbes calculées par le client
 
         // b. Tableau Stats Agents (Détail)
-        String[] columnNames = {"Nom", "Énergie", "Stress", "$", "État"};
-        tableModel = new DefaultTableModel(columnNames, 0);
+        tableModel = new AgentTableModel();
         statsTable = new JTable(tableModel);
         JScrollPane tableScroll = new JScrollPane(statsTable);
+        // Tri par clic sur l'en-tête (permutation d'indices dans le modèle, sans RowSorter)
+        JTableHeader header = statsTable.getTableHeader();
+        header.setReorderingAllowed(false);
+        header.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int col = statsTable.convertColumnIndexToModel(header.columnAtPoint(e.getPoint()));
+                if (col < 0) return;
+                tableModel.trierPar(col);
+                // Indicateur de tri dans les titres de colonnes
+                for (int c = 0; c < AgentTableModel.COLONNES.length; c++) {
+                    String titre = AgentTableModel.COLONNES[c];
+                    if (c == tableModel.getColonneTri()) titre += tableModel.isTriDecroissant() ? " ▼" : " ▲";
+                    statsTable.getColumnModel().getColumn(c).setHeaderValue(titre);
+                }
+                header.repaint();
+            }
+        });
         // Configuration de l'apparence du tableau
         statsTable.setBackground(new Color(50, 50, 55));
         statsTable.setForeground(Color.WHITE);
@@ -193,6 +296,12 @@ public class ClientInterface extends JFrame {
                 BorderFactory.createLineBorder(new Color(80, 80, 90)), "Agents Détaillés", TitledBorder.LEFT, TitledBorder.TOP,
                 new Font("Arial", Font.BOLD, 14), Color.LIGHT_GRAY));
         tableScroll.setPreferredSize(new Dimension(420, 400));
+
+        // Filtre du tableau (par état ou par seuil critique)
+        JComboBox<AgentTableModel.Filtre> filtreAgents = new JComboBox<>(AgentTableModel.Filtre.values());
+        filtreAgents.addActionListener(e -> tableModel.setFiltre((AgentTableModel.Filtre) filtreAgents.getSelectedItem()));
+        filtreAgents.setMaximumSize(new Dimension(420, 28));
+        rightPanel.add(filtreAgents);
         rightPanel.add(tableScroll);
 
         // c. Légende
@@ -225,9 +334,62 @@ public class ClientInterface extends JFrame {
         JLabel lblSpeed = new JLabel("Vitesse Simulation :");
         lblSpeed.setForeground(Color.WHITE);
 
+        // Enregistrement de la session dans DOSSIER_SESSIONS
+        btnEnregistrer = new JToggleButton("⏺ Enregistrer");
+        btnEnregistrer.addActionListener(e -> basculerEnregistrement(btnEnregistrer.isSelected()));
+        // Point de reprise de la simulation en cours, écrit par le serveur sans l'interrompre
+        JButton btnPointReprise = new JButton("💾 Point de reprise");
+        btnPointReprise.addActionListener(e -> demanderPointDeReprise());
+        lblEnregistrement = new JLabel(" ");
+        lblEnregistrement.setForeground(Color.LIGHT_GRAY);
+
+        barreDirect = new JPanel(new FlowLayout(FlowLayout.CENTER, 20, 0));
+        barreDirect.setOpaque(false);
+        barreDirect.add(lblSpeed);
+        barreDirect.add(speedSlider);
+        barreDirect.add(btnEnregistrer);
+        barreDirect.add(btnPointReprise);
+        barreDirect.add(lblEnregistrement);
+
+        // Contrôles de relecture : lecture/pause, défilement, vitesse
+        btnLecture = new JToggleButton("⏸ Pause");
+        btnLecture.addActionListener(e -> basculerLecture());
+        curseurRelecture = new JSlider(0, 0, 0);
+        curseurRelecture.setPreferredSize(new Dimension(360, 30));
+        curseurRelecture.setBackground(new Color(50, 20, 100));
+        curseurRelecture.addChangeListener(e -> {
+            if (!majCurseur && lecteur != null) lecteur.allerA(curseurRelecture.getValue());
+        });
+        lblTempsRelecture = new JLabel("00:00 / 00:00");
+        lblTempsRelecture.setForeground(Color.WHITE);
+        lblTempsRelecture.setFont(new Font("Consolas", Font.BOLD, 14));
+        JComboBox<String> vitesseRelecture = new JComboBox<>();
+        for (int v = 1; v <= ReplayPlayer.VITESSE_MAX; v *= 2) vitesseRelecture.addItem(v + "×");
+        vitesseRelecture.addActionListener(e -> {
+            if (lecteur != null) lecteur.setVitesse(1 << vitesseRelecture.getSelectedIndex());
+        });
+
+        barreRelecture = new JPanel(new FlowLayout(FlowLayout.CENTER, 15, 0));
+        barreRelecture.setOpaque(false);
+        barreRelecture.add(btnLecture);
+        barreRelecture.add(curseurRelecture);
+        barreRelecture.add(lblTempsRelecture);
+        barreRelecture.add(vitesseRelecture);
+        barreRelecture.setVisible(false);
+
+        // Surimpression des mesures de performance sur la carte
+        JToggleButton btnMesures = new JToggleButton("📈 Mesures");
+        btnMesures.addActionListener(e -> simulationPanel.setSurimpression(btnMesures.isSelected()));
+
+        // Interpolation des positions entre deux trames (désactivée : positions reçues telles quelles)
+        JToggleButton btnLissage = new JToggleButton("〰 Lissage", true);
+        btnLissage.addActionListener(e -> simulationPanel.setInterpolation(btnLissage.isSelected()));
+
         controlPanel.add(btnBack);
-        controlPanel.add(lblSpeed);
-        controlPanel.add(speedSlider);
+        controlPanel.add(btnMesures);
+        controlPanel.add(btnLissage);
+        controlPanel.add(barreDirect);
+        controlPanel.add(barreRelecture);
 
         gamePanel.add(controlPanel, BorderLayout.SOUTH);
 
@@ -278,6 +440,60 @@ public class ClientInterface extends JFrame {
         return rep;
     }
 
+    /**
+     * Crée le panneau des courbes d'évolution (énergie, stress, argent, agents par état),
+     * lues dans l'historique tenu par le client, avec le choix du palier (1 s, 10 s, 1 min).
+     */
+    private JPanel createEvolutionPanel() {
+        JPanel evo = new JPanel();
+        evo.setLayout(new BoxLayout(evo, BoxLayout.Y_AXIS));
+        evo.setBorder(BorderFactory.createTitledBorder(
+                BorderFactory.createLineBorder(Color.LIGHT_GRAY), "Évolution", TitledBorder.LEFT, TitledBorder.TOP,
+                new Font("Arial", Font.BOLD, 14), Color.CYAN));
+        evo.setBackground(new Color(60, 60, 65));
+
+        Color[] couleursEtats = {
+                new Color(200, 60, 60), Color.GRAY, new Color(50, 200, 50), Color.CYAN,
+                Color.ORANGE, Color.MAGENTA, Color.YELLOW, Color.PINK
+        };
+        courbes = new Sparkline[]{
+                Sparkline.grandeur(historique, "Énergie", StatsHistory.ENERGIE, new Color(80, 200, 120)),
+                Sparkline.grandeur(historique, "Stress", StatsHistory.STRESS, new Color(230, 90, 90)),
+                Sparkline.grandeur(historique, "Argent", StatsHistory.ARGENT, new Color(230, 200, 80)),
+                Sparkline.etats(historique, "États", couleursEtats)
+        };
+        JComboBox<String> palier = new JComboBox<>(StatsHistory.PALIERS);
+        palier.addActionListener(e -> {
+            for (Sparkline c : courbes) c.setPalier(palier.getSelectedIndex());
+        });
+        palier.setMaximumSize(new Dimension(420, 24));
+        evo.add(palier);
+        for (Sparkline c : courbes) evo.add(c);
+        evo.setMaximumSize(new Dimension(420, 260));
+        return evo;
+    }
+
+    /**
+     * Crée le panneau des compteurs de trames (reçues, affichées, perdues).
+     */
+    private JPanel createAffichagePanel() {
+        JPanel aff = new JPanel(new GridLayout(3, 2, 5, 5));
+        aff.setBorder(BorderFactory.createTitledBorder(
+                BorderFactory.createLineBorder(Color.LIGHT_GRAY), "Affichage (cible " + FPS_UI + " FPS)", TitledBorder.LEFT, TitledBorder.TOP,
+                new Font("Arial", Font.BOLD, 14), Color.CYAN));
+        aff.setBackground(new Color(60, 60, 65));
+
+        lblTramesRecues = createStatLabel("0");
+        lblTramesAffichees = createStatLabel("0");
+        lblTramesPerdues = createStatLabel("0");
+
+        addStatRow(aff, "Trames reçues:", lblTramesRecues);
+        addStatRow(aff, "Trames affichées:", lblTramesAffichees);
+        addStatRow(aff, "Trames sautées:", lblTramesPerdues);
+
+        return aff;
+    }
+
     // Fonctions utilitaires pour créer et ajouter des lignes de statistiques
     private JLabel createStatLabel(String text) {
         JLabel l = new JLabel(text);
@@ -358,115 +574,77 @@ public class ClientInterface extends JFrame {
         while (true) {
             try {
                 // Tente d'établir ou de rétablir la connexion si nécessaire
-                if (socket == null || socket.isClosed()) {
+                if (socket == null || !socket.isOpen()) {
                     try {
-                        socket = new Socket(SERVER_HOST, SERVER_PORT);
-                        // out : permet d'écrire vers le serveur (auto-flush activé)
-                        out = new PrintWriter(socket.getOutputStream(), true);
-                        connected = true;
+                        socket = SocketChannel.open(new InetSocketAddress(SERVER_HOST, SERVER_PORT));
+                        // Les commandes sont écrites sur le canal par le thread « Commandes », jamais par l'EDT
+                        commandes.connecter(socket);
+                        simulationPanel.setConnecte(true);
+                        if (dejaConnecte) mesures.reconnexions.incrementAndGet();
+                        dejaConnecte = true;
                         System.out.println("Connecté au serveur Python.");
+                        // Négociation du protocole : un serveur qui ne connaît pas PROTO l'ignore
+                        // et continue d'envoyer des trames complètes
+                        envoyer("PROTO:" + PROTOCOLE_DEMANDE);
                     } catch (IOException e) {
                         Thread.sleep(1000); // Attente avant de réessayer la connexion
                         continue;
                     }
                 }
 
-                // in : buffer pour lire les données entrantes
-                BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-                String line;
-
-                // Tampons temporaires pour stocker les données de la trame en cours de réception
-                List<AgentInfo> bufferAgents = new ArrayList<>();
-                List<LieuInfo> bufferLieux = new ArrayList<>();
-                String[] tempStats = null; // Stocke la ligne STATS
-
-                // Lecture ligne par ligne de la trame
-                while ((line = in.readLine()) != null) {
-                    if (line.startsWith("CONFIG")) {
-                        // Trame CONFIG (envoyée au démarrage du serveur ou après un changement de scénario)
-                        String[] parts = line.split(";");
-                        if (parts.length >= 3) {
-                            int w = Integer.parseInt(parts[1]);
-                            int h = Integer.parseInt(parts[2]);
-                            // Mise à jour de l'UI (taille de grille) dans le thread de l'EDT
-                            SwingUtilities.invokeLater(() -> {
-                                this.gridWidth = w;
-                                this.gridHeight = h;
-                                resizeWindow(w, h);
-                            });
-                        }
-                    }
-                    else if (line.equals("END")) {
-                        // Marqueur de FIN DE TRAME : C'est le signal pour mettre à jour l'UI
-
-                        // Copie des tampons pour l'accès inter-thread final (éviter les modifications pendant l'itération)
-                        final List<AgentInfo> finalAgents = new ArrayList<>(bufferAgents);
-                        final List<LieuInfo> finalLieux = new ArrayList<>(bufferLieux);
-                        final String[] finalStats = tempStats;
-
-                        // 1. Mise à jour des listes partagées (thread-safe)
-                        this.agents = new CopyOnWriteArrayList<>(finalAgents);
-                        this.lieux = new CopyOnWriteArrayList<>(finalLieux);
-
-                        // 2. Mise à jour de l'interface graphique (sur le thread de l'EDT)
+                // Lecture en flux des trames : l'analyseur décode directement les octets du socket
+                // et remplit le tampon d'écriture de l'instantané (voir SnapshotReceiver)
+                monde.ecriture().vider();
+                SnapshotReceiver reception = new SnapshotReceiver(monde, new SnapshotReceiver.Ecouteur() {
+                    @Override
+                    public void onGrille(int largeur, int hauteur) {
+                        // Mise à jour de l'UI (taille de grille) dans le thread de l'EDT
                         SwingUtilities.invokeLater(() -> {
-                            if (mainContainer.isVisible()) {
-                                simulationPanel.repaint(); // Redessin de la carte
-                                updateTable(); // Mise à jour du tableau des agents
-
-                                // Mise à jour des labels de statistiques globales
-                                if (finalStats != null && finalStats.length >= 7) {
-                                    // Index 1: Énergie, 2: Stress, 3: Argent (Moyennes)
-                                    lblMoyEnergie.setText(String.format("%.1f", Double.parseDouble(finalStats[1])));
-                                    lblMoyStress.setText(String.format("%.1f", Double.parseDouble(finalStats[2])));
-                                    lblMoyArgent.setText(String.format("%.1f", Double.parseDouble(finalStats[3])));
-
-                                    // Index 4: Vivants, 5: Morts, 6: Occupés (Répartition)
-                                    lblNbVivants.setText(finalStats[4]);
-                                    lblNbMorts.setText(finalStats[5]);
-                                    lblNbOccupes.setText(finalStats[6]);
-                                }
-                            }
+                            gridWidth = largeur;
+                            gridHeight = hauteur;
+                            simulationPanel.setGrille(largeur, hauteur);
+                            resizeWindow(largeur, hauteur);
                         });
+                    }
 
-                        // 3. Vider les tampons pour recevoir la prochaine trame
-                        bufferAgents.clear();
-                        bufferLieux.clear();
-                        tempStats = null;
+                    @Override
+                    public void onDesynchronisation() {
+                        mesures.desynchronisations.incrementAndGet();
+                        envoyer("RESYNC");
+                    }
 
+                    @Override
+                    public void onPublication() {
+                        commandes.surPublication();
                     }
-                    else {
-                        // Traitement des lignes de données (AGENT, LIEU, STATS)
-                        String[] p = line.split(";");
-                        String type = p[0];
-
-                        if (type.equals("AGENT")) {
-                            // Format attendu: AGENT;Nom;X;Y;Energie;Stress;Argent;Etat;Angle (9 champs)
-                            if (p.length == 9) {
-                                bufferAgents.add(new AgentInfo(
-                                        p[1],
-                                        Float.parseFloat(p[2]), Float.parseFloat(p[3]), // X, Y
-                                        Float.parseFloat(p[4]), Float.parseFloat(p[5]), Float.parseFloat(p[6]), // NRJ, Stress, Arg
-                                        p[7], Float.parseFloat(p[8]) // État, Angle
-                                ));
-                            }
-                        }
-                        else if (type.equals("MAISON") || type.equals("TRAVAIL") || type.equals("PARC") || type.equals("LOISIR")) {
-                            // Format attendu: LIEUTYPE;X;Y;OCCUPE (4 champs, OCCUPE est "1" ou "0")
-                            if (p.length >= 3) {
-                                boolean occupe = p.length > 3 && p[3].equals("1");
-                                bufferLieux.add(new LieuInfo(type, Float.parseFloat(p[1]), Float.parseFloat(p[2]), occupe));
-                            }
-                        }
-                        else if (type.equals("STATS")) {
-                            // Format: STATS;MoyNrj;MoyStress;MoyArg;NbVivants;NbMorts;NbOccupes
-                            tempStats = p; // Stocke les stats pour le traitement en fin de trame
-                        }
+
+                    @Override
+                    public void onAcquittement(int id) {
+                        commandes.acquitter(id);
                     }
+                });
+                reception.setMesures(mesures);
+                reception.setStatistiques(historique);
+                this.reception = reception;
+                reception.setEnregistreur(enregistreur); // Enregistrement commencé sur une connexion précédente
+                FrameParser parser = new FrameParser(socket.socket().getInputStream(), reception);
+                parser.setMesures(mesures);
+                parser.boucle();
+
+                // Le serveur a accepté le protocole binaire : la suite du flux est lue directement
+                // sur le canal, en reprenant les octets déjà lus par l'analyseur texte
+                if (parser.isBasculeBinaire()) {
+                    BinaryFrameDecoder decodeur = new BinaryFrameDecoder(socket, reception);
+                    decodeur.setMesures(mesures);
+                    decodeur.boucle(parser.restants());
                 }
             } catch (Exception e) {
                 // Gestion de la déconnexion inopinée
-                connected = false;
+                simulationPanel.setConnecte(false);
+                commandes.deconnecter();
+                if (socket != null) {
+                    try { socket.close(); } catch (IOException ignored) {}
+                }
                 socket = null;
                 System.out.println("Déconnexion serveur... Tentative de reconnexion: " + e.getMessage());
                 try {
@@ -478,10 +656,104 @@ public class ClientInterface extends JFrame {
         }
     }
 
+    /**
+     * Rafraîchit la carte, le tableau des agents et les statistiques globales (EDT, appelé
+     * à cadence FPS_UI). Ne fait rien si aucune nouvelle trame n'a été publiée depuis le
+     * dernier passage ; si plusieurs l'ont été, seule la plus récente est affichée.
+     */
+    private void rafraichirUI() {
+        if (!mainContainer.isVisible()) return;
+        if (lecteur != null) rafraichirRelecture();
+        SessionRecorder r = enregistreur;
+        if (r != null) {
+            lblEnregistrement.setText(String.format("● %d trames, %d Mo (%d perdues)",
+                    r.getTramesEcrites(), r.getOctetsEcrits() >> 20, r.getTramesPerdues()));
+        }
+        // Courbes d'évolution : redessinées à chaque nouveau point (une fois par seconde au plus)
+        long v = historique.getVersion();
+        if (v != versionCourbes) {
+            versionCourbes = v;
+            for (Sparkline c : courbes) c.repaint();
+        }
+
+        WorldSnapshot t = source.acquerir();
+        try {
+            long numero = t.numero - premierNumero; // Numérotation continue : égale au nombre de trames reçues
+            if (numero == dernierNumeroAffiche) return;
+            dernierNumeroAffiche = numero;
+            tramesAffichees++;
+            // Délai entre la publication par le thread réseau et sa prise en compte par l'EDT
+            if (t.datePublication != 0) mesures.mesurer(ClientMetrics.Etape.FILE_EDT, System.nanoTime() - t.datePublication);
+
+            simulationPanel.repaint(); // Redessin de la carte
+            updateTable(); // Mise à jour du tableau des agents
+
+            // Compteurs d'affichage
+            lblTramesRecues.setText(Long.toString(numero));
+            lblTramesAffichees.setText(Long.toString(tramesAffichees));
+            lblTramesPerdues.setText(Long.toString(numero - tramesAffichees));
+
+            // Mise à jour des labels de statistiques globales
+            if (t.statsPresentes) {
+                lblMoyEnergie.setText(String.format("%.1f", t.moyNrj));
+                lblMoyStress.setText(String.format("%.1f", t.moyStress));
+                lblMoyArgent.setText(String.format("%.1f", t.moyArg));
+                lblNbVivants.setText(Integer.toString(t.nbVivants));
+                lblNbMorts.setText(Integer.toString(t.nbMorts));
+                lblNbOccupes.setText(Integer.toString(t.nbOccupes));
+            }
+        } finally {
+            source.liberer();
+        }
+    }
+
+    /** Position, durée et taille de grille de la relecture en cours (EDT). */
+    private void rafraichirRelecture() {
+        if (lecteur.getLargeur() > 0 && (lecteur.getLargeur() != gridWidth || lecteur.getHauteur() != gridHeight)) {
+            gridWidth = lecteur.getLargeur();
+            gridHeight = lecteur.getHauteur();
+            simulationPanel.setGrille(gridWidth, gridHeight);
+            resizeWindow(gridWidth, gridHeight);
+        }
+        if (!curseurRelecture.getValueIsAdjusting()) {
+            majCurseur = true;
+            curseurRelecture.setValue(Math.max(0, lecteur.getPosition()));
+            majCurseur = false;
+        }
+        lblTempsRelecture.setText(duree(lecteur.getTemps()) + " / " + duree(lecteur.getDuree()));
+        boolean pause = lecteur.isPause();
+        btnLecture.setSelected(pause);
+        btnLecture.setText(pause ? "▶ Lecture" : "⏸ Pause");
+    }
+
+    // Fréquence de rafraîchissement de l'écran principal (60 si inconnue)
+    private static int frequenceEcran() {
+        try {
+            int f = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDisplayMode().getRefreshRate();
+            return f != DisplayMode.REFRESH_RATE_UNKNOWN ? f : 60;
+        } catch (HeadlessException e) {
+            return 60;
+        }
+    }
+
+    // Durée au format mm:ss (nanosecondes)
+    private static String duree(long nanos) {
+        long s = nanos / 1_000_000_000L;
+        return String.format("%02d:%02d", s / 60, s % 60);
+    }
+
     /**
      * Lance un scénario sur le serveur et bascule sur l'interface de jeu.
      */
     private void lancerScenario(int id) {
+        demarrer("SCENARIO:" + id);
+    }
+
+    /**
+     * Envoie la commande qui remplace la simulation du serveur (SCENARIO ou RESTORE) et bascule
+     * sur l'interface de jeu.
+     */
+    private void demarrer(String commande) {
         // Affiche 'Calc...' en attendant les premières données STATS
         lblMoyEnergie.setText("Calc...");
         lblMoyStress.setText("Calc...");
@@ -490,7 +762,8 @@ public class ClientInterface extends JFrame {
         lblNbMorts.setText("...");
         lblNbOccupes.setText("...");
 
-        envoyer("SCENARIO:" + id); // Envoie la commande de changement de scénario
+        envoyer(commande); // Envoie la commande de changement de scénario
+        historique.vider(); // Courbes du nouveau scénario uniquement
 
         // Réinitialisation de la vitesse à 2 (par défaut)
         speedSlider.setValue(2);
@@ -503,164 +776,136 @@ public class ClientInterface extends JFrame {
      * Envoie la commande d'arrêt au serveur et revient au menu.
      */
     private void retourMenu() {
-        envoyer("STOP"); // Envoie la commande d'arrêt de la simulation
+        if (lecteur != null) {
+            // Fin de relecture : retour à l'affichage en direct, sans commande au serveur
+            lecteur.arreter();
+            lecteur = null;
+            choisirSource(monde, false);
+        } else {
+            envoyer("STOP"); // Envoie la commande d'arrêt de la simulation
+        }
         cardLayout.show(mainContainer, "MENU");
     }
 
     /**
-     * Fonction utilitaire pour envoyer un message au serveur (via le PrintWriter out).
+     * Ouvre une session enregistrée et la rejoue (aucun serveur nécessaire).
      */
-    private void envoyer(String msg) {
-        if (out != null) out.println(msg);
+    private void ouvrirRelecture() {
+        JFileChooser choix = new JFileChooser(DOSSIER_SESSIONS.toFile());
+        choix.setFileFilter(new FileNameExtensionFilter("Sessions enregistrées (*.sma)", "sma"));
+        if (choix.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) return;
+        SessionReader session;
+        try {
+            session = new SessionReader(choix.getSelectedFile().toPath());
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(this, "Session illisible : " + e.getMessage(), "Relecture", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        lecteur = new ReplayPlayer(session, relecture);
+        majCurseur = true;
+        curseurRelecture.setMaximum(Math.max(0, session.getNbTrames() - 1));
+        curseurRelecture.setValue(0);
+        majCurseur = false;
+        choisirSource(relecture, true);
+        lecteur.demarrer();
+        cardLayout.show(mainContainer, "GAME");
     }
 
     /**
-     * Met à jour le contenu du tableau détaillé des statistiques des agents.
+     * Reprend sur le serveur la simulation d'un point de reprise. Les fichiers proposés sont ceux
+     * de Checkpoint.DOSSIER (-Dsma.reprises), le dossier du serveur lorsqu'il tourne au même endroit ;
+     * seul le nom est envoyé.
      */
-    private void updateTable() {
-        int newSize = agents.size();
+    private void ouvrirReprise() {
+        JFileChooser choix = new JFileChooser(Checkpoint.DOSSIER.toFile());
+        choix.setFileFilter(new FileNameExtensionFilter("Points de reprise (*" + Checkpoint.SUFFIXE + ")",
+                Checkpoint.SUFFIXE.substring(1)));
+        if (choix.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) return;
+        demarrer("RESTORE:" + choix.getSelectedFile().getName());
+    }
 
-        // Optimisation: ajuste le nombre de lignes du modèle si nécessaire
-        if (tableModel.getRowCount() != newSize) {
-            tableModel.setRowCount(newSize);
-        }
+    /** Demande au serveur un point de reprise de la simulation en cours, nommé d'après la date. */
+    private void demanderPointDeReprise() {
+        String nom = "reprise-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
+        envoyer("CHECKPOINT:" + nom);
+        lblEnregistrement.setText("Point de reprise demandé : " + nom);
+    }
 
-        // Remplissage des lignes avec les données de la liste 'agents'
-        for (int i = 0; i < newSize; i++) {
-            AgentInfo a = agents.get(i);
+    /** Lecture / pause ; en fin de session, la lecture reprend au début. */
+    private void basculerLecture() {
+        if (lecteur == null) return;
+        boolean pause = btnLecture.isSelected();
+        if (!pause && lecteur.getPosition() >= lecteur.getNbTrames() - 1) lecteur.allerA(0);
+        lecteur.setPause(pause);
+    }
 
-            tableModel.setValueAt(a.nom, i, 0);
-            tableModel.setValueAt((int)a.nrj, i, 1);
-            tableModel.setValueAt((int)a.stress, i, 2);
-            tableModel.setValueAt((int)a.arg, i, 3);
-            tableModel.setValueAt(a.etat, i, 4);
+    /** Affiche les trames du direct ou de la relecture, avec les contrôles correspondants. */
+    private void choisirSource(WorldSnapshot.Echange s, boolean enRelecture) {
+        source = s;
+        simulationPanel.setSource(s, enRelecture);
+        WorldSnapshot t = s.acquerir();
+        try {
+            premierNumero = t.numero;
+        } finally {
+            s.liberer();
         }
+        dernierNumeroAffiche = 0;
+        tramesAffichees = 0;
+        barreDirect.setVisible(!enRelecture);
+        barreRelecture.setVisible(enRelecture);
     }
 
-    // ========================================================================
-    // PANNEAU DE DESSIN (SimulationPanel)
-    // ========================================================================
     /**
-     * Classe interne gérant le rendu graphique de la carte de la ville.
+     * Démarre ou termine l'enregistrement des trames reçues dans un nouveau fichier de DOSSIER_SESSIONS.
      */
-    class SimulationPanel extends JPanel {
-        @Override
-        protected void paintComponent(Graphics g) {
-            super.paintComponent(g);
-            Graphics2D g2 = (Graphics2D) g;
-            // Active l'anti-aliasing pour un rendu plus lisse
-            g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-
-            // 1. Dessine la grille de fond
-            for (int x = 0; x < gridWidth; x++) {
-                for (int y = 0; y < gridHeight; y++) {
-                    g2.setColor(new Color(50, 50, 55)); // Couleur des cases
-                    g2.fillRect(x * CELL_SIZE, y * CELL_SIZE, CELL_SIZE, CELL_SIZE);
-                    g2.setColor(new Color(40, 40, 45)); // Couleur des lignes de grille
-                    g2.drawRect(x * CELL_SIZE, y * CELL_SIZE, CELL_SIZE, CELL_SIZE);
-                }
-            }
-
-            // Affiche un message d'attente si la connexion n'est pas établie
-            if (!connected) {
-                g2.setColor(Color.WHITE);
-                g2.setFont(new Font("Arial", Font.BOLD, 20));
-                g2.drawString("En attente du serveur Python...", 50, 50);
+    private void basculerEnregistrement(boolean actif) {
+        if (actif) {
+            String nom = "session-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")) + ".sma";
+            try {
+                enregistreur = SessionRecorder.ouvrir(DOSSIER_SESSIONS.resolve(nom));
+            } catch (IOException e) {
+                JOptionPane.showMessageDialog(this, "Enregistrement impossible : " + e.getMessage(), "Enregistrement", JOptionPane.ERROR_MESSAGE);
+                btnEnregistrer.setSelected(false);
                 return;
             }
-
-            // 2. DESSIN LIEUX
-            for (LieuInfo l : lieux) {
-                // Les coordonnées LieuInfo sont des positions de cases (entiers)
-                int x = (int) (l.x * CELL_SIZE);
-                int y = (int) (l.y * CELL_SIZE);
-                if (l.x >= gridWidth || l.y >= gridHeight) continue; // Évite de dessiner hors limites
-
-                Color color = Color.GRAY;
-                String emoji = "?";
-
-                // Détermine l'apparence en fonction du type de lieu
-                switch (l.type) {
-                    case "MAISON" -> { color = new Color(70, 70, 90); emoji = "🏠"; }
-                    case "TRAVAIL" -> { color = new Color(150, 80, 50); emoji = "🏢"; }
-                    case "PARC" -> { color = new Color(50, 120, 70); emoji = "🌳"; }
-                    case "LOISIR" -> { color = new Color(130, 50, 130); emoji = "🍿"; }
-                }
-
-                // Dessin du fond du lieu
-                g2.setColor(color);
-                g2.fillRect(x, y, CELL_SIZE, CELL_SIZE);
-                g2.setColor(color.darker());
-                g2.drawRect(x, y, CELL_SIZE, CELL_SIZE);
-
-                // Dessin de l'Emoji au centre de la case
-                g2.setColor(Color.WHITE);
-                g2.setFont(new Font("Segoe UI Emoji", Font.PLAIN, 20));
-                g2.drawString(emoji, x + 2, y + 24);
-
-                // Indicateur d'occupation (petit cercle bleu cyan)
-                if (l.occupe) {
-                    g2.setColor(Color.CYAN);
-                    g2.fillOval(x + 22, y + 2, 6, 6);
-                }
+            btnEnregistrer.setText("⏹ Arrêter (" + nom + ")");
+        } else {
+            SessionRecorder r = enregistreur;
+            enregistreur = null;
+            btnEnregistrer.setText("⏺ Enregistrer");
+            lblEnregistrement.setText(" ");
+            if (r != null) {
+                // Fin d'écriture hors de l'EDT (vidage des trames en attente)
+                new Thread(() -> {
+                    try { r.close(); } catch (IOException e) { System.out.println("Enregistrement : " + e.getMessage()); }
+                }, "Fin d'enregistrement").start();
             }
+        }
+        SnapshotReceiver rc = reception;
+        if (rc != null) rc.setEnregistreur(enregistreur);
+    }
 
-            // 3. DESSIN AGENTS
-            for (AgentInfo a : agents) {
-                if (a.x >= gridWidth || a.y >= gridHeight) continue;
-                // Coordonnées centrées de l'agent (milieu de la case)
-                int cx = (int) (a.x * CELL_SIZE) + CELL_SIZE / 2;
-                int cy = (int) (a.y * CELL_SIZE) + CELL_SIZE / 2;
-
-                // Dessin du FOV (Cône de vision)
-                int fovRadiusPixels = (int) (FOV_RADIUS_UNITS * CELL_SIZE);
-                int fovDiameterPixels = 2 * fovRadiusPixels;
-
-                // Angle de l'agent (en radians), converti pour le système de coordonnées Swing
-                double deg = Math.toDegrees(-a.ang);
-                double startAngle = deg - 30; // Début de l'arc (-30 degrés par rapport au centre)
-                double extentAngle = 60; // Ouverture de l'arc (60 degrés)
-
-                g2.setColor(new Color(255, 255, 255, 40)); // Cône blanc transparent
-                g2.fill(new Arc2D.Double(
-                        cx - fovRadiusPixels,
-                        cy - fovRadiusPixels,
-                        fovDiameterPixels,
-                        fovDiameterPixels,
-                        startAngle,
-                        extentAngle,
-                        Arc2D.PIE // Dessine un secteur de cercle
-                ));
-
-                // DÉTERMINATION COULEUR AGENT
-                Color bodyColor;
-                if (a.etat.equals("Mort")) {
-                    bodyColor = Color.BLACK;
-                } else if (a.etat.equals("Occupé")) {
-                    bodyColor = Color.GRAY; // Agent sur un lieu, en phase d'activité
-                } else {
-                    // Rouge si Énergie faible ou Stress élevé (état critique), sinon Vert
-                    bodyColor = (a.stress > 70 || a.nrj < 20) ? Color.RED : new Color(50, 200, 50);
-                }
+    /**
+     * Fonction utilitaire pour envoyer une commande au serveur : mise en file, sans jamais attendre
+     * la socket (voir CommandChannel). Ignorée hors connexion.
+     */
+    private void envoyer(String msg) {
+        commandes.envoyer(msg);
+    }
 
-                // Dessin du corps (cercle de 12x12 pixels)
-                g2.setColor(bodyColor);
-                g2.fillOval(cx - 6, cy - 6, 12, 12);
-
-                // Dessin du contour et du nom
-                g2.setColor(Color.WHITE);
-                g2.drawOval(cx - 6, cy - 6, 12, 12);
-                g2.setFont(new Font("Arial", Font.PLAIN, 10));
-                g2.drawString(a.nom, cx - 5, cy - 8);
-
-                // Marqueur si l'agent est mort
-                if (a.etat.equals("Mort")) {
-                    g2.setColor(Color.RED);
-                    g2.setFont(new Font("Arial", Font.BOLD, 10));
-                    g2.drawString("X", cx - 3, cy + 4);
-                }
-            }
+    /**
+     * Met à jour le contenu du tableau détaillé des statistiques des agents.
+     * Le modèle recopie les colonnes de la trame et émet un seul événement pour toute la trame.
+     */
+    private void updateTable() {
+        long debut = System.nanoTime();
+        WorldSnapshot t = source.acquerir();
+        try {
+            tableModel.mettreAJour(t);
+        } finally {
+            source.liberer();
         }
+        mesures.mesurer(ClientMetrics.Etape.TABLEAU, System.nanoTime() - debut);
     }
 
     // Point d'entrée de l'application
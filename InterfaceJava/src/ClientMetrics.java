@@ -0,0 +1,308 @@
+import com.sun.net.httpserver.HttpServer;
+
+import javax.management.MXBean;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Mesures de performance du client : durée de chaque étape du trajet d'une trame
+ * (réception, passage à l'EDT, dessin, tableau), délai entre une commande et son effet
+ * (voir {@link CommandChannel}) et compteurs du flux réseau.
+ *
+ * Chaque durée est rangée dans un histogramme à seaux log-linéaires (à la manière
+ * d'HdrHistogram : 64 seaux par puissance de deux, précision relative meilleure que 2 %,
+ * de 1 ns à 18 minutes) ; une mesure coûte un incrément atomique, sans allocation.
+ * Les mesures sont faites une fois par trame, jamais par agent.
+ *
+ * Trois lecteurs : la surimpression de SimulationPanel (dernière seconde, EDT), le point
+ * d'accès HTTP au format texte de Prometheus (-Dsma.metriques.port=n, sur l'interface
+ * locale uniquement) et le MXBean « SMA:type=ClientMetrics » (jconsole, VisualVM), ces deux
+ * derniers en cumul depuis le lancement.
+ */
+final class ClientMetrics {
+
+    /** Étapes mesurées, dans l'ordre du trajet d'une trame, puis délais des commandes. */
+    enum Etape {
+        ARRIVEE("inter_arrivee", "Intervalle trames"),
+        RECEPTION("reception", "Réception+décodage"),
+        FILE_EDT("file_edt", "Attente EDT"),
+        PEINTURE("peinture", "Dessin carte"),
+        TABLEAU("tableau", "Tableau agents"),
+        COMMANDE("commande", "Commande→ACK"),
+        SCENARIO("scenario", "SCENARIO→trame");
+
+        final String cle; // Étiquette exportée
+        final String libelle; // Affiché dans la surimpression
+
+        Etape(String cle, String libelle) {
+            this.cle = cle;
+            this.libelle = libelle;
+        }
+    }
+
+    /** Attributs exposés par JMX (noms en cumul depuis le lancement). */
+    @MXBean
+    public interface VueJmx {
+        long getOctetsRecus();
+        long getTramesRecues();
+        long getReconnexions();
+        long getLignesIgnorees();
+        long getDesynchronisations();
+        long getCommandesRejetees();
+        long getCommandesSansAcquittement();
+
+        /** Percentiles en millisecondes, par étape : « peinture.p99 » → 4,2. */
+        Map<String, Double> getPercentilesMs();
+    }
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+    private static final String[] NOMS_QUANTILES = {"p50", "p90", "p99", "p999"};
+    private static final long PERIODE_RESUME = 1_000_000_000L;
+
+    private final Histogramme[] histogrammes = new Histogramme[Etape.values().length];
+    final AtomicLong octetsRecus = new AtomicLong();
+    final AtomicLong tramesRecues = new AtomicLong();
+    final AtomicLong reconnexions = new AtomicLong();
+    final AtomicLong lignesIgnorees = new AtomicLong();
+    final AtomicLong desynchronisations = new AtomicLong();
+    final AtomicLong commandesRejetees = new AtomicLong(); // Hors connexion ou file pleine
+    final AtomicLong commandesSansAcquittement = new AtomicLong();
+
+    // Résumé de la dernière seconde pour la surimpression (EDT uniquement)
+    private final long[][] precedents = new long[histogrammes.length][];
+    private final long[] intervalle = new long[Histogramme.TAILLE];
+    private long dateResume = 0, octetsResume, tramesResume;
+    private String[] resume = {"Mesures : en attente..."};
+
+    private HttpServer http;
+
+    ClientMetrics() {
+        for (int i = 0; i < histogrammes.length; i++) {
+            histogrammes[i] = new Histogramme();
+            precedents[i] = new long[Histogramme.TAILLE];
+        }
+    }
+
+    /** Enregistre la durée d'une étape (n'importe quel thread). */
+    void mesurer(Etape e, long nanos) {
+        histogrammes[e.ordinal()].enregistrer(nanos);
+    }
+
+    // ========================================================================
+    // SURIMPRESSION (EDT)
+    // ========================================================================
+
+    /**
+     * Lignes de texte à afficher : percentiles et débits de la dernière seconde écoulée.
+     * Recalculées au plus une fois par seconde, le même tableau est rendu entre-temps.
+     */
+    String[] resume() {
+        long maintenant = System.nanoTime();
+        if (dateResume != 0 && maintenant - dateResume < PERIODE_RESUME) return resume;
+        double secondes = dateResume == 0 ? 1 : (maintenant - dateResume) / 1e9;
+        dateResume = maintenant;
+
+        String[] lignes = new String[histogrammes.length + 4];
+        lignes[0] = String.format("%-19s %8s %8s %8s %6s", "Dernière seconde", "p50", "p99", "max", "n");
+        for (int i = 0; i < histogrammes.length; i++) {
+            // Histogramme de l'intervalle : différence avec la copie précédente
+            long[] avant = precedents[i];
+            histogrammes[i].copierDans(intervalle);
+            long n = 0;
+            for (int k = 0; k < intervalle.length; k++) {
+                long c = intervalle[k];
+                intervalle[k] = c - avant[k];
+                avant[k] = c;
+                n += intervalle[k];
+            }
+            lignes[i + 1] = n == 0
+                    ? String.format("%-19s %8s %8s %8s %6d", Etape.values()[i].libelle, "-", "-", "-", 0)
+                    : String.format("%-19s %8s %8s %8s %6d", Etape.values()[i].libelle,
+                            ms(Histogramme.quantile(intervalle, n, 0.5)), ms(Histogramme.quantile(intervalle, n, 0.99)),
+                            ms(Histogramme.maximum(intervalle)), n);
+        }
+        long octets = octetsRecus.get(), trames = tramesRecues.get();
+        lignes[histogrammes.length + 1] = String.format("Flux : %.2f Mo/s, %.1f trames/s",
+                (octets - octetsResume) / secondes / (1 << 20), (trames - tramesResume) / secondes);
+        lignes[histogrammes.length + 2] = String.format("Reconnexions %d, lignes ignorées %d, resync %d",
+                reconnexions.get(), lignesIgnorees.get(), desynchronisations.get());
+        lignes[histogrammes.length + 3] = String.format("Commandes rejetées %d, sans ACK %d",
+                commandesRejetees.get(), commandesSansAcquittement.get());
+        octetsResume = octets;
+        tramesResume = trames;
+        resume = lignes;
+        return lignes;
+    }
+
+    private static String ms(long nanos) {
+        return String.format(Locale.ROOT, "%.2fms", nanos / 1e6);
+    }
+
+    // ========================================================================
+    // EXPORT (HTTP, JMX)
+    // ========================================================================
+
+    /** Sert GET /metrics sur 127.0.0.1:port (thread du serveur HTTP du JDK). */
+    void exposerHttp(int port) throws IOException {
+        http = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        http.createContext("/metrics", echange -> {
+            byte[] corps = prometheus().getBytes(StandardCharsets.UTF_8);
+            echange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            echange.sendResponseHeaders(200, corps.length);
+            try (OutputStream o = echange.getResponseBody()) {
+                o.write(corps);
+            }
+        });
+        http.start();
+    }
+
+    /** Publie les mesures dans le serveur MBean de la plateforme. */
+    void exposerJmx() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new Jmx(), new ObjectName("SMA:type=ClientMetrics"));
+        } catch (Exception e) {
+            System.out.println("Mesures JMX indisponibles : " + e.getMessage());
+        }
+    }
+
+    void arreter() {
+        if (http != null) http.stop(0);
+    }
+
+    /** Compteurs et résumés des durées (secondes) au format texte de Prometheus. */
+    String prometheus() {
+        StringBuilder sb = new StringBuilder(2048);
+        compteur(sb, "octets_recus_total", "Octets lus sur la connexion au serveur", octetsRecus.get());
+        compteur(sb, "trames_recues_total", "Trames complètes publiées", tramesRecues.get());
+        compteur(sb, "reconnexions_total", "Reconnexions au serveur", reconnexions.get());
+        compteur(sb, "lignes_ignorees_total", "Lignes mal formées ignorées par l'analyseur", lignesIgnorees.get());
+        compteur(sb, "desynchronisations_total", "Trames delta incohérentes (RESYNC)", desynchronisations.get());
+        compteur(sb, "commandes_rejetees_total", "Commandes abandonnées (hors connexion, file pleine)", commandesRejetees.get());
+        compteur(sb, "commandes_sans_acquittement_total", "Commandes restées sans ACK", commandesSansAcquittement.get());
+
+        sb.append("# HELP sma_client_duree_secondes Durée de chaque étape d'une trame, délai des commandes\n");
+        sb.append("# TYPE sma_client_duree_secondes summary\n");
+        long[] copie = new long[Histogramme.TAILLE];
+        for (Etape e : Etape.values()) {
+            Histogramme h = histogrammes[e.ordinal()];
+            long n = h.copierDans(copie);
+            for (double q : QUANTILES) {
+                double v = n == 0 ? Double.NaN : Histogramme.quantile(copie, n, q) / 1e9;
+                sb.append("sma_client_duree_secondes{etape=\"").append(e.cle).append("\",quantile=\"").append(q)
+                        .append("\"} ").append(v).append('\n');
+            }
+            sb.append("sma_client_duree_secondes_sum{etape=\"").append(e.cle).append("\"} ").append(h.somme() / 1e9).append('\n');
+            sb.append("sma_client_duree_secondes_count{etape=\"").append(e.cle).append("\"} ").append(n).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static void compteur(StringBuilder sb, String nom, String aide, long valeur) {
+        sb.append("# HELP sma_client_").append(nom).append(' ').append(aide).append('\n');
+        sb.append("# TYPE sma_client_").append(nom).append(" counter\n");
+        sb.append("sma_client_").append(nom).append(' ').append(valeur).append('\n');
+    }
+
+    // Vue JMX des mesures (appelée sur les threads de JMX)
+    private final class Jmx implements VueJmx {
+        @Override public long getOctetsRecus() { return octetsRecus.get(); }
+        @Override public long getTramesRecues() { return tramesRecues.get(); }
+        @Override public long getReconnexions() { return reconnexions.get(); }
+        @Override public long getLignesIgnorees() { return lignesIgnorees.get(); }
+        @Override public long getDesynchronisations() { return desynchronisations.get(); }
+        @Override public long getCommandesRejetees() { return commandesRejetees.get(); }
+        @Override public long getCommandesSansAcquittement() { return commandesSansAcquittement.get(); }
+
+        @Override
+        public Map<String, Double> getPercentilesMs() {
+            Map<String, Double> m = new LinkedHashMap<>();
+            long[] copie = new long[Histogramme.TAILLE];
+            for (Etape e : Etape.values()) {
+                long n = histogrammes[e.ordinal()].copierDans(copie);
+                if (n == 0) continue;
+                for (int q = 0; q < QUANTILES.length; q++) {
+                    m.put(e.cle + "." + NOMS_QUANTILES[q], Histogramme.quantile(copie, n, QUANTILES[q]) / 1e6);
+                }
+                m.put(e.cle + ".max", Histogramme.maximum(copie) / 1e6);
+            }
+            return m;
+        }
+    }
+
+    // ========================================================================
+    // HISTOGRAMME
+    // ========================================================================
+
+    /**
+     * Histogramme de durées (ns) : valeurs exactes sous 128, puis 64 seaux de même largeur
+     * par puissance de deux. Écriture par incrément atomique depuis n'importe quel thread ;
+     * une copie peut être légèrement incohérente avec une écriture concurrente (sans gravité).
+     */
+    static final class Histogramme {
+        private static final int BITS = 6; // 2^BITS seaux par puissance de deux
+        private static final long VALEUR_MAX = (1L << 40) - 1; // ~18 minutes
+        static final int TAILLE = index(VALEUR_MAX) + 1;
+
+        private final AtomicLongArray comptes = new AtomicLongArray(TAILLE);
+        private final AtomicLong somme = new AtomicLong();
+
+        void enregistrer(long nanos) {
+            long v = Math.max(0, Math.min(VALEUR_MAX, nanos));
+            comptes.incrementAndGet(index(v));
+            somme.addAndGet(v);
+        }
+
+        long somme() {
+            return somme.get();
+        }
+
+        /** Recopie les comptes et renvoie leur total. */
+        long copierDans(long[] dest) {
+            long n = 0;
+            for (int i = 0; i < TAILLE; i++) n += dest[i] = comptes.get(i);
+            return n;
+        }
+
+        static int index(long v) {
+            if (v < (2L << BITS)) return (int) v;
+            int e = 63 - Long.numberOfLeadingZeros(v) - BITS; // Décalage : garde BITS + 1 bits significatifs
+            return (e << BITS) + (int) (v >>> e);
+        }
+
+        // Plus grande valeur rangée dans le seau i
+        static long borneHaute(int i) {
+            if (i < (2 << BITS)) return i;
+            int e = (i >>> BITS) - 1;
+            long m = i - ((long) e << BITS);
+            return ((m + 1) << e) - 1;
+        }
+
+        /** Plus petite valeur v telle qu'une proportion q des comptes soit <= v (à la largeur du seau près). */
+        static long quantile(long[] comptes, long total, double q) {
+            long rang = Math.max(1, (long) Math.ceil(q * total));
+            long cumul = 0;
+            for (int i = 0; i < comptes.length; i++) {
+                cumul += comptes[i];
+                if (cumul >= rang) return borneHaute(i);
+            }
+            return borneHaute(comptes.length - 1);
+        }
+
+        static long maximum(long[] comptes) {
+            for (int i = comptes.length - 1; i >= 0; i--) {
+                if (comptes[i] != 0) return borneHaute(i);
+            }
+            return 0;
+        }
+    }
+}
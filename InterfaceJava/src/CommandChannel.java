@@ -0,0 +1,221 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Canal des commandes vers le serveur (SCENARIO, SPEED, STOP, PROTO, RESYNC, CHECKPOINT,
+ * RESTORE), sans jamais bloquer l'appelant : les commandes sont mises en file et écrites sur
+ * la socket par un thread dédié. L'EDT peut donc envoyer une commande même si le serveur ne lit plus.
+ *
+ * Format : une commande par ligne, suivie de son numéro de requête (« SCENARIO:3:17 »,
+ * « STOP:18 »). Un serveur d'avant les numéros lit toujours le nom et l'argument aux mêmes
+ * places et ignore le reste. Le serveur répond ACK;17 (ou MSG_ACK en binaire) juste avant
+ * la première trame qui reflète la commande : le délai commande → acquittement mesure donc
+ * le délai commande → effet. Pour SCENARIO et RESTORE, le délai jusqu'à la publication de la
+ * première trame du nouveau scénario est mesuré à part.
+ *
+ * Un SPEED encore en file est remplacé par le suivant (curseur déplacé en continu). Hors
+ * connexion ou file pleine, la commande est abandonnée, comme avant avec un PrintWriter nul.
+ */
+final class CommandChannel {
+
+    static final int FILE_MAX = 64;
+    private static final long DELAI_ACQUITTEMENT = TimeUnit.SECONDS.toNanos(10); // Au-delà : sans réponse
+
+    /** Ligne de commande décodée ; id = 0 pour une commande sans numéro (ancien client). */
+    record Commande(String nom, String argument, int id) {
+
+        /** Décode « NOM[:argument][:id] » (nombre d'arguments fixé par la commande). */
+        static Commande lire(String ligne) {
+            String[] parts = ligne.trim().split(":");
+            String nom = parts[0].trim();
+            int nbArguments = nom.equals("STOP") || nom.equals("RESYNC") ? 0 : 1;
+            String argument = nbArguments > 0 && parts.length > 1 ? parts[1].trim() : null;
+            int id = 0;
+            if (parts.length > 1 + nbArguments) {
+                try {
+                    id = Integer.parseInt(parts[1 + nbArguments].trim());
+                } catch (NumberFormatException ignore) {
+                    // Numéro illisible : commande exécutée sans acquittement
+                }
+            }
+            return new Commande(nom, argument, id);
+        }
+
+        String ligne() {
+            return (argument == null ? nom : nom + ":" + argument) + ":" + id + "\n";
+        }
+    }
+
+    // Commande écrite, en attente de son acquittement
+    private record EnAttente(Commande commande, long date) {}
+
+    private final ClientMetrics mesures; // Optionnel
+    private final AtomicInteger prochainId = new AtomicInteger(1);
+    private final ArrayList<EnAttente> file = new ArrayList<>(); // Non encore écrites (sous 'this')
+    private final Map<Integer, EnAttente> enAttente = new ConcurrentHashMap<>();
+    private WritableByteChannel canal; // Sous 'this' ; null hors connexion
+    private volatile EnAttente scenarioAcquitte; // SCENARIO acquitté, en attente de sa première trame
+
+    CommandChannel(ClientMetrics mesures) {
+        this.mesures = mesures;
+        Thread ecrivain = new Thread(this::boucle, "Commandes");
+        ecrivain.setDaemon(true);
+        ecrivain.start();
+    }
+
+    /** Nouvelle connexion : les commandes suivantes y seront écrites. */
+    synchronized void connecter(WritableByteChannel c) {
+        canal = c;
+        file.clear();
+        enAttente.clear();
+        scenarioAcquitte = null;
+    }
+
+    /** Connexion perdue : les commandes en file sont abandonnées. */
+    synchronized void deconnecter() {
+        canal = null;
+        file.clear();
+        enAttente.clear();
+    }
+
+    /**
+     * Met en file une commande (« SPEED:3 », « STOP »), sans attendre.
+     * @return son numéro de requête, ou 0 si elle est abandonnée (hors connexion, file pleine)
+     */
+    int envoyer(String texte) {
+        Commande lue = Commande.lire(texte);
+        Commande c = new Commande(lue.nom(), lue.argument(), prochainId.getAndIncrement());
+        EnAttente e = new EnAttente(c, System.nanoTime());
+        synchronized (this) {
+            if (canal == null) return rejeter();
+            if (c.nom().equals("SPEED")) {
+                for (int i = 0; i < file.size(); i++) {
+                    if (file.get(i).commande().nom().equals("SPEED")) {
+                        file.set(i, e); // Même place dans la file : l'ordre avec SCENARIO est conservé
+                        return c.id();
+                    }
+                }
+            }
+            if (file.size() >= FILE_MAX) return rejeter();
+            file.add(e);
+            notifyAll();
+        }
+        return c.id();
+    }
+
+    private int rejeter() {
+        if (mesures != null) mesures.commandesRejetees.incrementAndGet();
+        return 0;
+    }
+
+    /**
+     * Acquittement reçu du serveur (thread réseau) : mesure le délai depuis l'envoi.
+     * @return la commande acquittée, ou null si elle n'est plus attendue
+     */
+    Commande acquitter(int id) {
+        EnAttente e = enAttente.remove(id);
+        if (e == null) return null;
+        if (mesures != null) mesures.mesurer(ClientMetrics.Etape.COMMANDE, System.nanoTime() - e.date());
+        String nom = e.commande().nom();
+        if (nom.equals("SCENARIO") || nom.equals("RESTORE")) scenarioAcquitte = e;
+        return e.commande();
+    }
+
+    /** Une trame vient d'être publiée (thread réseau) : effet visible d'un SCENARIO acquitté. */
+    void surPublication() {
+        EnAttente e = scenarioAcquitte;
+        if (e == null) return;
+        scenarioAcquitte = null;
+        if (mesures != null) mesures.mesurer(ClientMetrics.Etape.SCENARIO, System.nanoTime() - e.date());
+    }
+
+    // ========================================================================
+    // THREAD D'ÉCRITURE
+    // ========================================================================
+
+    private void boucle() {
+        while (true) {
+            EnAttente e;
+            WritableByteChannel c;
+            synchronized (this) {
+                while (file.isEmpty() || canal == null) {
+                    try {
+                        wait(TimeUnit.NANOSECONDS.toMillis(DELAI_ACQUITTEMENT) / 10);
+                    } catch (InterruptedException ex) {
+                        return;
+                    }
+                    expirer();
+                }
+                e = file.remove(0);
+                c = canal;
+            }
+            enAttente.put(e.commande().id(), e);
+            try {
+                ByteBuffer octets = ByteBuffer.wrap(e.commande().ligne().getBytes(StandardCharsets.UTF_8));
+                while (octets.hasRemaining()) c.write(octets); // Seul ce thread attend un serveur lent
+            } catch (IOException ex) {
+                enAttente.remove(e.commande().id());
+                rejeter(); // La boucle réseau constatera la déconnexion
+            }
+        }
+    }
+
+    // Commandes restées sans acquittement (serveur sans numéros de requête, ou commande perdue)
+    private void expirer() {
+        long limite = System.nanoTime() - DELAI_ACQUITTEMENT;
+        for (Iterator<EnAttente> it = enAttente.values().iterator(); it.hasNext(); ) {
+            if (it.next().date() - limite < 0) {
+                it.remove();
+                if (mesures != null) mesures.commandesSansAcquittement.incrementAndGet();
+            }
+        }
+    }
+
+    // ========================================================================
+    // CÔTÉ SERVEUR
+    // ========================================================================
+
+    /**
+     * Acquittements d'un client, côté serveur Java : ajoutés par le thread d'écoute, confiés
+     * à l'encodeur par le thread d'envoi devant la première trame qui reflète la commande
+     * (pour SCENARIO, la première trame de la génération suivante).
+     */
+    static final class Acquittements {
+        private final ConcurrentLinkedQueue<long[]> file = new ConcurrentLinkedQueue<>(); // {id, génération minimale}
+
+        /** Commande appliquée : acquittement à envoyer dès que 'generation' est atteinte. */
+        void ajouter(int id, long generation) {
+            if (id != 0) file.add(new long[]{id, generation});
+        }
+
+        /** Vrai si un acquittement est à transmettre à la génération donnée. */
+        boolean pret(long generation) {
+            for (long[] a : file) {
+                if (a[1] <= generation) return true;
+            }
+            return false;
+        }
+
+        /** Confie à l'encodeur les acquittements dont l'effet est visible ; vrai s'il y en a eu. */
+        boolean transmettre(FrameEncoder encodeur, long generation) {
+            boolean transmis = false;
+            for (Iterator<long[]> it = file.iterator(); it.hasNext(); ) {
+                long[] a = it.next();
+                if (a[1] > generation) continue;
+                it.remove();
+                encodeur.acquitter((int) a[0]);
+                transmis = true;
+            }
+            return transmis;
+        }
+    }
+}
@@ -0,0 +1,258 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Map;
+
+/**
+ * Serveur de simulation Java : remplace serveur_socket.py sur le port 5001 avec le même
+ * protocole (CONFIG / lieux / AGENT / STATS / END, négociation PROTO:2 et PROTO:3, RESYNC)
+ * et les mêmes commandes (SCENARIO:n, SPEED:v, STOP), plus CHECKPOINT:nom et RESTORE:nom pour
+ * écrire ou reprendre un point de reprise ({@link Checkpoint}, dans -Dsma.reprises=dossier).
+ * ClientInterface s'y connecte sans modification. Une commande numérotée (voir
+ * {@link CommandChannel}) est acquittée juste avant la première trame qui la reflète (pour
+ * SCENARIO et RESTORE, la première du nouveau scénario).
+ *
+ * La simulation tourne dans {@link SimulationEngine} et publie chaque pas dans un
+ * {@link WorldSnapshot.Echange} ; chaque client a son propre encodeur et ne tient le verrou
+ * de l'instantané que le temps d'encoder la trame, l'écriture sur le socket se fait après.
+ *
+ * Lancement : java EngineServer [graine] (-Dsma.config=chemin/config_scenarios.Json,
+ * -Dsma.threads=n pour limiter le nombre de threads de calcul, -Dsma.periodeEnvoi=ms pour
+ * espacer les trames : le client interpole les agents entre deux trames, -Dsma.acteurs=pool,
+ * plateforme ou virtuel pour un acteur par agent, voir {@link ActorRuntime}, -Dsma.reprise=fichier
+ * pour démarrer sur un point de reprise au lieu du scénario 1).
+ *
+ * Le même serveur sert une ville répartie entre plusieurs processus : voir {@link ShardCoordinator}.
+ */
+final class EngineServer {
+
+    static final String HOST = "127.0.0.1";
+    static final int PORT = 5001;
+    private static final long PERIODE_ENVOI_MS = Math.max(1, Long.getLong("sma.periodeEnvoi", 50)); // ~20 FPS pour le client
+
+    /** Simulation servie aux clients, qui publie ses trames dans {@link #getMonde()}. */
+    interface Moteur {
+        void commanderScenario(String id);
+
+        void commanderArret();
+
+        void commanderVitesse(String v);
+
+        boolean isEnCours();
+
+        /** Incrémenté à la première trame publiée de chaque scénario. */
+        long getGeneration();
+
+        /** Ville courante (dimensions de la ligne CONFIG) ; null avant le premier scénario. */
+        City getVille();
+
+        /** CHECKPOINT:nom -- écrit un point de reprise sans interrompre la simulation ; false si non géré. */
+        default boolean commanderPointDeReprise(Path fichier) {
+            return false;
+        }
+
+        /** RESTORE:nom -- reprend un point de reprise (nouvelle génération) ; false s'il n'a pas pu être relu. */
+        default boolean commanderReprise(Path fichier) {
+            return false;
+        }
+    }
+
+    private final Moteur moteur;
+    private final WorldSnapshot.Echange monde = new WorldSnapshot.Echange();
+
+    EngineServer(Moteur moteur) {
+        this.moteur = moteur;
+    }
+
+    WorldSnapshot.Echange getMonde() {
+        return monde;
+    }
+
+    public static void main(String[] args) throws IOException {
+        long graine = args.length > 0 ? Long.parseLong(args[0]) : System.nanoTime();
+        int threads = Integer.getInteger("sma.threads", Runtime.getRuntime().availableProcessors());
+        Map<String, ScenarioConfig> scenarios = ScenarioConfig.charger();
+        String modeActeurs = System.getProperty("sma.acteurs");
+        ActorRuntime acteurs = modeActeurs == null ? null : new ActorRuntime(ActorRuntime.mode(modeActeurs), threads);
+        SimulationEngine moteur = new SimulationEngine(scenarios, graine, threads, acteurs);
+
+        // Démarrage automatique du scénario 1 (ou du point de reprise donné) pour une exécution immédiate
+        String reprise = System.getProperty("sma.reprise");
+        if (reprise == null || !moteur.commanderReprise(Path.of(reprise))) moteur.commanderScenario("1");
+        EngineServer serveur = new EngineServer(moteur);
+        moteur.demarrer(serveur.monde);
+        System.out.println("Serveur Java lancé sur " + PORT + " (Simu S1 auto, " + threads + " threads"
+                + (acteurs != null ? ", acteurs " + acteurs.getMode() : "") + ").");
+        serveur.ecouter();
+    }
+
+    /** Boucle d'acceptation : un thread d'envoi et un thread d'écoute des commandes par client. */
+    void ecouter() throws IOException {
+        try (ServerSocket s = new ServerSocket()) {
+            s.setReuseAddress(true);
+            s.bind(new InetSocketAddress(InetAddress.getByName(HOST), PORT));
+            while (true) {
+                Socket conn = s.accept();
+                conn.setTcpNoDelay(true);
+                Thread t = new Thread(new Client(conn), "client-" + conn.getPort());
+                t.setDaemon(true);
+                t.start();
+            }
+        }
+    }
+
+    /** Connexion d'un client (équivalent de client_handler). */
+    private final class Client implements Runnable {
+        private final Socket conn;
+        private final FrameEncoder encodeur = new FrameEncoder();
+
+        // Demandes reçues par le thread d'écoute, appliquées par le thread d'envoi
+        private volatile int protoDemande = 0;
+        private volatile boolean resync = false;
+        private final CommandChannel.Acquittements acquittements = new CommandChannel.Acquittements();
+
+        Client(Socket conn) {
+            this.conn = conn;
+        }
+
+        @Override
+        public void run() {
+            System.out.println("Client connecté.");
+            Thread ecoute = new Thread(this::ecouterCommandes, "commandes-" + conn.getPort());
+            ecoute.setDaemon(true);
+            ecoute.start();
+            try (conn) {
+                envoyer();
+            } catch (IOException e) {
+                System.out.println("Client déconnecté (envoi) : " + e.getMessage());
+            }
+        }
+
+        // Point de reprise nommé par le client, null (et message) si le nom est refusé
+        private Path fichierReprise(String nom) {
+            try {
+                return Checkpoint.fichier(nom);
+            } catch (IllegalArgumentException e) {
+                System.out.println("Commande refusée : " + e.getMessage());
+                return null;
+            }
+        }
+
+        // Thread d'écoute des commandes (SCENARIO, STOP, SPEED, PROTO, RESYNC, CHECKPOINT, RESTORE), une par ligne
+        private void ecouterCommandes() {
+            try {
+                BufferedReader in = new BufferedReader(new InputStreamReader(conn.getInputStream(), StandardCharsets.UTF_8));
+                String ligne;
+                while ((ligne = in.readLine()) != null) {
+                    CommandChannel.Commande c = CommandChannel.Commande.lire(ligne);
+                    long effet = 0; // Génération à partir de laquelle la commande est visible
+                    switch (c.nom()) {
+                        case "SCENARIO" -> {
+                            if (c.argument() == null) continue;
+                            effet = moteur.getGeneration() + 1;
+                            moteur.commanderScenario(c.argument());
+                        }
+                        case "STOP" -> moteur.commanderArret();
+                        case "SPEED" -> { if (c.argument() != null) moteur.commanderVitesse(c.argument()); }
+                        case "PROTO" -> {
+                            int v;
+                            try {
+                                v = Integer.parseInt(c.argument());
+                            } catch (RuntimeException e) {
+                                v = FrameParser.PROTO_TEXTE;
+                            }
+                            protoDemande = v;
+                        }
+                        case "RESYNC" -> resync = true;
+                        case "CHECKPOINT" -> {
+                            Path f = fichierReprise(c.argument());
+                            if (f != null && !moteur.commanderPointDeReprise(f)) {
+                                System.out.println("Points de reprise non gérés par ce moteur.");
+                            }
+                        }
+                        case "RESTORE" -> {
+                            Path f = fichierReprise(c.argument());
+                            if (f != null && moteur.commanderReprise(f)) effet = moteur.getGeneration() + 1;
+                        }
+                        default -> { continue; } // Commande inconnue : ignorée
+                    }
+                    acquittements.ajouter(c.id(), effet);
+                }
+            } catch (IOException e) {
+                System.out.println("Erreur/Déconnexion client (écoute): " + e.getMessage());
+            }
+            try { conn.close(); } catch (IOException ignored) {}
+        }
+
+        private void envoyer() throws IOException {
+            OutputStream out = conn.getOutputStream();
+            long generation = -1;
+            long dernierNumero = -1;
+            boolean config = true; // Configuration initiale dès la connexion
+
+            while (!conn.isClosed()) {
+                ByteBuffer octets = null;
+                City ville = moteur.getVille();
+                if (ville != null) {
+                    // Acquittements d'abord : les demandes qu'ils couvrent sont déjà visibles ci-dessous
+                    long g = moteur.getGeneration();
+                    acquittements.transmettre(encodeur, g);
+                    int v = protoDemande;
+                    if (v != 0) {
+                        protoDemande = 0;
+                        encodeur.setProto(v);
+                        config = true; // La réponse (CONFIG avec version) précède la trame suivante
+                    }
+                    if (resync) {
+                        resync = false;
+                        encodeur.demanderKeyframe();
+                    }
+                    if (g != generation && generation >= 0) {
+                        // Nouveau scénario : nouvelle grille et trame complète
+                        config = true;
+                        encodeur.demanderKeyframe();
+                    }
+                    generation = g;
+
+                    if (moteur.isEnCours()) {
+                        WorldSnapshot t = monde.acquerir();
+                        try {
+                            if (t.numero != dernierNumero || config) {
+                                dernierNumero = t.numero;
+                                octets = encodeur.encoder(t.numero > 0 ? t : null, ville.largeur, ville.hauteur, config);
+                                config = false;
+                            }
+                        } finally {
+                            monde.liberer();
+                        }
+                    } else if (config && encodeur.getProto() < FrameParser.PROTO_BINAIRE) {
+                        octets = encodeur.encoder(null, ville.largeur, ville.hauteur, true);
+                        config = false;
+                    }
+                    // Simulation arrêtée (STOP) : les acquittements partent seuls
+                    if (octets == null && encodeur.aDesAcquittements()) {
+                        octets = encodeur.encoder(null, ville.largeur, ville.hauteur, false);
+                    }
+                }
+                if (octets != null && octets.hasRemaining()) {
+                    out.write(octets.array(), octets.arrayOffset() + octets.position(), octets.remaining());
+                    out.flush();
+                }
+                try {
+                    Thread.sleep(PERIODE_ENVOI_MS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,494 @@
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Relais de diffusion : un seul client de la simulation (serveur Python, EngineServer ou
+ * LoadServer) en amont, autant de tableaux de bord que voulu en aval, chacun avec son protocole.
+ *
+ * En amont, le relais se comporte comme ClientInterface (négociation PROTO, FrameParser puis
+ * BinaryFrameDecoder, {@link SnapshotReceiver}). Les commandes SCENARIO, SPEED et STOP des
+ * abonnés sont transmises à la simulation ; PROTO et RESYNC sont traités par le relais.
+ * Les commandes numérotées sont renumérotées vers l'amont (un {@link CommandChannel}, qui
+ * n'attend jamais la simulation sur le thread du sélecteur) et l'acquittement de la
+ * simulation est rendu à l'abonné qui a envoyé la commande, sous son propre numéro.
+ *
+ * Chaque trame reçue est encodée une seule fois par protocole utilisé en aval (au plus trois
+ * encodages, quel que soit le nombre d'abonnés), dans un tampon partagé que tous les abonnés
+ * écrivent sans copie (chacun sa position). Un abonné qui vient d'arriver, qui a changé de
+ * protocole, demandé RESYNC ou perdu des trames reçoit à la place une trame complète de même
+ * numéro ({@link FrameEncoder#encoderCle}), elle aussi encodée au plus une fois par trame.
+ *
+ * Les écritures se font sur un seul thread (sélecteur NIO, sockets non bloquantes). Chaque
+ * abonné a une file bornée : s'il a déjà {@link #FILE_MAX} trames en attente, elles sont
+ * abandonnées et il repart de la trame la plus récente, sous forme complète. Un abonné lent
+ * ne retient donc ni la réception amont ni les autres abonnés.
+ *
+ * Lancement : java FanoutServer (-Dsma.amont=hôte:port, défaut 127.0.0.1:5001 ;
+ * -Dsma.diffusion.port=n, défaut 5002 ; -Dsma.diffusion.protoAmont=n, défaut 3).
+ * Les clients s'y connectent avec java -Dsma.port=5002 ClientInterface.
+ */
+final class FanoutServer {
+
+    static final int PORT_DIFFUSION = 5002;
+    static final int FILE_MAX = 2; // Trames en attente par abonné avant de sauter à la plus récente
+
+    private static final long PERIODE_RAPPORT_NS = TimeUnit.SECONDS.toNanos(1);
+    private static final long DELAI_ROUTE_NS = TimeUnit.SECONDS.toNanos(10); // Commande amont jamais acquittée
+
+    private final String hoteAmont;
+    private final int portAmont, protoAmont, port;
+
+    // --- Amont ---
+    private final WorldSnapshot.Echange monde = new WorldSnapshot.Echange();
+    private volatile int largeur, hauteur;
+    private volatile long grille = 0; // Incrémenté à chaque ligne CONFIG reçue
+    private final CommandChannel amont = new CommandChannel(null); // Commandes vers la simulation
+    private final Map<Integer, Route> routes = new HashMap<>(); // Numéro amont -> abonné et numéro d'origine (sous 'routes')
+    private final Object signal = new Object();
+    private long publiees = 0; // Trames publiées par l'amont (sous 'signal')
+    private boolean acquittementsNouveaux = false; // Acquittements à envoyer sans attendre de trame (sous 'signal')
+
+    // --- Aval ---
+    private final CopyOnWriteArrayList<Abonne> abonnes = new CopyOnWriteArrayList<>();
+    private final ConcurrentLinkedQueue<Abonne> aEcrire = new ConcurrentLinkedQueue<>();
+    private final Selector selecteur;
+
+    // Thread de diffusion : un encodeur partagé par protocole (indice = version), trame locale
+    private final FrameEncoder[] flux = new FrameEncoder[FrameParser.PROTO_BINAIRE + 1];
+    private final WorldSnapshot trame = new WorldSnapshot();
+    private final AtomicLong diffusees = new AtomicLong(), encodages = new AtomicLong();
+
+    FanoutServer(String hoteAmont, int portAmont, int protoAmont, int port) throws IOException {
+        this.hoteAmont = hoteAmont;
+        this.portAmont = portAmont;
+        this.protoAmont = protoAmont;
+        this.port = port;
+        selecteur = Selector.open();
+    }
+
+    public static void main(String[] args) throws IOException {
+        String[] amont = System.getProperty("sma.amont", EngineServer.HOST + ":" + EngineServer.PORT).split(":");
+        FanoutServer relais = new FanoutServer(amont[0], Integer.parseInt(amont[1]),
+                Integer.getInteger("sma.diffusion.protoAmont", FrameParser.PROTO_BINAIRE),
+                Integer.getInteger("sma.diffusion.port", PORT_DIFFUSION));
+
+        Thread t = new Thread(relais::boucleAmont, "amont");
+        t.setDaemon(true);
+        t.start();
+        t = new Thread(relais::boucleDiffusion, "diffusion");
+        t.setDaemon(true);
+        t.start();
+        System.out.println("Relais de diffusion sur " + relais.port + " (amont " + relais.hoteAmont + ":" + relais.portAmont + ").");
+        relais.ecouter();
+    }
+
+    // ========================================================================
+    // AMONT : RÉCEPTION DES TRAMES DE LA SIMULATION
+    // ========================================================================
+
+    private void boucleAmont() {
+        while (true) {
+            boolean connecte = false;
+            try (SocketChannel s = SocketChannel.open(new InetSocketAddress(hoteAmont, portAmont))) {
+                connecte = true;
+                amont.connecter(s);
+                System.out.println("Connecté à la simulation.");
+                amont.envoyer("PROTO:" + protoAmont);
+
+                monde.ecriture().vider();
+                SnapshotReceiver reception = new SnapshotReceiver(monde, new SnapshotReceiver.Ecouteur() {
+                    @Override
+                    public void onGrille(int l, int h) {
+                        largeur = l;
+                        hauteur = h;
+                        grille++; // Seul écrivain : le thread amont
+                    }
+
+                    @Override
+                    public void onDesynchronisation() {
+                        amont.envoyer("RESYNC");
+                    }
+
+                    @Override
+                    public void onAcquittement(int id) {
+                        amont.acquitter(id);
+                        Route r;
+                        synchronized (routes) {
+                            r = routes.remove(id);
+                        }
+                        if (r != null) acquitter(r.abonne(), r.id());
+                    }
+
+                    @Override
+                    public void onPublication() {
+                        synchronized (signal) {
+                            publiees++;
+                            signal.notifyAll();
+                        }
+                    }
+                });
+                FrameParser parser = new FrameParser(s.socket().getInputStream(), reception);
+                parser.boucle();
+                if (parser.isBasculeBinaire()) new BinaryFrameDecoder(s, reception).boucle(parser.restants());
+            } catch (IOException e) {
+                if (connecte) System.out.println("Simulation déconnectée : " + e.getMessage());
+            }
+            amont.deconnecter();
+            synchronized (routes) {
+                routes.clear();
+            }
+            try {
+                Thread.sleep(1000); // Nouvelle tentative de connexion
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    // ========================================================================
+    // DIFFUSION : UN ENCODAGE PAR PROTOCOLE ET PAR TRAME
+    // ========================================================================
+
+    private void boucleDiffusion() {
+        long vues = 0, prochainRapport = System.nanoTime() + PERIODE_RAPPORT_NS;
+        while (true) {
+            boolean nouvelle;
+            synchronized (signal) {
+                try {
+                    if (publiees == vues && !acquittementsNouveaux) signal.wait(TimeUnit.NANOSECONDS.toMillis(PERIODE_RAPPORT_NS));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                nouvelle = publiees != vues;
+                vues = publiees;
+                acquittementsNouveaux = false;
+            }
+            if (nouvelle) {
+                diffuser();
+            } else {
+                // Sans nouvelle trame (simulation arrêtée) : les acquittements partent seuls
+                int l = largeur, h = hauteur;
+                for (Abonne a : abonnes) transmettreAcquittements(a, l, h);
+                selecteur.wakeup();
+            }
+            if (System.nanoTime() >= prochainRapport) {
+                rapport();
+                prochainRapport += PERIODE_RAPPORT_NS;
+            }
+        }
+    }
+
+    private void diffuser() {
+        // Copie locale : l'amont n'attend pas la fin des encodages pour publier la trame suivante
+        WorldSnapshot t = monde.acquerir();
+        try {
+            trame.copierDepuis(t);
+        } finally {
+            monde.liberer();
+        }
+        int l = largeur, h = hauteur;
+        long g = grille;
+
+        boolean[] utilise = new boolean[flux.length];
+        for (Abonne a : abonnes) {
+            // Acquittements d'abord : les demandes qu'ils couvrent sont appliquées juste après
+            transmettreAcquittements(a, l, h);
+            a.appliquerDemandes();
+            utilise[a.proto] = true;
+        }
+        ByteBuffer[] paquets = new ByteBuffer[flux.length], cles = new ByteBuffer[flux.length];
+        for (int v = FrameParser.PROTO_TEXTE; v < flux.length; v++) {
+            if (!utilise[v]) {
+                flux[v] = null; // Plus d'abonné : le prochain repartira d'une trame complète
+                continue;
+            }
+            if (flux[v] == null) flux[v] = nouvelEncodeur(v, l, h);
+            paquets[v] = copie(flux[v].encoder(trame, l, h, false));
+            encodages.incrementAndGet();
+        }
+
+        for (Abonne a : abonnes) {
+            synchronized (a) {
+                if (a.grille != g) {
+                    // CONFIG propre à l'abonné (format selon son protocole et sa bascule binaire)
+                    a.file.add(new Envoi(copie(a.config.encoder(null, l, h, true)), false));
+                    a.grille = g;
+                    a.aJour = false;
+                }
+                if (a.nbTrames >= FILE_MAX) a.sauter();
+                ByteBuffer b;
+                if (a.aJour) {
+                    b = paquets[a.proto];
+                } else {
+                    if (cles[a.proto] == null) {
+                        cles[a.proto] = copie(flux[a.proto].encoderCle(trame));
+                        encodages.incrementAndGet();
+                    }
+                    b = cles[a.proto];
+                }
+                a.file.add(new Envoi(b.duplicate(), true));
+                a.nbTrames++;
+                a.aJour = true;
+            }
+            aEcrire.add(a);
+        }
+        diffusees.incrementAndGet();
+        selecteur.wakeup();
+    }
+
+    // Acquittements en attente d'un abonné, en tête de sa file (format selon son protocole)
+    private void transmettreAcquittements(Abonne a, int l, int h) {
+        if (!a.acquittements.transmettre(a.config, Long.MAX_VALUE)) return;
+        synchronized (a) {
+            a.file.add(new Envoi(copie(a.config.encoder(null, l, h, false)), false));
+        }
+        aEcrire.add(a);
+    }
+
+    // Acquittement pour un abonné (thread amont ou sélecteur), envoyé par le thread de diffusion
+    private void acquitter(Abonne a, int id) {
+        a.acquittements.ajouter(id, 0);
+        synchronized (signal) {
+            acquittementsNouveaux = true;
+            signal.notifyAll();
+        }
+    }
+
+    private static FrameEncoder nouvelEncodeur(int proto, int l, int h) {
+        FrameEncoder e = new FrameEncoder();
+        e.setProto(proto);
+        // Bascule binaire de l'encodeur partagé : la ligne CONFIG elle-même est envoyée par l'encodeur de chaque abonné
+        if (proto >= FrameParser.PROTO_BINAIRE) e.encoder(null, l, h, true);
+        return e;
+    }
+
+    private static ByteBuffer copie(ByteBuffer b) {
+        ByteBuffer c = ByteBuffer.allocate(b.remaining());
+        c.put(b).flip();
+        return c;
+    }
+
+    private void rapport() {
+        long limite = System.nanoTime() - DELAI_ROUTE_NS;
+        synchronized (routes) {
+            routes.values().removeIf(r -> r.date() - limite < 0 || !r.abonne().canal.isOpen());
+        }
+        StringBuilder sb = new StringBuilder().append(diffusees.getAndSet(0)).append(" trames/s, ")
+                .append(encodages.getAndSet(0)).append(" encodages/s, ").append(abonnes.size()).append(" abonnés");
+        for (Abonne a : abonnes) sb.append(" | ").append(a.rapport());
+        System.out.println(sb);
+    }
+
+    // ========================================================================
+    // AVAL : SÉLECTEUR NIO (CONNEXIONS, COMMANDES, ÉCRITURES)
+    // ========================================================================
+
+    void ecouter() throws IOException {
+        try (ServerSocketChannel serveur = ServerSocketChannel.open()) {
+            serveur.socket().setReuseAddress(true);
+            serveur.bind(new InetSocketAddress(InetAddress.getByName(EngineServer.HOST), port));
+            serveur.configureBlocking(false);
+            serveur.register(selecteur, SelectionKey.OP_ACCEPT);
+            while (true) {
+                selecteur.select();
+                Abonne a;
+                while ((a = aEcrire.poll()) != null) ecrire(a);
+                Iterator<SelectionKey> it = selecteur.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    SelectionKey k = it.next();
+                    it.remove();
+                    if (!k.isValid()) continue;
+                    if (k.isAcceptable()) accepter(serveur);
+                    else {
+                        Abonne ab = (Abonne) k.attachment();
+                        if (k.isReadable()) lire(ab);
+                        if (k.isValid() && k.isWritable()) ecrire(ab);
+                    }
+                }
+            }
+        }
+    }
+
+    private void accepter(ServerSocketChannel serveur) throws IOException {
+        SocketChannel c = serveur.accept();
+        if (c == null) return;
+        c.configureBlocking(false);
+        c.socket().setTcpNoDelay(true);
+        Abonne a = new Abonne(c);
+        a.cle = c.register(selecteur, SelectionKey.OP_READ, a);
+        abonnes.add(a);
+        System.out.println("Abonné connecté (" + a.nom + ").");
+    }
+
+    // Commandes de l'abonné, une par ligne
+    private void lire(Abonne a) {
+        try {
+            a.lecture.clear();
+            int n = a.canal.read(a.lecture);
+            if (n < 0) throw new IOException("fin de flux");
+            for (int i = 0; i < n; i++) {
+                char ch = (char) (a.lecture.get(i) & 0xFF);
+                if (ch != '\n') {
+                    if (a.ligne.length() < 256) a.ligne.append(ch);
+                    continue;
+                }
+                commande(a, a.ligne.toString().trim());
+                a.ligne.setLength(0);
+            }
+        } catch (IOException e) {
+            fermer(a, e.getMessage());
+        }
+    }
+
+    private void commande(Abonne a, String ligne) {
+        CommandChannel.Commande c = CommandChannel.Commande.lire(ligne);
+        switch (c.nom()) {
+            case "PROTO" -> {
+                int v;
+                try {
+                    v = Integer.parseInt(c.argument());
+                } catch (RuntimeException e) {
+                    v = FrameParser.PROTO_TEXTE;
+                }
+                a.protoDemande = v;
+                acquitter(a, c.id());
+            }
+            case "RESYNC" -> {
+                a.resync = true;
+                acquitter(a, c.id());
+            }
+            case "SCENARIO", "SPEED", "STOP" -> {
+                // Commande de simulation : transmise sous un numéro du relais, sans attendre l'amont
+                // Route enregistrée sous le verrou : l'acquittement amont ne peut pas la devancer
+                synchronized (routes) {
+                    int id = amont.envoyer(c.argument() == null ? c.nom() : c.nom() + ":" + c.argument());
+                    if (id != 0 && c.id() != 0) routes.put(id, new Route(a, c.id(), System.nanoTime()));
+                }
+            }
+            default -> { } // Commande inconnue : ignorée
+        }
+    }
+
+    private void ecrire(Abonne a) {
+        if (!a.canal.isOpen()) return;
+        try {
+            synchronized (a) {
+                while (true) {
+                    if (a.enCours == null) {
+                        a.enCours = a.file.poll();
+                        if (a.enCours == null) break;
+                        if (a.enCours.trame) a.nbTrames--;
+                    }
+                    a.octets.addAndGet(a.canal.write(a.enCours.octets));
+                    if (a.enCours.octets.hasRemaining()) break; // Socket pleine : suite au prochain OP_WRITE
+                    if (a.enCours.trame) a.envoyees.incrementAndGet();
+                    a.enCours = null;
+                }
+                a.cle.interestOps(SelectionKey.OP_READ | (a.enCours != null ? SelectionKey.OP_WRITE : 0));
+            }
+        } catch (IOException e) {
+            fermer(a, e.getMessage());
+        }
+    }
+
+    private void fermer(Abonne a, String raison) {
+        abonnes.remove(a);
+        a.cle.cancel();
+        try { a.canal.close(); } catch (IOException ignored) {}
+        System.out.println("Abonné déconnecté (" + a.nom + ") : " + raison);
+    }
+
+    /** Octets à envoyer à un abonné : une trame (abandonnable), une ligne CONFIG ou des acquittements. */
+    private record Envoi(ByteBuffer octets, boolean trame) {}
+
+    /** Commande transmise à l'amont : à qui rendre l'acquittement, sous quel numéro. */
+    private record Route(Abonne abonne, int id, long date) {}
+
+    /** Un tableau de bord connecté au relais. */
+    private static final class Abonne {
+        final SocketChannel canal;
+        final String nom;
+        SelectionKey cle;
+
+        // Thread sélecteur uniquement
+        final ByteBuffer lecture = ByteBuffer.allocate(1024);
+        final StringBuilder ligne = new StringBuilder();
+
+        // Demandes reçues par le sélecteur, appliquées par le thread de diffusion
+        volatile int protoDemande = 0;
+        volatile boolean resync = false;
+        final CommandChannel.Acquittements acquittements = new CommandChannel.Acquittements();
+
+        // Thread de diffusion uniquement
+        final FrameEncoder config = new FrameEncoder(); // Lignes CONFIG et bascule binaire de cet abonné
+        int proto = FrameParser.PROTO_TEXTE;
+        long grille = -1; // Dernière grille annoncée
+
+        // Partagés (sous le verrou de l'abonné) : file d'envoi et position dans le flux
+        final ArrayDeque<Envoi> file = new ArrayDeque<>();
+        Envoi enCours; // En cours d'écriture (jamais abandonné)
+        int nbTrames = 0;   // Trames dans la file (les CONFIG n'en sont pas)
+        boolean aJour = false; // Faux : la prochaine trame doit être complète
+
+        final AtomicLong envoyees = new AtomicLong(), sautees = new AtomicLong(), octets = new AtomicLong();
+
+        Abonne(SocketChannel canal) {
+            this.canal = canal;
+            String n;
+            try {
+                n = canal.getRemoteAddress().toString();
+            } catch (IOException e) {
+                n = "?";
+            }
+            nom = n;
+        }
+
+        void appliquerDemandes() {
+            int v = protoDemande;
+            if (v != 0) {
+                protoDemande = 0;
+                config.setProto(v);
+                proto = config.getProto();
+                grille = -1; // La réponse (CONFIG avec version) précède la trame suivante
+                synchronized (this) {
+                    aJour = false;
+                }
+            }
+            if (resync) {
+                resync = false;
+                synchronized (this) {
+                    aJour = false;
+                }
+            }
+        }
+
+        // Abandon des trames en attente : la prochaine sera complète (les CONFIG sont gardées)
+        void sauter() {
+            file.removeIf(Envoi::trame);
+            sautees.addAndGet(nbTrames);
+            nbTrames = 0;
+            aJour = false;
+        }
+
+        String rapport() {
+            return String.format("%s : %d envoyées, %d sautées, %.1f Mo/s",
+                    nom, envoyees.getAndSet(0), sautees.getAndSet(0), octets.getAndSet(0) / 1e6);
+        }
+    }
+}
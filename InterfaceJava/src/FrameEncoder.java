@@ -0,0 +1,408 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Sérialisation des trames pour un client, côté serveur Java : pendant exact de
+ * {@link FrameParser} (protocoles texte et delta) et de {@link BinaryFrameDecoder}
+ * (protocole binaire), avec les mêmes règles que serveur_socket.py (ligne CONFIG versionnée
+ * après PROTO:n, trame complète toutes les 100 trames, dictionnaires binaires une fois par
+ * scénario). Les acquittements de commandes (ACK;id ou MSG_ACK) sont placés en tête de
+ * l'envoi suivant, avant la trame qui reflète la commande.
+ *
+ * Un encodeur garde ce qui a déjà été envoyé à son client (valeurs arrondies à la précision
+ * d'affichage, occupation des lieux, états binaires connus). Les octets sont écrits dans un
+ * tampon réutilisé : en régime établi, encoder une trame n'alloue rien.
+ */
+final class FrameEncoder {
+
+    static final String[] TYPES_LIEUX = {"MAISON", "TRAVAIL", "PARC", "LOISIR"}; // Indices FrameParser
+    static final int PERIODE_KEYFRAME = 100;
+
+    private static final byte[][] ETATS_OCTETS = new byte[256][];
+
+    private int proto = FrameParser.PROTO_TEXTE;
+    private boolean binaire = false; // Vrai après la ligne CONFIG;L;H;3
+    private boolean keyframe = true;
+    private long numero = 0, dernierKeyframe = 0;
+
+    // --- Dernières valeurs envoyées (mode delta : arrondies comme à l'affichage) ---
+    private int nbAgentsEnvoyes = -1, nbLieuxEnvoyes = -1, signatureEnvoyee;
+    private int[] qx = new int[0], qy = new int[0], qNrj = new int[0], qStress = new int[0];
+    private int[] qArg = new int[0], qEtat = new int[0], qAng = new int[0];
+    private boolean[] occEnvoyee = new boolean[0];
+    private boolean statsEnvoyees;
+    private final int[] qStats = new int[6];
+    private final boolean[] etatsEnvoyes = new boolean[256]; // Mode binaire : libellés déjà transmis
+
+    // Noms d'agents encodés en UTF-8, recalculés seulement si la chaîne change
+    private String[] nomsCache = new String[0];
+    private byte[][] nomsOctets = new byte[0][];
+
+    private ByteBuffer sortie = ByteBuffer.allocate(64 * 1024);
+    private int[] acquittements = new int[8];
+    private int nbAcquittements = 0;
+
+    /** PROTO:n -- le client annonce la version la plus haute qu'il comprend. */
+    void setProto(int version) {
+        proto = Math.max(FrameParser.PROTO_TEXTE, Math.min(version, FrameParser.PROTO_BINAIRE));
+        keyframe = true;
+    }
+
+    int getProto() {
+        return proto;
+    }
+
+    /** RESYNC ou changement de scénario : la prochaine trame sera complète. */
+    void demanderKeyframe() {
+        keyframe = true;
+    }
+
+    /** Acquittement à placer en tête du prochain envoi (voir CommandChannel). */
+    void acquitter(int id) {
+        if (nbAcquittements == acquittements.length) acquittements = Arrays.copyOf(acquittements, nbAcquittements * 2);
+        acquittements[nbAcquittements++] = id;
+    }
+
+    boolean aDesAcquittements() {
+        return nbAcquittements > 0;
+    }
+
+    /**
+     * Encode une trame pour ce client, précédée des acquittements en attente.
+     * Avec t == null et config == false, seuls les acquittements sont écrits.
+     * @param t trame à envoyer (verrouillée par l'appelant), ou null pour la ligne CONFIG seule
+     * @param config vrai s'il faut (ré)annoncer la grille avant la trame
+     * @return les octets à écrire (valables jusqu'au prochain appel)
+     */
+    ByteBuffer encoder(WorldSnapshot t, int largeur, int hauteur, boolean config) {
+        sortie.clear();
+        for (int i = 0; i < nbAcquittements; i++) {
+            if (binaire) {
+                int debut = ouvrirMessage(BinaryFrameDecoder.MSG_ACK);
+                reserver(4);
+                sortie.putInt(acquittements[i]);
+                fermerMessage(debut);
+            } else {
+                texte("ACK;").entier(acquittements[i]).octet('\n');
+            }
+        }
+        nbAcquittements = 0;
+        if (config) {
+            if (binaire) {
+                int debut = ouvrirMessage(BinaryFrameDecoder.MSG_CONFIG);
+                reserver(4);
+                sortie.putShort((short) largeur).putShort((short) hauteur);
+                fermerMessage(debut);
+            } else {
+                texte("CONFIG;").entier(largeur).octet(';').entier(hauteur);
+                // La version n'est ajoutée qu'après négociation (format historique sinon)
+                if (proto >= FrameParser.PROTO_DELTA) octet(';').entier(proto);
+                octet('\n');
+                if (proto >= FrameParser.PROTO_BINAIRE) binaire = true;
+            }
+        }
+        if (t != null) {
+            numero++;
+            if (binaire) trameBinaire(t);
+            else if (proto >= FrameParser.PROTO_DELTA) trameDelta(t);
+            else trameComplete(t, false);
+        }
+        sortie.flip();
+        return sortie;
+    }
+
+    /**
+     * Trame complète portant le numéro de la dernière trame encodée, sans modifier ce qui est
+     * retenu du flux : pour un abonné qui rejoint un flux diffusé à plusieurs clients, ou qui en
+     * a manqué une partie (voir FanoutServer). Protocole delta : trame KEY ; binaire :
+     * dictionnaires complets puis la trame.
+     * @return les octets à écrire (valables jusqu'au prochain appel)
+     */
+    ByteBuffer encoderCle(WorldSnapshot t) {
+        sortie.clear();
+        if (binaire) {
+            dictionnaires(t);
+            for (int e = 0; e < etatsEnvoyes.length; e++) {
+                if (etatsEnvoyes[e]) messageEtat(e);
+            }
+            messageTrame(t);
+        } else {
+            trameComplete(t, proto >= FrameParser.PROTO_DELTA);
+        }
+        sortie.flip();
+        return sortie;
+    }
+
+    // ========================================================================
+    // PROTOCOLES TEXTE
+    // ========================================================================
+
+    private void trameComplete(WorldSnapshot t, boolean cle) {
+        if (cle) texte("KEY;").entier(numero).octet('\n');
+        for (int i = 0; i < t.nbLieux; i++) {
+            texte(TYPES_LIEUX[t.typeLieu[i]]).octet(';').entier(t.lieuX[i]).octet(';')
+                    .entier(t.lieuY[i]).octet(';').octet(t.occupe[i] ? '1' : '0').octet('\n');
+        }
+        for (int i = 0; i < t.nbAgents; i++) {
+            texte("AGENT;").octets(nom(t, i)).octet(';')
+                    .decimal(q(t.x[i], 100), 2).octet(';').decimal(q(t.y[i], 100), 2).octet(';')
+                    .decimal(q(t.nrj[i], 10), 1).octet(';').decimal(q(t.stress[i], 10), 1).octet(';')
+                    .decimal(q(t.arg[i], 10), 1).octet(';').octets(etat(t.etat[i])).octet(';')
+                    .decimal(q(t.ang[i], 100), 2).octet('\n');
+        }
+        if (t.statsPresentes) stats(t);
+        texte("END\n");
+    }
+
+    private void trameDelta(WorldSnapshot t) {
+        boolean cle = keyframe
+                || t.nbAgents != nbAgentsEnvoyes
+                || t.nbLieux != nbLieuxEnvoyes
+                || t.signatureLieux() != signatureEnvoyee
+                || numero - dernierKeyframe >= PERIODE_KEYFRAME;
+        if (cle) {
+            trameComplete(t, true);
+            keyframe = false;
+            dernierKeyframe = numero;
+        } else {
+            texte("DELTA;").entier(numero).octet('\n');
+            // Bascules d'occupation : OCC;IndexLieu;OCCUPE
+            for (int i = 0; i < t.nbLieux; i++) {
+                if (t.occupe[i] != occEnvoyee[i]) {
+                    texte("OCC;").entier(i).octet(';').octet(t.occupe[i] ? '1' : '0').octet('\n');
+                }
+            }
+            // Champs modifiés : D;IndexAgent;Masque;Valeurs...
+            for (int i = 0; i < t.nbAgents; i++) {
+                int x = q(t.x[i], 100), y = q(t.y[i], 100), ang = q(t.ang[i], 100);
+                int nrj = q(t.nrj[i], 10), stress = q(t.stress[i], 10), arg = q(t.arg[i], 10);
+                int masque = (x != qx[i] ? FrameParser.DELTA_X : 0)
+                        | (y != qy[i] ? FrameParser.DELTA_Y : 0)
+                        | (nrj != qNrj[i] ? FrameParser.DELTA_NRJ : 0)
+                        | (stress != qStress[i] ? FrameParser.DELTA_STRESS : 0)
+                        | (arg != qArg[i] ? FrameParser.DELTA_ARG : 0)
+                        | (t.etat[i] != qEtat[i] ? FrameParser.DELTA_ETAT : 0)
+                        | (ang != qAng[i] ? FrameParser.DELTA_ANG : 0);
+                if (masque == 0) continue;
+                texte("D;").entier(i).octet(';').entier(masque);
+                if ((masque & FrameParser.DELTA_X) != 0) octet(';').decimal(x, 2);
+                if ((masque & FrameParser.DELTA_Y) != 0) octet(';').decimal(y, 2);
+                if ((masque & FrameParser.DELTA_NRJ) != 0) octet(';').decimal(nrj, 1);
+                if ((masque & FrameParser.DELTA_STRESS) != 0) octet(';').decimal(stress, 1);
+                if ((masque & FrameParser.DELTA_ARG) != 0) octet(';').decimal(arg, 1);
+                if ((masque & FrameParser.DELTA_ETAT) != 0) octet(';').octets(etat(t.etat[i]));
+                if ((masque & FrameParser.DELTA_ANG) != 0) octet(';').decimal(ang, 2);
+                octet('\n');
+            }
+            if (t.statsPresentes && (!statsEnvoyees || statsModifiees(t))) stats(t);
+            texte("END\n");
+        }
+        memoriser(t);
+    }
+
+    private void stats(WorldSnapshot t) {
+        texte("STATS;").decimal(q(t.moyNrj, 100), 2).octet(';').decimal(q(t.moyStress, 100), 2).octet(';')
+                .decimal(q(t.moyArg, 100), 2).octet(';').entier(t.nbVivants).octet(';')
+                .entier(t.nbMorts).octet(';').entier(t.nbOccupes).octet('\n');
+    }
+
+    private boolean statsModifiees(WorldSnapshot t) {
+        return qStats[0] != q(t.moyNrj, 100) || qStats[1] != q(t.moyStress, 100) || qStats[2] != q(t.moyArg, 100)
+                || qStats[3] != t.nbVivants || qStats[4] != t.nbMorts || qStats[5] != t.nbOccupes;
+    }
+
+    // Retient les valeurs envoyées, base de comparaison de la trame delta suivante
+    private void memoriser(WorldSnapshot t) {
+        int n = t.nbAgents;
+        if (qx.length < n) {
+            qx = new int[n]; qy = new int[n]; qNrj = new int[n]; qStress = new int[n];
+            qArg = new int[n]; qEtat = new int[n]; qAng = new int[n];
+        }
+        for (int i = 0; i < n; i++) {
+            qx[i] = q(t.x[i], 100); qy[i] = q(t.y[i], 100); qAng[i] = q(t.ang[i], 100);
+            qNrj[i] = q(t.nrj[i], 10); qStress[i] = q(t.stress[i], 10); qArg[i] = q(t.arg[i], 10);
+            qEtat[i] = t.etat[i];
+        }
+        if (occEnvoyee.length < t.nbLieux) occEnvoyee = new boolean[t.nbLieux];
+        System.arraycopy(t.occupe, 0, occEnvoyee, 0, t.nbLieux);
+        nbAgentsEnvoyes = n;
+        nbLieuxEnvoyes = t.nbLieux;
+        signatureEnvoyee = t.signatureLieux();
+        statsEnvoyees = t.statsPresentes;
+        if (statsEnvoyees) {
+            qStats[0] = q(t.moyNrj, 100); qStats[1] = q(t.moyStress, 100); qStats[2] = q(t.moyArg, 100);
+            qStats[3] = t.nbVivants; qStats[4] = t.nbMorts; qStats[5] = t.nbOccupes;
+        }
+    }
+
+    // ========================================================================
+    // PROTOCOLE BINAIRE
+    // ========================================================================
+
+    private void trameBinaire(WorldSnapshot t) {
+        // Dictionnaires statiques : lieux et noms, une fois par scénario (ou sur RESYNC)
+        if (keyframe || t.nbAgents != nbAgentsEnvoyes || t.nbLieux != nbLieuxEnvoyes
+                || t.signatureLieux() != signatureEnvoyee) {
+            dictionnaires(t);
+            nbAgentsEnvoyes = t.nbAgents;
+            nbLieuxEnvoyes = t.nbLieux;
+            signatureEnvoyee = t.signatureLieux();
+            keyframe = false;
+        }
+
+        // Libellés d'états à leur première apparition (identifiant sur un octet)
+        for (int i = 0; i < t.nbAgents; i++) {
+            int e = t.etat[i];
+            if (e < 0 || e >= etatsEnvoyes.length || etatsEnvoyes[e]) continue;
+            etatsEnvoyes[e] = true;
+            messageEtat(e);
+        }
+        messageTrame(t);
+    }
+
+    private void dictionnaires(WorldSnapshot t) {
+        int debut = ouvrirMessage(BinaryFrameDecoder.MSG_LIEUX);
+        reserver(4 + 5 * t.nbLieux);
+        sortie.putInt(t.nbLieux);
+        for (int i = 0; i < t.nbLieux; i++) {
+            sortie.put((byte) t.typeLieu[i]).putShort((short) t.lieuX[i]).putShort((short) t.lieuY[i]);
+        }
+        fermerMessage(debut);
+
+        debut = ouvrirMessage(BinaryFrameDecoder.MSG_AGENTS);
+        reserver(4);
+        sortie.putInt(t.nbAgents);
+        for (int i = 0; i < t.nbAgents; i++) chaineBinaire(nom(t, i));
+        fermerMessage(debut);
+    }
+
+    private void messageEtat(int e) {
+        int debut = ouvrirMessage(BinaryFrameDecoder.MSG_ETAT);
+        reserver(1);
+        sortie.put((byte) e);
+        chaineBinaire(etat(e));
+        fermerMessage(debut);
+    }
+
+    private void messageTrame(WorldSnapshot t) {
+        int debut = ouvrirMessage(BinaryFrameDecoder.MSG_TRAME);
+        reserver(12 + (t.nbLieux + 7) / 8 + 25 * t.nbAgents + 25);
+        sortie.putInt((int) numero).putInt(t.nbLieux);
+        for (int i = 0; i < t.nbLieux; i += 8) {
+            int b = 0;
+            for (int k = 0; k < 8 && i + k < t.nbLieux; k++) if (t.occupe[i + k]) b |= 1 << k;
+            sortie.put((byte) b);
+        }
+        sortie.putInt(t.nbAgents);
+        for (int i = 0; i < t.nbAgents; i++) {
+            sortie.putFloat(t.x[i]).putFloat(t.y[i]).putFloat(t.nrj[i]).putFloat(t.stress[i])
+                    .putFloat(t.arg[i]).putFloat(t.ang[i]).put((byte) t.etat[i]);
+        }
+        if (t.statsPresentes) {
+            sortie.put((byte) 1).putFloat(t.moyNrj).putFloat(t.moyStress).putFloat(t.moyArg)
+                    .putInt(t.nbVivants).putInt(t.nbMorts).putInt(t.nbOccupes);
+        } else {
+            sortie.put((byte) 0);
+        }
+        fermerMessage(debut);
+    }
+
+    // Réserve la longueur (u32) et écrit le type ; renvoie la position de la longueur
+    private int ouvrirMessage(int type) {
+        reserver(5);
+        int debut = sortie.position();
+        sortie.putInt(0).put((byte) type);
+        return debut;
+    }
+
+    private void fermerMessage(int debut) {
+        sortie.putInt(debut, sortie.position() - debut - 4);
+    }
+
+    private void chaineBinaire(byte[] b) {
+        reserver(2 + b.length);
+        sortie.putShort((short) b.length).put(b);
+    }
+
+    // ========================================================================
+    // ÉCRITURE DANS LE TAMPON
+    // ========================================================================
+
+    private byte[] nom(WorldSnapshot t, int i) {
+        if (nomsCache.length < t.nbAgents) {
+            nomsCache = Arrays.copyOf(nomsCache, t.noms.length);
+            nomsOctets = Arrays.copyOf(nomsOctets, t.noms.length);
+        }
+        if (nomsCache[i] != t.noms[i]) {
+            nomsCache[i] = t.noms[i];
+            nomsOctets[i] = t.noms[i].getBytes(StandardCharsets.UTF_8);
+        }
+        return nomsOctets[i];
+    }
+
+    private static byte[] etat(int id) {
+        if (id < 0 || id >= ETATS_OCTETS.length) return WorldSnapshot.Etats.libelle(id).getBytes(StandardCharsets.UTF_8);
+        byte[] b = ETATS_OCTETS[id];
+        if (b == null) ETATS_OCTETS[id] = b = WorldSnapshot.Etats.libelle(id).getBytes(StandardCharsets.UTF_8);
+        return b;
+    }
+
+    // Valeur arrondie à la précision d'affichage (échelle 10 ou 100)
+    private static int q(float v, int echelle) {
+        return Math.round(v * echelle);
+    }
+
+    private void reserver(int n) {
+        if (sortie.remaining() >= n) return;
+        ByteBuffer plusGrand = ByteBuffer.allocate(Math.max(sortie.capacity() * 2, sortie.position() + n));
+        sortie.flip();
+        plusGrand.put(sortie);
+        sortie = plusGrand;
+    }
+
+    private FrameEncoder octet(char c) {
+        reserver(1);
+        sortie.put((byte) c);
+        return this;
+    }
+
+    private FrameEncoder octets(byte[] b) {
+        reserver(b.length);
+        sortie.put(b);
+        return this;
+    }
+
+    // Chaînes ASCII des mots-clés du protocole
+    private FrameEncoder texte(String s) {
+        reserver(s.length());
+        for (int i = 0; i < s.length(); i++) sortie.put((byte) s.charAt(i));
+        return this;
+    }
+
+    private FrameEncoder entier(long v) {
+        reserver(20);
+        if (v < 0) {
+            sortie.put((byte) '-');
+            v = -v;
+        }
+        if (v >= 10) entier(v / 10);
+        sortie.put((byte) ('0' + v % 10));
+        return this;
+    }
+
+    // Écrit q / 10^decimales avec exactement 'decimales' chiffres après la virgule
+    private FrameEncoder decimal(int q, int decimales) {
+        long v = q;
+        if (v < 0) {
+            octet('-');
+            v = -v;
+        }
+        long diviseur = decimales == 1 ? 10 : 100;
+        entier(v / diviseur);
+        octet('.');
+        long reste = v % diviseur;
+        if (decimales == 2) octet((char) ('0' + reste / 10));
+        return octet((char) ('0' + reste % 10));
+    }
+}
@@ -0,0 +1,481 @@
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Analyseur de trames en flux pour le protocole texte du serveur
+ * (CONFIG / MAISON / TRAVAIL / PARC / LOISIR / AGENT / STATS / END), ainsi que
+ * les lignes du protocole delta (KEY / DELTA / D / OCC) négocié par PROTO:2.
+ * Une ligne ACK;id acquitte une commande numérotée (voir {@link CommandChannel}).
+ * Une ligne CONFIG annonçant le protocole binaire (version 3) termine la lecture texte :
+ * la suite du flux est confiée à {@link BinaryFrameDecoder}.
+ *
+ * Les octets sont lus directement depuis le flux du socket dans un tampon réutilisé,
+ * les lignes sont découpées en place et les champs numériques convertis sans passer
+ * par des String. Les noms d'agents et les états sont internés : en régime établi,
+ * l'ingestion d'une trame n'alloue (presque) rien.
+ */
+final class FrameParser {
+
+    // Types de lieux (remplacent les chaînes "MAISON", "TRAVAIL"... côté client)
+    static final int MAISON = 0;
+    static final int TRAVAIL = 1;
+    static final int PARC = 2;
+    static final int LOISIR = 3;
+
+    // Versions du protocole (dernier champ optionnel de la ligne CONFIG)
+    static final int PROTO_TEXTE = 1;
+    static final int PROTO_DELTA = 2;
+    static final int PROTO_BINAIRE = 3;
+
+    // Bits du masque d'une ligne D;Index;Masque;Valeurs... (ordre des champs de la ligne AGENT)
+    static final int DELTA_X = 1;
+    static final int DELTA_Y = 1 << 1;
+    static final int DELTA_NRJ = 1 << 2;
+    static final int DELTA_STRESS = 1 << 3;
+    static final int DELTA_ARG = 1 << 4;
+    static final int DELTA_ETAT = 1 << 5;
+    static final int DELTA_ANG = 1 << 6;
+
+    /**
+     * Reçoit les éléments décodés d'une trame. Toutes les méthodes sont appelées
+     * sur le thread réseau, dans l'ordre d'arrivée des lignes.
+     */
+    interface Handler {
+        void onConfig(int largeur, int hauteur, int version);
+        void onLieu(int type, int x, int y, boolean occupe);
+        void onAgent(String nom, float x, float y, float nrj, float stress, float arg, String etat, float ang);
+        void onStats(float moyNrj, float moyStress, float moyArg, int vivants, int morts, int occupes);
+        void onEnd();
+
+        // --- Protocole delta ---
+
+        /** Début d'une trame complète : l'état retenu doit être reconstruit à partir de zéro. */
+        void onKeyframe(long numero);
+
+        /** Début d'une trame delta : seules les valeurs modifiées suivent. */
+        void onDelta(long numero);
+
+        /** Champs modifiés d'un agent (index dans l'ordre de la dernière trame complète). Les champs absents du masque valent 0. */
+        void onAgentDelta(int index, int masque, float x, float y, float nrj, float stress, float arg, String etat, float ang);
+
+        /** Bascule d'occupation d'un lieu (index dans l'ordre de la dernière trame complète). */
+        void onOccupation(int index, boolean occupe);
+
+        /** ACK;id : la commande numérotée id a été appliquée (précède la trame qui la reflète). */
+        default void onAck(int id) {}
+    }
+
+    private static final int MAX_CHAMPS = 16;
+
+    private final InputStream in;
+    private final Handler handler;
+
+    // Tampon de lecture (agrandi uniquement si une ligne dépasse sa taille)
+    private byte[] buf = new byte[64 * 1024];
+    private int pos = 0; // Début de la ligne courante
+    private int lim = 0; // Fin des octets valides
+
+    // Bornes des champs de la ligne courante (réutilisées d'une ligne à l'autre)
+    private final int[] debutChamp = new int[MAX_CHAMPS];
+    private final int[] finChamp = new int[MAX_CHAMPS];
+    private int nbChamps;
+
+    // Tables d'internement (noms d'agents et états)
+    private final Interneur noms = new Interneur(1024);
+    private final Interneur etats = new Interneur(64);
+
+    private long lignesIgnorees = 0; // Lignes mal formées (champ manquant, nombre invalide)
+    private boolean basculeBinaire = false; // Vrai après une ligne CONFIG de version >= PROTO_BINAIRE
+    private ClientMetrics mesures; // Octets lus et lignes ignorées (optionnel)
+
+    FrameParser(InputStream in, Handler handler) {
+        this.in = in;
+        this.handler = handler;
+    }
+
+    /** Compte les octets lus et les lignes ignorées dans les mesures du client. */
+    void setMesures(ClientMetrics m) {
+        mesures = m;
+    }
+
+    /** Nombre de lignes rejetées depuis la création de l'analyseur. */
+    long getLignesIgnorees() {
+        return lignesIgnorees;
+    }
+
+    /** Vrai si la lecture s'est arrêtée sur l'annonce du protocole binaire. */
+    boolean isBasculeBinaire() {
+        return basculeBinaire;
+    }
+
+    /** Octets déjà lus mais non décodés (début du flux binaire après la bascule). */
+    ByteBuffer restants() {
+        return ByteBuffer.wrap(buf, pos, lim - pos);
+    }
+
+    /**
+     * Lit et décode les lignes jusqu'à la fin du flux, ou jusqu'à la bascule vers le
+     * protocole binaire (voir {@link #isBasculeBinaire()}).
+     * @throws EOFException lorsque le serveur ferme la connexion
+     */
+    void boucle() throws IOException {
+        while (!basculeBinaire) lireLigne();
+    }
+
+    /**
+     * Lit et décode la ligne suivante (en attendant les octets nécessaires).
+     * @throws EOFException lorsque le serveur ferme la connexion
+     */
+    void lireLigne() throws IOException {
+        int nl;
+        while ((nl = chercherFinLigne()) < 0) {
+            if (!remplir()) throw new EOFException("Connexion fermée par le serveur");
+        }
+        int fin = nl;
+        if (fin > pos && buf[fin - 1] == '\r') fin--;
+        traiterLigne(pos, fin);
+        pos = nl + 1;
+    }
+
+    // Cherche le prochain '\n' à partir de la position courante
+    private int chercherFinLigne() {
+        for (int i = pos; i < lim; i++) {
+            if (buf[i] == '\n') return i;
+        }
+        return -1;
+    }
+
+    // Compacte la ligne incomplète en tête du tampon puis lit de nouveaux octets
+    private boolean remplir() throws IOException {
+        if (pos > 0) {
+            System.arraycopy(buf, pos, buf, 0, lim - pos);
+            lim -= pos;
+            pos = 0;
+        }
+        if (lim == buf.length) {
+            byte[] plusGrand = new byte[buf.length * 2];
+            System.arraycopy(buf, 0, plusGrand, 0, lim);
+            buf = plusGrand;
+        }
+        int n = in.read(buf, lim, buf.length - lim);
+        if (n < 0) return false;
+        lim += n;
+        if (mesures != null) mesures.octetsRecus.addAndGet(n);
+        return true;
+    }
+
+    // ========================================================================
+    // DÉCODAGE D'UNE LIGNE
+    // ========================================================================
+
+    private void traiterLigne(int debut, int fin) {
+        if (fin <= debut) return;
+        decouper(debut, fin);
+
+        try {
+            if (champEgal(0, END)) {
+                handler.onEnd();
+            } else if (champEgal(0, D)) {
+                // D;Index;Masque;Valeurs des champs présents dans le masque
+                if (nbChamps < 3) { ignorer(); return; }
+                decoderDelta();
+            } else if (champEgal(0, OCC)) {
+                // OCC;Index;OCCUPE
+                if (nbChamps != 3) { ignorer(); return; }
+                handler.onOccupation((int) lireFloat(1), finChamp[2] - debutChamp[2] == 1 && buf[debutChamp[2]] == '1');
+            } else if (champEgal(0, AGENT)) {
+                // AGENT;Nom;X;Y;Energie;Stress;Argent;Etat;Angle (9 champs)
+                if (nbChamps != 9) { ignorer(); return; }
+                handler.onAgent(
+                        noms.interner(buf, debutChamp[1], finChamp[1]),
+                        lireFloat(2), lireFloat(3),
+                        lireFloat(4), lireFloat(5), lireFloat(6),
+                        etats.interner(buf, debutChamp[7], finChamp[7]),
+                        lireFloat(8));
+            } else if (champEgal(0, MAISON_B) || champEgal(0, TRAVAIL_B) || champEgal(0, PARC_B) || champEgal(0, LOISIR_B)) {
+                // LIEUTYPE;X;Y;OCCUPE
+                if (nbChamps < 3) { ignorer(); return; }
+                boolean occupe = nbChamps > 3 && finChamp[3] - debutChamp[3] == 1 && buf[debutChamp[3]] == '1';
+                handler.onLieu(typeLieu(), (int) lireFloat(1), (int) lireFloat(2), occupe);
+            } else if (champEgal(0, STATS)) {
+                // STATS;MoyNrj;MoyStress;MoyArg;NbVivants;NbMorts;NbOccupes
+                if (nbChamps < 7) { ignorer(); return; }
+                handler.onStats(lireFloat(1), lireFloat(2), lireFloat(3),
+                        (int) lireFloat(4), (int) lireFloat(5), (int) lireFloat(6));
+            } else if (champEgal(0, CONFIG)) {
+                // CONFIG;Largeur;Hauteur[;Version]
+                if (nbChamps < 3) { ignorer(); return; }
+                int version = nbChamps > 3 ? (int) lireFloat(3) : PROTO_TEXTE;
+                handler.onConfig((int) lireFloat(1), (int) lireFloat(2), version);
+                if (version >= PROTO_BINAIRE) basculeBinaire = true;
+            } else if (champEgal(0, KEY)) {
+                if (nbChamps < 2) { ignorer(); return; }
+                handler.onKeyframe(lireLong(1));
+            } else if (champEgal(0, DELTA)) {
+                if (nbChamps < 2) { ignorer(); return; }
+                handler.onDelta(lireLong(1));
+            } else if (champEgal(0, ACK)) {
+                if (nbChamps < 2) { ignorer(); return; }
+                handler.onAck((int) lireLong(1));
+            } else {
+                ignorer();
+            }
+        } catch (NumberFormatException e) {
+            ignorer(); // Une ligne corrompue ne doit pas couper la connexion
+        }
+    }
+
+    private void ignorer() {
+        lignesIgnorees++;
+        if (mesures != null) mesures.lignesIgnorees.incrementAndGet();
+    }
+
+    // Décode une ligne D : les valeurs suivent l'ordre des bits du masque
+    private void decoderDelta() {
+        int index = (int) lireFloat(1);
+        int masque = (int) lireFloat(2);
+        if (nbChamps != 3 + Integer.bitCount(masque & 0x7F) || nbChamps > MAX_CHAMPS) {
+            ignorer();
+            return;
+        }
+        int c = 3;
+        float x = (masque & DELTA_X) != 0 ? lireFloat(c++) : 0;
+        float y = (masque & DELTA_Y) != 0 ? lireFloat(c++) : 0;
+        float nrj = (masque & DELTA_NRJ) != 0 ? lireFloat(c++) : 0;
+        float stress = (masque & DELTA_STRESS) != 0 ? lireFloat(c++) : 0;
+        float arg = (masque & DELTA_ARG) != 0 ? lireFloat(c++) : 0;
+        String etat = null;
+        if ((masque & DELTA_ETAT) != 0) {
+            etat = etats.interner(buf, debutChamp[c], finChamp[c]);
+            c++;
+        }
+        float ang = (masque & DELTA_ANG) != 0 ? lireFloat(c) : 0;
+        handler.onAgentDelta(index, masque, x, y, nrj, stress, arg, etat, ang);
+    }
+
+    // Entier positif (numéro de trame) sans passer par le décodage flottant
+    private long lireLong(int champ) {
+        int d = debutChamp[champ];
+        int f = finChamp[champ];
+        if (d >= f) throw new NumberFormatException("Champ vide");
+        long v = 0;
+        for (int i = d; i < f; i++) {
+            byte c = buf[i];
+            if (c < '0' || c > '9') throw new NumberFormatException("Entier invalide");
+            v = v * 10 + (c - '0');
+        }
+        return v;
+    }
+
+    // Découpe la ligne sur ';' en enregistrant les bornes de chaque champ
+    private void decouper(int debut, int fin) {
+        nbChamps = 0;
+        int d = debut;
+        for (int i = debut; i <= fin; i++) {
+            if (i == fin || buf[i] == ';') {
+                if (nbChamps < MAX_CHAMPS) {
+                    debutChamp[nbChamps] = d;
+                    finChamp[nbChamps] = i;
+                }
+                nbChamps++;
+                d = i + 1;
+            }
+        }
+    }
+
+    private int typeLieu() {
+        if (champEgal(0, MAISON_B)) return MAISON;
+        if (champEgal(0, TRAVAIL_B)) return TRAVAIL;
+        if (champEgal(0, PARC_B)) return PARC;
+        return LOISIR;
+    }
+
+    private boolean champEgal(int champ, byte[] attendu) {
+        int d = debutChamp[champ];
+        int len = finChamp[champ] - d;
+        if (len != attendu.length) return false;
+        for (int i = 0; i < len; i++) {
+            if (buf[d + i] != attendu[i]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Convertit un champ décimal ("-12.34", "5", "1e-3") en float sans allocation.
+     * Les formes inhabituelles (nan, inf...) passent par Float.parseFloat.
+     */
+    private float lireFloat(int champ) {
+        return parseFloat(buf, debutChamp[champ], finChamp[champ]);
+    }
+
+    static float parseFloat(byte[] b, int debut, int fin) {
+        int i = debut;
+        if (i >= fin) throw new NumberFormatException("Champ vide");
+        boolean negatif = false;
+        if (b[i] == '-' || b[i] == '+') {
+            negatif = b[i] == '-';
+            i++;
+        }
+        long mantisse = 0;
+        int exposant = 0;
+        int chiffres = 0;
+        boolean point = false;
+        for (; i < fin; i++) {
+            byte c = b[i];
+            if (c >= '0' && c <= '9') {
+                if (mantisse < 100_000_000_000_000L) {
+                    mantisse = mantisse * 10 + (c - '0');
+                    if (point) exposant--;
+                } else if (!point) {
+                    exposant++; // Chiffres au-delà de la précision utile
+                }
+                chiffres++;
+            } else if (c == '.' && !point) {
+                point = true;
+            } else if ((c == 'e' || c == 'E') && chiffres > 0) {
+                exposant += parseExposant(b, i + 1, fin);
+                i = fin;
+                break;
+            } else {
+                return Float.parseFloat(new String(b, debut, fin - debut, StandardCharsets.US_ASCII));
+            }
+        }
+        if (chiffres == 0) throw new NumberFormatException("Aucun chiffre");
+        double v = mantisse;
+        if (exposant < 0) {
+            v = exposant >= -POW10.length + 1 ? v / POW10[-exposant] : v / Math.pow(10, -exposant);
+        } else if (exposant > 0) {
+            v = exposant < POW10.length ? v * POW10[exposant] : v * Math.pow(10, exposant);
+        }
+        return (float) (negatif ? -v : v);
+    }
+
+    private static int parseExposant(byte[] b, int debut, int fin) {
+        int i = debut;
+        boolean negatif = false;
+        if (i < fin && (b[i] == '-' || b[i] == '+')) {
+            negatif = b[i] == '-';
+            i++;
+        }
+        if (i >= fin) throw new NumberFormatException("Exposant vide");
+        int e = 0;
+        for (; i < fin; i++) {
+            byte c = b[i];
+            if (c < '0' || c > '9') throw new NumberFormatException("Exposant invalide");
+            if (e < 1000) e = e * 10 + (c - '0');
+        }
+        return negatif ? -e : e;
+    }
+
+    private static final double[] POW10 = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private static final byte[] END = ascii("END");
+    private static final byte[] AGENT = ascii("AGENT");
+    private static final byte[] STATS = ascii("STATS");
+    private static final byte[] CONFIG = ascii("CONFIG");
+    private static final byte[] MAISON_B = ascii("MAISON");
+    private static final byte[] TRAVAIL_B = ascii("TRAVAIL");
+    private static final byte[] PARC_B = ascii("PARC");
+    private static final byte[] LOISIR_B = ascii("LOISIR");
+    private static final byte[] KEY = ascii("KEY");
+    private static final byte[] DELTA = ascii("DELTA");
+    private static final byte[] D = ascii("D");
+    private static final byte[] OCC = ascii("OCC");
+    private static final byte[] ACK = ascii("ACK");
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    // ========================================================================
+    // INTERNEMENT DES CHAÎNES (noms d'agents, états)
+    // ========================================================================
+
+    /**
+     * Table de hachage à adressage ouvert qui associe une séquence d'octets UTF-8
+     * à une String unique. Une nouvelle String n'est créée qu'à la première occurrence.
+     * La table double de taille jusqu'à CAPACITE_MAX puis est vidée si elle sature,
+     * ce qui borne la mémoire face à des noms toujours nouveaux.
+     */
+    static final class Interneur {
+        private static final int CAPACITE_MAX = 1 << 20;
+
+        private byte[][] cles;
+        private String[] valeurs;
+        private int masque;
+        private int taille = 0;
+
+        Interneur(int capacite) {
+            int c = Integer.highestOneBit(Math.max(16, capacite) - 1) << 1;
+            cles = new byte[c][];
+            valeurs = new String[c];
+            masque = c - 1;
+        }
+
+        String interner(byte[] b, int debut, int fin) {
+            int h = hacher(b, debut, fin);
+
+            int idx = h & masque;
+            while (cles[idx] != null) {
+                if (egal(cles[idx], b, debut, fin)) return valeurs[idx];
+                idx = (idx + 1) & masque;
+            }
+
+            if (taille >= (cles.length * 3) / 4) {
+                if (cles.length < CAPACITE_MAX) {
+                    agrandir();
+                } else {
+                    Arrays.fill(cles, null);
+                    Arrays.fill(valeurs, null);
+                    taille = 0;
+                }
+                idx = h & masque;
+                while (cles[idx] != null) idx = (idx + 1) & masque;
+            }
+            byte[] cle = Arrays.copyOfRange(b, debut, fin);
+            String v = new String(cle, StandardCharsets.UTF_8);
+            cles[idx] = cle;
+            valeurs[idx] = v;
+            taille++;
+            return v;
+        }
+
+        // Double la capacité de la table et réinsère les entrées existantes
+        private void agrandir() {
+            byte[][] anciennesCles = cles;
+            String[] anciennesValeurs = valeurs;
+            cles = new byte[anciennesCles.length * 2][];
+            valeurs = new String[cles.length];
+            masque = cles.length - 1;
+            for (int i = 0; i < anciennesCles.length; i++) {
+                byte[] cle = anciennesCles[i];
+                if (cle == null) continue;
+                int idx = hacher(cle, 0, cle.length) & masque;
+                while (cles[idx] != null) idx = (idx + 1) & masque;
+                cles[idx] = cle;
+                valeurs[idx] = anciennesValeurs[i];
+            }
+        }
+
+        private static int hacher(byte[] b, int debut, int fin) {
+            int h = 1;
+            for (int i = debut; i < fin; i++) h = 31 * h + b[i];
+            return h ^ (h >>> 16);
+        }
+
+        private static boolean egal(byte[] cle, byte[] b, int debut, int fin) {
+            if (cle.length != fin - debut) return false;
+            for (int i = 0; i < cle.length; i++) {
+                if (cle[i] != b[debut + i]) return false;
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,471 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.SplittableRandom;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Serveur de charge synthétique : remplace serveur_socket.py sur le port 5001 pour éprouver
+ * ClientInterface bien au-delà de ce que la simulation Python produit. Même protocole que
+ * {@link EngineServer} (trames encodées par {@link FrameEncoder}, PROTO:n, RESYNC) et mêmes
+ * commandes : SCENARIO:n recrée un monde (graine propre au scénario), SPEED:v règle la vitesse
+ * d'animation (2 = nominale), STOP suspend l'envoi.
+ *
+ * Le monde est généré, non simulé : chaque agent tourne autour d'un point, ses jauges
+ * oscillent, son état et l'occupation des lieux changent régulièrement. Une même graine donne
+ * les mêmes trames, d'une exécution à l'autre.
+ *
+ * Forme de la charge (propriétés système) :
+ *   sma.charge.agents=1000           nombre d'agents
+ *   sma.charge.grille=LxH            taille de grille (défaut : un agent pour six cases)
+ *   sma.charge.fps=20                trames produites par seconde
+ *   sma.charge.gigue=0               écart aléatoire sur l'intervalle entre deux trames (ms, ±)
+ *   sma.charge.rafale=0              trames supplémentaires produites d'un coup...
+ *   sma.charge.periodeRafale=5       ...toutes les n secondes
+ *   sma.charge.contrepression=sauter sauter : chaque client reçoit la dernière trame produite, celles
+ *                                    qu'il n'a pas pu recevoir sont comptées ; attendre : la production
+ *                                    attend que tous les clients aient reçu la trame précédente
+ *
+ * Chaque seconde, le serveur affiche les trames produites et, par client, les trames envoyées,
+ * sautées, le débit et le temps d'écriture le plus long (client qui ne lit plus assez vite).
+ *
+ * Lancement : java LoadServer [graine]
+ */
+final class LoadServer {
+
+    private static final long PERIODE_RAPPORT_NS = TimeUnit.SECONDS.toNanos(1);
+
+    private final int nbAgents, largeur, hauteur;
+    private final double fps;
+    private final long gigueNs;
+    private final int rafale;
+    private final long periodeRafaleNs;
+    private final boolean attendre; // Contre-pression : la production attend le client le plus lent
+    private final long graine;
+
+    private final WorldSnapshot.Echange monde = new WorldSnapshot.Echange();
+    private final CopyOnWriteArrayList<Client> clients = new CopyOnWriteArrayList<>();
+    private final Object signal = new Object(); // Nouvelle trame publiée / trame envoyée par un client
+
+    // Commandes reçues par les threads d'écoute, appliquées par le générateur
+    private volatile String scenarioDemande = "1";
+    private final AtomicInteger demandesScenario = new AtomicInteger(1); // Un même SCENARIO:n recrée aussi le monde
+    private volatile boolean enCours = true;
+    private volatile int vitesse = 2;
+
+    private volatile long generation = 0; // Incrémentée à la première trame de chaque nouveau monde (SCENARIO)
+    private boolean nouveauMonde = false; // Monde recréé, pas encore publié (thread générateur)
+    private volatile long publie = 0;     // Numéro de la dernière trame publiée
+    private final AtomicLong produites = new AtomicLong();
+
+    LoadServer(int nbAgents, int largeur, int hauteur, double fps, long gigueMs, int rafale, long periodeRafaleS,
+               boolean attendre, long graine) {
+        this.nbAgents = nbAgents;
+        this.largeur = largeur;
+        this.hauteur = hauteur;
+        this.fps = fps;
+        this.gigueNs = TimeUnit.MILLISECONDS.toNanos(gigueMs);
+        this.rafale = rafale;
+        this.periodeRafaleNs = TimeUnit.SECONDS.toNanos(Math.max(1, periodeRafaleS));
+        this.attendre = attendre;
+        this.graine = graine;
+    }
+
+    public static void main(String[] args) throws IOException {
+        long graine = args.length > 0 ? Long.parseLong(args[0]) : 42;
+        int agents = Math.max(0, Integer.getInteger("sma.charge.agents", 1000));
+        int cote = Math.max(20, (int) Math.ceil(Math.sqrt(agents * 6.0)));
+        int largeur = cote, hauteur = cote;
+        String grille = System.getProperty("sma.charge.grille");
+        if (grille != null) {
+            String[] lh = grille.toLowerCase().split("x");
+            largeur = Integer.parseInt(lh[0].trim());
+            hauteur = Integer.parseInt(lh[1].trim());
+        }
+        double fps = Double.parseDouble(System.getProperty("sma.charge.fps", "20"));
+        boolean attendre = "attendre".equals(System.getProperty("sma.charge.contrepression", "sauter"));
+        LoadServer serveur = new LoadServer(agents, largeur, hauteur, fps,
+                Long.getLong("sma.charge.gigue", 0), Integer.getInteger("sma.charge.rafale", 0),
+                Long.getLong("sma.charge.periodeRafale", 5), attendre, graine);
+
+        Thread generateur = new Thread(serveur::generer, "generateur");
+        generateur.setDaemon(true);
+        generateur.start();
+        System.out.printf("Serveur de charge lancé sur %d : %d agents, grille %dx%d, %.0f trames/s, contre-pression %s.%n",
+                EngineServer.PORT, agents, largeur, hauteur, fps, attendre ? "attendre" : "sauter");
+        serveur.ecouter();
+    }
+
+    /** Boucle d'acceptation : un thread d'envoi et un thread d'écoute des commandes par client. */
+    void ecouter() throws IOException {
+        try (ServerSocket s = new ServerSocket()) {
+            s.setReuseAddress(true);
+            s.bind(new InetSocketAddress(InetAddress.getByName(EngineServer.HOST), EngineServer.PORT));
+            while (true) {
+                Socket conn = s.accept();
+                conn.setTcpNoDelay(true);
+                Thread t = new Thread(new Client(conn), "client-" + conn.getPort());
+                t.setDaemon(true);
+                t.start();
+            }
+        }
+    }
+
+    // ========================================================================
+    // PRODUCTION DES TRAMES
+    // ========================================================================
+
+    private void generer() {
+        SplittableRandom gigue = new SplittableRandom(graine);
+        MondeSynthetique m = null;
+        int demandesTraitees = 0;
+        long periode = (long) (1e9 / Math.max(0.001, fps));
+        long echeance = System.nanoTime(), prochaineRafale = echeance + periodeRafaleNs;
+        long prochainRapport = echeance + PERIODE_RAPPORT_NS, produitesAuRapport = 0;
+        double temps = 0; // Temps du monde (tours d'animation)
+
+        while (true) {
+            int demandes = demandesScenario.get();
+            if (demandes != demandesTraitees) {
+                demandesTraitees = demandes;
+                m = new MondeSynthetique(nbAgents, largeur, hauteur, graine * 31 + scenarioDemande.hashCode());
+                temps = 0;
+                nouveauMonde = true;
+            }
+
+            if (enCours) {
+                int nb = 1;
+                if (rafale > 0 && echeance >= prochaineRafale) {
+                    nb += rafale; // Rafale : trames produites sans intervalle
+                    prochaineRafale += periodeRafaleNs;
+                }
+                for (int k = 0; k < nb; k++) {
+                    if (attendre) attendreClients();
+                    temps += vitesse / 2.0 / fps; // À vitesse nominale, un tour par seconde
+                    m.remplir(monde.ecriture(), temps);
+                    monde.publier();
+                    if (nouveauMonde) {
+                        // Après la publication : un client qui voit la nouvelle génération lit une trame du nouveau monde
+                        nouveauMonde = false;
+                        generation++;
+                    }
+                    synchronized (signal) {
+                        publie++;
+                        signal.notifyAll();
+                    }
+                    produites.incrementAndGet();
+                }
+            }
+
+            // Prochaine trame : période nominale plus la gigue, sans dérive cumulée
+            echeance += periode;
+            long ecart = gigueNs > 0 ? gigue.nextLong(-gigueNs, gigueNs + 1) : 0;
+            long maintenant = System.nanoTime();
+            if (echeance < maintenant - periode) echeance = maintenant; // Retard (attente des clients) : on repart d'ici
+            attendreJusqua(echeance + ecart);
+
+            if (maintenant >= prochainRapport) {
+                rapport(produites.get() - produitesAuRapport);
+                produitesAuRapport = produites.get();
+                prochainRapport += PERIODE_RAPPORT_NS;
+            }
+        }
+    }
+
+    // Contre-pression « attendre » : tous les clients ont envoyé la dernière trame publiée
+    private void attendreClients() {
+        synchronized (signal) {
+            while (true) {
+                boolean enRetard = false;
+                for (Client c : clients) enRetard |= c.actif && c.envoye < publie;
+                if (!enRetard) return;
+                try {
+                    signal.wait(100);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private static void attendreJusqua(long echeance) {
+        long reste;
+        while ((reste = echeance - System.nanoTime()) > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(reste);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void rapport(long trames) {
+        StringBuilder sb = new StringBuilder().append(trames).append(" trames/s");
+        for (Client c : clients) sb.append(" | ").append(c.rapport());
+        System.out.println(sb);
+    }
+
+    /**
+     * Monde généré : maisons, places de travail/parc/loisir et agents en orbite, avec la densité
+     * des trames du moteur (une maison par agent, une place pour quatre agents).
+     */
+    private static final class MondeSynthetique {
+        private static final int[] TYPES_PLACES = {FrameParser.TRAVAIL, FrameParser.PARC, FrameParser.LOISIR};
+
+        final int nbAgents, nbLieux;
+        final int[] typeLieu, lieuX, lieuY;
+        final String[] noms;
+        final float[] cx, cy, rayon, phase, tour, nrj, stress, arg;
+        final int[] etat, autreEtat;
+
+        MondeSynthetique(int nbAgents, int largeur, int hauteur, long graine) {
+            SplittableRandom rnd = new SplittableRandom(graine);
+            this.nbAgents = nbAgents;
+            nbLieux = nbAgents + nbAgents / 4;
+            typeLieu = new int[nbLieux];
+            lieuX = new int[nbLieux];
+            lieuY = new int[nbLieux];
+            for (int l = 0; l < nbLieux; l++) {
+                typeLieu[l] = l < nbAgents ? FrameParser.MAISON : TYPES_PLACES[l % TYPES_PLACES.length];
+                lieuX[l] = rnd.nextInt(largeur);
+                lieuY[l] = rnd.nextInt(hauteur);
+            }
+            int[] etats = new int[SimulationEngine.LIBELLES.length];
+            for (int e = 0; e < etats.length; e++) etats[e] = WorldSnapshot.Etats.id(SimulationEngine.LIBELLES[e]);
+            noms = new String[nbAgents];
+            cx = new float[nbAgents]; cy = new float[nbAgents]; rayon = new float[nbAgents];
+            phase = new float[nbAgents]; tour = new float[nbAgents];
+            nrj = new float[nbAgents]; stress = new float[nbAgents]; arg = new float[nbAgents];
+            etat = new int[nbAgents]; autreEtat = new int[nbAgents];
+            for (int i = 0; i < nbAgents; i++) {
+                noms[i] = "Agent_" + i; // Mêmes chaînes à chaque trame (cache de noms de FrameEncoder)
+                rayon[i] = (float) rnd.nextDouble(0.5, 3);
+                cx[i] = (float) rnd.nextDouble(rayon[i], Math.max(rayon[i] + 1, largeur - 1 - rayon[i]));
+                cy[i] = (float) rnd.nextDouble(rayon[i], Math.max(rayon[i] + 1, hauteur - 1 - rayon[i]));
+                phase[i] = (float) rnd.nextDouble(2 * Math.PI);
+                tour[i] = (float) rnd.nextDouble(0.5, 1.5);
+                nrj[i] = (float) rnd.nextDouble(20, 100);
+                stress[i] = (float) rnd.nextDouble(0, 70);
+                arg[i] = (float) rnd.nextDouble(0, 200);
+                etat[i] = etats[rnd.nextInt(etats.length)];
+                autreEtat[i] = etats[rnd.nextInt(etats.length)];
+            }
+        }
+
+        /** Écrit le monde à la date donnée (en tours) dans la trame. */
+        void remplir(WorldSnapshot t, double temps) {
+            long pas = (long) (temps * 16); // Changements d'état et d'occupation : seize par tour
+            for (int l = 0; l < nbLieux; l++) {
+                t.ajouterLieu(typeLieu[l], lieuX[l], lieuY[l], l >= nbAgents && ((pas + l) & 3) == 0);
+            }
+            int occupes = 0, morts = 0;
+            double sommeNrj = 0, sommeStress = 0, sommeArg = 0;
+            for (int i = 0; i < nbAgents; i++) {
+                double a = phase[i] + 2 * Math.PI * temps * tour[i];
+                double sin = Math.sin(a), cos = Math.cos(a);
+                float n = nrj[i] + (float) (5 * sin), s = stress[i] + (float) (5 * cos), g = arg[i] + (float) (3 * sin);
+                int e = ((pas + i) & 15) < 2 ? autreEtat[i] : etat[i];
+                t.ajouterAgent(noms[i], (float) (cx[i] + rayon[i] * cos), (float) (cy[i] + rayon[i] * sin),
+                        n, s, g, e, (float) Math.IEEEremainder(a + Math.PI / 2, 2 * Math.PI));
+                if (e == WorldSnapshot.Etats.OCCUPE) occupes++;
+                if (e == WorldSnapshot.Etats.MORT) morts++;
+                sommeNrj += n;
+                sommeStress += s;
+                sommeArg += g;
+            }
+            int vivants = nbAgents - morts;
+            float d = Math.max(1, nbAgents);
+            t.definirStats((float) (sommeNrj / d), (float) (sommeStress / d), (float) (sommeArg / d), vivants, morts, occupes);
+        }
+    }
+
+    // ========================================================================
+    // CLIENTS
+    // ========================================================================
+
+    /** Connexion d'un client : écoute des commandes et envoi des trames, sur deux threads. */
+    private final class Client implements Runnable {
+        private final Socket conn;
+        private final FrameEncoder encodeur = new FrameEncoder();
+
+        // Demandes reçues par le thread d'écoute, appliquées par le thread d'envoi
+        private volatile int protoDemande = 0;
+        private volatile boolean resync = false;
+        private final CommandChannel.Acquittements acquittements = new CommandChannel.Acquittements();
+
+        volatile boolean actif = true;
+        volatile long envoye = 0; // Dernière trame publiée envoyée (ou sautée) par ce client
+
+        // Compteurs du rapport (remis à zéro à chaque rapport)
+        private final AtomicLong envoyees = new AtomicLong(), sautees = new AtomicLong(), octets = new AtomicLong();
+        private volatile long ecritureMaxNs;
+
+        Client(Socket conn) {
+            this.conn = conn;
+        }
+
+        @Override
+        public void run() {
+            System.out.println("Client connecté.");
+            envoye = publie; // Les trames antérieures à la connexion ne comptent pas comme sautées
+            clients.add(this);
+            Thread ecoute = new Thread(this::ecouterCommandes, "commandes-" + conn.getPort());
+            ecoute.setDaemon(true);
+            ecoute.start();
+            try (conn) {
+                envoyer();
+            } catch (IOException e) {
+                System.out.println("Client déconnecté (envoi) : " + e.getMessage());
+            } finally {
+                actif = false;
+                clients.remove(this);
+                synchronized (signal) {
+                    signal.notifyAll(); // Ne plus retenir la production
+                }
+            }
+        }
+
+        String rapport() {
+            long max = ecritureMaxNs;
+            ecritureMaxNs = 0;
+            return String.format("%s : %d envoyées, %d sautées, %.1f Mo/s, écriture max %.1f ms",
+                    conn.getPort(), envoyees.getAndSet(0), sautees.getAndSet(0), octets.getAndSet(0) / 1e6, max / 1e6);
+        }
+
+        // Thread d'écoute des commandes (SCENARIO, STOP, SPEED, PROTO, RESYNC), une par ligne
+        private void ecouterCommandes() {
+            try {
+                BufferedReader in = new BufferedReader(new InputStreamReader(conn.getInputStream(), StandardCharsets.UTF_8));
+                String ligne;
+                while ((ligne = in.readLine()) != null) {
+                    CommandChannel.Commande c = CommandChannel.Commande.lire(ligne);
+                    long effet = 0; // Génération à partir de laquelle la commande est visible
+                    switch (c.nom()) {
+                        case "SCENARIO" -> {
+                            if (c.argument() != null) {
+                                effet = generation + 1;
+                                scenarioDemande = c.argument();
+                                demandesScenario.incrementAndGet();
+                            }
+                            enCours = true;
+                        }
+                        case "STOP" -> enCours = false;
+                        case "SPEED" -> {
+                            try {
+                                vitesse = Integer.parseInt(c.argument());
+                            } catch (RuntimeException ignore) {
+                                // Valeur invalide ignorée, comme pour le serveur Python
+                            }
+                        }
+                        case "PROTO" -> {
+                            int v;
+                            try {
+                                v = Integer.parseInt(c.argument());
+                            } catch (RuntimeException e) {
+                                v = FrameParser.PROTO_TEXTE;
+                            }
+                            protoDemande = v;
+                        }
+                        case "RESYNC" -> resync = true;
+                        default -> { continue; } // Commande inconnue : ignorée
+                    }
+                    acquittements.ajouter(c.id(), effet);
+                    reveiller();
+                }
+            } catch (IOException e) {
+                System.out.println("Erreur/Déconnexion client (écoute): " + e.getMessage());
+            }
+            try { conn.close(); } catch (IOException ignored) {}
+        }
+
+        private void reveiller() {
+            synchronized (signal) {
+                signal.notifyAll();
+            }
+        }
+
+        private void envoyer() throws IOException {
+            OutputStream out = conn.getOutputStream();
+            long gen = -1;
+            boolean config = true; // Configuration initiale dès la connexion
+
+            while (!conn.isClosed()) {
+                // Attente d'une trame non envoyée (ou d'une demande PROTO, d'un acquittement)
+                synchronized (signal) {
+                    while (publie == envoye && protoDemande == 0 && !acquittements.pret(generation) && !conn.isClosed()) {
+                        try {
+                            signal.wait(100);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            return;
+                        }
+                    }
+                }
+                // Acquittements d'abord : les demandes qu'ils couvrent sont déjà visibles ci-dessous
+                long g = generation;
+                acquittements.transmettre(encodeur, g);
+                int v = protoDemande;
+                if (v != 0) {
+                    protoDemande = 0;
+                    encodeur.setProto(v);
+                    config = true; // La réponse (CONFIG avec version) précède la trame suivante
+                }
+                if (resync) {
+                    resync = false;
+                    encodeur.demanderKeyframe();
+                }
+                if (g != gen && gen >= 0) {
+                    // Nouveau scénario : CONFIG et trame complète
+                    config = true;
+                    encodeur.demanderKeyframe();
+                }
+                gen = g;
+
+                ByteBuffer octetsTrame = null;
+                long numero;
+                WorldSnapshot t = monde.acquerir();
+                try {
+                    numero = t.numero;
+                    boolean nouvelle = numero > envoye;
+                    if (nouvelle) {
+                        octetsTrame = encodeur.encoder(t, largeur, hauteur, config);
+                        sautees.addAndGet(numero - envoye - 1);
+                        envoyees.incrementAndGet();
+                        config = false;
+                    } else if (config && encodeur.getProto() < FrameParser.PROTO_BINAIRE) {
+                        // Réponse à PROTO sans trame à envoyer (simulation arrêtée), comme EngineServer
+                        octetsTrame = encodeur.encoder(null, largeur, hauteur, true);
+                        config = false;
+                    } else if (encodeur.aDesAcquittements()) {
+                        octetsTrame = encodeur.encoder(null, largeur, hauteur, false); // STOP : acquittements seuls
+                    }
+                } finally {
+                    monde.liberer();
+                }
+                if (octetsTrame != null && octetsTrame.hasRemaining()) {
+                    long debut = System.nanoTime();
+                    out.write(octetsTrame.array(), octetsTrame.arrayOffset() + octetsTrame.position(), octetsTrame.remaining());
+                    out.flush();
+                    ecritureMaxNs = Math.max(ecritureMaxNs, System.nanoTime() - debut);
+                    octets.addAndGet(octetsTrame.remaining());
+                }
+                if (numero > envoye) {
+                    envoye = numero;
+                    if (attendre) reveiller();
+                }
+            }
+        }
+    }
+}
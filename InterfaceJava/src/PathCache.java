@@ -0,0 +1,252 @@
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Planification partagée des chemins du moteur : cache LRU des chemins A* et champs de
+ * directions (flow fields) pour les lieux fréquentés.
+ *
+ * Vers un lieu (travail, parc, loisir), les obstacles ne dépendent que du lieu visé. Dès qu'un
+ * lieu a été demandé plusieurs fois, un parcours en largeur partant de toutes ses places donne
+ * la distance de chaque case au lieu : un agent s'y rend en passant à chaque pas sur la case
+ * voisine la plus proche ({@link #suivante}), en O(1), sans chemin à stocker ni à recalculer
+ * lorsqu'il est dévié. Les autres trajets (maisons, lieux peu demandés) passent par A*, mis en
+ * cache par (case de départ, case but) pour une version donnée de la disposition de la ville.
+ *
+ * Un lieu ne devient « fréquent » qu'entre deux pas ({@link #finDePas()}), et chaque chemin ou
+ * champ ne dépend que de sa clé : le résultat ne dépend ni de l'ordre des threads ni du contenu
+ * du cache, et le moteur reste reproductible. Tout est vidé lorsque la disposition change.
+ * Pour un secteur d'une ville répartie, les demandes sont comptées dans toute la ville : le
+ * lieu devient fréquent par {@link #promouvoir} et non d'après les seules demandes locales.
+ *
+ * Les chemins et champs renvoyés sont partagés et ne doivent pas être modifiés.
+ * Utilisable depuis plusieurs threads (caches découpés en segments verrouillés séparément).
+ */
+final class PathCache {
+
+    static final char INATTEIGNABLE = Character.MAX_VALUE;
+
+    private static final int NB_SEGMENTS = 16;
+    static final int SEUIL_CHAMP = 4;             // Recherches A* vers un lieu avant d'en calculer le champ
+    private static final long BUDGET_CHAMPS = 32L << 20; // Nombre total de cases conservées dans les champs
+    private static final int[] DX = {1, -1, 0, 0};
+    private static final int[] DY = {0, 0, 1, -1};
+
+    private final Segment<int[]>[] chemins;
+    private volatile Segment<char[]>[] champs; // Distances au lieu (saturées), par lieu
+    private volatile long version = -1;
+    private volatile AtomicIntegerArray demandes = new AtomicIntegerArray(0); // Recherches A* par lieu
+    private volatile boolean[] frequents = new boolean[0];                    // Lieux servis par un champ
+    private final ConcurrentLinkedQueue<Integer> nouveauxFrequents = new ConcurrentLinkedQueue<>();
+    private volatile boolean promotionLocale = true;
+
+    private final LongAdder succes = new LongAdder(), echecs = new LongAdder(), champsCalcules = new LongAdder();
+
+    PathCache(int capaciteChemins) {
+        chemins = segments(capaciteChemins);
+        champs = segments(NB_SEGMENTS);
+    }
+
+    long getSucces() {
+        return succes.sum();
+    }
+
+    long getEchecs() {
+        return echecs.sum();
+    }
+
+    long getChampsCalcules() {
+        return champsCalcules.sum();
+    }
+
+    /** Faux : les lieux ne deviennent fréquents que par {@link #promouvoir} (secteur d'une ville répartie). */
+    void setPromotionLocale(boolean actif) {
+        promotionLocale = actif;
+    }
+
+    /** Recherches A* vers le lieu depuis le dernier changement de disposition. */
+    int demandes(City v, int lieu) {
+        verifierVersion(v);
+        return demandes.get(lieu);
+    }
+
+    /** Le lieu est désormais servi par un champ (entre deux pas, comme {@link #finDePas()}). */
+    void promouvoir(City v, int lieu) {
+        verifierVersion(v);
+        frequents[lieu] = true;
+    }
+
+    /** Vrai si le lieu est servi par un champ (point de reprise). */
+    boolean frequent(City v, int lieu) {
+        verifierVersion(v);
+        return frequents[lieu];
+    }
+
+    /** Reprend les recherches comptées vers un lieu et son état fréquent (point de reprise, entre deux pas). */
+    void reprendre(City v, int lieu, int demandes, boolean frequent) {
+        verifierVersion(v);
+        this.demandes.set(lieu, demandes);
+        frequents[lieu] = frequent;
+    }
+
+    /**
+     * Chemin A* de 'depart' à 'but' (mêmes conventions que {@link PathFinder#chercher}), en cache.
+     * Vers un lieu, toutes les maisons sont des obstacles pour que le chemin ne dépende pas de l'agent.
+     * @param secours chercheur A* du thread appelant, utilisé en l'absence du chemin dans le cache
+     */
+    int[] chemin(City v, int depart, int but, int maisonAgent, int lieuDestination, PathFinder secours) {
+        verifierVersion(v);
+        if (lieuDestination != City.AUCUN && demandes.incrementAndGet(lieuDestination) == SEUIL_CHAMP && promotionLocale) {
+            nouveauxFrequents.add(lieuDestination);
+        }
+        if (depart == but) return PathFinder.VIDE;
+
+        long cle = (long) depart << 32 | but;
+        Segment<int[]> s = chemins[segment(cle)];
+        int[] c;
+        synchronized (s) {
+            c = s.get(cle);
+        }
+        if (c != null) {
+            succes.increment();
+            return c;
+        }
+        echecs.increment();
+        c = secours.chercher(v, depart, but, lieuDestination != City.AUCUN ? City.AUCUN : maisonAgent, lieuDestination);
+        synchronized (s) {
+            s.put(cle, c);
+        }
+        return c;
+    }
+
+    /**
+     * Champ de distances vers un lieu fréquent (calculé au premier appel), ou null si le lieu
+     * n'est pas (encore) fréquent : l'agent passe alors par {@link #chemin}.
+     */
+    char[] champ(City v, int lieu) {
+        verifierVersion(v);
+        if (!frequents[lieu]) return null;
+        Long cle = (long) lieu;
+        Segment<char[]> s = champs[segment(lieu)];
+        char[] d;
+        synchronized (s) {
+            d = s.get(cle);
+        }
+        if (d != null) return d;
+        d = parcoursEnLargeur(v, lieu);
+        synchronized (s) {
+            char[] existant = s.putIfAbsent(cle, d); // Calculé en parallèle par un autre thread
+            if (existant != null) return existant;
+        }
+        champsCalcules.increment();
+        return d;
+    }
+
+    /**
+     * Case voisine la plus proche du lieu depuis la case c, qui peut être hors champ (maison
+     * de l'agent, place d'un autre lieu). Renvoie -1 si aucun voisin n'atteint le lieu.
+     */
+    static int suivante(City v, char[] champ, int c) {
+        int cx = c % v.largeur, cy = c / v.largeur;
+        int meilleure = -1;
+        char dMin = INATTEIGNABLE;
+        for (int k = 0; k < 4; k++) {
+            int nx = cx + DX[k], ny = cy + DY[k];
+            if (nx < 0 || ny < 0 || nx >= v.largeur || ny >= v.hauteur) continue;
+            int n = ny * v.largeur + nx;
+            if (champ[n] < dMin) {
+                dMin = champ[n];
+                meilleure = n;
+            }
+        }
+        return meilleure;
+    }
+
+    /** Entre deux pas : les lieux demandés assez souvent seront désormais servis par un champ. */
+    void finDePas() {
+        boolean[] f = frequents;
+        Integer lieu;
+        while ((lieu = nouveauxFrequents.poll()) != null) {
+            if (lieu < f.length) f[lieu] = true;
+        }
+    }
+
+    private void verifierVersion(City v) {
+        if (v.version != version) invalider(v);
+    }
+
+    /** Vide les caches pour une nouvelle disposition de ville. */
+    synchronized void invalider(City v) {
+        if (v.version == version) return;
+        for (Segment<int[]> s : chemins) synchronized (s) { s.clear(); }
+        // Nombre de champs conservés borné par le budget mémoire, selon la taille de la grille
+        long cases = Math.max(1, (long) v.largeur * v.hauteur);
+        champs = segments((int) Math.max(NB_SEGMENTS, Math.min(Integer.MAX_VALUE, BUDGET_CHAMPS / cases)));
+        demandes = new AtomicIntegerArray(v.nbLieux);
+        frequents = new boolean[v.nbLieux];
+        nouveauxFrequents.clear();
+        version = v.version;
+    }
+
+    // Distance (en cases, saturée) de chaque case à la place la plus proche du lieu
+    private static char[] parcoursEnLargeur(City v, int lieu) {
+        char[] dist = new char[v.largeur * v.hauteur];
+        Arrays.fill(dist, INATTEIGNABLE);
+        int[] file = new int[dist.length];
+        int tete = 0, queue = 0;
+        for (int p = v.debutPlaces[lieu]; p < v.finPlaces[lieu]; p++) {
+            int c = v.placeY[p] * v.largeur + v.placeX[p];
+            dist[c] = 0;
+            file[queue++] = c;
+        }
+        while (tete < queue) {
+            int c = file[tete++];
+            int cx = c % v.largeur, cy = c / v.largeur;
+            char d = (char) Math.min(dist[c] + 1, INATTEIGNABLE - 1);
+            for (int k = 0; k < 4; k++) {
+                int nx = cx + DX[k], ny = cy + DY[k];
+                if (nx < 0 || ny < 0 || nx >= v.largeur || ny >= v.hauteur) continue;
+                int n = ny * v.largeur + nx;
+                if (dist[n] != INATTEIGNABLE || v.bloque(n, City.AUCUN, lieu)) continue;
+                dist[n] = d;
+                file[queue++] = n;
+            }
+        }
+        return dist;
+    }
+
+    // ========================================================================
+    // LRU DÉCOUPÉ EN SEGMENTS
+    // ========================================================================
+
+    private static int segment(long cle) {
+        return (int) (SimulationEngine.melanger(cle) >>> 60) & (NB_SEGMENTS - 1);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> Segment<V>[] segments(int capaciteTotale) {
+        Segment<V>[] s = (Segment<V>[]) new Segment<?>[NB_SEGMENTS];
+        for (int i = 0; i < NB_SEGMENTS; i++) s[i] = new Segment<>(Math.max(1, capaciteTotale / NB_SEGMENTS));
+        return s;
+    }
+
+    /** Table en ordre d'accès, limitée à 'capacite' entrées (la moins récemment utilisée sort). */
+    private static final class Segment<V> extends LinkedHashMap<Long, V> {
+        private static final long serialVersionUID = 1L;
+
+        private final int capacite;
+
+        Segment(int capacite) {
+            super(16, 0.75f, true);
+            this.capacite = capacite;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, V> e) {
+            return size() > capacite;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+import java.util.Arrays;
+
+/**
+ * Recherche A* sur la grille de la ville (4 voisins, heuristique de Manhattan), équivalent
+ * de deplacerast._astar_grid.
+ *
+ * Une instance par thread de calcul : les tableaux de travail (coûts, parents, tas) sont
+ * dimensionnés une fois pour la grille et remis à zéro par numéro de passe, sans
+ * réallocation entre deux recherches.
+ */
+final class PathFinder {
+
+    static final int[] VIDE = new int[0];
+
+    private static final int[] DX = {1, -1, 0, 0};
+    private static final int[] DY = {0, 0, 1, -1};
+
+    private int[] cout = new int[0];
+    private int[] parent = new int[0];
+    private int[] passeVue = new int[0];  // Passe où cout/parent ont été écrits
+    private int[] passeFermee = new int[0]; // Passe où la case a été développée
+    private int passe = 0;
+
+    // Tas binaire (priorité, coût, case) en tableaux parallèles, suppression paresseuse
+    private int[] tasPriorite = new int[64], tasCout = new int[64], tasCase = new int[64];
+    private int tailleTas;
+
+    /**
+     * Chemin de 'depart' à 'but' (cases y * largeur + x) en évitant les obstacles stricts
+     * de l'agent. Le chemin exclut le départ et inclut le but ; il est vide si le but est
+     * inatteignable ou confondu avec le départ.
+     */
+    int[] chercher(City v, int depart, int but, int maisonAgent, int lieuDestination) {
+        int n = v.largeur * v.hauteur;
+        if (cout.length < n) {
+            cout = new int[n];
+            parent = new int[n];
+            passeVue = new int[n];
+            passeFermee = new int[n];
+        }
+        if (++passe == 0) { // Débordement du compteur : remise à zéro explicite
+            Arrays.fill(passeVue, 0);
+            Arrays.fill(passeFermee, 0);
+            passe = 1;
+        }
+
+        int bx = but % v.largeur, by = but / v.largeur;
+        tailleTas = 0;
+        cout[depart] = 0;
+        parent[depart] = -1;
+        passeVue[depart] = passe;
+        empiler(0, 0, depart);
+
+        while (tailleTas > 0) {
+            int courant = tasCase[0], g = tasCout[0];
+            depiler();
+            if (courant == but) return reconstruire(depart, but);
+            if (passeFermee[courant] == passe) continue;
+            passeFermee[courant] = passe;
+
+            int cx = courant % v.largeur, cy = courant / v.largeur;
+            for (int d = 0; d < 4; d++) {
+                int nx = cx + DX[d], ny = cy + DY[d];
+                if (nx < 0 || ny < 0 || nx >= v.largeur || ny >= v.hauteur) continue;
+                int voisin = ny * v.largeur + nx;
+                // Un obstacle reste franchissable s'il est le but lui-même
+                if (voisin != but && v.bloque(voisin, maisonAgent, lieuDestination)) continue;
+                int essai = g + 1;
+                if (passeVue[voisin] == passe && essai >= cout[voisin]) continue;
+                passeVue[voisin] = passe;
+                cout[voisin] = essai;
+                parent[voisin] = courant;
+                empiler(essai + Math.abs(nx - bx) + Math.abs(ny - by), essai, voisin);
+            }
+        }
+        return VIDE;
+    }
+
+    private int[] reconstruire(int depart, int but) {
+        int longueur = 0;
+        for (int c = but; c != depart; c = parent[c]) longueur++;
+        int[] chemin = new int[longueur];
+        for (int c = but, i = longueur - 1; c != depart; c = parent[c]) chemin[i--] = c;
+        return chemin;
+    }
+
+    // ========================================================================
+    // TAS BINAIRE (ordre : priorité, puis coût, puis case -- comme les tuples heapq)
+    // ========================================================================
+
+    private void empiler(int priorite, int g, int c) {
+        if (tailleTas == tasCase.length) {
+            int t = tailleTas * 2;
+            tasPriorite = Arrays.copyOf(tasPriorite, t);
+            tasCout = Arrays.copyOf(tasCout, t);
+            tasCase = Arrays.copyOf(tasCase, t);
+        }
+        int i = tailleTas++;
+        while (i > 0) {
+            int p = (i - 1) >>> 1;
+            if (!avant(priorite, g, c, p)) break;
+            placer(i, tasPriorite[p], tasCout[p], tasCase[p]);
+            i = p;
+        }
+        placer(i, priorite, g, c);
+    }
+
+    private void depiler() {
+        int n = --tailleTas;
+        if (n == 0) return;
+        int priorite = tasPriorite[n], g = tasCout[n], c = tasCase[n];
+        int i = 0;
+        while (true) {
+            int e = 2 * i + 1;
+            if (e >= n) break;
+            if (e + 1 < n && avant(tasPriorite[e + 1], tasCout[e + 1], tasCase[e + 1], e)) e++;
+            if (!avant(tasPriorite[e], tasCout[e], tasCase[e], priorite, g, c)) break;
+            placer(i, tasPriorite[e], tasCout[e], tasCase[e]);
+            i = e;
+        }
+        placer(i, priorite, g, c);
+    }
+
+    private boolean avant(int priorite, int g, int c, int j) {
+        return avant(priorite, g, c, tasPriorite[j], tasCout[j], tasCase[j]);
+    }
+
+    private static boolean avant(int p1, int g1, int c1, int p2, int g2, int c2) {
+        if (p1 != p2) return p1 < p2;
+        if (g1 != g2) return g1 < g2;
+        return c1 < c2;
+    }
+
+    private void placer(int i, int priorite, int g, int c) {
+        tasPriorite[i] = priorite;
+        tasCout[i] = g;
+        tasCase[i] = c;
+    }
+}
@@ -0,0 +1,91 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+
+/**
+ * Occupation des places d'une ville, sans verrou : remplace ville.lock du serveur Python,
+ * pris pour chaque prise ou libération de place comme par chaque lecture de l'état.
+ *
+ * Un compteur d'occupants par place (une place peut être partagée, comme la liste occupant
+ * côté Python) : une arrivée ou un départ est une seule addition atomique, sans réservation.
+ *
+ * Chaque lieu a ses propres lignes de cache : deux compteurs d'écritures (commencées avant
+ * l'écriture, terminées après) suivis des compteurs de ses places. Deux lieux ne se disputent
+ * jamais une ligne ; seuls les agents d'un même lieu sont en concurrence.
+ *
+ * Les lecteurs (trame, statistiques) copient les compteurs sans bloquer les écrivains, lieu
+ * par lieu : la copie d'un lieu est cohérente si aucune écriture n'y était en cours au début
+ * et qu'aucune n'y a commencé pendant ; sinon elle est refaite, au plus ESSAIS fois. Une
+ * écriture ne fait recommencer que la copie de son lieu (une vingtaine de places au plus).
+ */
+final class PlaceSlots {
+
+    static final int ESSAIS = 16;
+
+    private static final VarHandle CASE = MethodHandles.arrayElementVarHandle(int[].class);
+    private static final int PAR_LIGNE = 16; // Entiers par ligne de cache de 64 octets
+    private static final int COMMENCEES = 0, TERMINEES = 1, ENTETE = 2; // Début du bloc d'un lieu
+
+    final int nbPlaces;
+    private final int[] cases;
+    private final int[] indice; // Place -> case de son compteur
+    private final int[] bloc; // Place -> début du bloc de son lieu
+    private final int[] premiere; // Groupe de places d'un même lieu -> première place (et nbGroupes + 1 bornes)
+    private final int nbGroupes;
+
+    /** @param placeLieu lieu de chaque place ; les places d'un lieu sont consécutives */
+    PlaceSlots(int[] placeLieu, int nbPlaces) {
+        this.nbPlaces = nbPlaces;
+        indice = new int[nbPlaces];
+        bloc = new int[nbPlaces];
+        int[] debuts = new int[nbPlaces + 1];
+        int g = 0, k = 0, b = 0;
+        for (int p = 0; p < nbPlaces; p++) {
+            if (p == 0 || placeLieu[p] != placeLieu[p - 1]) {
+                debuts[g++] = p;
+                b = (k + PAR_LIGNE - 1) / PAR_LIGNE * PAR_LIGNE; // Nouveau lieu : nouvelle ligne
+                k = b + ENTETE;
+            }
+            bloc[p] = b;
+            indice[p] = k++;
+        }
+        debuts[g] = nbPlaces;
+        nbGroupes = g;
+        premiere = Arrays.copyOf(debuts, g + 1);
+        cases = new int[k + PAR_LIGNE]; // Dernière ligne non partagée avec un autre objet
+    }
+
+    /** Occupants actuels de la place. */
+    int get(int place) {
+        return (int) CASE.getAcquire(cases, indice[place]);
+    }
+
+    /** Arrivée (+1) ou départ (-1) sur une place, même si elle est déjà occupée. */
+    void ajouter(int place, int delta) {
+        int b = bloc[place];
+        CASE.getAndAdd(cases, b + COMMENCEES, 1);
+        CASE.getAndAdd(cases, indice[place], delta);
+        CASE.getAndAdd(cases, b + TERMINEES, 1);
+    }
+
+    /**
+     * Copie l'occupation de toutes les places dans 'dest' sans bloquer les écritures.
+     * @return vrai si la copie de chaque lieu est cohérente ; faux si un lieu a été modifié
+     * pendant ses ESSAIS copies (dest contient alors la dernière)
+     */
+    boolean copier(int[] dest) {
+        boolean coherent = true;
+        for (int g = 0; g < nbGroupes; g++) {
+            int debut = premiere[g], fin = premiere[g + 1], b = bloc[debut];
+            boolean ok = false;
+            for (int essai = 0; essai < ESSAIS && !ok; essai++) {
+                int avant = (int) CASE.getAcquire(cases, b + TERMINEES);
+                for (int p = debut; p < fin; p++) dest[p] = cases[indice[p]];
+                VarHandle.acquireFence(); // Les lectures de la copie précèdent la vérification
+                ok = (int) CASE.getAcquire(cases, b + COMMENCEES) == avant;
+            }
+            coherent &= ok;
+        }
+        return coherent;
+    }
+}
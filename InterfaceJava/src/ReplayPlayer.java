@@ -0,0 +1,166 @@
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Relecture d'une session enregistrée, sans serveur : un thread publie les trames d'un
+ * {@link SessionReader} dans un {@link WorldSnapshot.Echange}, au rythme de l'enregistrement
+ * multiplié par la vitesse choisie (1× à {@link #VITESSE_MAX}×).
+ *
+ * À chaque passage, la trame affichée est la dernière dont la date est atteinte : si le
+ * décodage ne suit pas (grande vitesse, gros monde), les trames intermédiaires sont sautées
+ * et le lecteur repart de la clé la plus proche. Pause, vitesse et déplacement
+ * ({@link #allerA}, utilisé pour le défilement) peuvent être demandés depuis n'importe quel
+ * thread ; l'interface lit la position et la taille de grille sans rappel.
+ */
+final class ReplayPlayer {
+
+    static final int VITESSE_MAX = 64;
+    private static final long ATTENTE_MAX = TimeUnit.MILLISECONDS.toNanos(50);
+
+    private final SessionReader lecteur;
+    private final WorldSnapshot.Echange monde;
+    private final Thread thread;
+    private final AtomicInteger demandeSaut = new AtomicInteger(-1);
+    private volatile boolean actif = true;
+    private volatile boolean pause = false;
+    private volatile int vitesse = 1;
+
+    // Lus par l'interface
+    private volatile int position = -1;
+    private volatile int largeur, hauteur;
+
+    // Horloge de relecture (thread de relecture uniquement) : date de session atteinte à 'origineMur'
+    private long origineMur, origineSession;
+    private int vitesseOrigine;
+
+    ReplayPlayer(SessionReader lecteur, WorldSnapshot.Echange monde) {
+        this.lecteur = lecteur;
+        this.monde = monde;
+        thread = new Thread(this::boucle, "Relecture");
+        thread.setDaemon(true);
+    }
+
+    void demarrer() {
+        thread.start();
+    }
+
+    /** Arrête la relecture et ferme la session. */
+    void arreter() {
+        actif = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join();
+            lecteur.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException ignored) {
+        }
+    }
+
+    void setPause(boolean p) {
+        pause = p;
+        LockSupport.unpark(thread);
+    }
+
+    boolean isPause() {
+        return pause;
+    }
+
+    void setVitesse(int v) {
+        vitesse = Math.max(1, Math.min(VITESSE_MAX, v));
+        LockSupport.unpark(thread);
+    }
+
+    /** Affiche la trame donnée (y compris en pause) puis reprend la lecture à partir d'elle. */
+    void allerA(int trame) {
+        demandeSaut.set(Math.max(0, Math.min(lecteur.getNbTrames() - 1, trame)));
+        LockSupport.unpark(thread);
+    }
+
+    int getPosition() {
+        return position;
+    }
+
+    int getNbTrames() {
+        return lecteur.getNbTrames();
+    }
+
+    /** Date de la trame affichée, en nanosecondes depuis le début de la session. */
+    long getTemps() {
+        int p = position;
+        return p < 0 ? 0 : lecteur.getTemps(p);
+    }
+
+    long getDuree() {
+        int n = lecteur.getNbTrames();
+        return n == 0 ? 0 : lecteur.getTemps(n - 1);
+    }
+
+    int getLargeur() {
+        return largeur;
+    }
+
+    int getHauteur() {
+        return hauteur;
+    }
+
+    // ========================================================================
+    // THREAD DE RELECTURE
+    // ========================================================================
+
+    private void boucle() {
+        int nb = lecteur.getNbTrames();
+        try {
+            if (nb == 0) return;
+            afficher(0);
+            recaler();
+            while (actif) {
+                int saut = demandeSaut.getAndSet(-1);
+                if (saut >= 0) {
+                    afficher(saut);
+                    recaler();
+                    continue;
+                }
+                if (pause || position >= nb - 1) {
+                    if (position >= nb - 1) pause = true; // Fin de session : le bouton repasse en lecture
+                    LockSupport.parkNanos(this, ATTENTE_MAX);
+                    recaler();
+                    continue;
+                }
+                if (vitesse != vitesseOrigine) recaler();
+
+                long maintenant = System.nanoTime();
+                long dateSession = origineSession + (maintenant - origineMur) * vitesseOrigine;
+                int cible = lecteur.trameA(dateSession);
+                if (cible > position) {
+                    afficher(cible);
+                } else {
+                    // Attente jusqu'à la date de la trame suivante (ou une commande)
+                    long attente = (lecteur.getTemps(position + 1) - dateSession) / vitesseOrigine;
+                    LockSupport.parkNanos(this, Math.max(0, Math.min(attente, ATTENTE_MAX)));
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            System.out.println("Relecture interrompue : " + e.getMessage());
+        }
+    }
+
+    private void afficher(int trame) throws IOException {
+        WorldSnapshot t = monde.ecriture();
+        lecteur.lire(trame, t);
+        t.datePublication = System.nanoTime(); // Date d'affichage : sert à interpoler les agents
+        largeur = lecteur.getLargeur();
+        hauteur = lecteur.getHauteur();
+        monde.publier();
+        position = trame;
+    }
+
+    // L'horloge repart de la trame affichée
+    private void recaler() {
+        origineMur = System.nanoTime();
+        origineSession = lecteur.getTemps(Math.max(0, position));
+        vitesseOrigine = vitesse;
+    }
+}
@@ -0,0 +1,269 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Paramètres d'un scénario, lus dans config_scenarios.Json (même fichier que le serveur Python).
+ *
+ * Le fichier est cherché dans l'ordre : propriété -Dsma.config, répertoire courant, répertoire
+ * parent (lancement depuis InterfaceJava). En cas d'échec, on reprend la configuration par
+ * défaut de ClassPrincipale.
+ */
+final class ScenarioConfig {
+
+    final String id;
+    final String nom;
+    final int largeur, hauteur;
+    final int nbAgents;
+    final double argentInitial, energieInitiale, stressInitial;
+    final int nbMaisons, nbTravail, nbParcs, nbLoisirs;
+    final String profilDominant; // "Bosseur", "Casanier" ou "Equilibre"
+
+    ScenarioConfig(String id, String nom, int largeur, int hauteur, int nbAgents,
+                   double argentInitial, double energieInitiale, double stressInitial,
+                   int nbMaisons, int nbTravail, int nbParcs, int nbLoisirs, String profilDominant) {
+        this.id = id;
+        this.nom = nom;
+        this.largeur = largeur;
+        this.hauteur = hauteur;
+        this.nbAgents = nbAgents;
+        this.argentInitial = argentInitial;
+        this.energieInitiale = energieInitiale;
+        this.stressInitial = stressInitial;
+        this.nbMaisons = nbMaisons;
+        this.nbTravail = nbTravail;
+        this.nbParcs = nbParcs;
+        this.nbLoisirs = nbLoisirs;
+        this.profilDominant = profilDominant;
+    }
+
+    /**
+     * Copie avec un paramètre remplacé, désigné par sa clé dans config_scenarios.Json
+     * (« lieux.travail » pour une clé de « lieux ») ; valeur telle que lue par {@link #lireJson}.
+     */
+    @SuppressWarnings("unchecked")
+    ScenarioConfig avec(String parametre, Object valeur) {
+        int l = largeur, h = hauteur, agents = nbAgents, maisons = nbMaisons, travail = nbTravail, parcs = nbParcs, loisirs = nbLoisirs;
+        double argent = argentInitial, energie = energieInitiale, stressI = stressInitial;
+        String profil = profilDominant;
+        switch (parametre) {
+            case "taille_grille" -> {
+                List<Object> t = (List<Object>) valeur;
+                l = entier(t.get(0));
+                h = entier(t.get(1));
+            }
+            case "nombre_agents" -> agents = entier(valeur);
+            case "argent_initial" -> argent = nombre(valeur, argent);
+            case "energie_initiale" -> energie = nombre(valeur, energie);
+            case "stress_initial" -> stressI = nombre(valeur, stressI);
+            case "lieux.maisons" -> maisons = entier(valeur);
+            case "lieux.travail" -> travail = entier(valeur);
+            case "lieux.parcs" -> parcs = entier(valeur);
+            case "lieux.loisirs" -> loisirs = entier(valeur);
+            case "profil_dominant" -> profil = String.valueOf(valeur);
+            default -> throw new IllegalArgumentException("paramètre inconnu : " + parametre);
+        }
+        return new ScenarioConfig(id, nom, l, h, agents, argent, energie, stressI, maisons, travail, parcs, loisirs, profil);
+    }
+
+    /** Écrit le scénario pour un autre processus ({@link ShardWorker}). */
+    void ecrire(DataOutput out) throws IOException {
+        out.writeUTF(id);
+        out.writeUTF(nom);
+        out.writeInt(largeur);
+        out.writeInt(hauteur);
+        out.writeInt(nbAgents);
+        out.writeDouble(argentInitial);
+        out.writeDouble(energieInitiale);
+        out.writeDouble(stressInitial);
+        out.writeInt(nbMaisons);
+        out.writeInt(nbTravail);
+        out.writeInt(nbParcs);
+        out.writeInt(nbLoisirs);
+        out.writeUTF(profilDominant);
+    }
+
+    /** Relit un scénario écrit par {@link #ecrire}. */
+    static ScenarioConfig lire(DataInput in) throws IOException {
+        return new ScenarioConfig(in.readUTF(), in.readUTF(), in.readInt(), in.readInt(), in.readInt(),
+                in.readDouble(), in.readDouble(), in.readDouble(),
+                in.readInt(), in.readInt(), in.readInt(), in.readInt(), in.readUTF());
+    }
+
+    /** Configuration de secours (identique à celle de ClassPrincipale si le fichier est illisible). */
+    static Map<String, ScenarioConfig> parDefaut() {
+        Map<String, ScenarioConfig> m = new LinkedHashMap<>();
+        m.put("1", new ScenarioConfig("1", "Défaut", 30, 20, 5, 50, 100, 0, 5, 1, 1, 1, "Equilibre"));
+        return m;
+    }
+
+    /** Charge les scénarios depuis le premier fichier trouvé, ou la configuration par défaut. */
+    static Map<String, ScenarioConfig> charger() {
+        List<Path> candidats = new ArrayList<>();
+        String chemin = System.getProperty("sma.config");
+        if (chemin != null) candidats.add(Path.of(chemin));
+        for (String rep : new String[]{".", ".."}) {
+            candidats.add(Path.of(rep, "config_scenarios.Json"));
+            candidats.add(Path.of(rep, "config_scenarios.json"));
+        }
+        for (Path p : candidats) {
+            if (!Files.isRegularFile(p)) continue;
+            try {
+                return lire(Files.readString(p, StandardCharsets.UTF_8));
+            } catch (IOException | RuntimeException e) {
+                System.out.println("ERREUR CRITIQUE: Impossible de lire " + p + " : " + e.getMessage());
+            }
+        }
+        return parDefaut();
+    }
+
+    /** Valeur d'un texte JSON : Map (ordre conservé), List, String, Double, Boolean ou null. */
+    static Object lireJson(String json) {
+        return new Json(json).valeur();
+    }
+
+    @SuppressWarnings("unchecked")
+    static Map<String, ScenarioConfig> lire(String json) {
+        Map<String, Object> racine = (Map<String, Object>) lireJson(json);
+        Map<String, ScenarioConfig> scenarios = new LinkedHashMap<>();
+        for (Map.Entry<String, Object> e : racine.entrySet()) {
+            Map<String, Object> s = (Map<String, Object>) e.getValue();
+            Map<String, Object> p = (Map<String, Object>) s.get("parametres");
+            List<Object> taille = (List<Object>) p.get("taille_grille");
+            Map<String, Object> lieux = (Map<String, Object>) p.get("lieux");
+            scenarios.put(e.getKey(), new ScenarioConfig(
+                    e.getKey(),
+                    String.valueOf(s.getOrDefault("nom", "Scénario " + e.getKey())),
+                    entier(taille.get(0)), entier(taille.get(1)),
+                    entier(p.get("nombre_agents")),
+                    nombre(p.get("argent_initial"), 0),
+                    nombre(p.get("energie_initiale"), 100),
+                    nombre(p.get("stress_initial"), 0),
+                    entier(lieux.get("maisons")), entier(lieux.get("travail")),
+                    entier(lieux.get("parcs")), entier(lieux.get("loisirs")),
+                    String.valueOf(p.getOrDefault("profil_dominant", "Equilibre"))));
+        }
+        if (scenarios.isEmpty()) throw new IllegalArgumentException("aucun scénario");
+        return scenarios;
+    }
+
+    private static int entier(Object o) {
+        return (int) nombre(o, 0);
+    }
+
+    private static double nombre(Object o, double defaut) {
+        return o instanceof Double d ? d : defaut;
+    }
+
+    // ========================================================================
+    // LECTEUR JSON MINIMAL (objets, tableaux, chaînes, nombres, booléens, null)
+    // ========================================================================
+
+    private static final class Json {
+        private final String s;
+        private int pos;
+
+        Json(String s) {
+            this.s = s;
+        }
+
+        Object valeur() {
+            espaces();
+            if (pos >= s.length()) throw erreur("fin inattendue");
+            char c = s.charAt(pos);
+            switch (c) {
+                case '{': return objet();
+                case '[': return tableau();
+                case '"': return chaine();
+                case 't': mot("true"); return Boolean.TRUE;
+                case 'f': mot("false"); return Boolean.FALSE;
+                case 'n': mot("null"); return null;
+                default: return nombre();
+            }
+        }
+
+        private Map<String, Object> objet() {
+            Map<String, Object> m = new LinkedHashMap<>();
+            pos++;
+            espaces();
+            if (s.charAt(pos) == '}') { pos++; return m; }
+            while (true) {
+                espaces();
+                String cle = chaine();
+                espaces();
+                attendre(':');
+                m.put(cle, valeur());
+                espaces();
+                if (s.charAt(pos) == ',') { pos++; continue; }
+                attendre('}');
+                return m;
+            }
+        }
+
+        private List<Object> tableau() {
+            List<Object> l = new ArrayList<>();
+            pos++;
+            espaces();
+            if (s.charAt(pos) == ']') { pos++; return l; }
+            while (true) {
+                l.add(valeur());
+                espaces();
+                if (s.charAt(pos) == ',') { pos++; continue; }
+                attendre(']');
+                return l;
+            }
+        }
+
+        private String chaine() {
+            attendre('"');
+            StringBuilder sb = new StringBuilder();
+            while (true) {
+                char c = s.charAt(pos++);
+                if (c == '"') return sb.toString();
+                if (c != '\\') { sb.append(c); continue; }
+                char e = s.charAt(pos++);
+                switch (e) {
+                    case 'n' -> sb.append('\n');
+                    case 't' -> sb.append('\t');
+                    case 'r' -> sb.append('\r');
+                    case 'b' -> sb.append('\b');
+                    case 'f' -> sb.append('\f');
+                    case 'u' -> { sb.append((char) Integer.parseInt(s.substring(pos, pos + 4), 16)); pos += 4; }
+                    default -> sb.append(e);
+                }
+            }
+        }
+
+        private Double nombre() {
+            int debut = pos;
+            while (pos < s.length() && "+-0123456789.eE".indexOf(s.charAt(pos)) >= 0) pos++;
+            if (debut == pos) throw erreur("valeur inattendue");
+            return Double.parseDouble(s.substring(debut, pos));
+        }
+
+        private void mot(String m) {
+            if (!s.startsWith(m, pos)) throw erreur("'" + m + "' attendu");
+            pos += m.length();
+        }
+
+        private void attendre(char c) {
+            if (pos >= s.length() || s.charAt(pos) != c) throw erreur("'" + c + "' attendu");
+            pos++;
+        }
+
+        private void espaces() {
+            while (pos < s.length() && Character.isWhitespace(s.charAt(pos))) pos++;
+        }
+
+        private IllegalArgumentException erreur(String message) {
+            return new IllegalArgumentException("JSON invalide à la position " + pos + " : " + message);
+        }
+    }
+}
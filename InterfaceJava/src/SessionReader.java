@@ -0,0 +1,227 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Lecture d'une session enregistrée par {@link SessionRecorder}, avec accès direct à
+ * n'importe quelle trame.
+ *
+ * L'index est projeté en mémoire en entier (24 octets par trame) : la position d'une trame
+ * et celle de sa clé sont lues en O(1), une trame à une date donnée est trouvée par
+ * dichotomie. Le journal, qui peut dépasser plusieurs Go, est lu à travers une fenêtre
+ * projetée déplacée à la demande. Pour aller à une trame, on décode sa clé puis les deltas
+ * qui suivent, sauf si l'on peut continuer depuis la trame courante à moindre coût.
+ *
+ * Une session en cours d'enregistrement peut être ouverte : seules les trames déjà indexées
+ * à l'ouverture sont visibles. Pas thread-safe (un seul thread de lecture).
+ */
+final class SessionReader implements Closeable {
+
+    private static final long TAILLE_FENETRE = 256L << 20;
+
+    private final FileChannel journal;
+    private final long tailleJournal;
+    private final MappedByteBuffer index;
+    private final int nbTrames;
+
+    private MappedByteBuffer fenetre; // Fenêtre courante sur le journal
+    private long baseFenetre;
+
+    // Monde reconstruit et trame qu'il représente
+    private final WorldSnapshot etat = new WorldSnapshot();
+    private int courante = -1;
+    private int largeur, hauteur;
+    private int[] etatsLocaux = new int[0]; // Identifiant d'état enregistré -> identifiant local (Etats)
+    private byte[] texte = new byte[64];
+
+    SessionReader(Path fichier) throws IOException {
+        journal = FileChannel.open(fichier, StandardOpenOption.READ);
+        try (FileChannel idx = FileChannel.open(SessionRecorder.indexDe(fichier), StandardOpenOption.READ)) {
+            verifierEntete(journal, SessionRecorder.MAGIC_JOURNAL);
+            verifierEntete(idx, SessionRecorder.MAGIC_INDEX);
+            tailleJournal = journal.size();
+            long entrees = (idx.size() - SessionRecorder.TAILLE_ENTETE) / SessionRecorder.TAILLE_ENTREE;
+            index = idx.map(FileChannel.MapMode.READ_ONLY, SessionRecorder.TAILLE_ENTETE,
+                    entrees * SessionRecorder.TAILLE_ENTREE);
+            index.order(ByteOrder.LITTLE_ENDIAN);
+            // Dernières entrées éventuellement postérieures à la fin du journal (arrêt brutal)
+            int n = (int) Math.min(entrees, Integer.MAX_VALUE / SessionRecorder.TAILLE_ENTREE);
+            while (n > 0 && positionDe(n - 1) >= tailleJournal) n--;
+            nbTrames = n;
+        } catch (IOException | RuntimeException e) {
+            journal.close();
+            throw e;
+        }
+    }
+
+    int getNbTrames() {
+        return nbTrames;
+    }
+
+    /** Date d'une trame, en nanosecondes depuis le début de l'enregistrement. */
+    long getTemps(int trame) {
+        return index.getLong(trame * SessionRecorder.TAILLE_ENTREE + 8);
+    }
+
+    /** Dernière trame enregistrée au plus tard à la date donnée (0 si la date précède la session). */
+    int trameA(long temps) {
+        int bas = 0, haut = nbTrames - 1;
+        while (bas < haut) {
+            int milieu = (bas + haut + 1) >>> 1;
+            if (getTemps(milieu) <= temps) bas = milieu;
+            else haut = milieu - 1;
+        }
+        return bas;
+    }
+
+    /** Trame actuellement reconstruite (-1 avant la première lecture). */
+    int getCourante() {
+        return courante;
+    }
+
+    int getLargeur() {
+        return largeur;
+    }
+
+    int getHauteur() {
+        return hauteur;
+    }
+
+    /** Reconstruit la trame demandée et la recopie dans 'sortie'. */
+    void lire(int trame, WorldSnapshot sortie) throws IOException {
+        if (trame < 0 || trame >= nbTrames) throw new IndexOutOfBoundsException("Trame " + trame + " / " + nbTrames);
+        if (trame != courante) {
+            int cle = (int) cleDe(trame);
+            // Continuer depuis la trame courante si sa clé est la même (ou plus récente)
+            int debut = courante >= cle && courante < trame ? courante + 1 : cle;
+            for (int i = debut; i <= trame; i++) decoder(positionDe(i));
+            courante = trame;
+        }
+        sortie.copierDepuis(etat);
+    }
+
+    @Override
+    public void close() throws IOException {
+        fenetre = null;
+        journal.close();
+    }
+
+    // ========================================================================
+    // DÉCODAGE
+    // ========================================================================
+
+    private long positionDe(int trame) {
+        return index.getLong(trame * SessionRecorder.TAILLE_ENTREE);
+    }
+
+    private long cleDe(int trame) {
+        return index.getLong(trame * SessionRecorder.TAILLE_ENTREE + 16);
+    }
+
+    private void decoder(long position) throws IOException {
+        ByteBuffer b = acceder(position, 4);
+        int longueur = b.getInt();
+        b = acceder(position + 4, longueur);
+        byte type = b.get();
+        b.getLong(); // Temps (déjà dans l'index)
+        if (type == SessionRecorder.TYPE_CLE) decoderCle(b);
+        else if (type == SessionRecorder.TYPE_DELTA) decoderDelta(b);
+        else throw new IOException("Enregistrement inconnu (" + type + ") à la position " + position);
+        decoderStats(b);
+    }
+
+    private void decoderCle(ByteBuffer b) {
+        WorldSnapshot t = etat;
+        t.vider();
+        largeur = b.getInt();
+        hauteur = b.getInt();
+
+        int nbEtats = b.getShort() & 0xFFFF;
+        if (etatsLocaux.length < nbEtats) etatsLocaux = Arrays.copyOf(etatsLocaux, nbEtats);
+        for (int e = 0; e < nbEtats; e++) etatsLocaux[e] = WorldSnapshot.Etats.id(lireTexte(b).intern());
+
+        int nbLieux = b.getInt();
+        for (int i = 0; i < nbLieux; i++) {
+            int type = b.get();
+            t.ajouterLieu(type, b.getShort(), b.getShort(), false);
+        }
+        lireOccupation(b, t);
+
+        int n = b.getInt();
+        for (int i = 0; i < n; i++) t.ajouterAgent(lireTexte(b), 0, 0, 0, 0, 0, 0, 0);
+        b.asFloatBuffer().get(t.x, 0, n).get(t.y, 0, n).get(t.nrj, 0, n).get(t.stress, 0, n)
+                .get(t.arg, 0, n).get(t.ang, 0, n);
+        b.position(b.position() + 6 * 4 * n);
+        for (int i = 0; i < n; i++) t.etat[i] = etatsLocaux[b.get() & 0xFF];
+    }
+
+    private void decoderDelta(ByteBuffer b) {
+        WorldSnapshot t = etat;
+        lireOccupation(b, t);
+        for (int i = 0; i < t.nbAgents; i++) {
+            int masque = b.get();
+            if (masque == 0) continue;
+            if ((masque & FrameParser.DELTA_X) != 0) t.x[i] = b.getFloat();
+            if ((masque & FrameParser.DELTA_Y) != 0) t.y[i] = b.getFloat();
+            if ((masque & FrameParser.DELTA_NRJ) != 0) t.nrj[i] = b.getFloat();
+            if ((masque & FrameParser.DELTA_STRESS) != 0) t.stress[i] = b.getFloat();
+            if ((masque & FrameParser.DELTA_ARG) != 0) t.arg[i] = b.getFloat();
+            if ((masque & FrameParser.DELTA_ETAT) != 0) t.etat[i] = etatsLocaux[b.get() & 0xFF];
+            if ((masque & FrameParser.DELTA_ANG) != 0) t.ang[i] = b.getFloat();
+        }
+    }
+
+    private static void lireOccupation(ByteBuffer b, WorldSnapshot t) {
+        for (int i = 0; i < t.nbLieux; i += 8) {
+            int octet = b.get();
+            for (int k = 0; k < 8 && i + k < t.nbLieux; k++) t.occupe[i + k] = (octet & (1 << k)) != 0;
+        }
+    }
+
+    private void decoderStats(ByteBuffer b) {
+        if (b.get() == 0) {
+            etat.statsPresentes = false;
+            return;
+        }
+        etat.definirStats(b.getFloat(), b.getFloat(), b.getFloat(), b.getInt(), b.getInt(), b.getInt());
+    }
+
+    private String lireTexte(ByteBuffer b) {
+        int n = b.getShort() & 0xFFFF;
+        if (texte.length < n) texte = new byte[n];
+        b.get(texte, 0, n);
+        return new String(texte, 0, n, StandardCharsets.UTF_8);
+    }
+
+    // Tampon positionné sur [position, position + taille[ du journal (déplace la fenêtre si besoin)
+    private ByteBuffer acceder(long position, int taille) throws IOException {
+        if (position + taille > tailleJournal) throw new IOException("Journal tronqué à la position " + position);
+        if (fenetre == null || position < baseFenetre || position + taille > baseFenetre + fenetre.capacity()) {
+            baseFenetre = position;
+            long longueur = Math.min(Math.max(TAILLE_FENETRE, taille), tailleJournal - position);
+            fenetre = journal.map(FileChannel.MapMode.READ_ONLY, baseFenetre, longueur);
+            fenetre.order(ByteOrder.LITTLE_ENDIAN);
+        }
+        fenetre.position((int) (position - baseFenetre));
+        return fenetre;
+    }
+
+    private static void verifierEntete(FileChannel c, byte[] magic) throws IOException {
+        ByteBuffer b = ByteBuffer.allocate(SessionRecorder.TAILLE_ENTETE).order(ByteOrder.LITTLE_ENDIAN);
+        while (b.hasRemaining() && c.read(b, b.position()) > 0) { /* lecture de l'en-tête */ }
+        b.flip();
+        byte[] lu = new byte[magic.length];
+        if (b.remaining() < SessionRecorder.TAILLE_ENTETE) throw new IOException("Fichier de session invalide");
+        b.get(lu);
+        if (!Arrays.equals(lu, magic)) throw new IOException("Fichier de session invalide");
+        short version = b.getShort();
+        if (version != SessionRecorder.VERSION) throw new IOException("Version de session non gérée : " + version);
+    }
+}
@@ -0,0 +1,347 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Enregistrement d'une session : les trames décodées sont ajoutées à un journal binaire
+ * (fichier .sma, écrit par régions projetées en mémoire) accompagné d'un index (.sma.idx).
+ *
+ * Le thread réseau ne fait qu'une copie de colonnes ({@link WorldSnapshot#copierDepuis})
+ * dans une trame d'une petite réserve, puis la dépose dans une file : il ne touche jamais au
+ * disque et n'attend jamais. Si l'écriture prend du retard et que la réserve est vide, la trame
+ * n'est pas enregistrée (compteur {@link #getTramesPerdues()}) ; le journal reste cohérent,
+ * les deltas étant calculés par rapport à la dernière trame effectivement écrite.
+ *
+ * Journal : un en-tête puis des enregistrements [u32 longueur][u8 type][contenu], une trame
+ * par enregistrement, en petit-boutiste. Une trame CLE contient le monde complet (grille,
+ * libellés d'états, lieux, noms, colonnes) ; une trame DELTA ne contient que l'occupation
+ * des lieux et, par agent, un masque suivi des champs modifiés (masques de FrameParser).
+ * Une longueur nulle marque la fin du journal (fin de la dernière région projetée).
+ *
+ * Index : un en-tête puis, pour chaque trame, [u64 position][u64 temps ns][u64 trame clé].
+ * Aller à une trame ne demande donc que la lecture de sa clé puis des deltas qui la séparent
+ * de la clé : une clé est écrite toutes les {@link #PERIODE_CLE} trames au plus, et dès que
+ * les deltas écrits depuis la dernière clé pèsent plus lourd qu'elle.
+ */
+final class SessionRecorder implements Closeable {
+
+    static final byte[] MAGIC_JOURNAL = "SMAREC".getBytes(StandardCharsets.US_ASCII);
+    static final byte[] MAGIC_INDEX = "SMAIDX".getBytes(StandardCharsets.US_ASCII);
+    static final short VERSION = 1;
+    static final int TAILLE_ENTETE = 16;   // Magic (6) + version (2) + date de création en ms (8)
+    static final int TAILLE_ENTREE = 24;   // Entrée d'index
+    static final byte TYPE_CLE = 1;
+    static final byte TYPE_DELTA = 2;
+    static final String SUFFIXE_INDEX = ".idx";
+
+    static final int PERIODE_CLE = 100;
+    private static final long TAILLE_REGION = 64L << 20; // Taille d'une région projetée du journal
+    private static final int RESERVE = 8;                // Trames en attente d'écriture au plus
+
+    /** Trame en attente d'écriture. */
+    private static final class Trame {
+        final WorldSnapshot t = new WorldSnapshot();
+        int largeur, hauteur;
+        long temps;
+    }
+
+    private final FileChannel journal;
+    private final FileChannel index;
+    private final ArrayBlockingQueue<Trame> libres = new ArrayBlockingQueue<>(RESERVE);
+    private final ArrayBlockingQueue<Trame> aEcrire = new ArrayBlockingQueue<>(RESERVE);
+    private final Thread ecrivain;
+    private final long debut = System.nanoTime();
+    private volatile boolean ferme = false;
+    private volatile IOException erreur;
+
+    private final LongAdder tramesEcrites = new LongAdder(), tramesPerdues = new LongAdder();
+    private volatile long octetsEcrits = TAILLE_ENTETE;
+
+    // --- État de l'écrivain (thread d'écriture uniquement) ---
+    private MappedByteBuffer region;
+    private long baseRegion;           // Position de la région dans le fichier
+    private long position = TAILLE_ENTETE;
+    private final ByteBuffer entree = ByteBuffer.allocate(TAILLE_ENTREE).order(ByteOrder.LITTLE_ENDIAN);
+    private Trame precedente;          // Dernière trame écrite (référence des deltas)
+    private int nbEtatsCle;            // Libellés d'états connus à la dernière clé
+    private int signatureCle, largeurCle, hauteurCle;
+    private long numeroTrame = 0, trameCle = -1;
+    private long tailleCle, octetsDepuisCle;
+
+    private SessionRecorder(Path fichier) throws IOException {
+        Path parent = fichier.toAbsolutePath().getParent();
+        if (parent != null) Files.createDirectories(parent);
+        journal = FileChannel.open(fichier, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        index = FileChannel.open(indexDe(fichier), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        long date = System.currentTimeMillis();
+        journal.write(entete(MAGIC_JOURNAL, date), 0);
+        index.write(entete(MAGIC_INDEX, date), 0);
+        index.position(TAILLE_ENTETE);
+        for (int i = 0; i < RESERVE; i++) libres.add(new Trame());
+
+        ecrivain = new Thread(this::boucle, "Enregistrement " + fichier.getFileName());
+        ecrivain.setDaemon(true);
+        ecrivain.start();
+    }
+
+    /** Crée un nouvel enregistrement (le fichier ne doit pas exister). */
+    static SessionRecorder ouvrir(Path fichier) throws IOException {
+        return new SessionRecorder(fichier);
+    }
+
+    static Path indexDe(Path journal) {
+        return journal.resolveSibling(journal.getFileName() + SUFFIXE_INDEX);
+    }
+
+    /**
+     * Ajoute une trame complète à l'enregistrement (thread réseau, avant publication).
+     * Ne bloque jamais : la trame est ignorée si l'écriture a trop de retard.
+     */
+    void enregistrer(WorldSnapshot t, int largeur, int hauteur) {
+        if (ferme || erreur != null) return;
+        Trame tr = libres.poll();
+        if (tr == null) {
+            tramesPerdues.increment();
+            return;
+        }
+        tr.t.copierDepuis(t);
+        tr.largeur = largeur;
+        tr.hauteur = hauteur;
+        tr.temps = System.nanoTime() - debut;
+        aEcrire.offer(tr); // Toujours de la place : autant de trames que la réserve
+    }
+
+    long getTramesEcrites() {
+        return tramesEcrites.sum();
+    }
+
+    long getTramesPerdues() {
+        return tramesPerdues.sum();
+    }
+
+    long getOctetsEcrits() {
+        return octetsEcrits;
+    }
+
+    /**
+     * Écrit les trames en attente puis ferme les fichiers. Le journal est ramené à sa taille
+     * utile lorsque le système le permet (sinon la longueur nulle qui suit la dernière trame suffit).
+     */
+    @Override
+    public void close() throws IOException {
+        if (ferme) return;
+        ferme = true;
+        try {
+            ecrivain.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            if (region != null) region.force();
+            region = null;
+            try {
+                journal.truncate(position);
+            } catch (IOException ignored) {
+                // Région encore projetée (Windows) : le journal garde sa fin remplie de zéros
+            }
+        } finally {
+            journal.close();
+            index.close();
+        }
+        if (erreur != null) throw erreur;
+    }
+
+    // ========================================================================
+    // THREAD D'ÉCRITURE
+    // ========================================================================
+
+    private void boucle() {
+        try {
+            while (true) {
+                Trame tr = aEcrire.poll(100, TimeUnit.MILLISECONDS);
+                if (tr == null) {
+                    if (ferme && aEcrire.isEmpty()) return;
+                    continue;
+                }
+                ecrire(tr);
+                if (precedente != null) libres.offer(precedente);
+                precedente = tr;
+            }
+        } catch (IOException e) {
+            erreur = e; // Les trames suivantes sont ignorées ; l'erreur est levée par close()
+            System.out.println("Enregistrement interrompu : " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void ecrire(Trame tr) throws IOException {
+        WorldSnapshot t = tr.t;
+        boolean cle = doitEcrireCle(tr);
+        ByteBuffer b = reserver(cle ? tailleMaxCle(t) : tailleMaxDelta(t));
+        int debutEnregistrement = b.position();
+        b.position(debutEnregistrement + 4);
+        b.put(cle ? TYPE_CLE : TYPE_DELTA);
+        b.putLong(tr.temps);
+        if (cle) ecrireCle(b, tr);
+        else ecrireDelta(b, t, precedente.t);
+        ecrireStats(b, t);
+        int longueur = b.position() - debutEnregistrement;
+        b.putInt(debutEnregistrement, longueur - 4);
+
+        long positionTrame = position;
+        position += longueur;
+        if (cle) {
+            trameCle = numeroTrame;
+            tailleCle = longueur;
+            octetsDepuisCle = 0;
+        } else {
+            octetsDepuisCle += longueur;
+        }
+
+        // Entrée d'index écrite après la trame : un index lu pendant l'enregistrement
+        // ne désigne jamais une trame incomplète
+        entree.clear();
+        entree.putLong(positionTrame).putLong(tr.temps).putLong(trameCle).flip();
+        while (entree.hasRemaining()) index.write(entree);
+        numeroTrame++;
+        octetsEcrits = position;
+        tramesEcrites.increment();
+    }
+
+    private boolean doitEcrireCle(Trame tr) {
+        if (precedente == null) return true;
+        WorldSnapshot t = tr.t, p = precedente.t;
+        if (numeroTrame - trameCle >= PERIODE_CLE || octetsDepuisCle >= tailleCle) return true;
+        if (t.nbAgents != p.nbAgents || tr.largeur != largeurCle || tr.hauteur != hauteurCle) return true;
+        if (t.signatureLieux() != signatureCle) return true;
+        for (int i = 0; i < t.nbAgents; i++) {
+            // Les noms ne figurent que dans les clés, les libellés d'états connus aussi
+            if (t.noms[i] != p.noms[i] || t.etat[i] >= nbEtatsCle) return true;
+        }
+        return false;
+    }
+
+    private void ecrireCle(ByteBuffer b, Trame tr) {
+        WorldSnapshot t = tr.t;
+        largeurCle = tr.largeur;
+        hauteurCle = tr.hauteur;
+        signatureCle = t.signatureLieux();
+        b.putInt(tr.largeur).putInt(tr.hauteur);
+
+        // Table des libellés : les identifiants d'états sont propres au processus
+        int nbEtats = nbEtats(t);
+        nbEtatsCle = nbEtats;
+        b.putShort((short) nbEtats);
+        for (int e = 0; e < nbEtats; e++) ecrireTexte(b, WorldSnapshot.Etats.libelle(e));
+
+        b.putInt(t.nbLieux);
+        for (int i = 0; i < t.nbLieux; i++) {
+            b.put((byte) t.typeLieu[i]).putShort((short) t.lieuX[i]).putShort((short) t.lieuY[i]);
+        }
+        ecrireOccupation(b, t);
+
+        int n = t.nbAgents;
+        b.putInt(n);
+        for (int i = 0; i < n; i++) ecrireTexte(b, t.noms[i]);
+        // Colonnes copiées en bloc
+        b.asFloatBuffer().put(t.x, 0, n).put(t.y, 0, n).put(t.nrj, 0, n).put(t.stress, 0, n)
+                .put(t.arg, 0, n).put(t.ang, 0, n);
+        b.position(b.position() + 6 * 4 * n);
+        for (int i = 0; i < n; i++) b.put((byte) t.etat[i]);
+    }
+
+    private void ecrireDelta(ByteBuffer b, WorldSnapshot t, WorldSnapshot p) {
+        ecrireOccupation(b, t);
+        for (int i = 0; i < t.nbAgents; i++) {
+            int masque = 0;
+            if (Float.floatToRawIntBits(t.x[i]) != Float.floatToRawIntBits(p.x[i])) masque |= FrameParser.DELTA_X;
+            if (Float.floatToRawIntBits(t.y[i]) != Float.floatToRawIntBits(p.y[i])) masque |= FrameParser.DELTA_Y;
+            if (Float.floatToRawIntBits(t.nrj[i]) != Float.floatToRawIntBits(p.nrj[i])) masque |= FrameParser.DELTA_NRJ;
+            if (Float.floatToRawIntBits(t.stress[i]) != Float.floatToRawIntBits(p.stress[i])) masque |= FrameParser.DELTA_STRESS;
+            if (Float.floatToRawIntBits(t.arg[i]) != Float.floatToRawIntBits(p.arg[i])) masque |= FrameParser.DELTA_ARG;
+            if (t.etat[i] != p.etat[i]) masque |= FrameParser.DELTA_ETAT;
+            if (Float.floatToRawIntBits(t.ang[i]) != Float.floatToRawIntBits(p.ang[i])) masque |= FrameParser.DELTA_ANG;
+            b.put((byte) masque);
+            if (masque == 0) continue;
+            if ((masque & FrameParser.DELTA_X) != 0) b.putFloat(t.x[i]);
+            if ((masque & FrameParser.DELTA_Y) != 0) b.putFloat(t.y[i]);
+            if ((masque & FrameParser.DELTA_NRJ) != 0) b.putFloat(t.nrj[i]);
+            if ((masque & FrameParser.DELTA_STRESS) != 0) b.putFloat(t.stress[i]);
+            if ((masque & FrameParser.DELTA_ARG) != 0) b.putFloat(t.arg[i]);
+            if ((masque & FrameParser.DELTA_ETAT) != 0) b.put((byte) t.etat[i]);
+            if ((masque & FrameParser.DELTA_ANG) != 0) b.putFloat(t.ang[i]);
+        }
+    }
+
+    // Nombre de libellés à inclure dans une clé (au moins ceux de la clé précédente)
+    private int nbEtats(WorldSnapshot t) {
+        int n = nbEtatsCle;
+        for (int i = 0; i < t.nbAgents; i++) n = Math.max(n, t.etat[i] + 1);
+        return n;
+    }
+
+    private static void ecrireOccupation(ByteBuffer b, WorldSnapshot t) {
+        for (int i = 0; i < t.nbLieux; i += 8) {
+            int octet = 0;
+            for (int k = 0; k < 8 && i + k < t.nbLieux; k++) {
+                if (t.occupe[i + k]) octet |= 1 << k;
+            }
+            b.put((byte) octet);
+        }
+    }
+
+    private static void ecrireStats(ByteBuffer b, WorldSnapshot t) {
+        b.put((byte) (t.statsPresentes ? 1 : 0));
+        if (!t.statsPresentes) return;
+        b.putFloat(t.moyNrj).putFloat(t.moyStress).putFloat(t.moyArg);
+        b.putInt(t.nbVivants).putInt(t.nbMorts).putInt(t.nbOccupes);
+    }
+
+    private static void ecrireTexte(ByteBuffer b, String s) {
+        byte[] octets = s.getBytes(StandardCharsets.UTF_8);
+        b.putShort((short) octets.length);
+        b.put(octets);
+    }
+
+    // Majorants de la taille d'un enregistrement (en-tête, temps et stats compris)
+    private int tailleMaxCle(WorldSnapshot t) {
+        long taille = 64 + 5L * t.nbLieux + (t.nbLieux + 7) / 8 + 25L * t.nbAgents;
+        for (int e = 0, n = nbEtats(t); e < n; e++) taille += 2 + 3L * WorldSnapshot.Etats.libelle(e).length();
+        for (int i = 0; i < t.nbAgents; i++) taille += 2 + 3L * t.noms[i].length();
+        return (int) Math.min(Integer.MAX_VALUE, taille);
+    }
+
+    private static int tailleMaxDelta(WorldSnapshot t) {
+        return 64 + (t.nbLieux + 7) / 8 + 26 * t.nbAgents;
+    }
+
+    // Région projetée contenant au moins 'taille' octets libres à partir de la position courante
+    // (une trame n'est jamais coupée entre deux régions) ; les zéros qui suivent marquent la fin
+    private ByteBuffer reserver(int taille) throws IOException {
+        if (region == null || position + taille + 4 > baseRegion + region.capacity()) {
+            if (region != null) region.force();
+            baseRegion = position;
+            region = journal.map(FileChannel.MapMode.READ_WRITE, baseRegion, Math.max(TAILLE_REGION, taille + 4L));
+            region.order(ByteOrder.LITTLE_ENDIAN);
+        }
+        region.position((int) (position - baseRegion));
+        return region;
+    }
+
+    private static ByteBuffer entete(byte[] magic, long date) {
+        ByteBuffer b = ByteBuffer.allocate(TAILLE_ENTETE).order(ByteOrder.LITTLE_ENDIAN);
+        b.put(magic).putShort(VERSION).putLong(date).flip();
+        return b;
+    }
+}
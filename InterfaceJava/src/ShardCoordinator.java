@@ -0,0 +1,577 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Path;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Ville répartie entre plusieurs processus : la grille est découpée en secteurs rectangulaires
+ * ({@link ShardLayout}), chacun simulé par un processus {@link ShardWorker} relié par un socket
+ * local. Le coordinateur remplace {@link SimulationEngine} derrière {@link EngineServer} :
+ * ClientInterface reçoit le même flux CONFIG / lieux / AGENT / STATS / END, fusionné à partir
+ * des secteurs.
+ *
+ * Chaque pas est une barrière : le coordinateur envoie PAS à tous les secteurs puis attend tous
+ * leurs rapports. Entre deux pas, il fait suivre ce qu'un secteur doit savoir des autres :
+ * <ul>
+ * <li>halo : positions des agents des autres secteurs à moins de {@link ShardLayout#HALO} de
+ *     ses frontières (répulsion entre agents) ;</li>
+ * <li>migration : état complet des agents qui ont franchi une frontière, remis au secteur
+ *     qui les contient désormais ;</li>
+ * <li>occupation des places et lieux devenus fréquents, comptés dans toute la ville (un agent
+ *     choisit une place libre et un itinéraire vers un lieu de n'importe quel secteur).</li>
+ * </ul>
+ * Les tirages aléatoires ne dépendent que du numéro de l'agent dans la ville et les voisins
+ * sont vus dans le même ordre : le résultat est identique à celui d'un seul moteur, ce que
+ * vérifie le mode « verifier ».
+ *
+ * La disposition de la ville (grille, maisons, places) est reproduite dans chaque processus à
+ * partir de la graine du scénario ; seuls les agents sont répartis.
+ *
+ * Lancement :
+ * <pre>
+ * java ShardCoordinator [graine]                      serveur sur le port 5001, comme EngineServer
+ * java ShardCoordinator verifier [scénario] [pas]     compare avec un seul moteur ; scénario
+ *                                                     "banc:N" pour une ville générée de N agents
+ * </pre>
+ * -Dsma.secteurs=2x2 (colonnes x lignes), -Dsma.secteurs.port=p (0 : port libre),
+ * -Dsma.secteurs.lancer=false pour attendre des ShardWorker lancés à la main (hôte:port affiché),
+ * -Dsma.secteurs.jvm="-Xmx4g" options des JVM lancées.
+ */
+final class ShardCoordinator implements EngineServer.Moteur {
+
+    // Ordres envoyés aux secteurs
+    static final int CHARGER = 1, PAS = 2, FIN = 3;
+
+    private static final int[] ID_ETAT = new int[SimulationEngine.LIBELLES.length];
+
+    static {
+        for (int e = 0; e < ID_ETAT.length; e++) ID_ETAT[e] = WorldSnapshot.Etats.id(SimulationEngine.LIBELLES[e]);
+    }
+
+    /** Un processus de secteur et ce qui lui est destiné au prochain pas. */
+    private static final class Secteur {
+        final Socket connexion;
+        final DataInputStream in;
+        final DataOutputStream out;
+        final List<byte[]> arrivees = new ArrayList<>();
+        long[] halo = new long[64]; // (numéro << 32 | entrée du bord), triés
+        int nbHalo;
+
+        Secteur(Socket connexion) throws IOException {
+            this.connexion = connexion;
+            in = new DataInputStream(new BufferedInputStream(connexion.getInputStream(), 1 << 16));
+            out = new DataOutputStream(new BufferedOutputStream(connexion.getOutputStream(), 1 << 16));
+        }
+    }
+
+    private final Map<String, ScenarioConfig> scenarios;
+    private final long graine;
+    private final int colonnes, lignes;
+    private final Secteur[] secteurs;
+    private final ConcurrentLinkedQueue<Runnable> commandes = new ConcurrentLinkedQueue<>();
+
+    // --- Simulation courante (thread de simulation) ---
+    private volatile City ville;
+    private volatile boolean enCours = false;
+    private volatile long generation = 0;
+    private volatile boolean arret = false;
+    private boolean nouvelleGeneration = false;
+    private ShardLayout decoupage;
+    private String idScenario;
+    private long pas;
+    private long periode = SimulationEngine.PERIODE_NS;
+    private boolean journal = true;
+
+    // --- Ville entière, par numéro d'agent ou de place ---
+    private int nbAgents;
+    private String[] noms = new String[0];
+    private float[] ax = new float[0], ay = new float[0], nrj = new float[0], stress = new float[0],
+            arg = new float[0], ang = new float[0];
+    private int[] etat = new int[0];
+    private int[] occupation = new int[0], variation = new int[0];
+    private int[] demandes = new int[0];
+    private final List<Integer> promus = new ArrayList<>();
+
+    // --- Positions près des frontières reçues au dernier pas ---
+    private int nbBord;
+    private int[] bordIdent = new int[0];
+    private double[] bordX = new double[0], bordY = new double[0];
+
+    // --- Dernier relevé des moyennes ---
+    private boolean statsPresentes;
+    private double moyNrj, moyStress, moyArg;
+    private int nbVivants, nbMorts, nbOccupes;
+    private double sommeNrj, sommeStress, sommeArg;
+
+    private ShardCoordinator(Map<String, ScenarioConfig> scenarios, long graine, int colonnes, int lignes, Secteur[] secteurs) {
+        this.scenarios = scenarios;
+        this.graine = graine;
+        this.colonnes = colonnes;
+        this.lignes = lignes;
+        this.secteurs = secteurs;
+    }
+
+    public static void main(String[] args) throws IOException {
+        boolean verifier = args.length > 0 && args[0].equals("verifier");
+        int[] d = ShardLayout.lire(System.getProperty("sma.secteurs", "2x2"));
+        Map<String, ScenarioConfig> scenarios = ScenarioConfig.charger();
+        String id = "1";
+        long graine = !verifier && args.length > 0 ? Long.parseLong(args[0]) : verifier ? 42 : System.nanoTime();
+        if (verifier && args.length > 1) {
+            id = args[1];
+            if (id.startsWith("banc:")) scenarios = Map.of(id, banc(id, Integer.parseInt(id.substring(5))));
+        }
+
+        ShardCoordinator c = connecter(scenarios, graine, d[0], d[1]);
+        if (verifier) {
+            try {
+                c.verifier(id, args.length > 2 ? Integer.parseInt(args[2]) : 600);
+            } finally {
+                c.arreter();
+            }
+            return;
+        }
+        c.commanderScenario("1");
+        EngineServer serveur = new EngineServer(c);
+        c.demarrer(serveur.getMonde());
+        System.out.println("Serveur Java lancé sur " + EngineServer.PORT + " (Simu S1 auto, " + d[0] + "x" + d[1]
+                + " secteurs).");
+        serveur.ecouter();
+    }
+
+    /** Ville générée de n agents (densité et lieux de ActorBenchmark), pour les vérifications. */
+    static ScenarioConfig banc(String id, int n) {
+        int cote = (int) Math.ceil(Math.sqrt(n * 6.0));
+        return new ScenarioConfig(id, "banc", cote, cote, n, 50, 100, 5,
+                n, Math.max(1, n / 40), Math.max(1, n / 200), Math.max(1, n / 80), "Equilibre");
+    }
+
+    /**
+     * Attend la connexion d'un ShardWorker par secteur (lancés ici comme processus fils, sauf
+     * avec -Dsma.secteurs.lancer=false) ; le secteur d'un processus est son rang de connexion.
+     */
+    static ShardCoordinator connecter(Map<String, ScenarioConfig> scenarios, long graine, int colonnes, int lignes)
+            throws IOException {
+        int n = colonnes * lignes;
+        Secteur[] secteurs = new Secteur[n];
+        try (ServerSocket s = new ServerSocket()) {
+            s.setReuseAddress(true);
+            s.bind(new InetSocketAddress(InetAddress.getByName(EngineServer.HOST), Integer.getInteger("sma.secteurs.port", 0)));
+            String adresse = EngineServer.HOST + ":" + s.getLocalPort();
+            if (Boolean.parseBoolean(System.getProperty("sma.secteurs.lancer", "true"))) {
+                lancer(n, adresse);
+            } else {
+                System.out.println("En attente de " + n + " secteurs : java ShardWorker " + adresse);
+            }
+            for (int k = 0; k < n; k++) {
+                Socket c = s.accept();
+                c.setTcpNoDelay(true);
+                secteurs[k] = new Secteur(c);
+            }
+        }
+        System.out.println(n + " secteurs connectés (" + colonnes + "x" + lignes + ").");
+        return new ShardCoordinator(scenarios, graine, colonnes, lignes, secteurs);
+    }
+
+    // Processus fils : même JVM et même classpath, cœurs partagés entre les secteurs
+    private static void lancer(int n, String adresse) throws IOException {
+        int threads = Integer.getInteger("sma.threads", Math.max(1, Runtime.getRuntime().availableProcessors() / n));
+        List<Process> fils = new ArrayList<>();
+        for (int k = 0; k < n; k++) {
+            List<String> commande = new ArrayList<>();
+            commande.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+            String options = System.getProperty("sma.secteurs.jvm", "").trim();
+            if (!options.isEmpty()) commande.addAll(List.of(options.split("\\s+")));
+            commande.add("-Dsma.threads=" + threads);
+            commande.addAll(List.of("-cp", System.getProperty("java.class.path"), "ShardWorker", adresse));
+            fils.add(new ProcessBuilder(commande).inheritIO().start());
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> fils.forEach(Process::destroy)));
+    }
+
+    // ========================================================================
+    // COMMANDES (n'importe quel thread), comme SimulationEngine
+    // ========================================================================
+
+    @Override
+    public void commanderScenario(String id) {
+        commandes.add(() -> {
+            try {
+                chargerScenario(id);
+            } catch (IOException e) {
+                perdu(e);
+            }
+        });
+    }
+
+    @Override
+    public void commanderArret() {
+        commandes.add(() -> enCours = false);
+    }
+
+    @Override
+    public void commanderVitesse(String v) {
+        commandes.add(() -> {
+            String s = v.trim();
+            if (s.equalsIgnoreCase("max")) {
+                periode = 0;
+                return;
+            }
+            try {
+                int facteur = Integer.parseInt(s);
+                if (facteur > 0) periode = SimulationEngine.PERIODE_NS * 2 / facteur;
+            } catch (NumberFormatException ignore) {
+                // Même comportement que Simulation.set_vitesse
+            }
+        });
+    }
+
+    @Override
+    public boolean isEnCours() {
+        return enCours;
+    }
+
+    @Override
+    public long getGeneration() {
+        return generation;
+    }
+
+    @Override
+    public City getVille() {
+        return ville;
+    }
+
+    /** Arrête la simulation et les secteurs (leur connexion est fermée). */
+    void arreter() {
+        arret = true;
+        for (Secteur s : secteurs) {
+            try {
+                s.out.writeInt(FIN);
+                s.out.flush();
+                s.connexion.close();
+            } catch (IOException ignored) {
+                // Déjà fermé
+            }
+        }
+    }
+
+    // Un secteur ne répond plus : la ville est incomplète, plus aucune trame
+    private void perdu(IOException e) {
+        System.out.println("Secteur perdu : " + e.getMessage() + " (simulation arrêtée)");
+        enCours = false;
+        arret = true;
+    }
+
+    // ========================================================================
+    // BOUCLE À PAS FIXE (SimulationEngine.boucle)
+    // ========================================================================
+
+    /** Lance le thread de simulation, qui publie au plus une trame par PERIODE_NS dans 'monde'. */
+    void demarrer(WorldSnapshot.Echange monde) {
+        Thread t = new Thread(() -> boucle(monde), "coordinateur-secteurs");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    private void boucle(WorldSnapshot.Echange monde) {
+        long prochain = System.nanoTime(), prochaineTrame = prochain;
+        while (!arret) {
+            Runnable c;
+            while ((c = commandes.poll()) != null) c.run();
+            long duree = enCours ? periode : SimulationEngine.PERIODE_NS;
+            if (enCours) {
+                long maintenant = System.nanoTime();
+                boolean trame = nouvelleGeneration || maintenant - prochaineTrame >= 0;
+                try {
+                    pas(trame);
+                } catch (IOException e) {
+                    perdu(e);
+                    continue;
+                }
+                if (trame) {
+                    publier(monde);
+                    prochaineTrame = maintenant + SimulationEngine.PERIODE_NS;
+                }
+            }
+            prochain += duree;
+            long attente = prochain - System.nanoTime();
+            if (attente > 0) {
+                LockSupport.parkNanos(attente);
+            } else if (attente < -5 * Math.max(duree, SimulationEngine.PERIODE_NS)) {
+                prochain = System.nanoTime(); // Trop en retard : on ne rattrape pas les pas manqués
+            }
+        }
+    }
+
+    // ========================================================================
+    // CHARGEMENT ET PAS (barrière sur tous les secteurs)
+    // ========================================================================
+
+    void chargerScenario(String id) throws IOException {
+        ScenarioConfig c = scenarios.get(id);
+        if (c == null) c = scenarios.getOrDefault("1", scenarios.values().iterator().next());
+        idScenario = c.id;
+        long graineScenario = SimulationEngine.graineScenario(graine, id, generation);
+        City v = new City(c, new SplittableRandom(graineScenario)); // Même disposition que dans les secteurs
+        decoupage = new ShardLayout(colonnes, lignes, v.largeur, v.hauteur);
+        for (int k = 0; k < secteurs.length; k++) {
+            DataOutputStream out = secteurs[k].out;
+            out.writeInt(CHARGER);
+            out.writeInt(k);
+            out.writeInt(colonnes);
+            out.writeInt(lignes);
+            out.writeLong(graineScenario);
+            c.ecrire(out);
+            out.flush();
+        }
+
+        int n = Math.min(c.nbAgents, v.nbMaisons);
+        nbAgents = n;
+        noms = new String[n];
+        ax = new float[n]; ay = new float[n]; nrj = new float[n]; stress = new float[n];
+        arg = new float[n]; ang = new float[n];
+        etat = new int[n];
+        occupation = new int[v.nbPlaces];
+        variation = new int[v.nbPlaces];
+        demandes = new int[v.nbLieux];
+        promus.clear();
+        nbBord = 0;
+        for (Secteur s : secteurs) {
+            s.arrivees.clear();
+            for (int k = s.in.readInt(); k > 0; k--) {
+                int i = s.in.readInt();
+                noms[i] = s.in.readUTF();
+                ax[i] = v.maisonX[i];
+                ay[i] = v.maisonY[i];
+            }
+            lireRapport(s, false, false);
+        }
+        preparerHalos();
+
+        ville = v;
+        pas = 0;
+        periode = SimulationEngine.PERIODE_NS;
+        statsPresentes = false;
+        enCours = true;
+        nouvelleGeneration = true;
+    }
+
+    /** Un pas de toute la ville ; avec 'trame', l'état affiché de chaque agent est rapatrié. */
+    void pas(boolean trame) throws IOException {
+        pas++;
+        boolean stats = pas % SimulationEngine.PAS_STATS == 0;
+
+        // Changements du pas précédent, communs à tous les secteurs
+        int changees = 0;
+        for (int p = 0; p < variation.length; p++) if (variation[p] != 0) changees++;
+        for (int k = 0; k < secteurs.length; k++) {
+            Secteur s = secteurs[k];
+            DataOutputStream out = s.out;
+            out.writeInt(PAS);
+            out.writeBoolean(trame);
+            out.writeBoolean(stats);
+            out.writeInt(changees);
+            for (int p = 0; p < variation.length && changees > 0; p++) {
+                if (variation[p] == 0) continue;
+                out.writeInt(p);
+                out.writeInt(variation[p]);
+            }
+            out.writeInt(promus.size());
+            for (int l : promus) out.writeInt(l);
+            out.writeInt(s.arrivees.size());
+            for (byte[] a : s.arrivees) {
+                out.writeInt(a.length);
+                out.write(a);
+            }
+            s.arrivees.clear();
+            out.writeInt(s.nbHalo);
+            for (int h = 0; h < s.nbHalo; h++) {
+                int e = (int) s.halo[h];
+                out.writeInt(bordIdent[e]);
+                out.writeDouble(bordX[e]);
+                out.writeDouble(bordY[e]);
+            }
+            out.flush();
+        }
+        Arrays.fill(variation, 0);
+        promus.clear();
+
+        // Barrière : les secteurs calculent en parallèle, leurs rapports sont lus dans l'ordre
+        nbBord = 0;
+        if (stats) {
+            nbVivants = nbMorts = nbOccupes = 0;
+            sommeNrj = sommeStress = sommeArg = 0;
+        }
+        for (Secteur s : secteurs) lireRapport(s, trame, stats);
+        preparerHalos();
+        if (stats) calculerMoyennes();
+    }
+
+    // Rapport d'un secteur (ShardWorker.rapport), dans le même ordre
+    private void lireRapport(Secteur s, boolean trame, boolean stats) throws IOException {
+        DataInputStream in = s.in;
+        if (trame) {
+            for (int k = in.readInt(); k > 0; k--) {
+                int i = in.readInt();
+                ax[i] = in.readFloat();
+                ay[i] = in.readFloat();
+                nrj[i] = in.readFloat();
+                stress[i] = in.readFloat();
+                arg[i] = in.readFloat();
+                etat[i] = ID_ETAT[in.readByte()];
+                ang[i] = in.readFloat();
+            }
+        }
+        if (stats) {
+            nbVivants += in.readInt();
+            nbMorts += in.readInt();
+            nbOccupes += in.readInt();
+            sommeNrj += in.readDouble();
+            sommeStress += in.readDouble();
+            sommeArg += in.readDouble();
+        }
+        for (int k = in.readInt(); k > 0; k--) {
+            if (nbBord == bordIdent.length) {
+                int c = Math.max(256, 2 * nbBord);
+                bordIdent = Arrays.copyOf(bordIdent, c);
+                bordX = Arrays.copyOf(bordX, c);
+                bordY = Arrays.copyOf(bordY, c);
+            }
+            bordIdent[nbBord] = in.readInt();
+            bordX[nbBord] = in.readDouble();
+            bordY[nbBord++] = in.readDouble();
+        }
+        for (int k = in.readInt(); k > 0; k--) {
+            int destination = in.readInt();
+            byte[] agent = new byte[in.readInt()];
+            in.readFully(agent);
+            secteurs[destination].arrivees.add(agent);
+        }
+        for (int k = in.readInt(); k > 0; k--) {
+            int p = in.readInt(), d = in.readInt();
+            occupation[p] += d;
+            variation[p] += d;
+        }
+        for (int k = in.readInt(); k > 0; k--) {
+            int l = in.readInt(), avant = demandes[l];
+            demandes[l] += in.readInt();
+            // Même règle que PathCache : fréquent au pas suivant celui où le seuil est atteint
+            if (avant < PathCache.SEUIL_CHAMP && demandes[l] >= PathCache.SEUIL_CHAMP) promus.add(l);
+        }
+    }
+
+    // Halo de chaque secteur : positions près des frontières reçues d'autres secteurs, par numéro
+    private void preparerHalos() {
+        for (Secteur s : secteurs) s.nbHalo = 0;
+        for (int e = 0; e < nbBord; e++) {
+            double x = bordX[e], y = bordY[e];
+            int proprietaire = decoupage.secteur(x, y);
+            for (int k = 0; k < secteurs.length; k++) {
+                if (k == proprietaire || !decoupage.voit(k, x, y)) continue;
+                Secteur s = secteurs[k];
+                if (s.nbHalo == s.halo.length) s.halo = Arrays.copyOf(s.halo, 2 * s.nbHalo);
+                s.halo[s.nbHalo++] = (long) bordIdent[e] << 32 | e;
+            }
+        }
+        for (Secteur s : secteurs) Arrays.sort(s.halo, 0, s.nbHalo);
+    }
+
+    private void calculerMoyennes() {
+        statsPresentes = true;
+        moyNrj = nbVivants > 0 ? sommeNrj / nbVivants : 0;
+        moyStress = nbVivants > 0 ? sommeStress / nbVivants : 0;
+        moyArg = nbVivants > 0 ? sommeArg / nbVivants : 0;
+        if (journal) System.out.printf("[STATS 10s] %s - S%s NRJ:%.2f STR:%.2f ARG:%.2f | V:%d M:%d O:%d%n",
+                LocalTime.now().format(DateTimeFormatter.ofPattern("HH:mm:ss")), idScenario,
+                moyNrj, moyStress, moyArg, nbVivants, nbMorts, nbOccupes);
+    }
+
+    /** Trame de toute la ville, comme SimulationEngine.publier (lieux dans l'ordre de lister_lieux). */
+    void publier(WorldSnapshot.Echange monde) {
+        City v = ville;
+        WorldSnapshot t = monde.ecriture();
+        t.vider();
+        for (int m = 0; m < v.nbMaisons; m++) t.ajouterLieu(FrameParser.MAISON, v.maisonX[m], v.maisonY[m], false);
+        for (int p = 0; p < v.nbPlaces; p++) {
+            t.ajouterLieu(v.typeLieu[v.placeLieu[p]], v.placeX[p], v.placeY[p], occupation[p] > 0);
+        }
+        for (int i = 0; i < nbAgents; i++) t.ajouterAgent(noms[i], ax[i], ay[i], nrj[i], stress[i], arg[i], etat[i], ang[i]);
+        if (statsPresentes) t.definirStats((float) moyNrj, (float) moyStress, (float) moyArg, nbVivants, nbMorts, nbOccupes);
+        monde.publier();
+        if (nouvelleGeneration) {
+            nouvelleGeneration = false;
+            generation++;
+        }
+    }
+
+    // ========================================================================
+    // VÉRIFICATION : même scénario dans un seul moteur
+    // ========================================================================
+
+    private void verifier(String id, int nbPas) throws IOException {
+        int threads = Runtime.getRuntime().availableProcessors();
+        SimulationEngine reference = new SimulationEngine(scenarios, graine, threads);
+        reference.setJournal(false);
+        journal = false;
+        try {
+            reference.chargerScenario(id);
+            chargerScenario(id);
+            System.out.printf("Scénario %s : %d agents, grille %dx%d, %d pas%n", idScenario, nbAgents,
+                    ville.largeur, ville.hauteur, nbPas);
+            long dureeRef = 0, dureeSecteurs = 0;
+            for (int k = 1; k <= nbPas; k++) {
+                boolean releve = k % 20 == 0 || k == nbPas;
+                long t0 = System.nanoTime();
+                reference.pas();
+                long t1 = System.nanoTime();
+                pas(releve);
+                long t2 = System.nanoTime();
+                dureeRef += t1 - t0;
+                dureeSecteurs += t2 - t1;
+                if (!releve) continue;
+                reference.synchroniser();
+                String ecart = comparer(reference);
+                if (ecart != null) {
+                    System.out.println("DIFFÉRENT au pas " + k + " : " + ecart);
+                    return;
+                }
+            }
+            int halo = 0;
+            for (Secteur s : secteurs) halo += s.nbHalo;
+            System.out.printf("Identique au moteur unique. ms/pas : moteur %.2f, %d secteurs %.2f ; "
+                            + "dernier pas : %d agents près d'une frontière, %d entrées de halo%n",
+                    dureeRef / 1e6 / nbPas, secteurs.length, dureeSecteurs / 1e6 / nbPas, nbBord, halo);
+        } finally {
+            reference.arreter();
+        }
+    }
+
+    // Premier écart entre les agents reçus des secteurs et ceux du moteur unique (valeurs de trame)
+    private String comparer(SimulationEngine r) {
+        if (r.nbAgents != nbAgents) return "agents " + nbAgents + " au lieu de " + r.nbAgents;
+        for (int i = 0; i < nbAgents; i++) {
+            if (!noms[i].equals(r.noms[i]) || ax[i] != (float) r.x[i] || ay[i] != (float) r.y[i]
+                    || nrj[i] != (float) r.energie[i] || stress[i] != (float) r.stress[i] || arg[i] != (float) r.argent[i]
+                    || etat[i] != ID_ETAT[r.etat[i]] || ang[i] != (float) r.angle[i]) {
+                return String.format("agent %d (%s) : %.4f,%.4f %s au lieu de %.4f,%.4f %s", i, r.noms[i], ax[i], ay[i],
+                        WorldSnapshot.Etats.libelle(etat[i]), r.x[i], r.y[i], SimulationEngine.LIBELLES[r.etat[i]]);
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,82 @@
+import java.util.Locale;
+
+/**
+ * Découpage de la grille d'une ville en secteurs rectangulaires (colonnes x lignes), chacun
+ * simulé par un processus {@link ShardWorker}. Un agent appartient au secteur qui contient sa
+ * case (mêmes cases entières que {@link SpatialGrid}).
+ *
+ * Le halo d'un secteur est la bande de largeur HALO qui l'entoure : les agents des autres
+ * secteurs qui s'y trouvent peuvent repousser les siens (rayon de vision du moteur) et lui sont
+ * donc transmis à chaque pas.
+ */
+final class ShardLayout {
+
+    static final double HALO = SimulationEngine.RAYON_FOV + 1; // Marge d'une case au-delà du rayon de vision
+
+    final int colonnes, lignes;
+    final int largeur, hauteur;
+    private final int[] bornesX, bornesY; // Secteur c : colonnes de cases [bornesX[c], bornesX[c + 1][
+
+    ShardLayout(int colonnes, int lignes, int largeur, int hauteur) {
+        if (colonnes < 1 || lignes < 1) throw new IllegalArgumentException("découpage vide : " + colonnes + "x" + lignes);
+        this.colonnes = colonnes;
+        this.lignes = lignes;
+        this.largeur = largeur;
+        this.hauteur = hauteur;
+        bornesX = bornes(colonnes, largeur); // Secteurs vides si la grille est plus petite que le découpage
+        bornesY = bornes(lignes, hauteur);
+    }
+
+    /** Découpage "CxL" (par exemple "2x2"), ou un nombre de secteurs en colonnes ("3"). */
+    static int[] lire(String texte) {
+        String[] d = texte.trim().toLowerCase(Locale.ROOT).split("x");
+        try {
+            int c = Integer.parseInt(d[0].trim()), l = d.length > 1 ? Integer.parseInt(d[1].trim()) : 1;
+            if (c >= 1 && l >= 1 && d.length <= 2) return new int[]{c, l};
+        } catch (NumberFormatException ignore) {
+            // Message ci-dessous
+        }
+        throw new IllegalArgumentException("découpage invalide : " + texte + " (colonnes x lignes, par exemple 2x2)");
+    }
+
+    private static int[] bornes(int parts, int taille) {
+        int[] b = new int[parts + 1];
+        for (int k = 0; k <= parts; k++) b[k] = (int) ((long) k * taille / parts);
+        return b;
+    }
+
+    int nbSecteurs() {
+        return colonnes * lignes;
+    }
+
+    /** Secteur qui possède un agent en (x, y). */
+    int secteur(double x, double y) {
+        int cx = Math.max(0, Math.min(largeur - 1, (int) x));
+        int cy = Math.max(0, Math.min(hauteur - 1, (int) y));
+        return indice(bornesX, cx) + colonnes * indice(bornesY, cy);
+    }
+
+    private static int indice(int[] b, int c) {
+        int k = 0;
+        while (b[k + 1] <= c) k++;
+        return k;
+    }
+
+    /** Vrai si (x, y) est dans le secteur s ou dans son halo. */
+    boolean voit(int s, double x, double y) {
+        int c = s % colonnes, l = s / colonnes;
+        return x > bornesX[c] - HALO && x < bornesX[c + 1] + HALO
+                && y > bornesY[l] - HALO && y < bornesY[l + 1] + HALO;
+    }
+
+    /**
+     * Vrai si un agent du secteur s en (x, y) peut être dans le halo d'un autre secteur :
+     * bande intérieure de largeur HALO le long d'une frontière, ou hors du secteur.
+     */
+    boolean presDuBord(int s, double x, double y) {
+        int c = s % colonnes, l = s / colonnes;
+        return (c > 0 && x < bornesX[c] + HALO) || (c < colonnes - 1 && x >= bornesX[c + 1] - HALO)
+                || (l > 0 && y < bornesY[l] + HALO) || (l < lignes - 1 && y >= bornesY[l + 1] - HALO)
+                || secteur(x, y) != s;
+    }
+}
@@ -0,0 +1,209 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.Map;
+
+/**
+ * Processus qui simule un secteur d'une ville répartie : se connecte au {@link ShardCoordinator},
+ * puis exécute ses ordres jusqu'à la fermeture de la connexion.
+ *
+ * CHARGER : ville entière (même graine que le coordinateur) et agents dont la maison est dans
+ * le secteur. PAS : applique ce que le coordinateur a réuni au pas précédent (changements
+ * d'occupation de toute la ville, lieux devenus fréquents, agents arrivés, halo), fait un pas
+ * de son {@link SimulationEngine}, puis répond par un rapport : ses propres changements
+ * d'occupation et de demandes de chemins, les agents sortis du secteur (état complet), les
+ * positions de ceux qui sont près d'un autre secteur et, si demandé, l'état affiché de ses
+ * agents et les sommes des statistiques.
+ *
+ * Lancement : java ShardWorker hôte:port   (-Dsma.threads=n ; en général lancé par le coordinateur)
+ */
+final class ShardWorker {
+
+    private final SimulationEngine moteur;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+    private final ByteArrayOutputStream tampon = new ByteArrayOutputStream(); // Un agent exporté
+
+    private ShardLayout decoupage;
+    private int secteur;
+    private int[] occupationLocale = new int[0], occupationCourante = new int[0]; // Places, agents du secteur
+    private int[] demandesLocales = new int[0];
+
+    ShardWorker(Socket connexion, int threads) throws IOException {
+        moteur = new SimulationEngine(Map.of(), 0, threads);
+        moteur.setJournal(false);
+        in = new DataInputStream(new BufferedInputStream(connexion.getInputStream(), 1 << 16));
+        out = new DataOutputStream(new BufferedOutputStream(connexion.getOutputStream(), 1 << 16));
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args[0].indexOf(':') < 0) {
+            System.out.println("Usage : java ShardWorker hôte:port");
+            return;
+        }
+        int k = args[0].lastIndexOf(':');
+        int threads = Integer.getInteger("sma.threads", Runtime.getRuntime().availableProcessors());
+        try (Socket s = new Socket(args[0].substring(0, k), Integer.parseInt(args[0].substring(k + 1)))) {
+            s.setTcpNoDelay(true);
+            ShardWorker w = new ShardWorker(s, threads);
+            try {
+                w.servir();
+            } finally {
+                w.moteur.arreter();
+            }
+        }
+    }
+
+    /** Exécute les ordres du coordinateur jusqu'à FIN ou la fermeture de la connexion. */
+    void servir() throws IOException {
+        try {
+            while (true) {
+                int ordre = in.readInt();
+                switch (ordre) {
+                    case ShardCoordinator.CHARGER -> charger();
+                    case ShardCoordinator.PAS -> pas();
+                    case ShardCoordinator.FIN -> { return; }
+                    default -> throw new IOException("ordre inconnu : " + ordre);
+                }
+                out.flush();
+            }
+        } catch (EOFException e) {
+            // Coordinateur arrêté
+        }
+    }
+
+    private void charger() throws IOException {
+        secteur = in.readInt();
+        int colonnes = in.readInt(), lignes = in.readInt();
+        long graineScenario = in.readLong();
+        ScenarioConfig c = ScenarioConfig.lire(in);
+        decoupage = new ShardLayout(colonnes, lignes, c.largeur, c.hauteur);
+        moteur.chargerSecteur(c, graineScenario, decoupage, secteur);
+        City v = moteur.getVille();
+        occupationLocale = new int[v.nbPlaces];
+        occupationCourante = new int[v.nbPlaces];
+        demandesLocales = new int[v.nbLieux];
+
+        int n = moteur.nbAgents;
+        out.writeInt(n);
+        for (int i = 0; i < n; i++) {
+            out.writeInt(moteur.ident[i]);
+            out.writeUTF(moteur.noms[i]);
+        }
+        rapport(false, false);
+    }
+
+    private void pas() throws IOException {
+        boolean trame = in.readBoolean(), stats = in.readBoolean();
+        for (int k = in.readInt(); k > 0; k--) moteur.ajouterOccupationVille(in.readInt(), in.readInt());
+        for (int k = in.readInt(); k > 0; k--) moteur.promouvoir(in.readInt());
+        int arrivees = in.readInt();
+        for (int k = 0; k < arrivees; k++) {
+            byte[] agent = new byte[in.readInt()];
+            in.readFully(agent);
+            moteur.importerAgent(new DataInputStream(new ByteArrayInputStream(agent)));
+            // Sa place reste prise dans la ville : pas un changement d'occupation à signaler
+            int place = moteur.placeOccupee[moteur.nbAgents - 1];
+            if (place != City.AUCUN) occupationLocale[place]++;
+        }
+        if (arrivees > 0) moteur.ranger(null);
+        moteur.viderHalo();
+        for (int k = in.readInt(); k > 0; k--) moteur.ajouterHalo(in.readInt(), in.readDouble(), in.readDouble());
+
+        moteur.pas();
+        rapport(trame, stats);
+    }
+
+    // Rapport de fin de pas (ou de chargement) ; les agents sortis du secteur y figurent encore
+    // (trame, statistiques, positions) avant d'être retirés
+    private void rapport(boolean trame, boolean stats) throws IOException {
+        SimulationEngine m = moteur;
+        m.synchroniser();
+        int n = m.nbAgents;
+
+        boolean[] sortis = null;
+        int nbSortis = 0;
+        for (int i = 0; i < n; i++) {
+            if (!m.horsSecteur(i)) continue;
+            if (sortis == null) sortis = new boolean[n];
+            sortis[i] = true;
+            nbSortis++;
+        }
+
+        if (trame) {
+            out.writeInt(n);
+            for (int i = 0; i < n; i++) {
+                out.writeInt(m.ident[i]);
+                out.writeFloat((float) m.x[i]);
+                out.writeFloat((float) m.y[i]);
+                out.writeFloat((float) m.energie[i]);
+                out.writeFloat((float) m.stress[i]);
+                out.writeFloat((float) m.argent[i]);
+                out.writeByte(m.etat[i]);
+                out.writeFloat((float) m.angle[i]);
+            }
+        }
+        if (stats) {
+            m.calculerMoyennes();
+            out.writeInt(m.nbVivants);
+            out.writeInt(m.nbMorts);
+            out.writeInt(m.nbOccupes);
+            out.writeDouble(m.sommeNrj);
+            out.writeDouble(m.sommeStress);
+            out.writeDouble(m.sommeArg);
+        }
+
+        // Positions que d'autres secteurs peuvent voir au prochain pas (numéros croissants)
+        int bord = 0;
+        for (int i = 0; i < n; i++) if (decoupage.presDuBord(secteur, m.x[i], m.y[i])) bord++;
+        out.writeInt(bord);
+        for (int i = 0; i < n; i++) {
+            if (!decoupage.presDuBord(secteur, m.x[i], m.y[i])) continue;
+            out.writeInt(m.ident[i]);
+            out.writeDouble(m.x[i]);
+            out.writeDouble(m.y[i]);
+        }
+
+        // Agents sortis : secteur d'arrivée et état complet, transmis tels quels
+        out.writeInt(nbSortis);
+        for (int i = 0; i < n && nbSortis > 0; i++) {
+            if (!sortis[i]) continue;
+            tampon.reset();
+            if (m.placeOccupee[i] != City.AUCUN) occupationLocale[m.placeOccupee[i]]--; // Reprise à l'arrivée
+            m.exporterAgent(i, new DataOutputStream(tampon));
+            out.writeInt(decoupage.secteur(m.x[i], m.y[i]));
+            out.writeInt(tampon.size());
+            tampon.writeTo(out);
+        }
+        if (nbSortis > 0) m.ranger(sortis);
+
+        // Changements depuis le rapport précédent : occupation des places, recherches de chemins
+        City v = m.getVille();
+        v.occupants.copier(occupationCourante);
+        int changees = 0;
+        for (int p = 0; p < v.nbPlaces; p++) if (occupationCourante[p] != occupationLocale[p]) changees++;
+        out.writeInt(changees);
+        for (int p = 0; p < v.nbPlaces && changees > 0; p++) {
+            if (occupationCourante[p] == occupationLocale[p]) continue;
+            out.writeInt(p);
+            out.writeInt(occupationCourante[p] - occupationLocale[p]);
+            occupationLocale[p] = occupationCourante[p];
+        }
+        int demandes = 0;
+        for (int l = 0; l < v.nbLieux; l++) if (m.getDemandes(l) != demandesLocales[l]) demandes++;
+        out.writeInt(demandes);
+        for (int l = 0; l < v.nbLieux && demandes > 0; l++) {
+            int d = m.getDemandes(l);
+            if (d == demandesLocales[l]) continue;
+            out.writeInt(l);
+            out.writeInt(d - demandesLocales[l]);
+            demandesLocales[l] = d;
+        }
+    }
+}
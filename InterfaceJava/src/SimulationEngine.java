@@ -0,0 +1,1316 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Moteur de simulation sans interface, équivalent Java de ClassPrincipale.Simulation.
+ *
+ * Même modèle que le serveur Python (fonctionsPrincipales.cycle et deplacerast.deplacer :
+ * choix pondéré de destination selon le profil, A* évitant les propriétés privées, forces
+ * d'attraction / répulsion, énergie, stress, argent, occupation des places), mais au lieu
+ * d'un thread par agent, un pas de temps fixe (~20 par seconde) fait avancer tous les agents,
+ * rangés en colonnes de types primitifs, répartis par tranches sur un ForkJoinPool.
+ *
+ * Pendant un pas, chaque agent ne modifie que ses propres colonnes : les positions des
+ * autres agents et l'occupation des places sont lues dans la photo prise en début de pas,
+ * et les tirages aléatoires dépendent seulement de (graine, pas, agent). Le résultat d'un pas
+ * ne dépend donc pas du nombre de threads ni de l'ordre de calcul.
+ *
+ * Les commandes (scénario, vitesse, arrêt) sont déposées depuis n'importe quel thread et
+ * appliquées par le thread de simulation entre deux pas. La vitesse change la durée réelle
+ * d'un pas, pas son contenu : une simulation donne le même résultat à toutes les vitesses,
+ * y compris « au plus vite » (pas enchaînés sans attente).
+ *
+ * Seuls les agents éveillés sont calculés à chaque pas. Un agent occupé (travail, loisir,
+ * parc, repos) ne fait que décompter son activité : il est rangé dans une {@link TimingWheel}
+ * au pas où elle se termine et n'est plus regardé d'ici là. Les pas sautés sont rejoués à la
+ * lecture de ses colonnes ({@link #synchroniser()}) ou à son réveil, avec les mêmes calculs
+ * que s'il avait été éveillé.
+ *
+ * Avec un {@link ActorRuntime}, chaque agent est un acteur (le thread par agent de
+ * ClassPrincipale.Agent, sans son coût) : le thread de simulation envoie un message TIC à
+ * chaque agent vivant, qui fait son pas dans ses propres colonnes. L'occupation des places
+ * n'est plus modifiée directement : l'agent envoie une demande à l'acteur du lieu, seul à
+ * écrire les compteurs de ses places. Le pas se termine quand tous les agents, puis tous
+ * les lieux, ont traité leur courrier ; un agent ne reçoit donc jamais plus d'un message par
+ * pas (mémoire bornée) et le résultat est le même qu'avec les tranches fork-join.
+ *
+ * Pour une ville répartie entre plusieurs processus ({@link ShardCoordinator}), un moteur ne
+ * simule qu'un secteur ({@link #chargerSecteur}) : ses agents, rangés par numéro dans la ville
+ * entière, voient en plus les agents voisins des autres secteurs (halo) et l'occupation des
+ * places de toute la ville, transmis par le coordinateur entre deux pas. Le résultat est le
+ * même qu'avec la ville entière dans un seul moteur.
+ *
+ * L'état complet d'une simulation peut être photographié entre deux pas et écrit sur disque
+ * sans arrêter les pas, puis repris plus tard, même par un autre processus ({@link Checkpoint}).
+ */
+final class SimulationEngine implements EngineServer.Moteur {
+
+    // --- Constantes physiques (deplacerast) ---
+    static final double FORCE_ATTRACTION = 3.0;
+    static final double FORCE_REPULSION_AGENT = 6.0;
+    static final double FORCE_REPULSION_MUR = 30.0;
+    static final double DIST_ARRET = 0.5;
+    static final double RAYON_FOV = 4.0;
+    static final double MAX_VITESSE = 1.0;
+    static final double DAMPING_FACTOR = 0.92;
+
+    static final long PERIODE_NS = 50_000_000L; // Un pas toutes les 50 ms (time.sleep(0.05) de cycle)
+    static final double DT = 0.1 * 2; // Pas des déplacements : 0.1 * vitesse_simulation_factor par défaut
+    static final int PAS_STATS = 200;            // Relevé des moyennes toutes les 10 s (StatsAggregator)
+    static final int HISTORIQUE_STATS = 360;     // Relevés conservés (1 h), comme stats_log côté Python
+    private static final int SEUIL_TRANCHE = 128; // Agents calculés d'un bloc par une tâche fork-join
+
+    // --- États d'un agent ---
+    static final int REPOS = 0;
+    static final int ATTENTE = 1;
+    static final int RENTRE = 2;
+    static final int VERS_MAISON = 3;
+    static final int VERS_TRAVAIL = 4;
+    static final int VERS_LOISIR = 5;
+    static final int VERS_PARC = 6;
+    static final int OCCUPE = 7;
+    static final int MORT = 8;
+    static final String[] LIBELLES = {"Repos", "Attente", "Rentre", "Vers Maison", "Vers Travail",
+            "Vers Loisir", "Vers Parc", "Occupé", "Mort"};
+    private static final int[] ID_ETAT = new int[LIBELLES.length]; // Identifiants WorldSnapshot.Etats
+
+    static {
+        for (int e = 0; e < LIBELLES.length; e++) ID_ETAT[e] = WorldSnapshot.Etats.id(LIBELLES[e]);
+    }
+
+    // --- Destination : index de lieu, ou l'une des valeurs suivantes ---
+    static final int DEST_AUCUNE = -1;
+    static final int DEST_MAISON = -2;
+
+    // --- Profils : poids Maison, Travail, Loisir, Parc (ClassPrincipale.Agent.preferences) ---
+    static final String[] PROFILS = {"Equilibre", "Bosseur", "Casanier"};
+    private static final double[][] PREFERENCES = {
+            {0.2, 0.3, 0.3, 0.2},
+            {0.1, 0.8, 0.05, 0.05},
+            {0.8, 0.1, 0.05, 0.05}};
+
+    private final Map<String, ScenarioConfig> scenarios;
+    private final long graine;
+    private final ForkJoinPool pool;
+    private final ThreadLocal<Contexte> contextes = ThreadLocal.withInitial(Contexte::new);
+    private final SpatialGrid grille = new SpatialGrid(); // Voisinage des positions de début de pas
+    private final PathCache chemins = new PathCache(Integer.getInteger("sma.cacheChemins", 1 << 16));
+    private final ConcurrentLinkedQueue<Runnable> commandes = new ConcurrentLinkedQueue<>();
+
+    // --- Mode acteurs (null : tranches fork-join) ---
+    private static final Object TIC = new Object(), FIN_PAS = new Object();
+    private final ActorRuntime acteurs;
+    private Agent[] agents = new Agent[0];
+    private Lieu[] lieux = new Lieu[0];
+    private final BlockingQueue<Contexte> contextesLibres; // Un par thread de calcul
+    private final AtomicInteger restants = new AtomicInteger(); // Acteurs qui n'ont pas fini le pas
+    private volatile Thread attente; // Thread de simulation, réveillé par le dernier acteur
+    private volatile RuntimeException erreurActeur;
+
+    // --- Simulation courante (thread de simulation) ---
+    private volatile City ville;
+    private volatile boolean enCours = false;
+    private volatile long generation = 0; // Incrémenté à la première trame publiée de chaque scénario
+    private volatile boolean arret = false;
+    private boolean nouvelleGeneration = false;
+    private String idScenario;
+    private ScenarioConfig config;
+    private long graineScenario;
+    private long pas;
+    private long periode = PERIODE_NS; // Durée réelle d'un pas : PERIODE_NS * 2 / SPEED, 0 au plus vite
+    private long premierMort = -1;
+    private boolean journal = true; // Relevés [STATS 10s] affichés sur la console
+
+    // --- Colonnes agents ---
+    int nbAgents;
+    int[] ident = new int[0]; // Numéro de l'agent dans la ville entière (hasard, secteurs)
+    String[] noms = new String[0];
+    double[] x = new double[0], y = new double[0], vx = new double[0], vy = new double[0], angle = new double[0];
+    double[] energie = new double[0], stress = new double[0], argent = new double[0];
+    int[] etat = new int[0], destination = new int[0], tempsActivite = new int[0], profil = new int[0];
+    int[] maison = new int[0], travail = new int[0], loisir = new int[0], parc = new int[0];
+    int[] placeOccupee = new int[0];
+    boolean[] vivant = new boolean[0];
+    private int[][] chemin = new int[0][];
+    private int[] etapeChemin = new int[0];
+
+    // --- Agents éveillés, agents occupés rangés jusqu'à la fin de leur activité ---
+    private final TimingWheel roue = new TimingWheel();
+    private int[] actifs = new int[0]; // Agents calculés à chaque pas (ordre sans importance)
+    private int nbActifs;
+    private boolean[] endormi = new boolean[0];
+    private long[] dernierPas = new long[0]; // Dernier pas appliqué à un agent endormi
+
+    // --- Photo de début de pas (lue par tous les agents pendant le pas) ---
+    private double[] xPrec = new double[0], yPrec = new double[0];
+    private int[] occupationPrec = new int[0];
+    private int[] occupationPubliee = new int[0]; // Copie du thread de simulation pour la trame
+
+    // --- Dernier relevé des moyennes (STATS) ---
+    boolean statsPresentes;
+    double moyNrj, moyStress, moyArg;
+    double sommeNrj, sommeStress, sommeArg; // Sommes sur les vivants (moyennes de plusieurs secteurs)
+    int nbVivants, nbMorts, nbOccupes;
+    private final ArrayDeque<Releve> releves = new ArrayDeque<>(); // Derniers relevés (stats_log)
+
+    /** Un relevé des moyennes (entrée de stats_log). */
+    record Releve(long pas, double moyNrj, double moyStress, double moyArg, int vivants, int morts, int occupes) {}
+
+    // --- Secteur d'une ville répartie (null : ville entière) ---
+    private ShardLayout decoupage;
+    private int secteur;
+    private int arrivees; // Agents importés à la suite des autres, pas encore rangés
+    private int nbHalo;
+    private int[] haloIdent = new int[0];
+    private double[] haloX = new double[0], haloY = new double[0];
+    private double[] visibleX = new double[0], visibleY = new double[0]; // Secteur et halo, par numéro
+
+    SimulationEngine(Map<String, ScenarioConfig> scenarios, long graine, int parallelisme) {
+        this(scenarios, graine, parallelisme, null);
+    }
+
+    /** Avec 'acteurs' non null, un acteur par agent et par lieu au lieu des tranches fork-join. */
+    SimulationEngine(Map<String, ScenarioConfig> scenarios, long graine, int parallelisme, ActorRuntime acteurs) {
+        this.scenarios = scenarios;
+        this.graine = graine;
+        this.pool = new ForkJoinPool(Math.max(1, parallelisme));
+        this.acteurs = acteurs;
+        int p = pool.getParallelism();
+        contextesLibres = new ArrayBlockingQueue<>(p);
+        for (int k = 0; k < p; k++) contextesLibres.add(new Contexte());
+    }
+
+    // ========================================================================
+    // COMMANDES (n'importe quel thread)
+    // ========================================================================
+
+    /** SCENARIO:n -- remplace la simulation courante par une nouvelle ville et de nouveaux agents. */
+    @Override
+    public void commanderScenario(String id) {
+        commandes.add(() -> chargerScenario(id));
+    }
+
+    /** STOP -- suspend la simulation (plus aucune trame n'est publiée). */
+    @Override
+    public void commanderArret() {
+        commandes.add(() -> enCours = false);
+    }
+
+    /**
+     * SPEED:v -- échelle du temps simulé : un pas toutes les PERIODE_NS * 2 / v (v = 2 par
+     * défaut), SPEED:max pour enchaîner les pas sans attendre. Une valeur invalide est ignorée.
+     */
+    @Override
+    public void commanderVitesse(String v) {
+        commandes.add(() -> {
+            String s = v.trim();
+            if (s.equalsIgnoreCase("max")) {
+                periode = 0;
+                return;
+            }
+            try {
+                int facteur = Integer.parseInt(s);
+                if (facteur > 0) periode = PERIODE_NS * 2 / facteur;
+            } catch (NumberFormatException ignore) {
+                // Même comportement que Simulation.set_vitesse
+            }
+        });
+    }
+
+    /**
+     * CHECKPOINT -- photo de la simulation au prochain passage entre deux pas, écrite dans
+     * 'fichier' par un autre thread pendant que la simulation continue.
+     */
+    @Override
+    public boolean commanderPointDeReprise(Path fichier) {
+        commandes.add(() -> {
+            if (ville == null) System.out.println("Point de reprise non écrit : aucune simulation en cours");
+            else Checkpoint.ecrireEnArrierePlan(instantane(), fichier);
+        });
+        return true;
+    }
+
+    /**
+     * RESTORE -- relit un point de reprise (dans le thread appelant, sans ralentir la simulation)
+     * puis le substitue à la simulation courante entre deux pas, comme un nouveau scénario.
+     */
+    @Override
+    public boolean commanderReprise(Path fichier) {
+        Checkpoint.Etat e;
+        try {
+            e = Checkpoint.lire(fichier);
+        } catch (IOException ex) {
+            System.out.println("Reprise impossible : " + ex.getMessage());
+            return false;
+        }
+        commandes.add(() -> reprendre(e));
+        return true;
+    }
+
+    /** Affiche ou non les relevés périodiques des moyennes (silencieux pour les balayages). */
+    void setJournal(boolean actif) {
+        journal = actif;
+    }
+
+    @Override
+    public boolean isEnCours() {
+        return enCours;
+    }
+
+    @Override
+    public long getGeneration() {
+        return generation;
+    }
+
+    /** Pas courant depuis le chargement du scénario. */
+    long getPas() {
+        return pas;
+    }
+
+    /** Pas de la première mort du scénario, -1 s'il n'y en a pas encore ; après synchroniser(). */
+    long getPremierMort() {
+        return premierMort;
+    }
+
+    /** Ville courante (dimensions de la ligne CONFIG) ; null avant le premier scénario. */
+    @Override
+    public City getVille() {
+        return ville;
+    }
+
+    // ========================================================================
+    // BOUCLE À PAS FIXE
+    // ========================================================================
+
+    /** Lance le thread de simulation, qui publie une trame par pas dans 'monde' (au plus une par PERIODE_NS). */
+    void demarrer(WorldSnapshot.Echange monde) {
+        Thread t = new Thread(() -> boucle(monde), "moteur-simulation");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    void arreter() {
+        arret = true;
+        pool.shutdown();
+        if (acteurs != null) acteurs.arreter();
+    }
+
+    private void boucle(WorldSnapshot.Echange monde) {
+        long prochain = System.nanoTime(), prochaineTrame = prochain;
+        while (!arret) {
+            executerCommandes();
+            long duree = enCours ? periode : PERIODE_NS;
+            if (enCours) {
+                pas();
+                // Vitesse élevée : les trames gardent le rythme d'un pas nominal
+                long maintenant = System.nanoTime();
+                if (nouvelleGeneration || maintenant - prochaineTrame >= 0) {
+                    publier(monde);
+                    prochaineTrame = maintenant + PERIODE_NS;
+                }
+            }
+            prochain += duree;
+            long attente = prochain - System.nanoTime();
+            if (attente > 0) {
+                LockSupport.parkNanos(attente);
+            } else if (attente < -5 * Math.max(duree, PERIODE_NS)) {
+                prochain = System.nanoTime(); // Trop en retard : on ne rattrape pas les pas manqués
+            }
+        }
+    }
+
+    void executerCommandes() {
+        Runnable c;
+        while ((c = commandes.poll()) != null) c.run();
+    }
+
+    /** Fait avancer tous les agents d'un pas (thread de simulation). */
+    void pas() {
+        pas++;
+        int n = nbAgents;
+        System.arraycopy(x, 0, xPrec, 0, n);
+        System.arraycopy(y, 0, yPrec, 0, n);
+        City v = ville;
+        if (decoupage == null) {
+            v.occupants.copier(occupationPrec);
+            grille.reconstruire(xPrec, yPrec, n, v.largeur, v.hauteur);
+        } else {
+            // Occupation de toute la ville reçue du coordinateur ; voisins du halo parmi ceux du secteur
+            int visibles = fusionnerHalo(n);
+            grille.reconstruire(visibleX, visibleY, visibles, v.largeur, v.hauteur);
+        }
+
+        // Activités terminées : l'agent rattrape ses pas d'attente et repart à ce pas-ci
+        for (int k = 0, fins = roue.avancer(); k < fins; k++) {
+            int i = roue.echu(k);
+            rattraper(i, pas - 1);
+            endormi[i] = false;
+            if (vivant[i]) actifs[nbActifs++] = i;
+        }
+
+        int m = nbActifs;
+        if (acteurs != null) {
+            pasActeurs(m);
+        } else if (m <= SEUIL_TRANCHE || pool.getParallelism() == 1) {
+            Contexte ctx = contextes.get();
+            for (int k = 0; k < m; k++) avancer(actifs[k], ctx);
+        } else {
+            pool.invoke(new Tranche(0, m));
+        }
+        chemins.finDePas();
+        endormir();
+        if (pas % PAS_STATS == 0) {
+            calculerMoyennes();
+            if (releves.size() == HISTORIQUE_STATS) releves.removeFirst();
+            releves.addLast(new Releve(pas, moyNrj, moyStress, moyArg, nbVivants, nbMorts, nbOccupes));
+        }
+    }
+
+    // Retire des agents éveillés les morts et ceux qui commencent ou poursuivent une activité :
+    // ces derniers ne font que la décompter jusqu'au pas pas + tempsActivite, et repartent au suivant
+    private void endormir() {
+        int garde = 0;
+        for (int k = 0; k < nbActifs; k++) {
+            int i = actifs[k];
+            if (!vivant[i]) {
+                mort(pas);
+            } else if (etat[i] == OCCUPE && tempsActivite[i] > 0) {
+                endormi[i] = true;
+                dernierPas[i] = pas;
+                roue.planifier(i, pas + tempsActivite[i] + 1);
+            } else {
+                actifs[garde++] = i;
+            }
+        }
+        nbActifs = garde;
+    }
+
+    // Applique à un agent endormi les pas ]dernierPas, jusqua] : décompte de l'activité seulement
+    private void rattraper(int i, long jusqua) {
+        for (long p = dernierPas[i] + 1; p <= jusqua && vivant[i]; p++) {
+            miseAJour(i);
+            if (!vivant[i]) mort(p);
+        }
+        dernierPas[i] = jusqua;
+    }
+
+    private void mort(long p) {
+        if (premierMort < 0 || p < premierMort) premierMort = p;
+    }
+
+    /**
+     * Met les colonnes des agents endormis à jour au pas courant : à appeler avant de les lire
+     * depuis le thread de simulation (trame, moyennes, balayage).
+     */
+    void synchroniser() {
+        for (int i = 0; i < nbAgents; i++) if (endormi[i]) rattraper(i, pas);
+    }
+
+    /** Agents éveillés actifs[debut, fin[ calculés par une tâche ; découpée en deux au-delà du seuil. */
+    private final class Tranche extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int debut, fin;
+
+        Tranche(int debut, int fin) {
+            this.debut = debut;
+            this.fin = fin;
+        }
+
+        @Override
+        protected void compute() {
+            if (fin - debut <= SEUIL_TRANCHE) {
+                Contexte ctx = contextes.get();
+                for (int k = debut; k < fin; k++) avancer(actifs[k], ctx);
+                return;
+            }
+            int milieu = (debut + fin) >>> 1;
+            invokeAll(new Tranche(debut, milieu), new Tranche(milieu, fin));
+        }
+    }
+
+    // ========================================================================
+    // MODE ACTEURS
+    // ========================================================================
+
+    /** Un agent : un pas par message TIC. */
+    private final class Agent extends ActorRuntime.Acteur {
+        private final int i;
+
+        Agent(int i) {
+            this.i = i;
+        }
+
+        @Override
+        protected void recevoir(Object message) {
+            Contexte ctx = null;
+            try {
+                // Au plus un agent par thread de calcul en même temps : la mémoire de travail de
+                // l'A* ne croît pas avec le nombre de threads (un thread système par agent)
+                ctx = contextesLibres.take();
+                avancer(i, ctx);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                erreurActeur = e;
+            } finally {
+                if (ctx != null) contextesLibres.add(ctx);
+                tacheTerminee();
+            }
+        }
+    }
+
+    /** Demande d'un agent au lieu : 'delta' occupant(s) sur la place. */
+    private record Occupation(int place, int delta) {}
+
+    /** Un lieu : seul à modifier l'occupation de ses places ; FIN_PAS une fois le courrier du pas traité. */
+    private final class Lieu extends ActorRuntime.Acteur {
+        private final City ville;
+
+        Lieu(City ville) {
+            this.ville = ville;
+        }
+
+        @Override
+        protected void recevoir(Object message) {
+            if (message instanceof Occupation o) ville.occupants.ajouter(o.place(), o.delta());
+            else tacheTerminee();
+        }
+    }
+
+    // TIC à chaque agent éveillé, puis FIN_PAS à chaque lieu : les demandes d'occupation d'un
+    // agent précèdent FIN_PAS dans la boîte du lieu
+    private void pasActeurs(int m) {
+        attente = Thread.currentThread();
+        restants.set(m);
+        acteurs.envoyerGroupe(() -> {
+            for (int k = 0; k < m; k++) agents[actifs[k]].envoyer(TIC);
+        });
+        attendreActeurs();
+        restants.set(lieux.length);
+        acteurs.envoyerGroupe(() -> {
+            for (Lieu l : lieux) l.envoyer(FIN_PAS);
+        });
+        attendreActeurs();
+        RuntimeException e = erreurActeur;
+        if (e != null) {
+            erreurActeur = null;
+            throw e;
+        }
+    }
+
+    private void attendreActeurs() {
+        while (restants.get() > 0) LockSupport.park(this);
+    }
+
+    private void tacheTerminee() {
+        if (restants.decrementAndGet() == 0) LockSupport.unpark(attente);
+    }
+
+    // Nouveau scénario : les acteurs du précédent sont terminés (leur dernier pas est fini)
+    private void creerActeurs(City v, int n) {
+        for (Agent a : agents) acteurs.terminer(a);
+        for (Lieu l : lieux) acteurs.terminer(l);
+        agents = new Agent[n];
+        for (int i = 0; i < n; i++) acteurs.demarrer(agents[i] = new Agent(i));
+        lieux = new Lieu[v.nbLieux];
+        for (int l = 0; l < v.nbLieux; l++) acteurs.demarrer(lieux[l] = new Lieu(v));
+    }
+
+    // Arrivée (+1) ou départ (-1) d'un agent sur une place
+    private void occuper(int place, int delta) {
+        if (acteurs != null) lieux[ville.placeLieu[place]].envoyer(new Occupation(place, delta));
+        else ville.occupants.ajouter(place, delta);
+    }
+
+    /** Copie l'état courant dans le tampon d'écriture et le publie (lieux dans l'ordre de lister_lieux). */
+    void publier(WorldSnapshot.Echange monde) {
+        synchroniser();
+        City v = ville;
+        WorldSnapshot t = monde.ecriture();
+        t.vider();
+        for (int m = 0; m < v.nbMaisons; m++) t.ajouterLieu(FrameParser.MAISON, v.maisonX[m], v.maisonY[m], false);
+        v.occupants.copier(occupationPubliee);
+        for (int p = 0; p < v.nbPlaces; p++) {
+            t.ajouterLieu(v.typeLieu[v.placeLieu[p]], v.placeX[p], v.placeY[p], occupationPubliee[p] > 0);
+        }
+        for (int i = 0; i < nbAgents; i++) {
+            t.ajouterAgent(noms[i], (float) x[i], (float) y[i], (float) energie[i], (float) stress[i],
+                    (float) argent[i], ID_ETAT[etat[i]], (float) angle[i]);
+        }
+        if (statsPresentes) t.definirStats((float) moyNrj, (float) moyStress, (float) moyArg, nbVivants, nbMorts, nbOccupes);
+        monde.publier();
+        if (nouvelleGeneration) {
+            nouvelleGeneration = false;
+            generation++;
+        }
+    }
+
+    // ========================================================================
+    // CRÉATION D'UN SCÉNARIO (Simulation.__init__)
+    // ========================================================================
+
+    void chargerScenario(String id) {
+        ScenarioConfig c = scenarios.get(id);
+        if (c == null) c = scenarios.getOrDefault("1", scenarios.values().iterator().next());
+        charger(c, graineScenario(graine, id, generation), null, 0);
+    }
+
+    /** Graine d'un scénario : ville et agents en découlent entièrement. */
+    static long graineScenario(long graine, String id, long generation) {
+        return melanger(graine ^ melanger(id.hashCode()) ^ generation);
+    }
+
+    // Ville et agents tirés de 'graineScenario' ; avec un découpage, seuls les agents dont la
+    // maison est dans le secteur sont gardés, mais les tirages de tous sont faits dans le même
+    // ordre : chaque agent est celui de la ville entière
+    private void charger(ScenarioConfig c, long graineScenario, ShardLayout decoupage, int secteur) {
+        idScenario = c.id;
+        config = c;
+        this.graineScenario = graineScenario;
+        this.decoupage = decoupage;
+        this.secteur = secteur;
+        chemins.setPromotionLocale(decoupage == null);
+        SplittableRandom rnd = new SplittableRandom(graineScenario);
+        City v = new City(c, rnd);
+
+        int total = Math.min(c.nbAgents, v.nbMaisons), n = 0;
+        for (int m = 0; m < total; m++) if (garde(v, m)) n++;
+        allouer(n);
+        Set<String> dejaPris = new HashSet<>();
+        int dominant = indiceProfil(c.profilDominant);
+        for (int m = 0, i = 0; m < total; m++) {
+            // Un emploi n'est pas garanti : random.choice(travails + [None])
+            int t = rnd.nextInt(v.travails.length + 1);
+            int l = v.loisirs.length > 0 ? v.loisirs[rnd.nextInt(v.loisirs.length)] : City.AUCUN;
+            int pc = v.parcs.length > 0 ? v.parcs[rnd.nextInt(v.parcs.length)] : City.AUCUN;
+            String nom = genererNomUnique(dejaPris, rnd);
+            int pr = rnd.nextDouble() < 0.7 ? dominant : rnd.nextInt(PROFILS.length);
+            if (!garde(v, m)) continue;
+
+            ident[i] = m;
+            maison[i] = m;
+            travail[i] = t < v.travails.length ? v.travails[t] : City.AUCUN;
+            loisir[i] = l;
+            parc[i] = pc;
+            noms[i] = nom;
+            profil[i] = pr;
+
+            x[i] = v.maisonX[m];
+            y[i] = v.maisonY[m];
+            vx[i] = vy[i] = angle[i] = 0;
+            energie[i] = c.energieInitiale;
+            stress[i] = c.stressInitial;
+            argent[i] = c.argentInitial;
+            vivant[i] = true;
+            etat[i] = REPOS;
+            destination[i] = DEST_AUCUNE;
+            tempsActivite[i] = 0;
+            placeOccupee[i] = City.AUCUN;
+            chemin[i] = PathFinder.VIDE;
+            etapeChemin[i] = 0;
+            i++;
+        }
+        nbAgents = n;
+        occupationPrec = new int[v.nbPlaces];
+        occupationPubliee = new int[v.nbPlaces];
+        nbHalo = 0;
+        arrivees = 0;
+        if (acteurs != null) creerActeurs(v, n);
+        ville = v;
+
+        roue.vider(0, n);
+        nbActifs = n;
+        for (int i = 0; i < n; i++) actifs[i] = i;
+        pas = 0;
+        periode = PERIODE_NS;
+        premierMort = -1;
+        statsPresentes = false;
+        releves.clear();
+        enCours = true;
+        nouvelleGeneration = true;
+    }
+
+    // Agent d'une maison gardé par ce moteur (tous sans découpage)
+    private boolean garde(City v, int m) {
+        return decoupage == null || decoupage.secteur(v.maisonX[m], v.maisonY[m]) == secteur;
+    }
+
+    private void allouer(int n) {
+        ident = new int[n];
+        noms = new String[n];
+        x = new double[n]; y = new double[n]; vx = new double[n]; vy = new double[n]; angle = new double[n];
+        energie = new double[n]; stress = new double[n]; argent = new double[n];
+        etat = new int[n]; destination = new int[n]; tempsActivite = new int[n]; profil = new int[n];
+        maison = new int[n]; travail = new int[n]; loisir = new int[n]; parc = new int[n];
+        placeOccupee = new int[n];
+        vivant = new boolean[n];
+        chemin = new int[n][];
+        etapeChemin = new int[n];
+        xPrec = new double[n]; yPrec = new double[n];
+        actifs = new int[n];
+        endormi = new boolean[n];
+        dernierPas = new long[n];
+    }
+
+    private static int indiceProfil(String nom) {
+        for (int p = 0; p < PROFILS.length; p++) if (PROFILS[p].equals(nom)) return p;
+        return 0;
+    }
+
+    // Une lettre majuscule suivie d'un chiffre, comme generer_nom_unique ; au-delà des
+    // 260 combinaisons, le nombre s'allonge au lieu de boucler indéfiniment
+    private static String genererNomUnique(Set<String> dejaPris, SplittableRandom rnd) {
+        int borne = 10;
+        while (dejaPris.size() >= 26 * borne / 2) borne *= 10;
+        while (true) {
+            String s = (char) ('A' + rnd.nextInt(26)) + Integer.toString(rnd.nextInt(borne));
+            if (dejaPris.add(s)) return s;
+        }
+    }
+
+    // ========================================================================
+    // UN PAS POUR UN AGENT (fonctionsPrincipales.cycle)
+    // ========================================================================
+
+    private void avancer(int i, Contexte ctx) {
+        if (!vivant[i]) return;
+
+        // 1. Décision de destination
+        choisirDestination(i);
+
+        // 2. Mouvement, puis arrivée lorsque le chemin est épuisé
+        if (destination[i] != DEST_AUCUNE && etat[i] != OCCUPE) {
+            if (deplacer(i, ctx)) arriver(i);
+        }
+
+        // 3. Statistiques vitales
+        miseAJour(i);
+    }
+
+    private void choisirDestination(int i) {
+        // 1. Libération de la place lorsque l'activité est terminée
+        if (etat[i] == OCCUPE) {
+            if (tempsActivite[i] > 0) return;
+            if (placeOccupee[i] != City.AUCUN) {
+                occuper(placeOccupee[i], -1);
+                placeOccupee[i] = City.AUCUN;
+            }
+            etat[i] = ATTENTE;
+            destination[i] = DEST_AUCUNE;
+            chemin[i] = PathFinder.VIDE;
+            etapeChemin[i] = 0;
+        }
+        if (destination[i] != DEST_AUCUNE) return;
+
+        // 2. Énergie critique : retour à la maison
+        if (energie[i] < 20) {
+            destination[i] = DEST_MAISON;
+            etat[i] = RENTRE;
+            return;
+        }
+
+        // 3. Choix pondéré parmi les options disponibles
+        double[] w = PREFERENCES[profil[i]];
+        double wTravail = travail[i] != City.AUCUN ? w[1] : 0;
+        double wLoisir = loisir[i] != City.AUCUN && argent[i] > 5 ? w[2] : 0;
+        double wParc = parc[i] != City.AUCUN ? w[3] : 0;
+        double r = hasard(i, 0) * (w[0] + wTravail + wLoisir + wParc) - w[0];
+
+        // Dernière option disponible dont le poids cumulé précédent ne dépasse pas le tirage
+        int choix = VERS_MAISON;
+        if (r >= 0 && wTravail > 0) { choix = VERS_TRAVAIL; r -= wTravail; }
+        if (r >= 0 && wLoisir > 0) { choix = VERS_LOISIR; r -= wLoisir; }
+        if (r >= 0 && wParc > 0) choix = VERS_PARC;
+
+        etat[i] = choix;
+        destination[i] = switch (choix) {
+            case VERS_TRAVAIL -> travail[i];
+            case VERS_LOISIR -> loisir[i];
+            case VERS_PARC -> parc[i];
+            default -> DEST_MAISON;
+        };
+    }
+
+    private void arriver(int i) {
+        etat[i] = OCCUPE;
+        int type = typeDestination(i);
+        double r = hasard(i, 1);
+        if (type == FrameParser.TRAVAIL) tempsActivite[i] = 50 + (int) (r * 51);
+        else if (type == FrameParser.LOISIR) tempsActivite[i] = 30 + (int) (r * 31);
+        else tempsActivite[i] = 20 + (int) (r * 21);
+
+        // Prise de la place sur laquelle l'agent s'est arrêté
+        int l = destination[i];
+        if (l < 0) return;
+        City v = ville;
+        for (int p = v.debutPlaces[l]; p < v.finPlaces[l]; p++) {
+            if (Math.abs(x[i] - v.placeX[p]) < 0.6 && Math.abs(y[i] - v.placeY[p]) < 0.6) {
+                occuper(p, 1);
+                placeOccupee[i] = p;
+                break;
+            }
+        }
+    }
+
+    private void miseAJour(int i) {
+        if (etat[i] != OCCUPE) {
+            energie[i] -= 0.1;
+            stress[i] += 0.05;
+        } else {
+            tempsActivite[i]--;
+            switch (typeDestination(i)) {
+                case FrameParser.TRAVAIL -> { argent[i] += 1; stress[i] += 0.1; }
+                case FrameParser.LOISIR -> { argent[i] -= 0.5; stress[i] -= 0.5; }
+                case FrameParser.PARC -> stress[i] -= 0.2;
+                default -> { energie[i] += 0.5; stress[i] -= 0.1; }
+            }
+        }
+        energie[i] = Math.max(0, Math.min(100, energie[i]));
+        stress[i] = Math.max(0, Math.min(100, stress[i]));
+
+        if (energie[i] <= 0 || stress[i] >= 100) {
+            vivant[i] = false;
+            etat[i] = MORT;
+        }
+    }
+
+    private int typeDestination(int i) {
+        return destination[i] >= 0 ? ville.typeLieu[destination[i]] : FrameParser.MAISON;
+    }
+
+    // ========================================================================
+    // DÉPLACEMENT (deplacerast.deplacer / calculer_forces)
+    // ========================================================================
+
+    // Renvoie vrai lorsque l'itinéraire est épuisé (dernier point atteint, ou aucun chemin)
+    private boolean deplacer(int i, Contexte ctx) {
+        City v = ville;
+        double ax = x[i], ay = y[i];
+
+        // A. Cible exacte : place libre la plus proche du lieu, ou la maison
+        double tx, ty;
+        int lieu = destination[i] >= 0 ? destination[i] : City.AUCUN;
+        if (lieu != City.AUCUN) {
+            int meilleure = v.debutPlaces[lieu];
+            double min = Double.POSITIVE_INFINITY;
+            for (int p = v.debutPlaces[lieu]; p < v.finPlaces[lieu]; p++) {
+                if (occupationPrec[p] != 0 && placeOccupee[i] != p) continue;
+                double d = distance(ax - v.placeX[p], ay - v.placeY[p]);
+                if (d < min) { min = d; meilleure = p; }
+            }
+            tx = v.placeX[meilleure];
+            ty = v.placeY[meilleure];
+        } else {
+            tx = v.maisonX[maison[i]];
+            ty = v.maisonY[maison[i]];
+        }
+        double distFinale = distance(tx - ax, ty - ay);
+
+        // B. Arrivée : l'agent se cale sur la cible
+        if (distFinale < DIST_ARRET) {
+            x[i] = tx;
+            y[i] = ty;
+            chemin[i] = PathFinder.VIDE;
+            etapeChemin[i] = 0;
+            vx[i] = vy[i] = 0;
+            return true;
+        }
+
+        double lx = tx, ly = ty;
+        boolean epuise;
+        char[] champ = lieu != City.AUCUN ? chemins.champ(v, lieu) : null;
+        if (champ != null) {
+            // C'. Lieu fréquent : case voisine la plus proche du lieu, puis la place une fois dans le bloc
+            int courante = (int) Math.round(ay) * v.largeur + (int) Math.round(ax);
+            chemin[i] = PathFinder.VIDE;
+            etapeChemin[i] = 0;
+            if (v.lieuCase[courante] == lieu) {
+                epuise = distFinale < 0.8;
+            } else {
+                int suivante = PathCache.suivante(v, champ, courante);
+                epuise = suivante < 0; // Lieu inatteignable : comme un chemin A* vide
+                if (!epuise) {
+                    lx = suivante % v.largeur;
+                    ly = suivante / v.largeur;
+                }
+            }
+        } else {
+            // C. Recalcul du chemin A* s'il est vide ou si l'agent s'en est écarté
+            int[] c = chemin[i];
+            int e = etapeChemin[i];
+            boolean recalcul = e >= c.length
+                    || distance(ax - c[e] % v.largeur, ay - c[e] / v.largeur) > 2.0;
+            if (recalcul) {
+                int depart = (int) Math.round(ay) * v.largeur + (int) Math.round(ax);
+                c = chemin[i] = chemins.chemin(v, depart, (int) ty * v.largeur + (int) tx, maison[i], lieu, ctx.chercheur);
+                e = etapeChemin[i] = 0;
+            }
+
+            // D. Cible locale : prochain point du chemin
+            if (e < c.length) {
+                int suivant = c[e];
+                if (distance(suivant % v.largeur - ax, suivant / v.largeur - ay) < 0.8) {
+                    etapeChemin[i] = ++e;
+                    if (e < c.length) suivant = c[e];
+                }
+                lx = suivant % v.largeur;
+                ly = suivant / v.largeur;
+            }
+            epuise = e >= c.length;
+        }
+
+        // E. Forces, intégration et amortissement
+        double fx = 0, fy = 0;
+        double dx = lx - ax, dy = ly - ay;
+        double dist = distance(dx, dy);
+        if (dist > 0) {
+            double force = FORCE_ATTRACTION;
+            if (distFinale < 2.0) force *= distFinale / 2.0; // Freinage à l'approche
+            fx += dx / dist * force;
+            fy += dy / dist * force;
+        }
+        if (distFinale > 1.0) {
+            // Séparation : voisins dans le rayon de vision, positions de début de pas
+            ctx.fx = 0;
+            ctx.fy = 0;
+            grille.rayon(ax, ay, RAYON_FOV, ctx);
+            fx += ctx.fx;
+            fy += ctx.fy;
+        }
+        double marge = 1.0;
+        if (ax < marge) fx += (marge - ax) * FORCE_REPULSION_MUR;
+        if (ax > v.largeur - marge) fx -= (ax - (v.largeur - marge)) * FORCE_REPULSION_MUR;
+        if (ay < marge) fy += (marge - ay) * FORCE_REPULSION_MUR;
+        if (ay > v.hauteur - marge) fy -= (ay - (v.hauteur - marge)) * FORCE_REPULSION_MUR;
+
+        double nvx = (vx[i] + fx * DT) * DAMPING_FACTOR;
+        double nvy = (vy[i] + fy * DT) * DAMPING_FACTOR;
+        double norme = distance(nvx, nvy);
+        if (norme > MAX_VITESSE) {
+            nvx = nvx / norme * MAX_VITESSE;
+            nvy = nvy / norme * MAX_VITESSE;
+        }
+        vx[i] = nvx;
+        vy[i] = nvy;
+        if (norme > 0.01) angle[i] = Math.atan2(nvy, nvx);
+
+        x[i] = Math.max(0.1, Math.min(v.largeur - 1.1, ax + nvx));
+        y[i] = Math.max(0.1, Math.min(v.hauteur - 1.1, ay + nvy));
+        return epuise;
+    }
+
+    /** Outils de calcul propres à un thread : A* et accumulateur de la répulsion entre agents. */
+    private static final class Contexte implements SpatialGrid.Visiteur {
+        final PathFinder chercheur = new PathFinder();
+        double fx, fy;
+
+        @Override
+        public void voisin(int index, double dx, double dy, double d2) {
+            if (d2 == 0) return; // L'agent lui-même (ou un agent exactement superposé)
+            // Force inversement proportionnelle au carré de la distance, dirigée à l'opposé du voisin
+            double f = FORCE_REPULSION_AGENT / (d2 * Math.sqrt(d2));
+            fx -= dx * f;
+            fy -= dy * f;
+        }
+    }
+
+    private static double distance(double dx, double dy) {
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    // ========================================================================
+    // STATISTIQUES (calculer_moyennes + StatsAggregator)
+    // ========================================================================
+
+    void calculerMoyennes() {
+        synchroniser();
+        int vivants = 0, morts = 0, occupes = 0;
+        double sNrj = 0, sStress = 0, sArg = 0;
+        for (int i = 0; i < nbAgents; i++) {
+            if (etat[i] == MORT) morts++;
+            else if (etat[i] == OCCUPE) occupes++;
+            if (!vivant[i]) continue;
+            vivants++;
+            sNrj += energie[i];
+            sStress += stress[i];
+            sArg += argent[i];
+        }
+        statsPresentes = true;
+        nbVivants = vivants;
+        nbMorts = morts;
+        nbOccupes = occupes;
+        sommeNrj = sNrj;
+        sommeStress = sStress;
+        sommeArg = sArg;
+        moyNrj = vivants > 0 ? sNrj / vivants : 0;
+        moyStress = vivants > 0 ? sStress / vivants : 0;
+        moyArg = vivants > 0 ? sArg / vivants : 0;
+
+        if (journal) System.out.printf("[STATS 10s] %s - S%s NRJ:%.2f STR:%.2f ARG:%.2f | V:%d M:%d O:%d%n",
+                LocalTime.now().format(DateTimeFormatter.ofPattern("HH:mm:ss")), idScenario,
+                moyNrj, moyStress, moyArg, vivants, morts, occupes);
+    }
+
+    // ========================================================================
+    // POINT DE REPRISE (Checkpoint)
+    // ========================================================================
+
+    /**
+     * Photo de la simulation courante (thread de simulation, entre deux pas) : colonnes et
+     * occupation copiées, disposition de la ville et chemins partagés puisqu'ils ne sont
+     * jamais modifiés. La simulation peut reprendre aussitôt.
+     */
+    Checkpoint.Etat instantane() {
+        if (decoupage != null) throw new IllegalStateException("point de reprise d'un secteur");
+        synchroniser();
+        City v = ville;
+        int n = nbAgents;
+        Checkpoint.Etat e = new Checkpoint.Etat();
+        e.config = config;
+        e.graineScenario = graineScenario;
+        e.pas = pas;
+        e.premierMort = premierMort;
+        e.ville = v;
+        e.occupation = new int[v.nbPlaces];
+        v.occupants.copier(e.occupation);
+        e.demandes = new int[v.nbLieux];
+        e.frequents = new boolean[v.nbLieux];
+        for (int l = 0; l < v.nbLieux; l++) {
+            e.demandes[l] = chemins.demandes(v, l);
+            e.frequents[l] = chemins.frequent(v, l);
+        }
+
+        e.ident = Arrays.copyOf(ident, n); e.noms = Arrays.copyOf(noms, n);
+        e.x = Arrays.copyOf(x, n); e.y = Arrays.copyOf(y, n); e.vx = Arrays.copyOf(vx, n); e.vy = Arrays.copyOf(vy, n);
+        e.angle = Arrays.copyOf(angle, n);
+        e.energie = Arrays.copyOf(energie, n); e.stress = Arrays.copyOf(stress, n); e.argent = Arrays.copyOf(argent, n);
+        e.etat = Arrays.copyOf(etat, n); e.destination = Arrays.copyOf(destination, n);
+        e.tempsActivite = Arrays.copyOf(tempsActivite, n); e.profil = Arrays.copyOf(profil, n);
+        e.maison = Arrays.copyOf(maison, n); e.travail = Arrays.copyOf(travail, n);
+        e.loisir = Arrays.copyOf(loisir, n); e.parc = Arrays.copyOf(parc, n);
+        e.placeOccupee = Arrays.copyOf(placeOccupee, n); e.etapeChemin = Arrays.copyOf(etapeChemin, n);
+        e.vivant = Arrays.copyOf(vivant, n); e.endormi = Arrays.copyOf(endormi, n);
+        e.chemin = Arrays.copyOf(chemin, n);
+
+        e.statsPresentes = statsPresentes;
+        e.moyNrj = moyNrj;
+        e.moyStress = moyStress;
+        e.moyArg = moyArg;
+        e.nbVivants = nbVivants;
+        e.nbMorts = nbMorts;
+        e.nbOccupes = nbOccupes;
+        e.releves = releves.toArray(new Releve[0]);
+        return e;
+    }
+
+    /**
+     * Remplace la simulation courante par une photo (thread de simulation, entre deux pas) ;
+     * ses tableaux sont repris tels quels. Les pas suivants sont ceux de la simulation photographiée.
+     */
+    void reprendre(Checkpoint.Etat e) {
+        City v = e.ville;
+        idScenario = e.config.id;
+        config = e.config;
+        graineScenario = e.graineScenario;
+        decoupage = null;
+        secteur = 0;
+        chemins.setPromotionLocale(true);
+        for (int p = 0; p < v.nbPlaces; p++) if (e.occupation[p] != 0) v.occupants.ajouter(p, e.occupation[p]);
+        for (int l = 0; l < v.nbLieux; l++) chemins.reprendre(v, l, e.demandes[l], e.frequents[l]);
+
+        int n = e.nbAgents();
+        ident = e.ident; noms = e.noms;
+        x = e.x; y = e.y; vx = e.vx; vy = e.vy; angle = e.angle;
+        energie = e.energie; stress = e.stress; argent = e.argent;
+        etat = e.etat; destination = e.destination; tempsActivite = e.tempsActivite; profil = e.profil;
+        maison = e.maison; travail = e.travail; loisir = e.loisir; parc = e.parc;
+        placeOccupee = e.placeOccupee;
+        vivant = e.vivant;
+        chemin = e.chemin; etapeChemin = e.etapeChemin;
+        endormi = e.endormi;
+        xPrec = new double[n]; yPrec = new double[n];
+        actifs = new int[n];
+        dernierPas = new long[n];
+        nbAgents = n;
+        occupationPrec = new int[v.nbPlaces];
+        occupationPubliee = new int[v.nbPlaces];
+        nbHalo = 0;
+        arrivees = 0;
+        if (acteurs != null) creerActeurs(v, n);
+        ville = v;
+
+        // Agents endormis à jour au pas de la photo : réveil à pas + tempsActivite + 1, comme dans endormir()
+        pas = e.pas;
+        roue.vider(pas, n);
+        nbActifs = 0;
+        for (int i = 0; i < n; i++) {
+            dernierPas[i] = pas;
+            if (!vivant[i]) endormi[i] = false;
+            else if (endormi[i]) roue.planifier(i, pas + tempsActivite[i] + 1);
+            else actifs[nbActifs++] = i;
+        }
+        periode = PERIODE_NS;
+        premierMort = e.premierMort;
+        statsPresentes = e.statsPresentes;
+        moyNrj = e.moyNrj;
+        moyStress = e.moyStress;
+        moyArg = e.moyArg;
+        nbVivants = e.nbVivants;
+        nbMorts = e.nbMorts;
+        nbOccupes = e.nbOccupes;
+        releves.clear();
+        releves.addAll(Arrays.asList(e.releves));
+        enCours = true;
+        nouvelleGeneration = true;
+        if (journal) System.out.println("Reprise du scénario " + idScenario + " au pas " + pas + " (" + n + " agents).");
+    }
+
+    // ========================================================================
+    // SECTEUR D'UNE VILLE RÉPARTIE (ShardWorker)
+    // ========================================================================
+
+    /**
+     * Charge le secteur 's' d'une ville répartie : toute la disposition de la ville, mais
+     * seulement les agents dont la maison est dans le secteur. Les lieux ne deviennent
+     * fréquents (champs de directions) que par {@link #promouvoir}, d'après les demandes de
+     * toute la ville.
+     */
+    void chargerSecteur(ScenarioConfig c, long graineScenario, ShardLayout decoupage, int s) {
+        if (acteurs != null) throw new IllegalStateException("un secteur est calculé par tranches fork-join");
+        charger(c, graineScenario, decoupage, s);
+    }
+
+    /** Vrai si l'agent i n'est plus dans le secteur après le pas : il doit être exporté puis retiré. */
+    boolean horsSecteur(int i) {
+        return decoupage.secteur(x[i], y[i]) != secteur;
+    }
+
+    /** Changement d'occupation d'une place de la ville entière, appliqué avant le pas suivant. */
+    void ajouterOccupationVille(int place, int delta) {
+        occupationPrec[place] += delta;
+    }
+
+    /** Recherches de chemin vers le lieu depuis le chargement, pour les agents de ce moteur. */
+    int getDemandes(int lieu) {
+        return chemins.demandes(ville, lieu);
+    }
+
+    /** Le lieu est servi par un champ de directions dès le pas suivant (entre deux pas). */
+    void promouvoir(int lieu) {
+        chemins.promouvoir(ville, lieu);
+    }
+
+    /** Oublie le halo du pas précédent. */
+    void viderHalo() {
+        nbHalo = 0;
+    }
+
+    /** Agent d'un autre secteur visible au prochain pas ; numéros croissants d'un appel au suivant. */
+    void ajouterHalo(int numero, double hx, double hy) {
+        if (nbHalo == haloIdent.length) {
+            int c = Math.max(64, 2 * nbHalo);
+            haloIdent = Arrays.copyOf(haloIdent, c);
+            haloX = Arrays.copyOf(haloX, c);
+            haloY = Arrays.copyOf(haloY, c);
+        }
+        haloIdent[nbHalo] = numero;
+        haloX[nbHalo] = hx;
+        haloY[nbHalo++] = hy;
+    }
+
+    // Positions de début de pas du secteur et du halo, par numéro croissant : les voisins d'un
+    // agent sont visités dans le même ordre que dans la ville entière (mêmes sommes de forces)
+    private int fusionnerHalo(int n) {
+        int m = n + nbHalo;
+        if (visibleX.length < m) {
+            visibleX = new double[m + m / 2];
+            visibleY = new double[visibleX.length];
+        }
+        int k = 0, h = 0;
+        for (int i = 0; i < n; i++) {
+            while (h < nbHalo && haloIdent[h] < ident[i]) {
+                visibleX[k] = haloX[h];
+                visibleY[k++] = haloY[h++];
+            }
+            visibleX[k] = xPrec[i];
+            visibleY[k++] = yPrec[i];
+        }
+        for (; h < nbHalo; h++) {
+            visibleX[k] = haloX[h];
+            visibleY[k++] = haloY[h];
+        }
+        return m;
+    }
+
+    /**
+     * Écrit tout l'état de l'agent i pour un autre secteur ; sa place éventuelle est rendue
+     * ici et reprise par {@link #importerAgent}. L'agent doit ensuite être retiré par {@link #ranger}.
+     */
+    void exporterAgent(int i, DataOutput out) throws IOException {
+        if (endormi[i]) rattraper(i, pas);
+        out.writeInt(ident[i]);
+        out.writeUTF(noms[i]);
+        out.writeDouble(x[i]); out.writeDouble(y[i]); out.writeDouble(vx[i]); out.writeDouble(vy[i]);
+        out.writeDouble(angle[i]); out.writeDouble(energie[i]); out.writeDouble(stress[i]); out.writeDouble(argent[i]);
+        out.writeInt(etat[i]); out.writeInt(destination[i]); out.writeInt(tempsActivite[i]); out.writeInt(profil[i]);
+        out.writeInt(maison[i]); out.writeInt(travail[i]); out.writeInt(loisir[i]); out.writeInt(parc[i]);
+        out.writeInt(placeOccupee[i]); out.writeInt(etapeChemin[i]);
+        out.writeBoolean(vivant[i]);
+        out.writeBoolean(endormi[i]);
+        int[] c = chemin[i];
+        out.writeInt(c.length);
+        for (int e : c) out.writeInt(e);
+        if (placeOccupee[i] != City.AUCUN) ville.occupants.ajouter(placeOccupee[i], -1);
+    }
+
+    /** Ajoute un agent écrit par {@link #exporterAgent} dans un autre secteur ; rangé par {@link #ranger}. */
+    void importerAgent(DataInput in) throws IOException {
+        int i = nbAgents;
+        if (i == ident.length) agrandir(Math.max(16, 2 * i));
+        ident[i] = in.readInt();
+        noms[i] = in.readUTF();
+        x[i] = in.readDouble(); y[i] = in.readDouble(); vx[i] = in.readDouble(); vy[i] = in.readDouble();
+        angle[i] = in.readDouble(); energie[i] = in.readDouble(); stress[i] = in.readDouble(); argent[i] = in.readDouble();
+        etat[i] = in.readInt(); destination[i] = in.readInt(); tempsActivite[i] = in.readInt(); profil[i] = in.readInt();
+        maison[i] = in.readInt(); travail[i] = in.readInt(); loisir[i] = in.readInt(); parc[i] = in.readInt();
+        placeOccupee[i] = in.readInt(); etapeChemin[i] = in.readInt();
+        vivant[i] = in.readBoolean();
+        endormi[i] = in.readBoolean();
+        int[] c = new int[in.readInt()];
+        for (int k = 0; k < c.length; k++) c[k] = in.readInt();
+        chemin[i] = c.length > 0 ? c : PathFinder.VIDE;
+        dernierPas[i] = pas;
+        if (placeOccupee[i] != City.AUCUN) ville.occupants.ajouter(placeOccupee[i], 1);
+        nbAgents++;
+        arrivees++;
+    }
+
+    /**
+     * Retire les agents marqués dans 'retires' (null : aucun) et intercale les agents importés
+     * depuis le dernier appel : les agents restent rangés par numéro croissant. Agents éveillés
+     * et échéancier sont reconstruits pour les nouveaux indices.
+     */
+    void ranger(boolean[] retires) {
+        int n = nbAgents, debut = n - arrivees;
+        long[] nouveaux = new long[arrivees];
+        for (int k = 0; k < arrivees; k++) nouveaux[k] = (long) ident[debut + k] << 32 | (debut + k);
+        Arrays.sort(nouveaux);
+        int[] ordre = new int[n];
+        int m = 0, j = 0;
+        for (int i = 0; i < debut; i++) {
+            if (retires != null && retires[i]) continue;
+            while (j < nouveaux.length && (int) (nouveaux[j] >>> 32) < ident[i]) ordre[m++] = (int) nouveaux[j++];
+            ordre[m++] = i;
+        }
+        while (j < nouveaux.length) ordre[m++] = (int) nouveaux[j++];
+        arrivees = 0;
+        if (m == n && debut == n) return; // Rien n'a changé
+
+        synchroniser();
+        ident = permuter(ident, ordre, m); noms = permuter(noms, ordre, m);
+        x = permuter(x, ordre, m); y = permuter(y, ordre, m); vx = permuter(vx, ordre, m); vy = permuter(vy, ordre, m);
+        angle = permuter(angle, ordre, m);
+        energie = permuter(energie, ordre, m); stress = permuter(stress, ordre, m); argent = permuter(argent, ordre, m);
+        etat = permuter(etat, ordre, m); destination = permuter(destination, ordre, m);
+        tempsActivite = permuter(tempsActivite, ordre, m); profil = permuter(profil, ordre, m);
+        maison = permuter(maison, ordre, m); travail = permuter(travail, ordre, m);
+        loisir = permuter(loisir, ordre, m); parc = permuter(parc, ordre, m);
+        placeOccupee = permuter(placeOccupee, ordre, m);
+        vivant = permuter(vivant, ordre, m);
+        chemin = permuter(chemin, ordre, m); etapeChemin = permuter(etapeChemin, ordre, m);
+        endormi = permuter(endormi, ordre, m);
+        nbAgents = m;
+
+        // Tous les agents endormis sont à jour : réveil à pas + tempsActivite + 1, comme dans endormir()
+        roue.vider(pas, ident.length);
+        nbActifs = 0;
+        for (int i = 0; i < m; i++) {
+            dernierPas[i] = pas;
+            if (!vivant[i]) endormi[i] = false;
+            else if (endormi[i]) roue.planifier(i, pas + tempsActivite[i] + 1);
+            else actifs[nbActifs++] = i;
+        }
+    }
+
+    // Colonnes de capacité 'capacite' (agents importés au-delà de l'allocation du chargement)
+    private void agrandir(int capacite) {
+        ident = Arrays.copyOf(ident, capacite); noms = Arrays.copyOf(noms, capacite);
+        x = Arrays.copyOf(x, capacite); y = Arrays.copyOf(y, capacite);
+        vx = Arrays.copyOf(vx, capacite); vy = Arrays.copyOf(vy, capacite); angle = Arrays.copyOf(angle, capacite);
+        energie = Arrays.copyOf(energie, capacite); stress = Arrays.copyOf(stress, capacite);
+        argent = Arrays.copyOf(argent, capacite);
+        etat = Arrays.copyOf(etat, capacite); destination = Arrays.copyOf(destination, capacite);
+        tempsActivite = Arrays.copyOf(tempsActivite, capacite); profil = Arrays.copyOf(profil, capacite);
+        maison = Arrays.copyOf(maison, capacite); travail = Arrays.copyOf(travail, capacite);
+        loisir = Arrays.copyOf(loisir, capacite); parc = Arrays.copyOf(parc, capacite);
+        placeOccupee = Arrays.copyOf(placeOccupee, capacite);
+        vivant = Arrays.copyOf(vivant, capacite);
+        chemin = Arrays.copyOf(chemin, capacite); etapeChemin = Arrays.copyOf(etapeChemin, capacite);
+        xPrec = Arrays.copyOf(xPrec, capacite); yPrec = Arrays.copyOf(yPrec, capacite);
+        actifs = Arrays.copyOf(actifs, capacite);
+        endormi = Arrays.copyOf(endormi, capacite);
+        dernierPas = Arrays.copyOf(dernierPas, capacite);
+    }
+
+    // Nouvelle colonne de même capacité : élément k = ancien élément ordre[k], pour k < m
+    private static double[] permuter(double[] c, int[] ordre, int m) {
+        double[] r = new double[c.length];
+        for (int k = 0; k < m; k++) r[k] = c[ordre[k]];
+        return r;
+    }
+
+    private static int[] permuter(int[] c, int[] ordre, int m) {
+        int[] r = new int[c.length];
+        for (int k = 0; k < m; k++) r[k] = c[ordre[k]];
+        return r;
+    }
+
+    private static boolean[] permuter(boolean[] c, int[] ordre, int m) {
+        boolean[] r = new boolean[c.length];
+        for (int k = 0; k < m; k++) r[k] = c[ordre[k]];
+        return r;
+    }
+
+    private static <T> T[] permuter(T[] c, int[] ordre, int m) {
+        T[] r = Arrays.copyOf(c, c.length);
+        for (int k = 0; k < m; k++) r[k] = c[ordre[k]];
+        Arrays.fill(r, m, r.length, null);
+        return r;
+    }
+
+    // ========================================================================
+    // HASARD REPRODUCTIBLE
+    // ========================================================================
+
+    // Tirage dans [0, 1[ ne dépendant que de (scénario, pas, agent, usage) : indépendant de
+    // l'ordre dans lequel les threads calculent les agents
+    private double hasard(int i, int usage) {
+        long h = melanger(graineScenario + pas * 0x9E3779B97F4A7C15L + ((long) ident[i] << 8) + usage);
+        return (h >>> 11) * 0x1.0p-53;
+    }
+
+    // Mélangeur de SplitMix64
+    static long melanger(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,471 @@
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
+import java.awt.geom.Arc2D; // Utilisé pour le dessin du cône de vision (FOV)
+import java.awt.image.BufferedImage; // Image en cache du fond statique (grille + bâtiments)
+
+/**
+ * Rendu graphique de la carte de la ville (panneau central de ClientInterface), lu dans le
+ * dernier instantané publié par le thread réseau.
+ *
+ * La grille et les bâtiments ne changent qu'avec CONFIG ou un nouveau scénario : ils sont
+ * dessinés une seule fois dans une image compatible (fondCache), invalidée si la taille de
+ * grille, le zoom ou la disposition des lieux change. Chaque trame ne redessine que l'image
+ * de fond, les indicateurs d'occupation et les agents.
+ *
+ * Vue zoomable (molette) et déplaçable (glisser) dans le JScrollPane : seuls les lieux et
+ * les agents qui recoupent la zone visible (clip) sont dessinés, les agents étant retrouvés
+ * par seaux spatiaux (AgentBuckets). En dessous de ECHELLE_DETAIL pixels par case, la vue passe
+ * en niveau de détail réduit : ni cônes de vision, ni noms, ni emojis.
+ *
+ * Les agents sont dessinés à leur position interpolée entre les deux dernières trames
+ * ({@link AgentInterpolator}) : tant qu'ils sont en mouvement ({@link #isAnimationEnCours()}),
+ * la carte peut être redessinée à la fréquence de l'écran, entre deux trames du serveur.
+ *
+ * Avec des {@link ClientMetrics}, la durée de chaque dessin est mesurée et la surimpression
+ * des mesures (optionnelle) est dessinée dans le coin supérieur gauche de la zone visible.
+ *
+ * Ne dépend d'aucune fenêtre : peut être dessiné dans une image hors écran (AWT headless).
+ */
+final class SimulationPanel extends JPanel {
+    static final int CELL_SIZE = 30; // Taille en pixels d'une unité de grille au zoom par défaut
+    static final float FOV_RADIUS_UNITS = 1.0f; // Rayon de vision utilisé pour dessiner le cône des agents
+
+    // Au-delà de ce nombre de pixels, le fond n'est pas mis en cache (dessin direct de la zone visible)
+    private static final long PIXELS_MAX_CACHE = 4096L * 4096L;
+
+    // Bornes du zoom (pixels par case) et seuil du niveau de détail réduit
+    private static final int ECHELLE_MIN = 2;
+    private static final int ECHELLE_MAX = 90;
+    private static final int ECHELLE_DETAIL = 12;
+    private static final double PAS_ZOOM = 1.25; // Facteur par cran de molette
+
+    // Couleurs et polices réutilisées à chaque trame (aucune allocation par case ou par agent)
+    private static final Color COULEUR_CASE = new Color(50, 50, 55);
+    private static final Color COULEUR_LIGNE_GRILLE = new Color(40, 40, 45);
+    private static final Color COULEUR_FOV = new Color(255, 255, 255, 40);
+    private static final Color COULEUR_SAIN = new Color(50, 200, 50);
+    private static final Font POLICE_ATTENTE = new Font("Arial", Font.BOLD, 20);
+    private static final Font POLICE_EMOJI = new Font("Segoe UI Emoji", Font.PLAIN, 20);
+    private static final Font POLICE_NOM = new Font("Arial", Font.PLAIN, 10);
+    private static final Font POLICE_MORT = new Font("Arial", Font.BOLD, 10);
+    private static final Font POLICE_MESURES = new Font(Font.MONOSPACED, Font.PLAIN, 12);
+    private static final Color FOND_MESURES = new Color(0, 0, 0, 170);
+
+    // Apparence par type de lieu (indexée par FrameParser.MAISON, TRAVAIL, PARC, LOISIR)
+    private static final Color[] COULEURS_LIEUX = {
+            new Color(70, 70, 90), new Color(150, 80, 50), new Color(50, 120, 70), new Color(130, 50, 130)
+    };
+    private static final Color[] BORDURES_LIEUX = {
+            COULEURS_LIEUX[0].darker(), COULEURS_LIEUX[1].darker(), COULEURS_LIEUX[2].darker(), COULEURS_LIEUX[3].darker()
+    };
+    private static final String[] EMOJIS_LIEUX = {"🏠", "🏢", "🌳", "🍿"};
+
+    private WorldSnapshot.Echange monde; // Instantanés publiés par le thread réseau (ou la relecture)
+    private boolean relecture = false; // Source locale : dessinée même sans connexion (EDT uniquement)
+    private int gridWidth = 35; // Taille de la grille (mise à jour par CONFIG, EDT uniquement)
+    private int gridHeight = 23;
+    private volatile boolean connected = false; // État de la connexion (écrit par le thread réseau)
+
+    private int echelle = CELL_SIZE; // Zoom courant : taille d'une case en pixels (EDT uniquement)
+
+    private ClientMetrics mesures; // Durée de dessin et surimpression (optionnel, EDT uniquement)
+    private boolean surimpression = false;
+
+    // Fond statique en cache et paramètres avec lesquels il a été dessiné
+    private BufferedImage fondCache;
+    private int fondLargeur = -1, fondHauteur = -1, fondSignature, fondEchelle;
+
+    private final AgentBuckets seaux = new AgentBuckets();
+    private AgentInterpolator interpolation = new AgentInterpolator(); // null : positions des trames telles quelles
+    private boolean enMouvement = false; // Agents en cours d'interpolation au dernier dessin
+    private final Arc2D.Double arcFov = new Arc2D.Double(); // Réutilisé pour chaque agent
+
+    // État du dessin des agents pendant paintComponent (évite une allocation par agent)
+    private Graphics2D gAgents;
+    private WorldSnapshot tAgents;
+    private AgentInterpolator interpAgents;
+    private Rectangle zoneAgents;
+    private final AgentBuckets.Visiteur dessinAgent = this::dessinerAgent;
+
+    SimulationPanel(WorldSnapshot.Echange monde) {
+        this.monde = monde;
+
+        // Zoom à la molette centré sur le curseur, déplacement par glisser
+        MouseAdapter souris = new MouseAdapter() {
+            private Point origine; // Position écran du dernier point de glisser
+
+            @Override
+            public void mousePressed(MouseEvent e) {
+                origine = e.getLocationOnScreen();
+            }
+
+            @Override
+            public void mouseDragged(MouseEvent e) {
+                JViewport vp = viewport();
+                if (vp == null || origine == null) return;
+                Point p = e.getLocationOnScreen();
+                Point vue = vp.getViewPosition();
+                vue.translate(origine.x - p.x, origine.y - p.y);
+                origine = p;
+                deplacerVue(vp, vue);
+            }
+
+            @Override
+            public void mouseWheelMoved(MouseWheelEvent e) {
+                double facteur = Math.pow(PAS_ZOOM, -e.getPreciseWheelRotation());
+                zoomer((int) Math.round(echelle * facteur), e.getPoint());
+            }
+        };
+        addMouseListener(souris);
+        addMouseMotionListener(souris);
+        addMouseWheelListener(souris);
+    }
+
+    /** Nouvelle taille de grille (CONFIG) ; suivi de {@link #ajusterA} ou {@link #majTaille()}. */
+    void setGrille(int largeur, int hauteur) {
+        gridWidth = largeur;
+        gridHeight = hauteur;
+    }
+
+    /** Hors connexion, seul le fond et un message d'attente sont dessinés. */
+    void setConnecte(boolean connecte) {
+        connected = connecte;
+    }
+
+    /** Change la source des instantanés dessinés (direct ou relecture d'une session). */
+    void setSource(WorldSnapshot.Echange source, boolean relecture) {
+        monde = source;
+        this.relecture = relecture;
+        if (interpolation != null) interpolation.oublier(); // Pas de mouvement d'une source à l'autre
+        fondLargeur = -1; // Fond à redessiner
+        repaint();
+    }
+
+    /** Mesure la durée de chaque dessin de la carte. */
+    void setMesures(ClientMetrics m) {
+        mesures = m;
+    }
+
+    /** Affiche ou masque la surimpression des mesures (nécessite {@link #setMesures}). */
+    void setSurimpression(boolean visible) {
+        surimpression = visible;
+        // L'encadré est fixe à l'écran : le défilement par copie de pixels le dupliquerait
+        JViewport vp = viewport();
+        if (vp != null) vp.setScrollMode(visible ? JViewport.SIMPLE_SCROLL_MODE : JViewport.BLIT_SCROLL_MODE);
+        repaint();
+    }
+
+    /** Active ou désactive l'interpolation des positions entre deux trames. */
+    void setInterpolation(boolean active) {
+        interpolation = active ? new AgentInterpolator() : null;
+        enMouvement = false;
+        repaint();
+    }
+
+    /** Vrai si un nouveau dessin, sans nouvelle trame, ferait encore avancer les agents (EDT). */
+    boolean isAnimationEnCours() {
+        return enMouvement;
+    }
+
+    /** Taille de la carte entière au zoom courant. */
+    void majTaille() {
+        setPreferredSize(new Dimension(gridWidth * echelle, gridHeight * echelle));
+        revalidate();
+    }
+
+    /** Choisit le zoom qui fait tenir toute la grille dans la zone donnée (sans dépasser CELL_SIZE). */
+    void ajusterA(int largeurDispo, int hauteurDispo) {
+        int e = Math.min(largeurDispo / Math.max(1, gridWidth), hauteurDispo / Math.max(1, gridHeight));
+        echelle = Math.max(ECHELLE_MIN, Math.min(CELL_SIZE, e));
+        majTaille();
+    }
+
+    // Change le zoom en gardant fixe la case située sous le point 'ancre' (coordonnées du panneau)
+    private void zoomer(int nouvelle, Point ancre) {
+        nouvelle = Math.max(ECHELLE_MIN, Math.min(ECHELLE_MAX, nouvelle));
+        if (nouvelle == echelle) {
+            // Un cran de molette doit toujours avoir un effet, même aux petites échelles
+            nouvelle = Math.max(ECHELLE_MIN, Math.min(ECHELLE_MAX, echelle + (int) Math.signum(nouvelle - echelle)));
+            if (nouvelle == echelle) return;
+        }
+        JViewport vp = viewport();
+        Point vue = vp != null ? vp.getViewPosition() : new Point();
+        double caseX = ancre.x / (double) echelle, caseY = ancre.y / (double) echelle;
+        echelle = nouvelle;
+
+        Dimension taille = new Dimension(gridWidth * echelle, gridHeight * echelle);
+        setPreferredSize(taille);
+        setSize(taille); // Immédiat, pour que la nouvelle position de vue soit acceptée
+        if (vp != null) {
+            deplacerVue(vp, new Point((int) (caseX * echelle) - (ancre.x - vue.x),
+                    (int) (caseY * echelle) - (ancre.y - vue.y)));
+        }
+        revalidate();
+        repaint();
+    }
+
+    private void deplacerVue(JViewport vp, Point vue) {
+        Dimension ext = vp.getExtentSize();
+        vue.x = Math.max(0, Math.min(vue.x, getWidth() - ext.width));
+        vue.y = Math.max(0, Math.min(vue.y, getHeight() - ext.height));
+        vp.setViewPosition(vue);
+    }
+
+    private JViewport viewport() {
+        return (JViewport) SwingUtilities.getAncestorOfClass(JViewport.class, this);
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        long debut = System.nanoTime();
+        super.paintComponent(g);
+        Graphics2D g2 = (Graphics2D) g;
+        Rectangle clip = g2.getClipBounds();
+        if (clip == null) clip = new Rectangle(0, 0, getWidth(), getHeight());
+
+        dessinerMonde(g2, clip);
+
+        ClientMetrics m = mesures;
+        if (m != null) {
+            m.mesurer(ClientMetrics.Etape.PEINTURE, System.nanoTime() - debut);
+            if (surimpression) dessinerMesures(g2, m.resume());
+        }
+    }
+
+    // Encadré semi-transparent des mesures, fixe dans la zone visible du JScrollPane
+    private void dessinerMesures(Graphics2D g2, String[] lignes) {
+        Rectangle vue = getVisibleRect();
+        g2.setFont(POLICE_MESURES);
+        FontMetrics fm = g2.getFontMetrics();
+        int largeur = 0;
+        for (String l : lignes) largeur = Math.max(largeur, fm.stringWidth(l));
+        int x = vue.x + 8, y = vue.y + 8;
+        g2.setColor(FOND_MESURES);
+        g2.fillRect(x, y, largeur + 12, lignes.length * fm.getHeight() + 8);
+        g2.setColor(Color.WHITE);
+        for (int i = 0; i < lignes.length; i++) {
+            g2.drawString(lignes[i], x + 6, y + 4 + fm.getAscent() + i * fm.getHeight());
+        }
+    }
+
+    // Fond, occupation et agents de la dernière trame publiée
+    private void dessinerMonde(Graphics2D g2, Rectangle clip) {
+        WorldSnapshot t = monde.acquerir();
+        try {
+            // 1. Fond statique : grille + bâtiments (image en cache, redessinée seulement si nécessaire)
+            BufferedImage fond = fond(t);
+            if (fond != null) {
+                g2.drawImage(fond, 0, 0, null);
+            } else {
+                dessinerFond(g2, t, clip);
+            }
+
+            // Affiche un message d'attente si la connexion n'est pas établie
+            if (!connected && !relecture) {
+                g2.setColor(Color.WHITE);
+                g2.setFont(POLICE_ATTENTE);
+                g2.drawString("En attente du serveur Python...", clip.x + 50, clip.y + 50);
+                enMouvement = false;
+                return;
+            }
+
+            boolean detail = echelle >= ECHELLE_DETAIL;
+            // Active l'anti-aliasing pour un rendu plus lisse des éléments dynamiques (coûteux en vue d'ensemble)
+            if (detail) g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+
+            // Position d'affichage des agents à cet instant
+            AgentInterpolator interp = interpolation;
+            if (interp != null) {
+                interp.mettreAJour(t);
+                enMouvement = interp.placer(System.nanoTime());
+            }
+            interpAgents = interp;
+
+            // Zone visible en cases, élargie d'une marge pour le cône de vision et les noms
+            // (et pour l'écart entre position affichée et position de la trame, qui sert aux seaux)
+            int marge = (int) Math.ceil(FOV_RADIUS_UNITS + (interp != null ? AgentInterpolator.ECART_MAX : 0)) + 1;
+            int x0 = Math.max(0, clip.x / echelle - marge);
+            int y0 = Math.max(0, clip.y / echelle - marge);
+            int x1 = Math.min(gridWidth, (clip.x + clip.width) / echelle + 1 + marge);
+            int y1 = Math.min(gridHeight, (clip.y + clip.height) / echelle + 1 + marge);
+
+            // 2. Indicateurs d'occupation des lieux (petit cercle bleu cyan)
+            g2.setColor(Color.CYAN);
+            int tailleOcc = Math.max(2, echelle / 5);
+            int decalageOcc = echelle * 22 / CELL_SIZE;
+            for (int i = 0; i < t.nbLieux; i++) {
+                int lx = t.lieuX[i], ly = t.lieuY[i];
+                if (!t.occupe[i] || lx < x0 || ly < y0 || lx >= x1 || ly >= y1) continue;
+                if (detail) {
+                    g2.fillOval(lx * echelle + decalageOcc, ly * echelle + echelle / 15, tailleOcc, tailleOcc);
+                } else {
+                    g2.fillRect(lx * echelle + echelle - tailleOcc, ly * echelle, tailleOcc, tailleOcc);
+                }
+            }
+
+            // 3. DESSIN AGENTS (seulement ceux des seaux visibles)
+            seaux.mettreAJour(t, gridWidth, gridHeight);
+            gAgents = g2;
+            tAgents = t;
+            zoneAgents = clip;
+            seaux.parcourir(x0, y0, x1, y1, dessinAgent);
+        } finally {
+            gAgents = null;
+            tAgents = null;
+            interpAgents = null;
+            monde.liberer();
+        }
+    }
+
+    private void dessinerAgent(int i) {
+        Graphics2D g2 = gAgents;
+        WorldSnapshot t = tAgents;
+        AgentInterpolator interp = interpAgents;
+        // Coordonnées centrées de l'agent (milieu de la case), interpolées si possible
+        float ax = interp != null ? interp.x(i) : t.x[i];
+        float ay = interp != null ? interp.y(i) : t.y[i];
+        int cx = (int) (ax * echelle) + echelle / 2;
+        int cy = (int) (ay * echelle) + echelle / 2;
+        int rayon = Math.max(1, echelle / 5); // 6 pixels au zoom par défaut
+        if (!zoneAgents.intersects(cx - 2 * echelle, cy - 2 * echelle, 4 * echelle, 4 * echelle)) return;
+
+        // DÉTERMINATION COULEUR AGENT
+        int etat = t.etat[i];
+        Color bodyColor;
+        if (etat == WorldSnapshot.Etats.MORT) {
+            bodyColor = Color.BLACK;
+        } else if (etat == WorldSnapshot.Etats.OCCUPE) {
+            bodyColor = Color.GRAY; // Agent sur un lieu, en phase d'activité
+        } else {
+            // Rouge si Énergie faible ou Stress élevé (état critique), sinon Vert
+            bodyColor = (t.stress[i] > 70 || t.nrj[i] < 20) ? Color.RED : COULEUR_SAIN;
+        }
+
+        if (echelle < ECHELLE_DETAIL) {
+            // Niveau de détail réduit : un simple carré de couleur
+            g2.setColor(bodyColor);
+            g2.fillRect(cx - rayon, cy - rayon, 2 * rayon, 2 * rayon);
+            return;
+        }
+
+        // Dessin du FOV (Cône de vision)
+        int fovRadiusPixels = (int) (FOV_RADIUS_UNITS * echelle);
+        int fovDiameterPixels = 2 * fovRadiusPixels;
+        // Angle de l'agent (en radians), converti pour le système de coordonnées Swing
+        double deg = Math.toDegrees(-(interp != null ? interp.angle(i) : t.ang[i]));
+        double startAngle = deg - 30; // Début de l'arc (-30 degrés par rapport au centre)
+        double extentAngle = 60; // Ouverture de l'arc (60 degrés)
+
+        g2.setColor(COULEUR_FOV); // Cône blanc transparent
+        arcFov.setArc(
+                cx - fovRadiusPixels,
+                cy - fovRadiusPixels,
+                fovDiameterPixels,
+                fovDiameterPixels,
+                startAngle,
+                extentAngle,
+                Arc2D.PIE // Dessine un secteur de cercle
+        );
+        g2.fill(arcFov);
+
+        // Dessin du corps (cercle de 12x12 pixels au zoom par défaut)
+        g2.setColor(bodyColor);
+        g2.fillOval(cx - rayon, cy - rayon, 2 * rayon, 2 * rayon);
+
+        // Dessin du contour et du nom
+        g2.setColor(Color.WHITE);
+        g2.drawOval(cx - rayon, cy - rayon, 2 * rayon, 2 * rayon);
+        g2.setFont(POLICE_NOM);
+        g2.drawString(t.noms[i], cx - 5, cy - rayon - 2);
+
+        // Marqueur si l'agent est mort
+        if (etat == WorldSnapshot.Etats.MORT) {
+            g2.setColor(Color.RED);
+            g2.setFont(POLICE_MORT);
+            g2.drawString("X", cx - 3, cy + 4);
+        }
+    }
+
+    /**
+     * Retourne l'image de fond à jour, en la redessinant si la grille, le zoom ou les lieux ont changé.
+     * Retourne null si la carte est trop grande pour être mise en cache à ce zoom.
+     */
+    private BufferedImage fond(WorldSnapshot t) {
+        int signature = t.signatureLieux();
+        if (fondCache != null && fondLargeur == gridWidth && fondHauteur == gridHeight
+                && fondSignature == signature && fondEchelle == echelle) {
+            return fondCache;
+        }
+        int w = gridWidth * echelle;
+        int h = gridHeight * echelle;
+        if (w <= 0 || h <= 0 || (long) w * h > PIXELS_MAX_CACHE) {
+            fondCache = null;
+            return null;
+        }
+
+        // Image compatible avec l'écran (accélérée par Java2D) si le panneau est affiché
+        GraphicsConfiguration gc = getGraphicsConfiguration();
+        BufferedImage img = (fondCache != null && fondCache.getWidth() == w && fondCache.getHeight() == h)
+                ? fondCache
+                : (gc != null ? gc.createCompatibleImage(w, h) : new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB));
+        Graphics2D gi = img.createGraphics();
+        try {
+            dessinerFond(gi, t, new Rectangle(0, 0, w, h));
+        } finally {
+            gi.dispose();
+        }
+        fondCache = img;
+        fondLargeur = gridWidth;
+        fondHauteur = gridHeight;
+        fondSignature = signature;
+        fondEchelle = echelle;
+        return img;
+    }
+
+    /** Dessine la grille et les bâtiments (sans occupation) dans la zone donnée. */
+    private void dessinerFond(Graphics2D g2, WorldSnapshot t, Rectangle zone) {
+        int x0 = Math.max(0, zone.x / echelle);
+        int y0 = Math.max(0, zone.y / echelle);
+        int x1 = Math.min(gridWidth, (zone.x + zone.width) / echelle + 1);
+        int y1 = Math.min(gridHeight, (zone.y + zone.height) / echelle + 1);
+        boolean detail = echelle >= ECHELLE_DETAIL;
+
+        // 1. Grille de fond : un seul remplissage puis les lignes de la grille
+        g2.setColor(COULEUR_CASE);
+        g2.fillRect(x0 * echelle, y0 * echelle, (x1 - x0) * echelle, (y1 - y0) * echelle);
+        if (detail) {
+            g2.setColor(COULEUR_LIGNE_GRILLE);
+            for (int x = x0; x <= x1; x++) g2.drawLine(x * echelle, y0 * echelle, x * echelle, y1 * echelle);
+            for (int y = y0; y <= y1; y++) g2.drawLine(x0 * echelle, y * echelle, x1 * echelle, y * echelle);
+        }
+
+        // 2. Bâtiments (emoji à taille proportionnelle au zoom, omis en vue d'ensemble)
+        if (detail) {
+            g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g2.setFont(echelle == CELL_SIZE ? POLICE_EMOJI : POLICE_EMOJI.deriveFont(20f * echelle / CELL_SIZE));
+        }
+        for (int i = 0; i < t.nbLieux; i++) {
+            int lx = t.lieuX[i];
+            int ly = t.lieuY[i];
+            if (lx < x0 || ly < y0 || lx >= x1 || ly >= y1) continue; // Hors de la zone ou de la grille
+            int type = t.typeLieu[i];
+            if (type < 0 || type >= COULEURS_LIEUX.length) continue;
+            int x = lx * echelle;
+            int y = ly * echelle;
+
+            // Dessin du fond du lieu
+            g2.setColor(COULEURS_LIEUX[type]);
+            g2.fillRect(x, y, echelle, echelle);
+            if (!detail) continue;
+            g2.setColor(BORDURES_LIEUX[type]);
+            g2.drawRect(x, y, echelle, echelle);
+
+            // Dessin de l'Emoji au centre de la case
+            g2.setColor(Color.WHITE);
+            g2.drawString(EMOJIS_LIEUX[type], x + echelle / 15, y + echelle * 4 / 5);
+        }
+    }
+}
@@ -0,0 +1,179 @@
+/**
+ * Reconstruit les trames du serveur dans un {@link WorldSnapshot.Echange} à partir des
+ * éléments décodés par FrameParser ou BinaryFrameDecoder (thread réseau).
+ *
+ * Protocole 1 : chaque trame est complète et est écrite directement dans le tampon
+ * d'écriture ; à la fin de trame, les deux tampons sont échangés sans aucune copie.
+ *
+ * Protocole delta : une trame KEY reconstruit l'état retenu, les trames DELTA y appliquent
+ * les changements ; à la fin de trame, l'état retenu est recopié dans le tampon d'écriture
+ * puis publié. En cas d'incohérence (trame manquante, index inconnu), l'affichage est gelé
+ * jusqu'à la prochaine trame complète, demandée par RESYNC.
+ *
+ * Si un {@link SessionRecorder} est branché, chaque trame publiée lui est aussi confiée.
+ * Avec des {@link ClientMetrics}, chaque trame publiée est datée et comptée : intervalle
+ * depuis la précédente et durée de réception (du premier élément reçu jusqu'à END).
+ * Avec un {@link StatsHistory}, chaque trame publiée y est relevée (toutes, y compris
+ * celles que l'affichage saute).
+ */
+final class SnapshotReceiver implements FrameParser.Handler {
+
+    /** Événements destinés à l'interface ou au serveur (appelés depuis le thread réseau). */
+    interface Ecouteur {
+        /** Ligne CONFIG : nouvelle taille de grille. */
+        void onGrille(int largeur, int hauteur);
+
+        /** Trame manquante ou incohérente : une trame complète doit être demandée (RESYNC). */
+        void onDesynchronisation();
+
+        /** Une trame complète vient d'être publiée dans l'échange. */
+        default void onPublication() {}
+
+        /** Acquittement d'une commande numérotée (voir {@link CommandChannel}). */
+        default void onAcquittement(int id) {}
+    }
+
+    private final WorldSnapshot.Echange monde;
+    private final Ecouteur ecouteur;
+    private final WorldSnapshot etatRetenu = new WorldSnapshot(); // Monde reconstruit (protocole delta)
+    private WorldSnapshot cible; // Destination des lignes de la trame en cours
+    private long dernierNumero = -1;
+    private boolean coherent = false; // Faux tant qu'aucune trame KEY valide n'a été reçue
+    private int largeur, hauteur; // Dernière taille de grille reçue (CONFIG)
+    private volatile SessionRecorder enregistreur; // Branché et débranché depuis l'EDT
+    private ClientMetrics mesures; // Optionnel, fixé avant la réception
+    private StatsHistory statistiques; // Optionnel, fixé avant la réception
+    private long debutTrame = 0; // Date du premier élément de la trame en cours (0 : pas commencée)
+    private long dernierePublication = 0;
+
+    SnapshotReceiver(WorldSnapshot.Echange monde, Ecouteur ecouteur) {
+        this.monde = monde;
+        this.ecouteur = ecouteur;
+        cible = monde.ecriture();
+    }
+
+    /** Enregistre les trames publiées à partir de maintenant (null : arrête l'enregistrement). */
+    void setEnregistreur(SessionRecorder r) {
+        enregistreur = r;
+    }
+
+    /** Mesure l'arrivée et la réception de chaque trame publiée. */
+    void setMesures(ClientMetrics m) {
+        mesures = m;
+    }
+
+    /** Relève les statistiques globales de chaque trame publiée. */
+    void setStatistiques(StatsHistory s) {
+        statistiques = s;
+    }
+
+    @Override
+    public void onConfig(int w, int h, int version) {
+        if (version < FrameParser.PROTO_DELTA) coherent = false;
+        largeur = w;
+        hauteur = h;
+        ecouteur.onGrille(w, h);
+    }
+
+    @Override
+    public void onKeyframe(long numero) {
+        debuter();
+        etatRetenu.vider();
+        cible = etatRetenu;
+        dernierNumero = numero;
+        coherent = true;
+    }
+
+    @Override
+    public void onDelta(long numero) {
+        debuter();
+        cible = etatRetenu;
+        if (numero != dernierNumero + 1) desynchroniser();
+        dernierNumero = numero;
+    }
+
+    @Override
+    public void onLieu(int type, int x, int y, boolean occupe) {
+        debuter();
+        cible.ajouterLieu(type, x, y, occupe);
+    }
+
+    @Override
+    public void onAgent(String nom, float x, float y, float nrj, float stress, float arg, String etat, float ang) {
+        debuter();
+        cible.ajouterAgent(nom, x, y, nrj, stress, arg, WorldSnapshot.Etats.id(etat), ang);
+    }
+
+    @Override
+    public void onAgentDelta(int i, int masque, float x, float y, float nrj, float stress, float arg, String etat, float ang) {
+        WorldSnapshot t = etatRetenu;
+        if (!coherent || i < 0 || i >= t.nbAgents) { desynchroniser(); return; }
+        if ((masque & FrameParser.DELTA_X) != 0) t.x[i] = x;
+        if ((masque & FrameParser.DELTA_Y) != 0) t.y[i] = y;
+        if ((masque & FrameParser.DELTA_NRJ) != 0) t.nrj[i] = nrj;
+        if ((masque & FrameParser.DELTA_STRESS) != 0) t.stress[i] = stress;
+        if ((masque & FrameParser.DELTA_ARG) != 0) t.arg[i] = arg;
+        if ((masque & FrameParser.DELTA_ETAT) != 0) t.etat[i] = WorldSnapshot.Etats.id(etat);
+        if ((masque & FrameParser.DELTA_ANG) != 0) t.ang[i] = ang;
+    }
+
+    @Override
+    public void onOccupation(int i, boolean occupe) {
+        if (!coherent || i < 0 || i >= etatRetenu.nbLieux) { desynchroniser(); return; }
+        etatRetenu.occupe[i] = occupe;
+    }
+
+    @Override
+    public void onStats(float moyNrj, float moyStress, float moyArg, int vivants, int morts, int occupes) {
+        cible.definirStats(moyNrj, moyStress, moyArg, vivants, morts, occupes);
+    }
+
+    @Override
+    public void onEnd() {
+        // Marqueur de FIN DE TRAME
+        long debut = debutTrame;
+        debutTrame = 0;
+        if (cible == etatRetenu) {
+            cible = monde.ecriture();
+            if (!coherent) return; // Rien à publier tant que la trame complète n'est pas arrivée
+            cible.copierDepuis(etatRetenu);
+        }
+        cible.datePublication = System.nanoTime(); // Sert aux mesures et à l'interpolation des agents
+        ClientMetrics m = mesures;
+        if (m != null) mesurer(m, debut);
+        StatsHistory s = statistiques;
+        if (s != null) s.ajouter(cible, cible.datePublication);
+        SessionRecorder r = enregistreur;
+        if (r != null) r.enregistrer(cible, largeur, hauteur); // Copie en mémoire, sans attente
+        // Échange des tampons, l'arrière est vidé pour la trame suivante.
+        // L'EDT récupérera la dernière trame publiée à son prochain passage (voir rafraichirUI)
+        monde.publier();
+        cible = monde.ecriture();
+        ecouteur.onPublication();
+    }
+
+    // Mesure l'intervalle depuis la trame précédente et la durée de réception
+    private void mesurer(ClientMetrics m, long debut) {
+        long maintenant = cible.datePublication;
+        if (dernierePublication != 0) m.mesurer(ClientMetrics.Etape.ARRIVEE, maintenant - dernierePublication);
+        if (debut != 0) m.mesurer(ClientMetrics.Etape.RECEPTION, maintenant - debut);
+        dernierePublication = maintenant;
+        m.tramesRecues.incrementAndGet();
+    }
+
+    // Premier élément d'une trame
+    private void debuter() {
+        if (debutTrame == 0) debutTrame = System.nanoTime();
+    }
+
+    @Override
+    public void onAck(int id) {
+        ecouteur.onAcquittement(id);
+    }
+
+    // Perte de synchronisation avec le serveur : on demande une trame complète
+    private void desynchroniser() {
+        if (coherent) ecouteur.onDesynchronisation();
+        coherent = false;
+    }
+}
@@ -0,0 +1,169 @@
+import javax.swing.*;
+import java.awt.*;
+
+/**
+ * Petite courbe d'une ou plusieurs séries d'un {@link StatsHistory}, pour le panneau de
+ * statistiques : le point le plus récent est au bord droit, l'échelle verticale s'adapte
+ * aux points affichés. Une bande optionnelle (p10 à p90 par exemple) est dessinée sous
+ * la première courbe.
+ *
+ * Le dessin lit au plus CAPACITE + 1 points par série dans des tableaux alloués une fois :
+ * son coût ne dépend pas de la durée de la session. EDT uniquement.
+ */
+final class Sparkline extends JComponent {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final Font POLICE = new Font("Arial", Font.PLAIN, 11);
+    private static final Color FOND = new Color(45, 45, 50);
+    private static final int HAUT_TEXTE = 14; // Ligne du titre et des dernières valeurs
+    private static final int N = StatsHistory.CAPACITE + 1;
+
+    private final StatsHistory historique;
+    private final String titre;
+    private final int[] series;
+    private final Color[] couleurs;
+    private final boolean parEtat; // Une courbe par état présent, légende des libellés
+    private final int bandeBas, bandeHaut; // Séries de la bande (-1 : pas de bande)
+    private final Color couleurBande;
+    private int palier = 0;
+
+    private final float[][] valeurs;
+    private final int[] nb;
+    private final float[] bas = new float[N], haut = new float[N];
+    private final int[] xs = new int[2 * N], ys = new int[2 * N];
+
+    private Sparkline(StatsHistory historique, String titre, int[] series, Color[] couleurs, boolean parEtat,
+                      int bandeBas, int bandeHaut) {
+        this.historique = historique;
+        this.titre = titre;
+        this.series = series;
+        this.couleurs = couleurs;
+        this.parEtat = parEtat;
+        this.bandeBas = bandeBas;
+        this.bandeHaut = bandeHaut;
+        Color c = couleurs[0];
+        couleurBande = new Color(c.getRed(), c.getGreen(), c.getBlue(), 60);
+        valeurs = new float[series.length][N];
+        nb = new int[series.length];
+        setPreferredSize(new Dimension(400, 52));
+        setMinimumSize(new Dimension(100, 40));
+    }
+
+    /** Moyenne d'une grandeur avec la bande p10–p90, et ses dernières valeurs. */
+    static Sparkline grandeur(StatsHistory h, String titre, int grandeur, Color couleur) {
+        return new Sparkline(h, titre, new int[]{StatsHistory.serie(grandeur, StatsHistory.MOY)},
+                new Color[]{couleur}, false,
+                StatsHistory.serie(grandeur, StatsHistory.P10), StatsHistory.serie(grandeur, StatsHistory.P90));
+    }
+
+    /** Nombre d'agents de chaque état (une courbe par état, libellés de WorldSnapshot.Etats). */
+    static Sparkline etats(StatsHistory h, String titre, Color[] palette) {
+        int[] series = new int[StatsHistory.ETATS_MAX];
+        Color[] couleurs = new Color[series.length];
+        for (int e = 0; e < series.length; e++) {
+            series[e] = StatsHistory.serieEtat(e);
+            couleurs[e] = palette[e % palette.length];
+        }
+        return new Sparkline(h, titre, series, couleurs, true, -1, -1);
+    }
+
+    /** Palier affiché (indice dans StatsHistory.PALIERS). */
+    void setPalier(int p) {
+        palier = p;
+        repaint();
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        Graphics2D g2 = (Graphics2D) g;
+        int w = getWidth(), h = getHeight();
+        g2.setColor(FOND);
+        g2.fillRect(0, 0, w, h);
+
+        // Lecture des points et échelle commune
+        float min = Float.POSITIVE_INFINITY, max = Float.NEGATIVE_INFINITY;
+        for (int k = 0; k < series.length; k++) {
+            nb[k] = historique.copier(palier, series[k], valeurs[k]);
+            if (parEtat && !serieUtile(k)) continue;
+            for (int i = 0; i < nb[k]; i++) {
+                min = Math.min(min, valeurs[k][i]);
+                max = Math.max(max, valeurs[k][i]);
+            }
+        }
+        int nbBande = 0;
+        if (bandeBas >= 0) {
+            nbBande = historique.copier(palier, bandeBas, bas);
+            historique.copier(palier, bandeHaut, haut);
+            for (int i = 0; i < nbBande; i++) {
+                min = Math.min(min, bas[i]);
+                max = Math.max(max, haut[i]);
+            }
+        }
+
+        dessinerTexte(g2, w);
+        if (min > max) return; // Aucun point
+        if (max - min < 1e-3f) { min -= 1; max += 1; }
+        int y0 = HAUT_TEXTE + 2, hauteur = h - y0 - 2;
+        float pas = (w - 4) / (float) (N - 1);
+
+        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        if (nbBande > 1) {
+            for (int i = 0; i < nbBande; i++) {
+                int x = (int) (w - 2 - (nbBande - 1 - i) * pas);
+                xs[i] = x;
+                ys[i] = y(haut[i], min, max, y0, hauteur);
+                xs[2 * nbBande - 1 - i] = x;
+                ys[2 * nbBande - 1 - i] = y(bas[i], min, max, y0, hauteur);
+            }
+            g2.setColor(couleurBande);
+            g2.fillPolygon(xs, ys, 2 * nbBande);
+        }
+        for (int k = 0; k < series.length; k++) {
+            int n = nb[k];
+            if (n < 2 || (parEtat && !serieUtile(k))) continue;
+            for (int i = 0; i < n; i++) {
+                xs[i] = (int) (w - 2 - (n - 1 - i) * pas);
+                ys[i] = y(valeurs[k][i], min, max, y0, hauteur);
+            }
+            g2.setColor(couleurs[k]);
+            g2.drawPolyline(xs, ys, n);
+        }
+    }
+
+    // Titre et dernière valeur (ou légende des états présents)
+    private void dessinerTexte(Graphics2D g2, int w) {
+        g2.setFont(POLICE);
+        FontMetrics fm = g2.getFontMetrics();
+        int base = fm.getAscent();
+        g2.setColor(Color.LIGHT_GRAY);
+        g2.drawString(titre, 2, base);
+        int x = 2 + fm.stringWidth(titre) + 8;
+        if (!parEtat) {
+            String texte = String.format("moy %.1f  p10 %.1f  p90 %.1f", historique.dernier(series[0]),
+                    historique.dernier(bandeBas), historique.dernier(bandeHaut));
+            g2.setColor(couleurs[0]);
+            g2.drawString(texte, x, base);
+            return;
+        }
+        for (int k = 0; k < series.length && x < w; k++) {
+            if (!serieUtile(k)) continue;
+            String texte = WorldSnapshot.Etats.libelle(k) + " " + (int) historique.dernier(series[k]);
+            g2.setColor(couleurs[k]);
+            g2.drawString(texte, x, base);
+            x += fm.stringWidth(texte) + 8;
+        }
+    }
+
+    // Série d'état présente dans la fenêtre affichée
+    private boolean serieUtile(int k) {
+        for (int i = 0; i < nb[k]; i++) {
+            if (valeurs[k][i] != 0) return true;
+        }
+        return false;
+    }
+
+    private static int y(float v, float min, float max, int y0, int hauteur) {
+        return y0 + hauteur - Math.round((v - min) / (max - min) * hauteur);
+    }
+}
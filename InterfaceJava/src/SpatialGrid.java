@@ -0,0 +1,113 @@
+import java.util.Arrays;
+
+/**
+ * Index spatial uniforme des agents du moteur, sur les mêmes cases entières que la grille
+ * de la ville (case (int) x, (int) y, comme les lieux côté client).
+ *
+ * Reconstruit à chaque pas par tri par dénombrement (O(agents + cases), sans allocation une
+ * fois les tableaux dimensionnés). Les agents sont rangés par case dans l'ordre y * largeur + x :
+ * les cases consécutives d'une ligne forment donc une plage contiguë, et une requête de rayon r
+ * ne parcourt qu'une plage par ligne recoupant le disque, au lieu de tous les agents.
+ * Les positions sont recopiées dans l'ordre du tri pour des lectures séquentielles.
+ *
+ * Après {@link #reconstruire}, les requêtes peuvent être faites depuis plusieurs threads.
+ */
+final class SpatialGrid {
+
+    /** Demi-ouverture du cône de vision dessiné par SimulationPanel (arc de 60°). */
+    static final double DEMI_CONE = Math.toRadians(30);
+
+    /** Reçoit les voisins trouvés : index d'agent et vecteur centre -> voisin. */
+    interface Visiteur {
+        void voisin(int index, double dx, double dy, double d2);
+    }
+
+    private int largeur, hauteur;
+    private int[] debut = new int[1]; // debut[c]..debut[c+1] : plage des agents de la case c
+    private int[] indices = new int[0];
+    private double[] xTri = new double[0], yTri = new double[0];
+    private int[] caseAgent = new int[0];
+
+    /** Range les n premiers agents par case de la grille largeur x hauteur. */
+    void reconstruire(double[] x, double[] y, int n, int largeur, int hauteur) {
+        this.largeur = largeur;
+        this.hauteur = hauteur;
+        int nbCases = largeur * hauteur;
+        if (debut.length < nbCases + 1) debut = new int[nbCases + 1];
+        else Arrays.fill(debut, 0, nbCases + 1, 0);
+        if (indices.length < n) {
+            indices = new int[n];
+            xTri = new double[n];
+            yTri = new double[n];
+            caseAgent = new int[n];
+        }
+
+        // 1. Comptage par case
+        for (int i = 0; i < n; i++) {
+            int c = caseDe(x[i], y[i]);
+            caseAgent[i] = c;
+            debut[c + 1]++;
+        }
+        // 2. Sommes cumulées
+        for (int c = 0; c < nbCases; c++) debut[c + 1] += debut[c];
+        // 3. Placement (debut[c] sert de curseur puis est restauré)
+        for (int i = 0; i < n; i++) {
+            int k = debut[caseAgent[i]]++;
+            indices[k] = i;
+            xTri[k] = x[i];
+            yTri[k] = y[i];
+        }
+        for (int c = nbCases; c > 0; c--) debut[c] = debut[c - 1];
+        debut[0] = 0;
+    }
+
+    /**
+     * Visite les agents à une distance strictement inférieure à r de (cx, cy).
+     * @return le nombre de voisins visités
+     */
+    int rayon(double cx, double cy, double r, Visiteur v) {
+        return parcourir(cx, cy, r, 0, 0, -1, v);
+    }
+
+    /**
+     * Visite les agents du cône de vision : distance inférieure à r et direction à moins de
+     * demiOuverture (radians, au plus 90°) de l'angle 'direction' (repère de la grille, y vers le bas).
+     */
+    int cone(double cx, double cy, double direction, double demiOuverture, double r, Visiteur v) {
+        return parcourir(cx, cy, r, Math.cos(direction), Math.sin(direction), Math.cos(demiOuverture), v);
+    }
+
+    // Parcours ligne par ligne ; cosMin < 0 : pas de filtre angulaire
+    private int parcourir(double cx, double cy, double r, double ux, double uy, double cosMin, Visiteur v) {
+        double r2 = r * r;
+        double cos2 = cosMin * cosMin;
+        int trouves = 0;
+        int y0 = Math.max(0, (int) Math.floor(cy - r)), y1 = Math.min(hauteur - 1, (int) Math.floor(cy + r));
+        for (int ly = y0; ly <= y1; ly++) {
+            // Écart vertical minimal entre le centre et la ligne : borne la demi-largeur utile
+            double ecart = cy < ly ? ly - cy : (cy > ly + 1 ? cy - (ly + 1) : 0);
+            double demi = Math.sqrt(r2 - ecart * ecart);
+            int x0 = Math.max(0, (int) Math.floor(cx - demi)), x1 = Math.min(largeur - 1, (int) Math.floor(cx + demi));
+            if (x0 > x1) continue;
+            int ligne = ly * largeur;
+            for (int k = debut[ligne + x0], fin = debut[ligne + x1 + 1]; k < fin; k++) {
+                double dx = xTri[k] - cx, dy = yTri[k] - cy;
+                double d2 = dx * dx + dy * dy;
+                if (d2 >= r2) continue;
+                if (cosMin >= 0) {
+                    double p = dx * ux + dy * uy; // Projection sur la direction de vue
+                    if (p < 0 || p * p < d2 * cos2) continue;
+                }
+                v.voisin(indices[k], dx, dy, d2);
+                trouves++;
+            }
+        }
+        return trouves;
+    }
+
+    private int caseDe(double x, double y) {
+        int cx = Math.max(0, Math.min(largeur - 1, (int) x));
+        int cy = Math.max(0, Math.min(hauteur - 1, (int) y));
+        return cy * largeur + cx;
+    }
+}
@@ -0,0 +1,235 @@
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Historique des statistiques globales calculé par le client à partir de chaque trame
+ * publiée, sans attendre la ligne STATS du serveur (toutes les 10 s).
+ *
+ * Chaque trame est parcourue une seule fois : moyenne, minimum, maximum et percentiles
+ * (p10, p50, p90) de l'énergie, du stress et de l'argent des agents vivants, et nombre
+ * d'agents par état. Les percentiles sont lus dans un histogramme de CLASSES classes qui
+ * couvre la plage de la trame précédente (une valeur hors plage compte dans la classe du
+ * bord), ce qui évite un tri et un second passage.
+ *
+ * Les relevés sont regroupés en paliers de 1 s, 10 s et 1 min, chacun dans un tableau
+ * circulaire de CAPACITE points : la mémoire est fixe et la lecture d'un palier coûte
+ * CAPACITE points quelle que soit la durée de la session. Un point d'un palier est la
+ * moyenne des relevés de son intervalle (minimum des minimums, maximum des maximums) ;
+ * un intervalle sans trame ne produit pas de point.
+ *
+ * Écrit par le thread réseau, lu par l'EDT (méthodes synchronisées, sections courtes).
+ */
+final class StatsHistory {
+
+    // Grandeurs suivies et mesures de chacune
+    static final int ENERGIE = 0, STRESS = 1, ARGENT = 2;
+    static final int MOY = 0, MIN = 1, MAX = 2, P10 = 3, P50 = 4, P90 = 5;
+    private static final int NB_GRANDEURS = 3, PAR_GRANDEUR = 6;
+    static final int ETATS_MAX = 16; // États au-delà : non comptés
+    static final int NB_SERIES = NB_GRANDEURS * PAR_GRANDEUR + ETATS_MAX;
+
+    static final int CAPACITE = 120; // Points par palier : 2 min, 20 min, 2 h
+    static final String[] PALIERS = {"1 s", "10 s", "1 min"};
+    private static final long[] DUREES = {
+            TimeUnit.SECONDS.toNanos(1), TimeUnit.SECONDS.toNanos(10), TimeUnit.MINUTES.toNanos(1)
+    };
+    private static final int CLASSES = 256;
+
+    private final Cumul[] cumuls = new Cumul[NB_GRANDEURS];
+    private final float[] releve = new float[NB_SERIES]; // Dernière trame
+    private final Palier[] paliers = new Palier[DUREES.length];
+    private long version = 0; // Points fermés du premier palier
+
+    StatsHistory() {
+        for (int g = 0; g < NB_GRANDEURS; g++) cumuls[g] = new Cumul();
+        for (int p = 0; p < paliers.length; p++) paliers[p] = new Palier(DUREES[p]);
+    }
+
+    static int serie(int grandeur, int mesure) {
+        return grandeur * PAR_GRANDEUR + mesure;
+    }
+
+    static int serieEtat(int etat) {
+        return NB_GRANDEURS * PAR_GRANDEUR + etat;
+    }
+
+    // Combinaison des relevés d'un intervalle pour une série
+    private static boolean estMin(int s) {
+        return s < NB_GRANDEURS * PAR_GRANDEUR && s % PAR_GRANDEUR == MIN;
+    }
+
+    private static boolean estMax(int s) {
+        return s < NB_GRANDEURS * PAR_GRANDEUR && s % PAR_GRANDEUR == MAX;
+    }
+
+    /** Relevé d'une trame (thread réseau), daté par System.nanoTime(). */
+    synchronized void ajouter(WorldSnapshot t, long date) {
+        for (Cumul c : cumuls) c.commencer();
+        Arrays.fill(releve, NB_GRANDEURS * PAR_GRANDEUR, NB_SERIES, 0f);
+        Cumul nrj = cumuls[ENERGIE], stress = cumuls[STRESS], arg = cumuls[ARGENT];
+        for (int i = 0; i < t.nbAgents; i++) {
+            int e = t.etat[i];
+            if (e >= 0 && e < ETATS_MAX) releve[serieEtat(e)]++;
+            if (e == WorldSnapshot.Etats.MORT) continue;
+            nrj.ajouter(t.nrj[i]);
+            stress.ajouter(t.stress[i]);
+            arg.ajouter(t.arg[i]);
+        }
+        for (int g = 0; g < NB_GRANDEURS; g++) cumuls[g].terminer(releve, g * PAR_GRANDEUR);
+        verser(0, releve, date);
+    }
+
+    // Ajoute un relevé au palier p ; un intervalle terminé devient un point, versé au palier suivant
+    private void verser(int p, float[] valeurs, long date) {
+        Palier pa = paliers[p];
+        long intervalle = Math.floorDiv(date, pa.duree);
+        if (pa.n > 0 && intervalle != pa.intervalle) {
+            float[] point = pa.fermer();
+            if (p + 1 < paliers.length) verser(p + 1, point, pa.intervalle * pa.duree);
+            if (p == 0) version++;
+        }
+        pa.intervalle = intervalle;
+        pa.cumuler(valeurs);
+    }
+
+    /** Oublie l'historique (nouveau scénario). */
+    synchronized void vider() {
+        for (Palier pa : paliers) pa.vider();
+        Arrays.fill(releve, 0f);
+        version++;
+    }
+
+    /** Change à chaque point fermé du premier palier (une fois par seconde au plus). */
+    synchronized long getVersion() {
+        return version;
+    }
+
+    /** Valeur de la série pour la dernière trame. */
+    synchronized float dernier(int serie) {
+        return releve[serie];
+    }
+
+    /**
+     * Copie les points d'une série d'un palier, du plus ancien au plus récent, suivis du
+     * point de l'intervalle en cours s'il a déjà des relevés.
+     * @param dest au moins CAPACITE + 1 valeurs
+     * @return nombre de points copiés
+     */
+    synchronized int copier(int palier, int serie, float[] dest) {
+        Palier pa = paliers[palier];
+        float[] col = pa.points[serie];
+        int debut = pa.suivant - pa.nb;
+        for (int k = 0; k < pa.nb; k++) dest[k] = col[Math.floorMod(debut + k, CAPACITE)];
+        int n = pa.nb;
+        if (pa.n > 0) dest[n++] = pa.valeur(serie);
+        return n;
+    }
+
+    // ========================================================================
+    // RELEVÉ D'UNE GRANDEUR SUR UNE TRAME
+    // ========================================================================
+
+    private static final class Cumul {
+        private final int[] classes = new int[CLASSES];
+        private float bas = 0, echelle = CLASSES / 100f; // Plage des classes : trame précédente
+        private double somme;
+        private float min, max;
+        private int n;
+
+        void commencer() {
+            Arrays.fill(classes, 0);
+            somme = 0;
+            min = Float.POSITIVE_INFINITY;
+            max = Float.NEGATIVE_INFINITY;
+            n = 0;
+        }
+
+        void ajouter(float v) {
+            somme += v;
+            if (v < min) min = v;
+            if (v > max) max = v;
+            n++;
+            int c = (int) ((v - bas) * echelle);
+            classes[c < 0 ? 0 : Math.min(c, CLASSES - 1)]++;
+        }
+
+        // Écrit moyenne, min, max et percentiles à partir de 'o', puis recale la plage sur cette trame
+        void terminer(float[] releve, int o) {
+            if (n == 0) {
+                Arrays.fill(releve, o, o + PAR_GRANDEUR, 0f);
+                return;
+            }
+            releve[o + MOY] = (float) (somme / n);
+            releve[o + MIN] = min;
+            releve[o + MAX] = max;
+            releve[o + P10] = quantile(0.10);
+            releve[o + P50] = quantile(0.50);
+            releve[o + P90] = quantile(0.90);
+            bas = min;
+            echelle = CLASSES / Math.max(max - min, 1e-3f);
+        }
+
+        private float quantile(double q) {
+            long rang = Math.max(1, (long) Math.ceil(q * n));
+            long cumul = 0;
+            int c = 0;
+            while (c < CLASSES - 1 && (cumul += classes[c]) < rang) c++;
+            float v = bas + (c + 0.5f) / echelle; // Milieu de la classe
+            return Math.max(min, Math.min(max, v));
+        }
+    }
+
+    // ========================================================================
+    // PALIER : POINTS D'UNE DURÉE FIXE
+    // ========================================================================
+
+    private static final class Palier {
+        final long duree;
+        final float[][] points = new float[NB_SERIES][CAPACITE]; // Tableau circulaire par série
+        int suivant = 0, nb = 0; // Prochaine case écrite, nombre de points
+
+        // Intervalle en cours
+        long intervalle;
+        int n = 0;
+        private final double[] somme = new double[NB_SERIES];
+        private final float[] extreme = new float[NB_SERIES]; // Min ou max selon la série
+        private final float[] point = new float[NB_SERIES];
+
+        Palier(long duree) {
+            this.duree = duree;
+        }
+
+        void cumuler(float[] v) {
+            for (int s = 0; s < NB_SERIES; s++) {
+                if (estMin(s)) extreme[s] = n == 0 ? v[s] : Math.min(extreme[s], v[s]);
+                else if (estMax(s)) extreme[s] = n == 0 ? v[s] : Math.max(extreme[s], v[s]);
+                else somme[s] += v[s];
+            }
+            n++;
+        }
+
+        float valeur(int s) {
+            return estMin(s) || estMax(s) ? extreme[s] : (float) (somme[s] / n);
+        }
+
+        // Range l'intervalle en cours comme point (le plus ancien est écrasé) et le retourne
+        float[] fermer() {
+            for (int s = 0; s < NB_SERIES; s++) {
+                point[s] = valeur(s);
+                points[s][suivant] = point[s];
+            }
+            suivant = (suivant + 1) % CAPACITE;
+            nb = Math.min(nb + 1, CAPACITE);
+            n = 0;
+            Arrays.fill(somme, 0);
+            return point;
+        }
+
+        void vider() {
+            suivant = 0;
+            nb = 0;
+            n = 0;
+            Arrays.fill(somme, 0);
+        }
+    }
+}
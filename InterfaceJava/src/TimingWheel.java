@@ -0,0 +1,121 @@
+import java.util.Arrays;
+
+/**
+ * Échéancier à roues hiérarchiques (timing wheel) indexé par le pas de simulation : au lieu
+ * de réveiller chaque agent à chaque pas pour vérifier s'il a quelque chose à faire (le
+ * time.sleep(0.05) de fonctionsPrincipales.cycle), un agent qui attend est rangé à son pas
+ * de réveil et n'est plus regardé avant.
+ *
+ * NIVEAUX roues de 64 cases : la roue k couvre des intervalles de 64^k pas, soit 64^NIVEAUX
+ * pas en tout (au-delà, une liste de débordement). Planifier et retirer l'échéance d'un pas
+ * coûtent O(1) ; les éléments d'une case de haut niveau redescendent d'un niveau quand le
+ * temps atteint le début de leur intervalle.
+ *
+ * Les éléments sont des entiers 0..capacite-1 (indices d'agents), chaînés dans des tableaux :
+ * aucune allocation après la création. Un élément n'est planifié qu'une fois à la fois.
+ * Un seul thread (le thread de simulation).
+ */
+final class TimingWheel {
+
+    private static final int BITS = 6, CASES = 1 << BITS, MASQUE = CASES - 1;
+    private static final int NIVEAUX = 4; // 2^24 pas : plus de 9 jours de simulation à 20 pas par seconde
+    private static final int VIDE = -1;
+
+    private final int[][] tetes = new int[NIVEAUX][CASES];
+    private int debordement = VIDE;
+    private int[] suivant = new int[0];
+    private long[] echeance = new long[0];
+    private long maintenant;
+    private int taille;
+
+    private int[] echus = new int[64];
+    private int nbEchus;
+
+    TimingWheel() {
+        vider(0, 0);
+    }
+
+    /** Oublie toutes les échéances ; le temps courant devient 'maintenant'. */
+    void vider(long maintenant, int capacite) {
+        for (int[] niveau : tetes) Arrays.fill(niveau, VIDE);
+        debordement = VIDE;
+        if (suivant.length < capacite) {
+            suivant = new int[capacite];
+            echeance = new long[capacite];
+        }
+        this.maintenant = maintenant;
+        taille = 0;
+        nbEchus = 0;
+    }
+
+    /** Éléments en attente. */
+    int taille() {
+        return taille;
+    }
+
+    /** Range 'element' jusqu'au pas 'pas' (au moins le pas suivant le temps courant). */
+    void planifier(int element, long pas) {
+        echeance[element] = Math.max(pas, maintenant + 1);
+        ranger(element);
+        taille++;
+    }
+
+    private void ranger(int element) {
+        long e = echeance[element];
+        long difference = e ^ maintenant;
+        int niveau = difference == 0 ? 0 : (63 - Long.numberOfLeadingZeros(difference)) / BITS;
+        if (niveau >= NIVEAUX) {
+            suivant[element] = debordement;
+            debordement = element;
+            return;
+        }
+        int c = (int) (e >>> (BITS * niveau)) & MASQUE;
+        suivant[element] = tetes[niveau][c];
+        tetes[niveau][c] = element;
+    }
+
+    /**
+     * Avance le temps d'un pas et retourne le nombre d'éléments dont l'échéance est ce pas
+     * (lus par echu(k), valables jusqu'à l'appel suivant).
+     */
+    int avancer() {
+        long t = ++maintenant;
+        nbEchus = 0;
+        if ((t & ((1L << (BITS * NIVEAUX)) - 1)) == 0) {
+            int e = debordement;
+            debordement = VIDE;
+            redescendre(e);
+        }
+        // Du haut vers le bas : une case qui commence à t redescend vers les roues inférieures
+        for (int niveau = NIVEAUX - 1; niveau > 0; niveau--) {
+            if ((t & ((1L << (BITS * niveau)) - 1)) != 0) continue;
+            int c = (int) (t >>> (BITS * niveau)) & MASQUE;
+            int e = tetes[niveau][c];
+            tetes[niveau][c] = VIDE;
+            redescendre(e);
+        }
+        int c = (int) t & MASQUE;
+        int e = tetes[0][c];
+        tetes[0][c] = VIDE;
+        while (e != VIDE) {
+            int s = suivant[e];
+            if (nbEchus == echus.length) echus = Arrays.copyOf(echus, nbEchus * 2);
+            echus[nbEchus++] = e;
+            e = s;
+        }
+        taille -= nbEchus;
+        return nbEchus;
+    }
+
+    int echu(int k) {
+        return echus[k];
+    }
+
+    private void redescendre(int e) {
+        while (e != VIDE) {
+            int s = suivant[e];
+            ranger(e);
+            e = s;
+        }
+    }
+}
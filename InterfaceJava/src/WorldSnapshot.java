@@ -0,0 +1,208 @@
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Image complète du monde pour une trame (agents + lieux + STATS), stockée en colonnes
+ * de types primitifs. Les tableaux ne sont agrandis que si le nombre d'agents ou de lieux
+ * augmente : une fois la taille atteinte, remplir une trame n'alloue plus rien.
+ *
+ * Un instantané n'est pas thread-safe ; il circule entre le thread réseau et l'EDT
+ * via {@link Echange}.
+ */
+final class WorldSnapshot {
+
+    // --- Colonnes agents ---
+    int nbAgents;
+    String[] noms = new String[64];
+    float[] x = new float[64], y = new float[64];
+    float[] nrj = new float[64], stress = new float[64], arg = new float[64], ang = new float[64];
+    int[] etat = new int[64]; // Identifiant d'état (voir Etats)
+
+    // --- Colonnes lieux ---
+    int nbLieux;
+    int[] typeLieu = new int[256], lieuX = new int[256], lieuY = new int[256];
+    boolean[] occupe = new boolean[256];
+
+    // --- Ligne STATS (optionnelle dans une trame) ---
+    boolean statsPresentes;
+    float moyNrj, moyStress, moyArg;
+    int nbVivants, nbMorts, nbOccupes;
+
+    long numero; // Numéro de la trame (croissant, attribué à la publication)
+    long datePublication; // System.nanoTime() à la publication par le thread réseau (0 : inconnue)
+
+    void vider() {
+        datePublication = 0;
+        nbAgents = 0;
+        nbLieux = 0;
+        statsPresentes = false;
+    }
+
+    void ajouterAgent(String nom, float ax, float ay, float anrj, float astress, float aarg, int aetat, float aang) {
+        if (nbAgents == noms.length) agrandirAgents(nbAgents * 2);
+        int i = nbAgents++;
+        noms[i] = nom; x[i] = ax; y[i] = ay;
+        nrj[i] = anrj; stress[i] = astress; arg[i] = aarg;
+        etat[i] = aetat; ang[i] = aang;
+    }
+
+    void ajouterLieu(int type, int lx, int ly, boolean occ) {
+        if (nbLieux == typeLieu.length) agrandirLieux(nbLieux * 2);
+        int i = nbLieux++;
+        typeLieu[i] = type; lieuX[i] = lx; lieuY[i] = ly; occupe[i] = occ;
+    }
+
+    void definirStats(float moyNrj, float moyStress, float moyArg, int vivants, int morts, int occupes) {
+        statsPresentes = true;
+        this.moyNrj = moyNrj; this.moyStress = moyStress; this.moyArg = moyArg;
+        nbVivants = vivants; nbMorts = morts; nbOccupes = occupes;
+    }
+
+    /**
+     * Empreinte de la disposition des lieux (types et positions, sans l'occupation).
+     * Permet aux lecteurs de savoir si la carte statique a changé depuis la trame précédente.
+     */
+    int signatureLieux() {
+        int h = nbLieux;
+        for (int i = 0; i < nbLieux; i++) {
+            h = 31 * h + typeLieu[i];
+            h = 31 * h + lieuX[i];
+            h = 31 * h + lieuY[i];
+        }
+        return h;
+    }
+
+    /** Copie le contenu d'un autre instantané (sans allocation si la capacité suffit). */
+    void copierDepuis(WorldSnapshot t) {
+        if (noms.length < t.nbAgents) agrandirAgents(t.noms.length);
+        if (typeLieu.length < t.nbLieux) agrandirLieux(t.typeLieu.length);
+        nbAgents = t.nbAgents;
+        System.arraycopy(t.noms, 0, noms, 0, nbAgents);
+        System.arraycopy(t.x, 0, x, 0, nbAgents);
+        System.arraycopy(t.y, 0, y, 0, nbAgents);
+        System.arraycopy(t.nrj, 0, nrj, 0, nbAgents);
+        System.arraycopy(t.stress, 0, stress, 0, nbAgents);
+        System.arraycopy(t.arg, 0, arg, 0, nbAgents);
+        System.arraycopy(t.etat, 0, etat, 0, nbAgents);
+        System.arraycopy(t.ang, 0, ang, 0, nbAgents);
+        nbLieux = t.nbLieux;
+        System.arraycopy(t.typeLieu, 0, typeLieu, 0, nbLieux);
+        System.arraycopy(t.lieuX, 0, lieuX, 0, nbLieux);
+        System.arraycopy(t.lieuY, 0, lieuY, 0, nbLieux);
+        System.arraycopy(t.occupe, 0, occupe, 0, nbLieux);
+        statsPresentes = t.statsPresentes;
+        moyNrj = t.moyNrj; moyStress = t.moyStress; moyArg = t.moyArg;
+        nbVivants = t.nbVivants; nbMorts = t.nbMorts; nbOccupes = t.nbOccupes;
+    }
+
+    private void agrandirAgents(int n) {
+        noms = Arrays.copyOf(noms, n);
+        x = Arrays.copyOf(x, n); y = Arrays.copyOf(y, n);
+        nrj = Arrays.copyOf(nrj, n); stress = Arrays.copyOf(stress, n); arg = Arrays.copyOf(arg, n);
+        etat = Arrays.copyOf(etat, n); ang = Arrays.copyOf(ang, n);
+    }
+
+    private void agrandirLieux(int n) {
+        typeLieu = Arrays.copyOf(typeLieu, n);
+        lieuX = Arrays.copyOf(lieuX, n); lieuY = Arrays.copyOf(lieuY, n);
+        occupe = Arrays.copyOf(occupe, n);
+    }
+
+    // ========================================================================
+    // ÉTATS DES AGENTS
+    // ========================================================================
+
+    /**
+     * Registre des états d'agents ("Repos", "Attente", "Vers travail", "Occupé", "Mort"...).
+     * Chaque libellé reçu est associé une fois pour toutes à un entier ; les instantanés
+     * ne stockent que cet entier. L'enregistrement se fait sur le thread réseau, la
+     * lecture des libellés peut se faire depuis n'importe quel thread.
+     */
+    static final class Etats {
+        static final int MORT = 0;
+        static final int OCCUPE = 1;
+
+        private static final Map<String, Integer> ids = new IdentityHashMap<>();
+        private static volatile String[] libelles = {"Mort", "Occupé"};
+
+        private Etats() {}
+
+        /**
+         * Identifiant associé à un libellé d'état. Le libellé doit être interné
+         * (c'est le cas de ceux fournis par FrameParser) : la recherche se fait par identité.
+         */
+        static synchronized int id(String libelle) {
+            Integer id = ids.get(libelle);
+            if (id != null) return id;
+            int nouveau = -1;
+            String[] l = libelles;
+            for (int i = 0; i < l.length; i++) {
+                if (l[i].equals(libelle)) { nouveau = i; break; }
+            }
+            if (nouveau < 0) {
+                nouveau = l.length;
+                String[] copie = Arrays.copyOf(l, l.length + 1);
+                copie[nouveau] = libelle;
+                libelles = copie;
+            }
+            ids.put(libelle, nouveau);
+            return nouveau;
+        }
+
+        static String libelle(int id) {
+            String[] l = libelles;
+            return id >= 0 && id < l.length ? l[id] : "?";
+        }
+    }
+
+    // ========================================================================
+    // DOUBLE TAMPON ENTRE LE THREAD RÉSEAU ET L'EDT
+    // ========================================================================
+
+    /**
+     * Deux instantanés échangés entre le producteur (thread réseau) et les lecteurs (EDT).
+     * Le producteur remplit librement le tampon arrière ; {@link #publier()} l'échange avec
+     * le tampon avant. Les lecteurs n'accèdent au tampon avant qu'entre {@link #acquerir()}
+     * et {@link #liberer()}, ce qui garantit qu'ils ne voient jamais une trame partiellement écrite.
+     */
+    static final class Echange {
+        private final ReentrantLock verrou = new ReentrantLock();
+        private WorldSnapshot avant = new WorldSnapshot(); // Dernière trame complète (lecteurs)
+        private WorldSnapshot arriere = new WorldSnapshot(); // Trame en cours d'écriture (producteur)
+        private long compteur = 0;
+
+        /** Tampon à remplir par le producteur (thread réseau uniquement). */
+        WorldSnapshot ecriture() {
+            return arriere;
+        }
+
+        /**
+         * Rend visible la trame écrite et rend au producteur un tampon vide.
+         * Attend au plus la fin d'une lecture en cours.
+         */
+        void publier() {
+            verrou.lock();
+            try {
+                arriere.numero = ++compteur;
+                WorldSnapshot t = avant;
+                avant = arriere;
+                arriere = t;
+            } finally {
+                verrou.unlock();
+            }
+            arriere.vider();
+        }
+
+        /** Donne accès à la dernière trame complète ; doit être suivi de {@link #liberer()}. */
+        WorldSnapshot acquerir() {
+            verrou.lock();
+            return avant;
+        }
+
+        void liberer() {
+            verrou.unlock();
+        }
+    }
+}
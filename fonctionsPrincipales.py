@@ -34,11 +34,20 @@ def generer_nom_unique(noms):
 def calculer_moyennes(agents):
     """Calcule la moyenne des stats et la répartition des agents (vivants/morts/occupés)."""
 
-    nb_vivants_bool = sum(1 for a in agents if a.vivant)
-
-    # Répartitions basées sur l'état
-    nb_morts_etat = sum(1 for a in agents if a.etat == "Mort")
-    nb_occupes_etat = sum(1 for a in agents if a.etat == "Occupé")
+    # Un seul parcours des agents pour les compteurs et les sommes
+    nb_vivants_bool = nb_morts_etat = nb_occupes_etat = 0
+    somme_energie = somme_stress = somme_argent = 0.0
+    for a in agents:
+        # Répartitions basées sur l'état
+        if a.etat == "Mort":
+            nb_morts_etat += 1
+        elif a.etat == "Occupé":
+            nb_occupes_etat += 1
+        if a.vivant:
+            nb_vivants_bool += 1
+            somme_energie += a.energie
+            somme_stress += a.stress
+            somme_argent += a.argent
 
     if nb_vivants_bool == 0:
         return {
@@ -46,10 +55,6 @@ def calculer_moyennes(agents):
             "NbVivants": 0, "NbMorts": nb_morts_etat, "NbOccupes": nb_occupes_etat
         }
 
-    somme_energie = sum(a.energie for a in agents if a.vivant)
-    somme_stress = sum(a.stress for a in agents if a.vivant)
-    somme_argent = sum(a.argent for a in agents if a.vivant)
-
     return {
         "Energie": somme_energie / nb_vivants_bool,
         "Stress": somme_stress / nb_vivants_bool,
@@ -3,6 +3,7 @@
 
 """
 import socket
+import struct
 import threading
 import time
 from ClassPrincipale import Simulation
@@ -14,22 +15,213 @@ PORT = 5001
 sim = None
 lock = threading.Lock()  # Lock pour protéger l'accès à l'objet 'sim' lui-même
 
+# Versions du protocole de trames (négociées par la commande PROTO:<version>)
+#   1 : chaque trame renvoie tous les lieux et tous les agents (par défaut)
+#   2 : trames delta (KEY = trame complète, DELTA = changements uniquement)
+#   3 : trames binaires préfixées par leur longueur (après la ligne CONFIG;L;H;3, plus aucun texte)
+PROTO_TEXTE = 1
+PROTO_DELTA = 2
+PROTO_BINAIRE = 3
+PERIODE_KEYFRAME = 100  # Une trame complète toutes les 100 trames (~5 s à 20 FPS) pour resynchroniser
+
+# Bits du masque des lignes D (champs d'agent modifiés), dans l'ordre des champs de la ligne AGENT
+DELTA_CHAMPS = ("X", "Y", "Energie", "Stress", "Argent", "Etat", "Angle")
+
+# Messages du protocole binaire : [longueur u32][type u8][contenu], entiers et flottants gros-boutistes.
+# La longueur compte l'octet de type et le contenu.
+MSG_CONFIG = 1  # u16 largeur, u16 hauteur
+MSG_LIEUX = 2   # u32 n, puis n x (u8 type, i16 x, i16 y) -- envoyé une fois par scénario
+MSG_AGENTS = 3  # u32 n, puis n x (u16 longueur, nom UTF-8) -- l'index d'un agent sert d'identifiant
+MSG_ETAT = 4    # u8 id, u16 longueur, libellé UTF-8 -- envoyé à la première apparition d'un état
+MSG_TRAME = 5   # u32 numéro, u32 nb lieux, occupation (1 bit par lieu), u32 nb agents,
+                # n x (f32 x, y, énergie, stress, argent, angle, u8 état), u8 stats présentes,
+                # [f32 moy. énergie, stress, argent, u32 vivants, morts, occupés]
+MSG_ACK = 6     # u32 numéro de la commande acquittée (ligne ACK;numéro en texte)
+TYPES_LIEUX = {"MAISON": 0, "TRAVAIL": 1, "PARC": 2, "LOISIR": 3}
+
 
 # Envoie les dimensions de la grille au client lors de la connexion ou du changement de scénario.
 # Paramètres :
 #   - conn (socket) : La connexion client.
 #   - simulation (Simulation) : L'objet simulation actuel.
-def send_config(conn, simulation):
+#   - proto (int) : Version du protocole négociée avec ce client.
+def send_config(conn, simulation, proto=PROTO_TEXTE):
     """Envoie la configuration de la grille au client."""
     if simulation and simulation.ville:
-        # Format: CONFIG;Largeur;Hauteur
-        msg = f"CONFIG;{simulation.ville.largeur};{simulation.ville.hauteur}\n"
+        # Format: CONFIG;Largeur;Hauteur[;Version]
+        msg = ligne_config(simulation, proto) + "\n"
         try:
             conn.sendall(msg.encode())
         except Exception as e:
             print(f"Erreur d'envoi CONFIG: {e}")
 
 
+# Construit la ligne CONFIG. La version du protocole n'est ajoutée qu'en mode delta,
+# pour que les clients qui ne la connaissent pas reçoivent exactement l'ancien format.
+def ligne_config(simulation, proto):
+    if proto >= PROTO_DELTA:
+        return f"CONFIG;{simulation.ville.largeur};{simulation.ville.hauteur};{proto}"
+    return f"CONFIG;{simulation.ville.largeur};{simulation.ville.hauteur}"
+
+
+# Liste les lieux dans l'ordre d'envoi : (TYPE, X, Y, OCCUPE). En mode delta, la position
+# d'un lieu dans cette liste sert d'identifiant dans les lignes OCC.
+def lister_lieux(simulation):
+    lieux = [("MAISON", m[0], m[1], "0") for m in simulation.ville.maisons]
+    for l in simulation.ville.tous_lieux:
+        t = "PARC" if l['symbole'] == 'P' else ("TRAVAIL" if l['symbole'] == 'T' else "LOISIR")
+        for p in l['places']:
+            lieux.append((t, p['x'], p['y'], "1" if p["occupant"] else "0"))
+    return lieux
+
+
+# Champs texte d'un agent, dans l'ordre de la ligne AGENT (hors nom).
+# La comparaison se fait sur les valeurs formatées : un changement invisible à la précision
+# d'affichage n'est pas renvoyé.
+def champs_agent(a):
+    return (f"{a.x:.2f}", f"{a.y:.2f}", f"{a.energie:.1f}", f"{a.stress:.1f}", f"{a.argent:.1f}", a.etat,
+            f"{a.angle_vue:.2f}")
+
+
+# Ligne STATS à partir du dernier relevé de l'agrégateur (None si aucun relevé)
+def ligne_stats(simulation):
+    if not simulation.stats_aggregator.stats_log:
+        return None
+    ls = simulation.stats_aggregator.stats_log[-1]
+    return f"STATS;{ls['moyenne_energie']};{ls['moyenne_stress']};{ls['moyenne_argent']};{ls['agents_vivants']};{ls['agents_morts']};{ls['agents_occupes']}"
+
+
+# Construit une trame du protocole delta pour un client et met à jour ce qui lui a été envoyé.
+# Paramètres :
+#   - simulation (Simulation) : L'objet simulation actuel (lock global tenu par l'appelant).
+#   - etat (dict) : État d'envoi propre au client (dernières valeurs envoyées, numéro de trame...).
+# Retourne :
+#   - list : Les lignes de la trame (sans le marqueur END).
+def encoder_trame_delta(simulation, etat):
+    etat["numero"] += 1
+    lieux = lister_lieux(simulation)
+    agents = [(a.nom, champs_agent(a)) for a in simulation.agents]
+    stats = ligne_stats(simulation)
+
+    keyframe = (etat["keyframe"]
+                or etat["sim"] is not simulation
+                or len(agents) != len(etat["agents"])
+                or len(lieux) != len(etat["occupations"])
+                or etat["numero"] - etat["dernier_keyframe"] >= PERIODE_KEYFRAME)
+
+    lignes = []
+    if keyframe:
+        # Trame complète : lieux statiques + tous les agents (même format que le protocole 1)
+        lignes.append(f"KEY;{etat['numero']}")
+        for t, x, y, occ in lieux:
+            lignes.append(f"{t};{x};{y};{occ}")
+        for nom, c in agents:
+            lignes.append(f"AGENT;{nom};" + ";".join(c))
+        if stats:
+            lignes.append(stats)
+        etat["keyframe"] = False
+        etat["dernier_keyframe"] = etat["numero"]
+        etat["sim"] = simulation
+    else:
+        lignes.append(f"DELTA;{etat['numero']}")
+        # Bascules d'occupation : OCC;IndexLieu;OCCUPE
+        for i, lieu in enumerate(lieux):
+            if lieu[3] != etat["occupations"][i]:
+                lignes.append(f"OCC;{i};{lieu[3]}")
+        # Champs d'agents modifiés : D;IndexAgent;Masque;Valeurs...
+        for i, (nom, c) in enumerate(agents):
+            ancien = etat["agents"][i]
+            masque = 0
+            valeurs = []
+            for bit in range(len(DELTA_CHAMPS)):
+                if c[bit] != ancien[bit]:
+                    masque |= 1 << bit
+                    valeurs.append(c[bit])
+            if masque:
+                lignes.append(f"D;{i};{masque};" + ";".join(valeurs))
+        if stats and stats != etat["stats"]:
+            lignes.append(stats)
+
+    etat["occupations"] = [lieu[3] for lieu in lieux]
+    etat["agents"] = [c for _, c in agents]
+    etat["stats"] = stats
+    return lignes
+
+
+# Encadre un contenu binaire : longueur (type inclus) + type
+def message_binaire(type_msg, contenu):
+    return struct.pack(">IB", len(contenu) + 1, type_msg) + contenu
+
+
+# Construit les messages binaires d'une trame pour un client (dictionnaires si nécessaire + MSG_TRAME).
+# Paramètres :
+#   - simulation (Simulation) : L'objet simulation actuel (lock global tenu par l'appelant).
+#   - etat (dict) : État d'envoi propre au client.
+# Retourne :
+#   - bytes : Les messages à envoyer.
+def encoder_trame_binaire(simulation, etat):
+    etat["numero"] += 1
+    lieux = lister_lieux(simulation)
+    agents = simulation.agents
+    envoi = []
+
+    # Dictionnaires statiques : lieux et noms d'agents, une seule fois par scénario
+    if etat["keyframe"] or etat["sim"] is not simulation or len(agents) != len(etat["agents"]):
+        contenu = [struct.pack(">I", len(lieux))]
+        contenu += [struct.pack(">Bhh", TYPES_LIEUX[t], x, y) for t, x, y, _ in lieux]
+        envoi.append(message_binaire(MSG_LIEUX, b"".join(contenu)))
+        noms = [a.nom.encode() for a in agents]
+        contenu = [struct.pack(">I", len(noms))]
+        contenu += [struct.pack(">H", len(n)) + n for n in noms]
+        envoi.append(message_binaire(MSG_AGENTS, b"".join(contenu)))
+        etat["sim"] = simulation
+        etat["agents"] = [a.nom for a in agents]
+        etat["keyframe"] = False
+
+    # Nouveaux états (ex : "Vers travail") : un identifiant sur un octet
+    ids_etats = etat["etats"]
+    for a in agents:
+        if a.etat not in ids_etats and len(ids_etats) < 256:
+            ids_etats[a.etat] = len(ids_etats)
+            libelle = a.etat.encode()
+            envoi.append(message_binaire(MSG_ETAT, struct.pack(">BH", ids_etats[a.etat], len(libelle)) + libelle))
+
+    occupation = bytearray((len(lieux) + 7) // 8)
+    for i, lieu in enumerate(lieux):
+        if lieu[3] == "1":
+            occupation[i >> 3] |= 1 << (i & 7)
+
+    contenu = [struct.pack(">II", etat["numero"], len(lieux)), bytes(occupation), struct.pack(">I", len(agents))]
+    contenu += [struct.pack(">6fB", a.x, a.y, a.energie, a.stress, a.argent, a.angle_vue, ids_etats.get(a.etat, 0))
+                for a in agents]
+    if simulation.stats_aggregator.stats_log:
+        ls = simulation.stats_aggregator.stats_log[-1]
+        contenu.append(struct.pack(">B3f3I", 1, float(ls['moyenne_energie']), float(ls['moyenne_stress']),
+                                   float(ls['moyenne_argent']), ls['agents_vivants'], ls['agents_morts'],
+                                   ls['agents_occupes']))
+    else:
+        contenu.append(b"\x00")
+    envoi.append(message_binaire(MSG_TRAME, b"".join(contenu)))
+    return b"".join(envoi)
+
+
+# Décode une commande « NOM[:argument][:numéro] ». STOP et RESYNC n'ont pas d'argument ;
+# le numéro (0 si absent, ancien client) est renvoyé dans l'acquittement.
+# Retour : (nom, argument ou None, numéro)
+def lire_commande(ligne):
+    parts = ligne.strip().split(":")
+    nom = parts[0].strip()
+    nb_arguments = 0 if nom in ("STOP", "RESYNC") else 1
+    argument = parts[1].strip() if nb_arguments and len(parts) > 1 else None
+    numero = 0
+    if len(parts) > 1 + nb_arguments:
+        try:
+            numero = int(parts[1 + nb_arguments])
+        except ValueError:
+            pass  # Numéro illisible : commande exécutée sans acquittement
+    return nom, argument, numero
+
+
 # Gère un client unique après acceptation de la connexion. Crée un thread pour l'écoute des commandes.
 # Paramètres :
 #   - conn (socket) : La connexion client.
@@ -38,37 +230,71 @@ def client_handler(conn):
     global sim
     print("Client connecté.")
 
+    # État d'envoi propre à ce client (version du protocole, dernières valeurs envoyées en mode delta)
+    etat_client = {"proto": PROTO_TEXTE, "envoyer_config": False, "keyframe": True, "numero": 0,
+                   "dernier_keyframe": 0, "sim": None, "occupations": [], "agents": [], "stats": None,
+                   "binaire": False, "etats": {}, "acks": []}
+
     # Envoi config initiale
     with lock:
         if sim: send_config(conn, sim)
 
-    # Thread d'écoute des commandes (SCENARIO, STOP, SPEED)
+    # Thread d'écoute des commandes (SCENARIO, STOP, SPEED, PROTO, RESYNC)
+    # Une commande par ligne : plusieurs commandes peuvent arriver dans le même paquet.
+    # Chaque commande numérotée est acquittée en tête de la première trame qui la reflète.
     def listen():
         global sim
+        tampon = ""
         while True:
             try:
                 data = conn.recv(1024).decode()
                 if not data: break  # Déconnexion normale
-
-                parts = data.strip().split(":")
-                cmd = parts[0]
-
-                # Protège l'accès à l'objet simulation globale (démarrage/arrêt/changement)
-                with lock:
-                    if cmd == "SCENARIO":
-                        if sim: sim.arreter()
-                        sim = Simulation(parts[1])
-                        sim.demarrer()
-                        send_config(conn, sim)  # Renvoyer la config si le scénario change
-                    elif cmd == "STOP":
-                        if sim: sim.arreter()
-                    elif cmd == "SPEED":
-                        if sim: sim.set_vitesse(parts[1])
+                tampon += data
+                *lignes, tampon = tampon.split("\n")
+                for ligne in lignes:
+                    if ligne.strip():
+                        executer(ligne)
             except Exception as e:
                 # Le client s'est déconnecté ou a planté
                 print(f"Erreur/Déconnexion client (écoute): {e}")
                 break
 
+    def executer(ligne):
+        global sim
+        cmd, argument, numero = lire_commande(ligne)
+
+        # Protège l'accès à l'objet simulation globale (démarrage/arrêt/changement)
+        with lock:
+            if cmd == "SCENARIO":
+                if sim: sim.arreter()
+                sim = Simulation(argument)
+                sim.demarrer()
+                if etat_client["binaire"]:
+                    # En binaire, la config part avec la trame suivante (pas d'écriture concurrente)
+                    etat_client["envoyer_config"] = True
+                else:
+                    send_config(conn, sim, etat_client["proto"])  # Renvoyer la config si le scénario change
+            elif cmd == "STOP":
+                if sim: sim.arreter()
+            elif cmd == "SPEED":
+                if sim: sim.set_vitesse(argument)
+            elif cmd == "PROTO":
+                # Négociation : le client annonce la version la plus haute qu'il comprend.
+                # La réponse (CONFIG avec version) part en tête de la trame suivante.
+                try:
+                    etat_client["proto"] = min(int(argument), PROTO_BINAIRE)
+                except (TypeError, ValueError):
+                    etat_client["proto"] = PROTO_TEXTE
+                etat_client["envoyer_config"] = True
+                etat_client["keyframe"] = True
+            elif cmd == "RESYNC":
+                # Le client a détecté une incohérence : prochaine trame complète
+                etat_client["keyframe"] = True
+            else:
+                return  # Commande inconnue : ni effet ni acquittement
+            if numero:
+                etat_client["acks"].append(numero)
+
     # Démarre l'écoute des commandes en arrière-plan
     threading.Thread(target=listen, daemon=True).start()
 
@@ -76,9 +302,40 @@ def client_handler(conn):
     while True:
         try:
             lignes = []
+            binaire = b""
+            acks = b""
             # Protège l'accès aux données de la simulation pour l'envoi
             with lock:
-                if sim and sim.running:
+                # Acquittements en tête, dans le format en cours (avant une éventuelle bascule en binaire),
+                # même si la simulation est arrêtée
+                if etat_client["acks"]:
+                    if etat_client["binaire"]:
+                        acks = b"".join(message_binaire(MSG_ACK, struct.pack(">I", n)) for n in etat_client["acks"])
+                    else:
+                        acks = "".join(f"ACK;{n}\n" for n in etat_client["acks"]).encode()
+                    etat_client["acks"] = []
+                if sim and sim.running and etat_client["proto"] >= PROTO_BINAIRE:
+                    # PROTOCOLE BINAIRE : la dernière ligne texte (CONFIG;L;H;3) annonce la bascule
+                    if etat_client["envoyer_config"]:
+                        if etat_client["binaire"]:
+                            binaire += message_binaire(MSG_CONFIG,
+                                                       struct.pack(">HH", sim.ville.largeur, sim.ville.hauteur))
+                        else:
+                            binaire += (ligne_config(sim, etat_client["proto"]) + "\n").encode()
+                            etat_client["binaire"] = True
+                        etat_client["envoyer_config"] = False
+                    binaire += encoder_trame_binaire(sim, etat_client)
+                elif sim and sim.running and etat_client["proto"] >= PROTO_DELTA:
+                    # PROTOCOLE DELTA : trame complète périodique, sinon changements uniquement
+                    if etat_client["envoyer_config"]:
+                        lignes.append(ligne_config(sim, etat_client["proto"]))
+                        etat_client["envoyer_config"] = False
+                    lignes.extend(encoder_trame_delta(sim, etat_client))
+                elif sim and sim.running:
+                    if etat_client["envoyer_config"]:
+                        lignes.append(ligne_config(sim, etat_client["proto"]))
+                        etat_client["envoyer_config"] = False
+
                     # 1. ENVOI DONNÉES LIEUX
                     # Lieux: TYPE;X;Y;OCCUPE(0/1)
                     for m in sim.ville.maisons: lignes.append(f"MAISON;{m[0]};{m[1]};0")
@@ -103,6 +360,12 @@ def client_handler(conn):
                             f"STATS;{ls['moyenne_energie']};{ls['moyenne_stress']};{ls['moyenne_argent']};{ls['agents_vivants']};{ls['agents_morts']};{ls['agents_occupes']}"
                         )
 
+            if acks:
+                conn.sendall(acks)
+
+            if binaire:
+                conn.sendall(binaire)
+
             # Envoi de la trame complète si des données sont disponibles
             if lignes:
                 # Envoi global + marqueur de fin de trame